@@ -26,7 +26,9 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /**
  * FFmpeg audio decoder.
@@ -54,6 +56,10 @@ import java.util.List;
 
   private long nativeContext; // May be reassigned on resetting the codec.
   private boolean hasOutputFormat;
+  private @NullableType ByteBuffer[] batchInputData;
+  private int[] batchInputSizes;
+  private @NullableType ByteBuffer[] batchOutputData;
+  private int[] batchResults;
   private volatile int channelCount;
   private volatile int sampleRate;
 
@@ -79,6 +85,23 @@ import java.util.List;
       throw new FfmpegDecoderException("Initialization failed.");
     }
     setInitialInputBufferSize(initialInputBufferSize);
+    batchInputData = new ByteBuffer[0];
+    batchInputSizes = new int[0];
+    batchOutputData = new ByteBuffer[0];
+    batchResults = new int[0];
+  }
+
+  /**
+   * Sets the maximum number of input buffers that are decoded with a single call into FFmpeg.
+   * Batching reduces the per-buffer overhead for low bitrate streams. The default value is 1.
+   *
+   * <p>This method must be called before the decoder is used. It is experimental, and will be
+   * renamed or removed in a future release.
+   *
+   * @param maxBatchSize The maximum number of input buffers decoded together. Must be positive.
+   */
+  public void experimentalSetMaxDecodeBatchSize(int maxBatchSize) {
+    setMaxDecodeBatchSize(maxBatchSize);
   }
 
   @Override
@@ -117,6 +140,66 @@ import java.util.List;
     int inputSize = inputData.limit();
     ByteBuffer outputData = outputBuffer.init(inputBuffer.timeUs, outputBufferSize);
     int result = ffmpegDecode(nativeContext, inputData, inputSize, outputData, outputBufferSize);
+    return processDecoderOutput(outputBuffer, result);
+  }
+
+  @Override
+  @Nullable
+  protected FfmpegDecoderException decode(
+      DecoderInputBuffer[] inputBuffers,
+      SimpleDecoderOutputBuffer[] outputBuffers,
+      int count,
+      boolean reset) {
+    if (reset) {
+      nativeContext = ffmpegReset(nativeContext, extraData);
+      if (nativeContext == 0) {
+        return new FfmpegDecoderException("Error resetting (see logcat).");
+      }
+    }
+    if (batchResults.length < count) {
+      batchInputData = new ByteBuffer[count];
+      batchInputSizes = new int[count];
+      batchOutputData = new ByteBuffer[count];
+      batchResults = new int[count];
+    }
+    for (int i = 0; i < count; i++) {
+      ByteBuffer inputData = Util.castNonNull(inputBuffers[i].data);
+      batchInputData[i] = inputData;
+      batchInputSizes[i] = inputData.limit();
+      batchOutputData[i] = outputBuffers[i].init(inputBuffers[i].timeUs, outputBufferSize);
+    }
+    int decodedCount =
+        ffmpegDecodeBatch(
+            nativeContext,
+            count,
+            batchInputData,
+            batchInputSizes,
+            batchOutputData,
+            outputBufferSize,
+            batchResults);
+    // Don't keep references to the buffers, which are owned by the base class.
+    Arrays.fill(batchInputData, null);
+    Arrays.fill(batchOutputData, null);
+    if (decodedCount < 0) {
+      // Nothing was decoded, so the output buffers don't hold any audio.
+      for (int i = 0; i < count; i++) {
+        outputBuffers[i].setFlags(C.BUFFER_FLAG_DECODE_ONLY);
+      }
+      return new FfmpegDecoderException("Error decoding batch (see logcat).");
+    }
+    for (int i = 0; i < decodedCount; i++) {
+      @Nullable
+      FfmpegDecoderException exception = processDecoderOutput(outputBuffers[i], batchResults[i]);
+      if (exception != null) {
+        return exception;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private FfmpegDecoderException processDecoderOutput(
+      SimpleDecoderOutputBuffer outputBuffer, int result) {
     if (result == AUDIO_DECODER_ERROR_OTHER) {
       return new FfmpegDecoderException("Error decoding (see logcat).");
     } else if (result == AUDIO_DECODER_ERROR_INVALID_DATA) {
@@ -143,6 +226,7 @@ import java.util.List;
       }
       hasOutputFormat = true;
     }
+    ByteBuffer outputData = Util.castNonNull(outputBuffer.data);
     outputData.position(0);
     outputData.limit(result);
     return null;
@@ -231,6 +315,15 @@ import java.util.List;
   private native int ffmpegDecode(
       long context, ByteBuffer inputData, int inputSize, ByteBuffer outputData, int outputSize);
 
+  private native int ffmpegDecodeBatch(
+      long context,
+      int count,
+      ByteBuffer[] inputData,
+      int[] inputSizes,
+      ByteBuffer[] outputData,
+      int outputSize,
+      int[] results);
+
   private native int ffmpegGetChannelCount(long context);
 
   private native int ffmpegGetSampleRate(long context);
@@ -53,6 +53,8 @@ public final class FfmpegAudioRenderer extends DecoderAudioRenderer<FfmpegAudioD
   /** The default input buffer size. */
   private static final int DEFAULT_INPUT_BUFFER_SIZE = 960 * 6;
 
+  private int maxDecodeBatchSize = 1;
+
   public FfmpegAudioRenderer() {
     this(/* eventHandler= */ null, /* eventListener= */ null);
   }
@@ -90,6 +92,21 @@ public final class FfmpegAudioRenderer extends DecoderAudioRenderer<FfmpegAudioD
     super(eventHandler, eventListener, audioSink);
   }
 
+  /**
+   * Sets the maximum number of input buffers that decoders created by this renderer decode with a
+   * single call into native code. Batching reduces the per-buffer overhead for low bitrate streams.
+   * The default value is 1.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release.
+   *
+   * @param maxDecodeBatchSize The maximum number of input buffers decoded together. Must be
+   *     positive.
+   */
+  public void experimentalSetMaxDecodeBatchSize(int maxDecodeBatchSize) {
+    Assertions.checkArgument(maxDecodeBatchSize > 0);
+    this.maxDecodeBatchSize = maxDecodeBatchSize;
+  }
+
   @Override
   public String getName() {
     return TAG;
@@ -126,6 +143,7 @@ public final class FfmpegAudioRenderer extends DecoderAudioRenderer<FfmpegAudioD
     FfmpegAudioDecoder decoder =
         new FfmpegAudioDecoder(
             format, NUM_BUFFERS, NUM_BUFFERS, initialInputBufferSize, shouldOutputFloat(format));
+    decoder.experimentalSetMaxDecodeBatchSize(maxDecodeBatchSize);
     TraceUtil.endSection();
     return decoder;
   }
@@ -83,9 +83,10 @@ AVCodecContext *createContext(JNIEnv *env, AVCodec *codec, jbyteArray extraData,
 /**
  * Decodes the packet into the output buffer, returning the number of bytes
  * written, or a negative AUDIO_DECODER_ERROR constant value in the case of an
- * error.
+ * error. The frame is used to receive decoded data, and may be reused across
+ * calls.
  */
-int decodePacket(AVCodecContext *context, AVPacket *packet,
+int decodePacket(AVCodecContext *context, AVPacket *packet, AVFrame *frame,
                  uint8_t *outputBuffer, int outputSize);
 
 /**
@@ -160,8 +161,71 @@ AUDIO_DECODER_FUNC(jint, ffmpegDecode, jlong context, jobject inputData,
   av_init_packet(&packet);
   packet.data = inputBuffer;
   packet.size = inputSize;
-  return decodePacket((AVCodecContext *)context, &packet, outputBuffer,
-                      outputSize);
+  AVFrame *frame = av_frame_alloc();
+  if (!frame) {
+    LOGE("Failed to allocate output frame.");
+    return AUDIO_DECODER_ERROR_INVALID_DATA;
+  }
+  int result = decodePacket((AVCodecContext *)context, &packet, frame,
+                            outputBuffer, outputSize);
+  av_frame_free(&frame);
+  return result;
+}
+
+AUDIO_DECODER_FUNC(jint, ffmpegDecodeBatch, jlong context, jint count,
+                   jobjectArray inputData, jintArray inputSizes,
+                   jobjectArray outputData, jint outputSize,
+                   jintArray results) {
+  if (!context) {
+    LOGE("Context must be non-NULL.");
+    return -1;
+  }
+  if (!inputData || !inputSizes || !outputData || !results) {
+    LOGE("Input and output arrays must be non-NULL.");
+    return -1;
+  }
+  if (outputSize < 0) {
+    LOGE("Invalid output buffer length: %d", outputSize);
+    return -1;
+  }
+  AVFrame *frame = av_frame_alloc();
+  if (!frame) {
+    LOGE("Failed to allocate output frame.");
+    return -1;
+  }
+  jint *sizes = env->GetIntArrayElements(inputSizes, NULL);
+  jint *decodeResults = env->GetIntArrayElements(results, NULL);
+
+  // Decode all packets without returning to Java, stopping at the first fatal
+  // error. Invalid data errors are reported per packet but are not fatal.
+  int decodedCount = 0;
+  while (decodedCount < count) {
+    jobject input = env->GetObjectArrayElement(inputData, decodedCount);
+    jobject output = env->GetObjectArrayElement(outputData, decodedCount);
+    int result = AUDIO_DECODER_ERROR_OTHER;
+    if (!input || !output || sizes[decodedCount] < 0) {
+      LOGE("Invalid input or output buffer at index %d.", decodedCount);
+    } else {
+      AVPacket packet;
+      av_init_packet(&packet);
+      packet.data = (uint8_t *)env->GetDirectBufferAddress(input);
+      packet.size = sizes[decodedCount];
+      result = decodePacket((AVCodecContext *)context, &packet, frame,
+                            (uint8_t *)env->GetDirectBufferAddress(output),
+                            outputSize);
+    }
+    env->DeleteLocalRef(input);
+    env->DeleteLocalRef(output);
+    decodeResults[decodedCount++] = result;
+    if (result == AUDIO_DECODER_ERROR_OTHER) {
+      break;
+    }
+  }
+
+  env->ReleaseIntArrayElements(inputSizes, sizes, JNI_ABORT);
+  env->ReleaseIntArrayElements(results, decodeResults, 0);
+  av_frame_free(&frame);
+  return decodedCount;
 }
 
 AUDIO_DECODER_FUNC(jint, ffmpegGetChannelCount, jlong context) {
@@ -262,7 +326,7 @@ AVCodecContext *createContext(JNIEnv *env, AVCodec *codec, jbyteArray extraData,
   return context;
 }
 
-int decodePacket(AVCodecContext *context, AVPacket *packet,
+int decodePacket(AVCodecContext *context, AVPacket *packet, AVFrame *frame,
                  uint8_t *outputBuffer, int outputSize) {
   int result = 0;
   // Queue input data.
@@ -275,14 +339,8 @@ int decodePacket(AVCodecContext *context, AVPacket *packet,
   // Dequeue output data until it runs out.
   int outSize = 0;
   while (true) {
-    AVFrame *frame = av_frame_alloc();
-    if (!frame) {
-      LOGE("Failed to allocate output frame.");
-      return AUDIO_DECODER_ERROR_INVALID_DATA;
-    }
     result = avcodec_receive_frame(context, frame);
     if (result) {
-      av_frame_free(&frame);
       if (result == AVERROR(EAGAIN)) {
         break;
       }
@@ -314,7 +372,7 @@ int decodePacket(AVCodecContext *context, AVPacket *packet,
       result = swr_init(resampleContext);
       if (result < 0) {
         logError("swr_init", result);
-        av_frame_free(&frame);
+        av_frame_unref(frame);
         return transformError(result);
       }
       context->opaque = resampleContext;
@@ -326,12 +384,12 @@ int decodePacket(AVCodecContext *context, AVPacket *packet,
     if (outSize + bufferOutSize > outputSize) {
       LOGE("Output buffer size (%d) too small for output data (%d).",
            outputSize, outSize + bufferOutSize);
-      av_frame_free(&frame);
+      av_frame_unref(frame);
       return AUDIO_DECODER_ERROR_INVALID_DATA;
     }
     result = swr_convert(resampleContext, &outputBuffer, bufferOutSize,
                          (const uint8_t **)frame->data, frame->nb_samples);
-    av_frame_free(&frame);
+    av_frame_unref(frame);
     if (result < 0) {
       logError("swr_convert", result);
       return AUDIO_DECODER_ERROR_INVALID_DATA;
@@ -83,6 +83,22 @@ public final class FlacDecoder
     setInitialInputBufferSize(initialInputBufferSize);
   }
 
+  /**
+   * Sets the maximum number of input buffers that are decoded each time the decode thread wakes up.
+   * The default value is 1.
+   *
+   * <p>libflac pulls its input through {@link FlacDecoderJni}, so buffers of a batch are still
+   * passed to the native decoder one at a time.
+   *
+   * <p>This method must be called before the decoder is used. It is experimental, and will be
+   * renamed or removed in a future release.
+   *
+   * @param maxBatchSize The maximum number of input buffers decoded together. Must be positive.
+   */
+  public void experimentalSetMaxDecodeBatchSize(int maxBatchSize) {
+    setMaxDecodeBatchSize(maxBatchSize);
+  }
+
   @Override
   public String getName() {
     return "libflac";
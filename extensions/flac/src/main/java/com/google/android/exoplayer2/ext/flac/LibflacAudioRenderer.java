@@ -25,6 +25,7 @@ import com.google.android.exoplayer2.audio.AudioSink;
 import com.google.android.exoplayer2.audio.DecoderAudioRenderer;
 import com.google.android.exoplayer2.decoder.CryptoConfig;
 import com.google.android.exoplayer2.extractor.FlacStreamMetadata;
+import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
@@ -45,6 +46,8 @@ public final class LibflacAudioRenderer extends DecoderAudioRenderer<FlacDecoder
   private static final int STREAM_MARKER_SIZE = 4;
   private static final int METADATA_BLOCK_HEADER_SIZE = 4;
 
+  private int maxDecodeBatchSize = 1;
+
   public LibflacAudioRenderer() {
     this(/* eventHandler= */ null, /* eventListener= */ null);
   }
@@ -79,6 +82,21 @@ public final class LibflacAudioRenderer extends DecoderAudioRenderer<FlacDecoder
     super(eventHandler, eventListener, audioSink);
   }
 
+  /**
+   * Sets the maximum number of input buffers that decoders created by this renderer decode each
+   * time their decode thread wakes up. Batching reduces the per-buffer overhead for low bitrate
+   * streams. The default value is 1.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release.
+   *
+   * @param maxDecodeBatchSize The maximum number of input buffers decoded together. Must be
+   *     positive.
+   */
+  public void experimentalSetMaxDecodeBatchSize(int maxDecodeBatchSize) {
+    Assertions.checkArgument(maxDecodeBatchSize > 0);
+    this.maxDecodeBatchSize = maxDecodeBatchSize;
+  }
+
   @Override
   public String getName() {
     return TAG;
@@ -121,6 +139,7 @@ public final class LibflacAudioRenderer extends DecoderAudioRenderer<FlacDecoder
     TraceUtil.beginSection("createFlacDecoder");
     FlacDecoder decoder =
         new FlacDecoder(NUM_BUFFERS, NUM_BUFFERS, format.maxInputSize, format.initializationData);
+    decoder.experimentalSetMaxDecodeBatchSize(maxDecodeBatchSize);
     TraceUtil.endSection();
     return decoder;
   }
@@ -25,6 +25,7 @@ import com.google.android.exoplayer2.audio.AudioSink;
 import com.google.android.exoplayer2.audio.AudioSink.SinkFormatSupport;
 import com.google.android.exoplayer2.audio.DecoderAudioRenderer;
 import com.google.android.exoplayer2.decoder.CryptoConfig;
+import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
@@ -46,6 +47,8 @@ public class LibopusAudioRenderer extends DecoderAudioRenderer<OpusDecoder> {
   /** The default input buffer size. */
   private static final int DEFAULT_INPUT_BUFFER_SIZE = 960 * 6;
 
+  private int maxDecodeBatchSize = 1;
+
   public LibopusAudioRenderer() {
     this(/* eventHandler= */ null, /* eventListener= */ null);
   }
@@ -80,6 +83,21 @@ public class LibopusAudioRenderer extends DecoderAudioRenderer<OpusDecoder> {
     super(eventHandler, eventListener, audioSink);
   }
 
+  /**
+   * Sets the maximum number of input buffers that decoders created by this renderer decode with a
+   * single call into native code. Batching reduces the per-buffer overhead for low bitrate streams.
+   * The default value is 1.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release.
+   *
+   * @param maxDecodeBatchSize The maximum number of input buffers decoded together. Must be
+   *     positive.
+   */
+  public void experimentalSetMaxDecodeBatchSize(int maxDecodeBatchSize) {
+    Assertions.checkArgument(maxDecodeBatchSize > 0);
+    this.maxDecodeBatchSize = maxDecodeBatchSize;
+  }
+
   @Override
   public String getName() {
     return TAG;
@@ -123,6 +141,7 @@ public class LibopusAudioRenderer extends DecoderAudioRenderer<OpusDecoder> {
             cryptoConfig,
             outputFloat);
     decoder.experimentalSetDiscardPaddingEnabled(experimentalGetDiscardPaddingEnabled());
+    decoder.experimentalSetMaxDecodeBatchSize(maxDecodeBatchSize);
 
     TraceUtil.endSection();
     return decoder;
@@ -30,7 +30,9 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /**
  * Opus decoder.
@@ -49,6 +51,7 @@ public final class OpusDecoder
   /* package */ static final int SAMPLE_RATE = 48_000;
 
   private static final int DEFAULT_SEEK_PRE_ROLL_SAMPLES = 3840;
+  private static final int MAX_OPUS_OUTPUT_PACKET_SIZE_SAMPLES = 960 * 6;
   private static final int FULL_CODEC_INITIALIZATION_DATA_BUFFER_COUNT = 3;
 
   private static final int NO_ERROR = 0;
@@ -65,6 +68,10 @@ public final class OpusDecoder
   private boolean experimentalDiscardPaddingEnabled;
 
   private int skipSamples;
+  private @NullableType ByteBuffer[] batchInputData;
+  private int[] batchInputSizes;
+  private @NullableType ByteBuffer[] batchOutputData;
+  private int[] batchResults;
 
   /**
    * Creates an Opus decoder.
@@ -150,6 +157,10 @@ public final class OpusDecoder
     if (outputFloat) {
       opusSetFloatOutput();
     }
+    batchInputData = new ByteBuffer[0];
+    batchInputSizes = new int[0];
+    batchOutputData = new ByteBuffer[0];
+    batchResults = new int[0];
   }
 
   /**
@@ -162,6 +173,20 @@ public final class OpusDecoder
     this.experimentalDiscardPaddingEnabled = enabled;
   }
 
+  /**
+   * Sets the maximum number of input buffers that are decoded with a single call into the native
+   * decoder. Batching reduces the per-buffer overhead for low bitrate streams. The default value is
+   * 1.
+   *
+   * <p>This method must be called before the decoder is used. It is experimental, and will be
+   * renamed or removed in a future release.
+   *
+   * @param maxBatchSize The maximum number of input buffers decoded together. Must be positive.
+   */
+  public void experimentalSetMaxDecodeBatchSize(int maxBatchSize) {
+    setMaxDecodeBatchSize(maxBatchSize);
+  }
+
   @Override
   public String getName() {
     return "libopus" + OpusLibrary.getVersion();
@@ -187,10 +212,7 @@ public final class OpusDecoder
   protected OpusDecoderException decode(
       DecoderInputBuffer inputBuffer, SimpleDecoderOutputBuffer outputBuffer, boolean reset) {
     if (reset) {
-      opusReset(nativeDecoderContext);
-      // When seeking to 0, skip number of samples as specified in opus header. When seeking to
-      // any other time, skip number of samples as specified by seek preroll.
-      skipSamples = (inputBuffer.timeUs == 0) ? preSkipSamples : seekPreRollSamples;
+      resetDecoder(inputBuffer.timeUs);
     }
     ByteBuffer inputData = Util.castNonNull(inputBuffer.data);
     CryptoInfo cryptoInfo = inputBuffer.cryptoInfo;
@@ -216,6 +238,77 @@ public final class OpusDecoder
                 inputData,
                 inputData.limit(),
                 outputBuffer);
+    return processDecoderOutput(inputBuffer, outputBuffer, result);
+  }
+
+  @Override
+  @Nullable
+  protected OpusDecoderException decode(
+      DecoderInputBuffer[] inputBuffers,
+      SimpleDecoderOutputBuffer[] outputBuffers,
+      int count,
+      boolean reset) {
+    for (int i = 0; i < count; i++) {
+      if (inputBuffers[i].isEncrypted()) {
+        return super.decode(inputBuffers, outputBuffers, count, reset);
+      }
+    }
+    if (reset) {
+      resetDecoder(inputBuffers[0].timeUs);
+    }
+    if (batchResults.length < count) {
+      batchInputData = new ByteBuffer[count];
+      batchInputSizes = new int[count];
+      batchOutputData = new ByteBuffer[count];
+      batchResults = new int[count];
+    }
+    int outputSize = samplesToBytes(MAX_OPUS_OUTPUT_PACKET_SIZE_SAMPLES, channelCount, outputFloat);
+    for (int i = 0; i < count; i++) {
+      ByteBuffer inputData = Util.castNonNull(inputBuffers[i].data);
+      batchInputData[i] = inputData;
+      batchInputSizes[i] = inputData.limit();
+      batchOutputData[i] = outputBuffers[i].init(inputBuffers[i].timeUs, outputSize);
+    }
+    int decodedCount =
+        opusDecodeBatch(
+            nativeDecoderContext,
+            count,
+            batchInputData,
+            batchInputSizes,
+            batchOutputData,
+            batchResults);
+    // Don't keep references to the buffers, which are owned by the base class.
+    Arrays.fill(batchInputData, null);
+    Arrays.fill(batchOutputData, null);
+    for (int i = 0; i < decodedCount; i++) {
+      @Nullable
+      OpusDecoderException exception =
+          processDecoderOutput(inputBuffers[i], outputBuffers[i], batchResults[i]);
+      if (exception != null) {
+        return exception;
+      }
+    }
+    return null;
+  }
+
+  private void resetDecoder(long timeUs) {
+    opusReset(nativeDecoderContext);
+    // When seeking to 0, skip number of samples as specified in opus header. When seeking to any
+    // other time, skip number of samples as specified by seek preroll.
+    skipSamples = (timeUs == 0) ? preSkipSamples : seekPreRollSamples;
+  }
+
+  /**
+   * Applies sample skipping and discard padding to a decoded output buffer.
+   *
+   * @param inputBuffer The decoded input buffer.
+   * @param outputBuffer The output buffer holding the decoded data.
+   * @param result The number of decoded bytes, or a negative native error code.
+   * @return A decoder exception if an error occurred, or null if decoding was successful.
+   */
+  @Nullable
+  private OpusDecoderException processDecoderOutput(
+      DecoderInputBuffer inputBuffer, SimpleDecoderOutputBuffer outputBuffer, int result) {
     if (result < 0) {
       if (result == DRM_ERROR) {
         String message = "Drm error: " + opusGetErrorMessage(nativeDecoderContext);
@@ -347,6 +440,14 @@ public final class OpusDecoder
       int inputSize,
       SimpleDecoderOutputBuffer outputBuffer);
 
+  private native int opusDecodeBatch(
+      long decoder,
+      int count,
+      ByteBuffer[] inputBuffers,
+      int[] inputSizes,
+      ByteBuffer[] outputBuffers,
+      int[] results);
+
   private native int opusSecureDecode(
       long decoder,
       long timeUs,
@@ -73,6 +73,21 @@ static int channelCount;
 static int errorCode;
 static bool outputFloat = false;
 
+// Decodes a packet into outputBufferData, returning the number of decoded
+// samples per channel or a negative Opus error code.
+static int decodePacket(OpusMSDecoder* decoder, const uint8_t* inputBuffer,
+                        int inputSize, void* outputBufferData) {
+  if (outputFloat) {
+    return opus_multistream_decode_float(
+        decoder, inputBuffer, inputSize,
+        reinterpret_cast<float*>(outputBufferData),
+        kMaxOpusOutputPacketSizeSamples, 0);
+  }
+  return opus_multistream_decode(decoder, inputBuffer, inputSize,
+                                 reinterpret_cast<int16_t*>(outputBufferData),
+                                 kMaxOpusOutputPacketSizeSamples, 0);
+}
+
 DECODER_FUNC(jlong, opusInit, jint sampleRate, jint channelCount,
              jint numStreams, jint numCoupled, jint gain,
              jbyteArray jStreamMap) {
@@ -126,20 +141,9 @@ DECODER_FUNC(jint, opusDecode, jlong jDecoder, jlong jTimeUs,
     return -1;
   }
 
-  int sampleCount;
-  if (outputFloat) {
-    float* outputBufferData = reinterpret_cast<float*>(
-        env->GetDirectBufferAddress(jOutputBufferData));
-    sampleCount = opus_multistream_decode_float(
-        decoder, inputBuffer, inputSize, outputBufferData,
-        kMaxOpusOutputPacketSizeSamples, 0);
-  } else {
-    int16_t* outputBufferData = reinterpret_cast<int16_t*>(
-        env->GetDirectBufferAddress(jOutputBufferData));
-    sampleCount = opus_multistream_decode(decoder, inputBuffer, inputSize,
-                                          outputBufferData,
-                                          kMaxOpusOutputPacketSizeSamples, 0);
-  }
+  int sampleCount =
+      decodePacket(decoder, inputBuffer, inputSize,
+                   env->GetDirectBufferAddress(jOutputBufferData));
 
   // record error code
   errorCode = (sampleCount < 0) ? sampleCount : 0;
@@ -147,6 +151,44 @@ DECODER_FUNC(jint, opusDecode, jlong jDecoder, jlong jTimeUs,
                            : sampleCount * byteSizePerSample * channelCount;
 }
 
+DECODER_FUNC(jint, opusDecodeBatch, jlong jDecoder, jint count,
+             jobjectArray jInputBuffers, jintArray jInputSizes,
+             jobjectArray jOutputBuffers, jintArray jResults) {
+  OpusMSDecoder* decoder = reinterpret_cast<OpusMSDecoder*>(jDecoder);
+  const int byteSizePerSample =
+      outputFloat ? kBytesPerFloatSample : kBytesPerIntPcmSample;
+  jint* inputSizes = env->GetIntArrayElements(jInputSizes, 0);
+  jint* results = env->GetIntArrayElements(jResults, 0);
+
+  // Decode all packets without returning to Java, stopping at the first error.
+  errorCode = 0;
+  int decodedCount = 0;
+  while (decodedCount < count) {
+    jobject jInputBuffer =
+        env->GetObjectArrayElement(jInputBuffers, decodedCount);
+    jobject jOutputBufferData =
+        env->GetObjectArrayElement(jOutputBuffers, decodedCount);
+    const uint8_t* inputBuffer = reinterpret_cast<const uint8_t*>(
+        env->GetDirectBufferAddress(jInputBuffer));
+    int sampleCount =
+        decodePacket(decoder, inputBuffer, inputSizes[decodedCount],
+                     env->GetDirectBufferAddress(jOutputBufferData));
+    env->DeleteLocalRef(jInputBuffer);
+    env->DeleteLocalRef(jOutputBufferData);
+    results[decodedCount++] =
+        (sampleCount < 0) ? sampleCount
+                          : sampleCount * byteSizePerSample * channelCount;
+    if (sampleCount < 0) {
+      errorCode = sampleCount;
+      break;
+    }
+  }
+
+  env->ReleaseIntArrayElements(jInputSizes, inputSizes, JNI_ABORT);
+  env->ReleaseIntArrayElements(jResults, results, 0);
+  return decodedCount;
+}
+
 DECODER_FUNC(jint, opusSecureDecode, jlong jDecoder, jlong jTimeUs,
              jobject jInputBuffer, jint inputSize, jobject jOutputBuffer,
              jint sampleRate, jobject mediaCrypto, jint inputMode,
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.math.IntMath;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Windowed-sinc polyphase sample rate converter for interleaved 16-bit integer or 32-bit float
+ * PCM.
+ *
+ * <p>The conversion ratio is reduced to {@code L/M} (output rate over input rate). If {@code L} is
+ * at most {@link #MAX_PHASE_COUNT}, one filter phase is precomputed for every possible output
+ * sample position and the conversion is exact. Otherwise {@link #MAX_PHASE_COUNT} phases are
+ * precomputed and coefficients are linearly interpolated between adjacent phases.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class PolyphaseResampler {
+
+  /** The maximum number of filter phases that are precomputed. */
+  /* package */ static final int MAX_PHASE_COUNT = 256;
+
+  /** The number of filter taps on each side of the interpolated position. */
+  private static final int HALF_FILTER_LENGTH = 32;
+  /** The Kaiser window shape parameter, giving a stopband attenuation of roughly 80 dB. */
+  private static final double KAISER_BETA = 8.0;
+  /** The fraction of the lower Nyquist frequency that is kept below the filter cutoff. */
+  private static final double CUTOFF_FACTOR = 0.92;
+
+  private final int channelCount;
+  private final @C.PcmEncoding int encoding;
+  private final int upsamplingFactor;
+  private final int downsamplingFactor;
+  private final int phaseCount;
+  private final boolean interpolatePhases;
+  private final int filterLength;
+  private final float[] filterTable;
+
+  private float[] inputBuffer;
+  private int inputFrameCount;
+  private float[] outputBuffer;
+  private int outputFrameCount;
+  private int position;
+  private int phaseNumerator;
+  private int endPosition;
+  private boolean inputEnded;
+
+  /**
+   * Creates a new resampler.
+   *
+   * @param inputSampleRateHz The sample rate of input audio, in hertz.
+   * @param outputSampleRateHz The sample rate of output audio, in hertz.
+   * @param channelCount The number of interleaved channels.
+   * @param encoding The PCM encoding of input and output audio, either {@link
+   *     C#ENCODING_PCM_16BIT} or {@link C#ENCODING_PCM_FLOAT}.
+   */
+  public PolyphaseResampler(
+      int inputSampleRateHz,
+      int outputSampleRateHz,
+      int channelCount,
+      @C.PcmEncoding int encoding) {
+    checkArgument(inputSampleRateHz > 0 && outputSampleRateHz > 0 && channelCount > 0);
+    checkArgument(encoding == C.ENCODING_PCM_16BIT || encoding == C.ENCODING_PCM_FLOAT);
+    this.channelCount = channelCount;
+    this.encoding = encoding;
+    int gcd = IntMath.gcd(inputSampleRateHz, outputSampleRateHz);
+    upsamplingFactor = outputSampleRateHz / gcd;
+    downsamplingFactor = inputSampleRateHz / gcd;
+    interpolatePhases = upsamplingFactor > MAX_PHASE_COUNT;
+    phaseCount = interpolatePhases ? MAX_PHASE_COUNT : upsamplingFactor;
+    filterLength = 2 * HALF_FILTER_LENGTH;
+    filterTable =
+        createFilterTable(
+            phaseCount,
+            /* bandwidth= */ CUTOFF_FACTOR
+                * min(1.0, (double) outputSampleRateHz / inputSampleRateHz));
+    inputBuffer = new float[filterLength * channelCount];
+    outputBuffer = new float[filterLength * channelCount];
+    flush();
+  }
+
+  /**
+   * Queues remaining data from {@code buffer}, and advances its position to its limit.
+   *
+   * @param buffer A {@link ByteBuffer} containing input data between its position and limit.
+   */
+  public void queueInput(ByteBuffer buffer) {
+    int sampleCount = buffer.remaining() / getBytesPerSample();
+    int frameCount = sampleCount / channelCount;
+    inputBuffer = ensureCapacity(inputBuffer, inputFrameCount + frameCount);
+    int offset = inputFrameCount * channelCount;
+    if (encoding == C.ENCODING_PCM_16BIT) {
+      for (int i = 0; i < sampleCount; i++) {
+        inputBuffer[offset + i] = buffer.getShort();
+      }
+    } else {
+      for (int i = 0; i < sampleCount; i++) {
+        inputBuffer[offset + i] = buffer.getFloat();
+      }
+    }
+    buffer.position(buffer.limit());
+    inputFrameCount += frameCount;
+    processInput();
+  }
+
+  /**
+   * Signals that no more input will be queued until the next {@link #flush()}. Remaining output can
+   * be read using {@link #getOutput(ByteBuffer)}.
+   */
+  public void queueEndOfStream() {
+    if (inputEnded) {
+      return;
+    }
+    inputEnded = true;
+    endPosition = inputFrameCount;
+    // Pad with silence so the filter can be centered on the last input frame.
+    inputBuffer = ensureCapacity(inputBuffer, inputFrameCount + HALF_FILTER_LENGTH);
+    Arrays.fill(
+        inputBuffer,
+        inputFrameCount * channelCount,
+        (inputFrameCount + HALF_FILTER_LENGTH) * channelCount,
+        0f);
+    inputFrameCount += HALF_FILTER_LENGTH;
+    processInput();
+  }
+
+  /** Returns the size of output that can be read with {@link #getOutput(ByteBuffer)}, in bytes. */
+  public int getOutputSize() {
+    return outputFrameCount * channelCount * getBytesPerSample();
+  }
+
+  /**
+   * Gets available output, writing it at the position of {@code buffer}. The buffer's position will
+   * be advanced by the number of bytes written.
+   *
+   * @param buffer A {@link ByteBuffer} into which output will be written.
+   */
+  public void getOutput(ByteBuffer buffer) {
+    int bytesPerFrame = channelCount * getBytesPerSample();
+    int frameCount = min(buffer.remaining() / bytesPerFrame, outputFrameCount);
+    int sampleCount = frameCount * channelCount;
+    if (encoding == C.ENCODING_PCM_16BIT) {
+      for (int i = 0; i < sampleCount; i++) {
+        buffer.putShort(
+            (short)
+                Util.constrainValue(Math.round(outputBuffer[i]), Short.MIN_VALUE, Short.MAX_VALUE));
+      }
+    } else {
+      for (int i = 0; i < sampleCount; i++) {
+        buffer.putFloat(outputBuffer[i]);
+      }
+    }
+    outputFrameCount -= frameCount;
+    System.arraycopy(outputBuffer, sampleCount, outputBuffer, 0, outputFrameCount * channelCount);
+  }
+
+  /** Clears state in preparation for receiving a new stream of input buffers. */
+  public void flush() {
+    // Prime the history with silence so the first output frame is aligned with the first input
+    // frame, compensating for the filter delay.
+    inputFrameCount = HALF_FILTER_LENGTH - 1;
+    Arrays.fill(inputBuffer, 0, inputFrameCount * channelCount, 0f);
+    outputFrameCount = 0;
+    position = HALF_FILTER_LENGTH - 1;
+    phaseNumerator = 0;
+    endPosition = C.INDEX_UNSET;
+    inputEnded = false;
+  }
+
+  private void processInput() {
+    // Bound the number of output frames so the output buffer grows at most once per call.
+    int availableOutputFrameCount = 0;
+    int maxInputPosition = inputFrameCount - HALF_FILTER_LENGTH - 1;
+    if (maxInputPosition >= position) {
+      availableOutputFrameCount =
+          (int)
+                  (((long) (maxInputPosition - position + 1) * upsamplingFactor)
+                      / downsamplingFactor)
+              + 1;
+    }
+    outputBuffer = ensureCapacity(outputBuffer, outputFrameCount + availableOutputFrameCount);
+
+    float[] input = inputBuffer;
+    float[] output = outputBuffer;
+    int outputOffset = outputFrameCount * channelCount;
+    while (position + HALF_FILTER_LENGTH < inputFrameCount
+        && (!inputEnded || position < endPosition)) {
+      int inputOffset = (position - HALF_FILTER_LENGTH + 1) * channelCount;
+      if (interpolatePhases) {
+        long scaledPhase = (long) phaseNumerator * phaseCount;
+        int phase = (int) (scaledPhase / upsamplingFactor);
+        float fraction = (float) (scaledPhase % upsamplingFactor) / upsamplingFactor;
+        int filterOffset = phase * filterLength;
+        for (int channel = 0; channel < channelCount; channel++) {
+          float value0 = convolve(input, inputOffset + channel, filterOffset);
+          float value1 = convolve(input, inputOffset + channel, filterOffset + filterLength);
+          output[outputOffset++] = value0 + fraction * (value1 - value0);
+        }
+      } else {
+        int filterOffset = phaseNumerator * filterLength;
+        for (int channel = 0; channel < channelCount; channel++) {
+          output[outputOffset++] = convolve(input, inputOffset + channel, filterOffset);
+        }
+      }
+      phaseNumerator += downsamplingFactor;
+      position += phaseNumerator / upsamplingFactor;
+      phaseNumerator %= upsamplingFactor;
+    }
+    outputFrameCount = outputOffset / channelCount;
+    removeProcessedInputFrames();
+  }
+
+  private float convolve(float[] input, int inputOffset, int filterOffset) {
+    float[] filterTable = this.filterTable;
+    int channelCount = this.channelCount;
+    float sum = 0;
+    for (int i = 0; i < filterLength; i++) {
+      sum += filterTable[filterOffset + i] * input[inputOffset];
+      inputOffset += channelCount;
+    }
+    return sum;
+  }
+
+  private void removeProcessedInputFrames() {
+    int removedFrameCount = min(position - HALF_FILTER_LENGTH + 1, inputFrameCount);
+    if (removedFrameCount <= 0) {
+      return;
+    }
+    System.arraycopy(
+        inputBuffer,
+        removedFrameCount * channelCount,
+        inputBuffer,
+        0,
+        (inputFrameCount - removedFrameCount) * channelCount);
+    inputFrameCount -= removedFrameCount;
+    position -= removedFrameCount;
+    if (endPosition != C.INDEX_UNSET) {
+      endPosition -= removedFrameCount;
+    }
+  }
+
+  private int getBytesPerSample() {
+    return encoding == C.ENCODING_PCM_16BIT ? 2 : 4;
+  }
+
+  private float[] ensureCapacity(float[] buffer, int frameCount) {
+    int requiredLength = frameCount * channelCount;
+    if (buffer.length < requiredLength) {
+      return Arrays.copyOf(buffer, max(requiredLength, buffer.length * 2));
+    }
+    return buffer;
+  }
+
+  /**
+   * Returns a table of {@code phaseCount + 1} Kaiser-windowed sinc filters, each with unit DC gain.
+   * Row {@code p} interpolates at a fractional offset of {@code p / phaseCount} input frames.
+   */
+  private static float[] createFilterTable(int phaseCount, double bandwidth) {
+    int filterLength = 2 * HALF_FILTER_LENGTH;
+    float[] filterTable = new float[(phaseCount + 1) * filterLength];
+    double[] coefficients = new double[filterLength];
+    double windowNormalization = besselI0(KAISER_BETA);
+    for (int phase = 0; phase <= phaseCount; phase++) {
+      double fraction = (double) phase / phaseCount;
+      double sum = 0;
+      for (int i = 0; i < filterLength; i++) {
+        double t = i - HALF_FILTER_LENGTH + 1 - fraction;
+        double x = t / HALF_FILTER_LENGTH;
+        double window =
+            Math.abs(x) >= 1
+                ? 0
+                : besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / windowNormalization;
+        coefficients[i] = bandwidth * sinc(bandwidth * t) * window;
+        sum += coefficients[i];
+      }
+      for (int i = 0; i < filterLength; i++) {
+        filterTable[phase * filterLength + i] = (float) (coefficients[i] / sum);
+      }
+    }
+    return filterTable;
+  }
+
+  private static double sinc(double x) {
+    if (x == 0) {
+      return 1;
+    }
+    double piX = Math.PI * x;
+    return Math.sin(piX) / piX;
+  }
+
+  /** Returns the zeroth-order modified Bessel function of the first kind. */
+  private static double besselI0(double x) {
+    double sum = 1;
+    double term = 1;
+    double halfX = x / 2;
+    for (int k = 1; term > sum * 1e-12; k++) {
+      term *= (halfX / k) * (halfX / k);
+      sum += term;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link AudioProcessor} that converts the sample rate of audio using a polyphase windowed-sinc
+ * filter.
+ *
+ * <p>Compared to the linear interpolation used by {@link SonicAudioProcessor}, this processor
+ * suppresses aliasing and imaging artifacts, and precomputes its filter coefficients so that common
+ * conversions such as 44.1 kHz to 48 kHz are cheap. Input and output are either 16-bit integer or
+ * 32-bit float PCM, with the output encoding matching the input.
+ *
+ * <p>The processor can be passed to {@code DefaultAudioSink} (as part of its audio processor chain)
+ * or to {@code Transformer} (as an audio effect) to output audio at a fixed sample rate.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class ResamplingAudioProcessor extends BaseAudioProcessor {
+
+  /** Indicates that the output sample rate should be the same as the input. */
+  public static final int SAMPLE_RATE_NO_CHANGE = -1;
+
+  private int pendingOutputSampleRateHz;
+  @Nullable private PolyphaseResampler resampler;
+  @Nullable private AudioFormat resamplerInputAudioFormat;
+  @Nullable private AudioFormat resamplerOutputAudioFormat;
+
+  /** Creates a new resampling audio processor. */
+  public ResamplingAudioProcessor() {
+    pendingOutputSampleRateHz = SAMPLE_RATE_NO_CHANGE;
+  }
+
+  /**
+   * Sets the sample rate for output audio, in Hertz. Pass {@link #SAMPLE_RATE_NO_CHANGE} to output
+   * audio at the same sample rate as the input. After calling this method, call {@link
+   * #configure(AudioFormat)} to configure the processor with the new sample rate.
+   *
+   * @param sampleRateHz The sample rate for output audio, in Hertz.
+   * @see #configure(AudioFormat)
+   */
+  public void setOutputSampleRateHz(int sampleRateHz) {
+    pendingOutputSampleRateHz = sampleRateHz;
+  }
+
+  @Override
+  protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+    if (pendingOutputSampleRateHz == SAMPLE_RATE_NO_CHANGE
+        || pendingOutputSampleRateHz == inputAudioFormat.sampleRate) {
+      return AudioFormat.NOT_SET;
+    }
+    return new AudioFormat(
+        pendingOutputSampleRateHz, inputAudioFormat.channelCount, inputAudioFormat.encoding);
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    if (!inputBuffer.hasRemaining()) {
+      return;
+    }
+    PolyphaseResampler resampler = checkNotNull(this.resampler);
+    resampler.queueInput(inputBuffer);
+    outputPendingFrames(resampler);
+  }
+
+  @Override
+  protected void onQueueEndOfStream() {
+    @Nullable PolyphaseResampler resampler = this.resampler;
+    if (resampler != null) {
+      resampler.queueEndOfStream();
+      outputPendingFrames(resampler);
+    }
+  }
+
+  @Override
+  protected void onFlush() {
+    if (outputAudioFormat == AudioFormat.NOT_SET) {
+      return;
+    }
+    @Nullable PolyphaseResampler resampler = this.resampler;
+    if (resampler != null
+        && inputAudioFormat.equals(resamplerInputAudioFormat)
+        && outputAudioFormat.equals(resamplerOutputAudioFormat)) {
+      resampler.flush();
+    } else {
+      this.resampler =
+          new PolyphaseResampler(
+              inputAudioFormat.sampleRate,
+              outputAudioFormat.sampleRate,
+              inputAudioFormat.channelCount,
+              inputAudioFormat.encoding);
+      resamplerInputAudioFormat = inputAudioFormat;
+      resamplerOutputAudioFormat = outputAudioFormat;
+    }
+  }
+
+  @Override
+  protected void onReset() {
+    pendingOutputSampleRateHz = SAMPLE_RATE_NO_CHANGE;
+    resampler = null;
+    resamplerInputAudioFormat = null;
+    resamplerOutputAudioFormat = null;
+  }
+
+  private void outputPendingFrames(PolyphaseResampler resampler) {
+    int outputSize = resampler.getOutputSize();
+    if (outputSize == 0) {
+      return;
+    }
+    ByteBuffer outputBuffer = replaceOutputBuffer(outputSize);
+    resampler.getOutput(outputBuffer);
+    outputBuffer.flip();
+  }
+}
@@ -16,6 +16,8 @@
 package com.google.android.exoplayer2.util;
 
 import static com.google.android.exoplayer2.util.MimeTypes.normalizeMimeType;
+import static com.google.android.exoplayer2.util.Util.castNonNull;
+import static java.lang.Math.min;
 import static java.lang.annotation.ElementType.TYPE_USE;
 
 import android.net.Uri;
@@ -26,8 +28,10 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /**
  * Defines common file type constants and helper methods.
@@ -90,6 +94,12 @@ public final class FileTypes {
   /** File type for the AVI format. */
   public static final int AVI = 16;
 
+  /**
+   * The number of bytes from the start of a file that {@link #inferFileTypeFromContent(byte[], int,
+   * int)} examines.
+   */
+  public static final int CONTENT_INFERENCE_LENGTH = 12;
+
   @VisibleForTesting /* package */ static final String HEADER_CONTENT_TYPE = "Content-Type";
 
   private static final String EXTENSION_AC3 = ".ac3";
@@ -126,6 +136,8 @@ public final class FileTypes {
   private static final String EXTENSION_JPEG = ".jpeg";
   private static final String EXTENSION_AVI = ".avi";
 
+  private static final MagicNumberTrie MAGIC_NUMBER_TRIE = buildMagicNumberTrie();
+
   private FileTypes() {}
 
   /** Returns the {@link Type} corresponding to the response headers provided. */
@@ -261,4 +273,146 @@ public final class FileTypes {
       return FileTypes.UNKNOWN;
     }
   }
+
+  /**
+   * Returns the {@link Type} inferred from the magic number at the start of the file.
+   *
+   * <p>The inferred type is a guess that can be used to decide which extractor to try first. Some
+   * magic numbers are short, so the file isn't guaranteed to have the returned type.
+   *
+   * @param data An array containing the start of the file.
+   * @param offset The offset in {@code data} at which the file starts.
+   * @param length The number of bytes of the file in {@code data}. At most {@link
+   *     #CONTENT_INFERENCE_LENGTH} bytes are examined.
+   * @return The inferred {@link Type}, or {@link #UNKNOWN} if no magic number matched.
+   */
+  public static @FileTypes.Type int inferFileTypeFromContent(byte[] data, int offset, int length) {
+    return MAGIC_NUMBER_TRIE.match(
+        data, offset, /* limit= */ offset + min(length, CONTENT_INFERENCE_LENGTH));
+  }
+
+  private static MagicNumberTrie buildMagicNumberTrie() {
+    MagicNumberTrie trie = new MagicNumberTrie();
+    // '?' matches any byte.
+    trie.add(FileTypes.AC3, "\u000B\u0077");
+    trie.add(FileTypes.AC4, "\u00AC\u0040");
+    trie.add(FileTypes.AC4, "\u00AC\u0041");
+    trie.add(FileTypes.AMR, "#!AMR\n");
+    trie.add(FileTypes.AMR, "#!AMR-WB\n");
+    trie.add(FileTypes.AVI, "RIFF????AVI ");
+    trie.add(FileTypes.FLAC, "fLaC");
+    trie.add(FileTypes.FLV, "FLV\u0001");
+    trie.add(FileTypes.JPEG, "\u00FF\u00D8");
+    trie.add(FileTypes.MATROSKA, "\u001A\u0045\u00DF\u00A3");
+    trie.add(FileTypes.MIDI, "MThd");
+    trie.add(FileTypes.MP3, "ID3");
+    trie.add(FileTypes.MP4, "????ftyp");
+    trie.add(FileTypes.MP4, "????moov");
+    trie.add(FileTypes.MP4, "????styp");
+    trie.add(FileTypes.OGG, "OggS");
+    trie.add(FileTypes.PS, "\u0000\u0000\u0001\u00BA");
+    trie.add(FileTypes.TS, "\u0047");
+    trie.add(FileTypes.WAV, "RIFF????WAVE");
+    trie.add(FileTypes.WAV, "RF64????WAVE");
+    trie.add(FileTypes.WEBVTT, "WEBVTT");
+    trie.add(FileTypes.WEBVTT, "\u00EF\u00BB\u00BFWEBVTT");
+    // MPEG audio and ADTS frames start with a sync word, followed by a byte whose valid values
+    // depend on the format.
+    for (int i = 0xE0; i <= 0xFF; i++) {
+      int version = (i >> 3) & 0x03;
+      int layer = (i >> 1) & 0x03;
+      String frameStart = "\u00FF" + (char) i;
+      if ((i & 0xF6) == 0xF0) {
+        // The ADTS sync word is 12 bits long, and its layer is always 0.
+        trie.add(FileTypes.ADTS, frameStart);
+      } else if (version != 1 && layer != 0) {
+        trie.add(FileTypes.MP3, frameStart);
+      }
+    }
+    return trie;
+  }
+
+  /**
+   * A trie of magic numbers, in which each node corresponds to a byte of a magic number, and the
+   * nodes at which magic numbers end hold their file type.
+   */
+  private static final class MagicNumberTrie {
+
+    private static final char ANY_BYTE = '?';
+
+    private byte[] childBytes;
+    private @NullableType MagicNumberTrie[] children;
+    @Nullable private MagicNumberTrie anyByteChild;
+    private @FileTypes.Type int fileType;
+
+    public MagicNumberTrie() {
+      childBytes = new byte[0];
+      children = new MagicNumberTrie[0];
+      fileType = FileTypes.UNKNOWN;
+    }
+
+    /**
+     * Adds a magic number, in which each character is a byte value and {@link #ANY_BYTE} matches
+     * any byte.
+     */
+    public void add(@FileTypes.Type int fileType, String magicNumber) {
+      Assertions.checkArgument(magicNumber.length() <= CONTENT_INFERENCE_LENGTH);
+      MagicNumberTrie node = this;
+      for (int i = 0; i < magicNumber.length(); i++) {
+        char c = magicNumber.charAt(i);
+        node = c == ANY_BYTE ? node.getOrAddAnyByteChild() : node.getOrAddChild((byte) c);
+      }
+      Assertions.checkState(node.fileType == FileTypes.UNKNOWN);
+      node.fileType = fileType;
+    }
+
+    /**
+     * Returns the file type of the magic number matching {@code data} from {@code position}, or
+     * {@link FileTypes#UNKNOWN} if none match. Exact bytes are preferred over {@link #ANY_BYTE},
+     * and longer magic numbers over their prefixes.
+     */
+    public @FileTypes.Type int match(byte[] data, int position, int limit) {
+      if (position < limit) {
+        byte value = data[position];
+        for (int i = 0; i < childBytes.length; i++) {
+          if (childBytes[i] == value) {
+            @FileTypes.Type
+            int childFileType = castNonNull(children[i]).match(data, position + 1, limit);
+            if (childFileType != FileTypes.UNKNOWN) {
+              return childFileType;
+            }
+            break;
+          }
+        }
+        if (anyByteChild != null) {
+          @FileTypes.Type int childFileType = anyByteChild.match(data, position + 1, limit);
+          if (childFileType != FileTypes.UNKNOWN) {
+            return childFileType;
+          }
+        }
+      }
+      return fileType;
+    }
+
+    private MagicNumberTrie getOrAddChild(byte value) {
+      for (int i = 0; i < childBytes.length; i++) {
+        if (childBytes[i] == value) {
+          return castNonNull(children[i]);
+        }
+      }
+      MagicNumberTrie child = new MagicNumberTrie();
+      childBytes = Arrays.copyOf(childBytes, childBytes.length + 1);
+      childBytes[childBytes.length - 1] = value;
+      children = Arrays.copyOf(children, children.length + 1);
+      children[children.length - 1] = child;
+      return child;
+    }
+
+    private MagicNumberTrie getOrAddAnyByteChild() {
+      if (anyByteChild == null) {
+        anyByteChild = new MagicNumberTrie();
+      }
+      return anyByteChild;
+    }
+  }
 }
@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.util;
 
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.Assertions.checkState;
 
 import android.os.Looper;
@@ -23,8 +25,8 @@ import androidx.annotation.CheckResult;
 import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.common.collect.ImmutableList;
 import java.util.ArrayDeque;
-import java.util.concurrent.CopyOnWriteArraySet;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 /**
@@ -36,6 +38,10 @@ import org.checkerframework.checker.nullness.qual.NonNull;
  * <p>Events are also guaranteed to be only sent to the listeners registered at the time the event
  * was enqueued and haven't been removed since.
  *
+ * <p>Queueing and sending events doesn't allocate once the set has warmed up: queued events are
+ * pooled and share an immutable snapshot of the listeners that's only recreated when listeners are
+ * added or removed.
+ *
  * <p>All methods must be called on the {@link Looper} passed to the constructor unless indicated
  * otherwise.
  *
@@ -78,13 +84,16 @@ public final class ListenerSet<T extends @NonNull Object> {
   }
 
   private static final int MSG_ITERATION_FINISHED = 0;
+  private static final int INITIAL_EVENT_QUEUE_CAPACITY = 16;
+  private static final int MAX_POOLED_EVENT_COUNT = 32;
 
   private final Clock clock;
   private final HandlerWrapper handler;
   private final IterationFinishedEvent<T> iterationFinishedEvent;
-  private final CopyOnWriteArraySet<ListenerHolder<T>> listeners;
-  private final ArrayDeque<Runnable> flushingEvents;
-  private final ArrayDeque<Runnable> queuedEvents;
+  private final ListenerHolderList<T> listeners;
+  private final ArrayDeque<QueuedEvent<T>> flushingEvents;
+  private final ArrayDeque<QueuedEvent<T>> queuedEvents;
+  private final ArrayDeque<QueuedEvent<T>> pooledEvents;
   private final Object releasedLock;
 
   @GuardedBy("releasedLock")
@@ -103,7 +112,7 @@ public final class ListenerSet<T extends @NonNull Object> {
    */
   public ListenerSet(Looper looper, Clock clock, IterationFinishedEvent<T> iterationFinishedEvent) {
     this(
-        /* listeners= */ new CopyOnWriteArraySet<>(),
+        /* listeners= */ new ListenerHolderList<>(),
         looper,
         clock,
         iterationFinishedEvent,
@@ -111,7 +120,7 @@ public final class ListenerSet<T extends @NonNull Object> {
   }
 
   private ListenerSet(
-      CopyOnWriteArraySet<ListenerHolder<T>> listeners,
+      ListenerHolderList<T> listeners,
       Looper looper,
       Clock clock,
       IterationFinishedEvent<T> iterationFinishedEvent,
@@ -120,8 +129,9 @@ public final class ListenerSet<T extends @NonNull Object> {
     this.listeners = listeners;
     this.iterationFinishedEvent = iterationFinishedEvent;
     releasedLock = new Object();
-    flushingEvents = new ArrayDeque<>();
-    queuedEvents = new ArrayDeque<>();
+    flushingEvents = new ArrayDeque<>(INITIAL_EVENT_QUEUE_CAPACITY);
+    queuedEvents = new ArrayDeque<>(INITIAL_EVENT_QUEUE_CAPACITY);
+    pooledEvents = new ArrayDeque<>(INITIAL_EVENT_QUEUE_CAPACITY);
     // It's safe to use "this" because we don't send a message before exiting the constructor.
     @SuppressWarnings("nullness:methodref.receiver.bound")
     HandlerWrapper handler = clock.createHandler(looper, this::handleMessage);
@@ -172,7 +182,7 @@ public final class ListenerSet<T extends @NonNull Object> {
    * @param listener The listener to be added.
    */
   public void add(T listener) {
-    Assertions.checkNotNull(listener);
+    checkNotNull(listener);
     synchronized (releasedLock) {
       if (released) {
         return;
@@ -190,7 +200,9 @@ public final class ListenerSet<T extends @NonNull Object> {
    */
   public void remove(T listener) {
     verifyCurrentThread();
-    for (ListenerHolder<T> listenerHolder : listeners) {
+    ImmutableList<ListenerHolder<T>> listenerHolders = listeners.get();
+    for (int i = 0; i < listenerHolders.size(); i++) {
+      ListenerHolder<T> listenerHolder = listenerHolders.get(i);
       if (listenerHolder.listener.equals(listener)) {
         listenerHolder.release(iterationFinishedEvent);
         listeners.remove(listenerHolder);
@@ -207,7 +219,7 @@ public final class ListenerSet<T extends @NonNull Object> {
   /** Returns the number of added listeners. */
   public int size() {
     verifyCurrentThread();
-    return listeners.size();
+    return listeners.get().size();
   }
 
   /**
@@ -219,13 +231,34 @@ public final class ListenerSet<T extends @NonNull Object> {
    */
   public void queueEvent(int eventFlag, Event<T> event) {
     verifyCurrentThread();
-    CopyOnWriteArraySet<ListenerHolder<T>> listenerSnapshot = new CopyOnWriteArraySet<>(listeners);
-    queuedEvents.add(
-        () -> {
-          for (ListenerHolder<T> holder : listenerSnapshot) {
-            holder.invoke(eventFlag, event);
-          }
-        });
+    queuedEvents.addLast(obtainQueuedEvent(eventFlag, event));
+  }
+
+  /**
+   * Adds an event that is sent to the listeners when {@link #flushEvents} is called, and removes
+   * all events with the same flag that were queued since the last call to {@link #flushEvents}.
+   *
+   * <p>Use this method for high-frequency events where listeners are only interested in the most
+   * recent one. The event is sent in the position of the most recent occurrence.
+   *
+   * @param eventFlag An integer indicating the type of the event. Must not be {@link
+   *     C#INDEX_UNSET}.
+   * @param event The event.
+   */
+  public void queueCoalescedEvent(int eventFlag, Event<T> event) {
+    verifyCurrentThread();
+    checkArgument(eventFlag != C.INDEX_UNSET);
+    // Rotate the queue once, dropping superseded events, to avoid allocating an iterator.
+    int queuedEventCount = queuedEvents.size();
+    for (int i = 0; i < queuedEventCount; i++) {
+      QueuedEvent<T> queuedEvent = queuedEvents.removeFirst();
+      if (queuedEvent.eventFlag == eventFlag) {
+        releaseQueuedEvent(queuedEvent);
+      } else {
+        queuedEvents.addLast(queuedEvent);
+      }
+    }
+    queuedEvents.addLast(obtainQueuedEvent(eventFlag, event));
   }
 
   /** Notifies listeners of events previously enqueued with {@link #queueEvent(int, Event)}. */
@@ -238,15 +271,18 @@ public final class ListenerSet<T extends @NonNull Object> {
       handler.sendMessageAtFrontOfQueue(handler.obtainMessage(MSG_ITERATION_FINISHED));
     }
     boolean recursiveFlushInProgress = !flushingEvents.isEmpty();
-    flushingEvents.addAll(queuedEvents);
-    queuedEvents.clear();
+    while (!queuedEvents.isEmpty()) {
+      flushingEvents.addLast(queuedEvents.removeFirst());
+    }
     if (recursiveFlushInProgress) {
       // Recursive call to flush. Let the outer call handle the flush queue.
       return;
     }
     while (!flushingEvents.isEmpty()) {
-      flushingEvents.peekFirst().run();
+      QueuedEvent<T> queuedEvent = flushingEvents.peekFirst();
+      queuedEvent.invoke();
       flushingEvents.removeFirst();
+      releaseQueuedEvent(queuedEvent);
     }
   }
 
@@ -273,8 +309,9 @@ public final class ListenerSet<T extends @NonNull Object> {
     synchronized (releasedLock) {
       released = true;
     }
-    for (ListenerHolder<T> listenerHolder : listeners) {
-      listenerHolder.release(iterationFinishedEvent);
+    ImmutableList<ListenerHolder<T>> listenerHolders = listeners.get();
+    for (int i = 0; i < listenerHolders.size(); i++) {
+      listenerHolders.get(i).release(iterationFinishedEvent);
     }
     listeners.clear();
   }
@@ -293,8 +330,9 @@ public final class ListenerSet<T extends @NonNull Object> {
   }
 
   private boolean handleMessage(Message message) {
-    for (ListenerHolder<T> holder : listeners) {
-      holder.iterationFinished(iterationFinishedEvent);
+    ImmutableList<ListenerHolder<T>> listenerHolders = listeners.get();
+    for (int i = 0; i < listenerHolders.size(); i++) {
+      listenerHolders.get(i).iterationFinished(iterationFinishedEvent);
       if (handler.hasMessages(MSG_ITERATION_FINISHED)) {
         // The invocation above triggered new events (and thus scheduled a new message). We need
         // to stop here because this new message will take care of informing every listener about
@@ -305,6 +343,22 @@ public final class ListenerSet<T extends @NonNull Object> {
     return true;
   }
 
+  private QueuedEvent<T> obtainQueuedEvent(int eventFlag, Event<T> event) {
+    @Nullable QueuedEvent<T> queuedEvent = pooledEvents.pollFirst();
+    if (queuedEvent == null) {
+      queuedEvent = new QueuedEvent<>();
+    }
+    queuedEvent.set(eventFlag, event, listeners.get());
+    return queuedEvent;
+  }
+
+  private void releaseQueuedEvent(QueuedEvent<T> queuedEvent) {
+    queuedEvent.clear();
+    if (pooledEvents.size() < MAX_POOLED_EVENT_COUNT) {
+      pooledEvents.addLast(queuedEvent);
+    }
+  }
+
   private void verifyCurrentThread() {
     if (!throwsWhenUsingWrongThread) {
       return;
@@ -312,6 +366,82 @@ public final class ListenerSet<T extends @NonNull Object> {
     checkState(Thread.currentThread() == handler.getLooper().getThread());
   }
 
+  /**
+   * A copy-on-write list of {@link ListenerHolder} instances, shared by copies of the listener set.
+   * The list returned by {@link #get()} is immutable, so it can be used as a snapshot of the
+   * listeners without copying.
+   */
+  private static final class ListenerHolderList<T extends @NonNull Object> {
+
+    private volatile ImmutableList<ListenerHolder<T>> listenerHolders;
+
+    public ListenerHolderList() {
+      listenerHolders = ImmutableList.of();
+    }
+
+    public ImmutableList<ListenerHolder<T>> get() {
+      return listenerHolders;
+    }
+
+    public synchronized void add(ListenerHolder<T> listenerHolder) {
+      if (listenerHolders.contains(listenerHolder)) {
+        return;
+      }
+      listenerHolders =
+          new ImmutableList.Builder<ListenerHolder<T>>()
+              .addAll(listenerHolders)
+              .add(listenerHolder)
+              .build();
+    }
+
+    public synchronized void remove(ListenerHolder<T> listenerHolder) {
+      int index = listenerHolders.indexOf(listenerHolder);
+      if (index < 0) {
+        return;
+      }
+      listenerHolders =
+          new ImmutableList.Builder<ListenerHolder<T>>()
+              .addAll(listenerHolders.subList(0, index))
+              .addAll(listenerHolders.subList(index + 1, listenerHolders.size()))
+              .build();
+    }
+
+    public synchronized void clear() {
+      listenerHolders = ImmutableList.of();
+    }
+  }
+
+  /** A queued event, reused once it has been sent to avoid allocating on each event. */
+  private static final class QueuedEvent<T extends @NonNull Object> {
+
+    public int eventFlag;
+    @Nullable private Event<T> event;
+    private ImmutableList<ListenerHolder<T>> listenerSnapshot;
+
+    public QueuedEvent() {
+      listenerSnapshot = ImmutableList.of();
+    }
+
+    public void set(
+        int eventFlag, Event<T> event, ImmutableList<ListenerHolder<T>> listenerSnapshot) {
+      this.eventFlag = eventFlag;
+      this.event = event;
+      this.listenerSnapshot = listenerSnapshot;
+    }
+
+    public void invoke() {
+      Event<T> event = checkNotNull(this.event);
+      for (int i = 0; i < listenerSnapshot.size(); i++) {
+        listenerSnapshot.get(i).invoke(eventFlag, event);
+      }
+    }
+
+    public void clear() {
+      event = null;
+      listenerSnapshot = ImmutableList.of();
+    }
+  }
+
   private static final class ListenerHolder<T extends @NonNull Object> {
 
     public final T listener;
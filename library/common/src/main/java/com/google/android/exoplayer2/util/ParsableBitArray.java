@@ -19,6 +19,7 @@ import static java.lang.Math.min;
 
 import com.google.common.base.Charsets;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * Wraps a byte array, providing methods that allow it to be read as a bitstream.
@@ -241,6 +242,47 @@ public final class ParsableBitArray {
     assertValidOffset();
   }
 
+  /**
+   * Reads {@code length} consecutive fields of {@code numBits} bits each, as if by calling {@link
+   * #readBits(int)} {@code length} times.
+   *
+   * <p>Byte aligned 8 and 16-bit fields are read directly. Otherwise the data is read into a 64-bit
+   * window one byte at a time, which avoids recomputing the byte and bit offsets for each field.
+   *
+   * @param buffer The array into which the fields should be written.
+   * @param offset The offset in {@code buffer} at which the first field should be written.
+   * @param length The number of fields to read.
+   * @param numBits The number of bits in each field, at most 32.
+   */
+  public void readBitFields(int[] buffer, int offset, int length, int numBits) {
+    Assertions.checkArgument(0 <= numBits && numBits <= 32);
+    if (length == 0 || numBits == 0) {
+      Arrays.fill(buffer, offset, offset + length, 0);
+      return;
+    }
+    long endPosition = getPosition() + (long) length * numBits;
+    Assertions.checkState(endPosition <= (long) byteLimit * 8);
+    if (bitOffset == 0 && (numBits == 8 || numBits == 16)) {
+      readByteAlignedFields(buffer, offset, length, numBits / 8);
+      setPosition((int) endPosition);
+      return;
+    }
+    long fieldMask = (1L << numBits) - 1;
+    // The window holds the bits that have been read from data but not yet written to buffer.
+    long window = (data[byteOffset] & 0xFF) & (0xFF >> bitOffset);
+    int windowBits = 8 - bitOffset;
+    int nextByteOffset = byteOffset + 1;
+    for (int i = offset; i < offset + length; i++) {
+      while (windowBits < numBits) {
+        window = (window << 8) | (data[nextByteOffset++] & 0xFF);
+        windowBits += 8;
+      }
+      windowBits -= numBits;
+      buffer[i] = (int) ((window >>> windowBits) & fieldMask);
+    }
+    setPosition((int) endPosition);
+  }
+
   /**
    * Aligns the position to the next byte boundary. Does nothing if the position is already aligned.
    */
@@ -344,6 +386,21 @@ public final class ParsableBitArray {
     assertValidOffset();
   }
 
+  private void readByteAlignedFields(int[] buffer, int offset, int length, int numBytes) {
+    byte[] data = this.data;
+    int position = byteOffset;
+    if (numBytes == 1) {
+      for (int i = offset; i < offset + length; i++) {
+        buffer[i] = data[position++] & 0xFF;
+      }
+    } else {
+      for (int i = offset; i < offset + length; i++) {
+        buffer[i] = (data[position] & 0xFF) << 8 | (data[position + 1] & 0xFF);
+        position += 2;
+      }
+    }
+  }
+
   private void assertValidOffset() {
     // It is fine for position to be at the end of the array, but no further.
     Assertions.checkState(
@@ -432,6 +432,88 @@ public final class ParsableByteArray {
     return result;
   }
 
+  /**
+   * Reads the next {@code length} four byte values as unsigned values, as if by calling {@link
+   * #readUnsignedInt()} {@code length} times.
+   *
+   * @param buffer The array into which the read values should be written.
+   * @param offset The offset in {@code buffer} at which the first value should be written.
+   * @param length The number of values to read.
+   */
+  public void readUnsignedInts(long[] buffer, int offset, int length) {
+    byte[] data = this.data;
+    int position = this.position;
+    for (int i = offset; i < offset + length; i++) {
+      buffer[i] =
+          (data[position] & 0xFFL) << 24
+              | (data[position + 1] & 0xFFL) << 16
+              | (data[position + 2] & 0xFFL) << 8
+              | (data[position + 3] & 0xFFL);
+      position += 4;
+    }
+    this.position = position;
+  }
+
+  /**
+   * Reads the next {@code length} four byte values as unsigned values into integers, as if by
+   * calling {@link #readUnsignedIntToInt()} {@code length} times.
+   *
+   * @param buffer The array into which the read values should be written.
+   * @param offset The offset in {@code buffer} at which the first value should be written.
+   * @param length The number of values to read.
+   * @throws IllegalStateException Thrown if the top bit of any of the values is set.
+   */
+  public void readUnsignedIntsToInts(int[] buffer, int offset, int length) {
+    byte[] data = this.data;
+    int position = this.position;
+    for (int i = offset; i < offset + length; i++) {
+      int value =
+          (data[position] & 0xFF) << 24
+              | (data[position + 1] & 0xFF) << 16
+              | (data[position + 2] & 0xFF) << 8
+              | (data[position + 3] & 0xFF);
+      position += 4;
+      if (value < 0) {
+        this.position = position;
+        throw new IllegalStateException("Top bit not zero: " + value);
+      }
+      buffer[i] = value;
+    }
+    this.position = position;
+  }
+
+  /**
+   * Reads the next {@code length} eight byte values as unsigned values into longs, as if by calling
+   * {@link #readUnsignedLongToLong()} {@code length} times.
+   *
+   * @param buffer The array into which the read values should be written.
+   * @param offset The offset in {@code buffer} at which the first value should be written.
+   * @param length The number of values to read.
+   * @throws IllegalStateException Thrown if the top bit of any of the values is set.
+   */
+  public void readUnsignedLongsToLongs(long[] buffer, int offset, int length) {
+    byte[] data = this.data;
+    int position = this.position;
+    for (int i = offset; i < offset + length; i++) {
+      long value =
+          (data[position] & 0xFFL) << 56
+              | (data[position + 1] & 0xFFL) << 48
+              | (data[position + 2] & 0xFFL) << 40
+              | (data[position + 3] & 0xFFL) << 32
+              | (data[position + 4] & 0xFFL) << 24
+              | (data[position + 5] & 0xFFL) << 16
+              | (data[position + 6] & 0xFFL) << 8
+              | (data[position + 7] & 0xFFL);
+      position += 8;
+      if (value < 0) {
+        this.position = position;
+        throw new IllegalStateException("Top bit not zero: " + value);
+      }
+      buffer[i] = value;
+    }
+    this.position = position;
+  }
+
   /** Reads the next four bytes as a 32-bit floating point value. */
   public float readFloat() {
     return Float.intBitsToFloat(readInt());
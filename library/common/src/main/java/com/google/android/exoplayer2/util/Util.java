@@ -1554,19 +1554,35 @@ public final class Util {
    * @param divisor The divisor.
    */
   public static void scaleLargeTimestampsInPlace(long[] timestamps, long multiplier, long divisor) {
+    scaleLargeTimestampsInPlace(
+        timestamps, /* fromIndex= */ 0, /* toIndex= */ timestamps.length, multiplier, divisor);
+  }
+
+  /**
+   * Applies {@link #scaleLargeTimestamp(long, long, long)} to a range of an array of unscaled
+   * timestamps.
+   *
+   * @param timestamps The array containing the timestamps to scale.
+   * @param fromIndex The index of the first timestamp to scale, inclusive.
+   * @param toIndex The index of the last timestamp to scale, exclusive.
+   * @param multiplier The multiplier.
+   * @param divisor The divisor.
+   */
+  public static void scaleLargeTimestampsInPlace(
+      long[] timestamps, int fromIndex, int toIndex, long multiplier, long divisor) {
     if (divisor >= multiplier && (divisor % multiplier) == 0) {
       long divisionFactor = divisor / multiplier;
-      for (int i = 0; i < timestamps.length; i++) {
+      for (int i = fromIndex; i < toIndex; i++) {
         timestamps[i] /= divisionFactor;
       }
     } else if (divisor < multiplier && (multiplier % divisor) == 0) {
       long multiplicationFactor = multiplier / divisor;
-      for (int i = 0; i < timestamps.length; i++) {
+      for (int i = fromIndex; i < toIndex; i++) {
         timestamps[i] *= multiplicationFactor;
       }
     } else {
       double multiplicationFactor = (double) multiplier / divisor;
-      for (int i = 0; i < timestamps.length; i++) {
+      for (int i = fromIndex; i < toIndex; i++) {
         timestamps[i] = (long) (timestamps[i] * multiplicationFactor);
       }
     }
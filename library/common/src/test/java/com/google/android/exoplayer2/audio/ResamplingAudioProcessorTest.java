@@ -0,0 +1,205 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link ResamplingAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class ResamplingAudioProcessorTest {
+
+  private static final AudioFormat AUDIO_FORMAT_44100_HZ =
+      new AudioFormat(
+          /* sampleRate= */ 44100, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_16BIT);
+  private static final AudioFormat AUDIO_FORMAT_48000_HZ =
+      new AudioFormat(
+          /* sampleRate= */ 48000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_16BIT);
+  private static final AudioFormat AUDIO_FORMAT_44100_HZ_FLOAT =
+      new AudioFormat(
+          /* sampleRate= */ 44100, /* channelCount= */ 1, /* encoding= */ C.ENCODING_PCM_FLOAT);
+
+  private ResamplingAudioProcessor resamplingAudioProcessor;
+
+  @Before
+  public void setUp() {
+    resamplingAudioProcessor = new ResamplingAudioProcessor();
+  }
+
+  @Test
+  public void configure_withDifferentOutputSampleRate_isActive() throws Exception {
+    resamplingAudioProcessor.setOutputSampleRateHz(48000);
+
+    AudioFormat outputAudioFormat = resamplingAudioProcessor.configure(AUDIO_FORMAT_44100_HZ);
+
+    assertThat(resamplingAudioProcessor.isActive()).isTrue();
+    assertThat(outputAudioFormat).isEqualTo(AUDIO_FORMAT_48000_HZ);
+  }
+
+  @Test
+  public void configure_withSameOutputSampleRate_isNotActive() throws Exception {
+    resamplingAudioProcessor.setOutputSampleRateHz(48000);
+
+    resamplingAudioProcessor.configure(AUDIO_FORMAT_48000_HZ);
+
+    assertThat(resamplingAudioProcessor.isActive()).isFalse();
+  }
+
+  @Test
+  public void configure_withNoSampleRateChange_isNotActive() throws Exception {
+    resamplingAudioProcessor.configure(AUDIO_FORMAT_44100_HZ);
+
+    assertThat(resamplingAudioProcessor.isActive()).isFalse();
+  }
+
+  @Test
+  public void configure_withUnsupportedEncoding_throws() {
+    resamplingAudioProcessor.setOutputSampleRateHz(48000);
+
+    assertThrows(
+        UnhandledAudioFormatException.class,
+        () ->
+            resamplingAudioProcessor.configure(
+                new AudioFormat(
+                    /* sampleRate= */ 44100,
+                    /* channelCount= */ 2,
+                    /* encoding= */ C.ENCODING_PCM_24BIT)));
+  }
+
+  @Test
+  public void process_44100HzTo48000Hz_outputsExpectedFrameCount() throws Exception {
+    resamplingAudioProcessor.setOutputSampleRateHz(48000);
+    resamplingAudioProcessor.configure(AUDIO_FORMAT_44100_HZ);
+    resamplingAudioProcessor.flush();
+
+    ByteBuffer input =
+        createSineWave(AUDIO_FORMAT_44100_HZ, /* frameCount= */ 44100, /* frequency= */ 1000);
+
+    ByteBuffer output = processAll(AUDIO_FORMAT_44100_HZ, input, /* bufferFrameCount= */ 1024);
+
+    assertThat(output.remaining() / AUDIO_FORMAT_48000_HZ.bytesPerFrame).isEqualTo(48000);
+    assertThat(resamplingAudioProcessor.isEnded()).isTrue();
+  }
+
+  @Test
+  public void process_48000HzTo44100Hz_preservesSineWave() throws Exception {
+    resamplingAudioProcessor.setOutputSampleRateHz(44100);
+    resamplingAudioProcessor.configure(AUDIO_FORMAT_48000_HZ);
+    resamplingAudioProcessor.flush();
+
+    ByteBuffer input =
+        createSineWave(AUDIO_FORMAT_48000_HZ, /* frameCount= */ 4800, /* frequency= */ 1000);
+
+    ByteBuffer output = processAll(AUDIO_FORMAT_48000_HZ, input, /* bufferFrameCount= */ 512);
+
+    assertThat(output.remaining() / AUDIO_FORMAT_44100_HZ.bytesPerFrame).isEqualTo(4410);
+    ByteBuffer expected =
+        createSineWave(AUDIO_FORMAT_44100_HZ, /* frameCount= */ 4410, /* frequency= */ 1000);
+    // Skip the edges, where the filter overlaps the implicit silence before and after the stream.
+    for (int i = 200; i < 4200 * 2; i++) {
+      assertThat((float) output.getShort(i * 2)).isWithin(40f).of(expected.getShort(i * 2));
+    }
+  }
+
+  @Test
+  public void process_floatWithInterpolatedPhases_preservesConstantSignal() throws Exception {
+    // 44100 Hz to 48001 Hz does not reduce to a ratio with a small numerator, so filter phases are
+    // interpolated.
+    resamplingAudioProcessor.setOutputSampleRateHz(48001);
+    AudioFormat outputAudioFormat =
+        resamplingAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    resamplingAudioProcessor.flush();
+    ByteBuffer input = createBuffer(/* size= */ 4410 * 4);
+    while (input.hasRemaining()) {
+      input.putFloat(0.5f);
+    }
+    input.flip();
+
+    ByteBuffer output =
+        processAll(AUDIO_FORMAT_44100_HZ_FLOAT, input, /* bufferFrameCount= */ 1000);
+
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+    assertThat(output.remaining() / 4).isEqualTo(4801);
+    for (int i = 100; i < 4700; i++) {
+      assertThat(output.getFloat(i * 4)).isWithin(1e-4f).of(0.5f);
+    }
+  }
+
+  @Test
+  public void flush_discardsBufferedInput() throws Exception {
+    resamplingAudioProcessor.setOutputSampleRateHz(48000);
+    resamplingAudioProcessor.configure(AUDIO_FORMAT_44100_HZ);
+    resamplingAudioProcessor.flush();
+    resamplingAudioProcessor.queueInput(
+        createSineWave(AUDIO_FORMAT_44100_HZ, /* frameCount= */ 100, /* frequency= */ 1000));
+
+    resamplingAudioProcessor.flush();
+    ByteBuffer input =
+        createSineWave(AUDIO_FORMAT_44100_HZ, /* frameCount= */ 441, /* frequency= */ 1000);
+    ByteBuffer output = processAll(AUDIO_FORMAT_44100_HZ, input, /* bufferFrameCount= */ 441);
+
+    assertThat(output.remaining() / AUDIO_FORMAT_48000_HZ.bytesPerFrame).isEqualTo(480);
+  }
+
+  /** Queues {@code input} in chunks, then queues end of stream and returns all output. */
+  private ByteBuffer processAll(
+      AudioFormat inputAudioFormat, ByteBuffer input, int bufferFrameCount) {
+    ByteBuffer output = createBuffer(input.remaining() * 2 + 4096);
+    int chunkSize = bufferFrameCount * inputAudioFormat.bytesPerFrame;
+    while (input.hasRemaining()) {
+      ByteBuffer chunk = createBuffer(Math.min(chunkSize, input.remaining()));
+      for (int i = 0; i < chunk.capacity(); i++) {
+        chunk.put(input.get());
+      }
+      chunk.flip();
+      resamplingAudioProcessor.queueInput(chunk);
+      output.put(resamplingAudioProcessor.getOutput());
+    }
+    resamplingAudioProcessor.queueEndOfStream();
+    while (!resamplingAudioProcessor.isEnded()) {
+      output.put(resamplingAudioProcessor.getOutput());
+    }
+    output.flip();
+    return output;
+  }
+
+  private static ByteBuffer createSineWave(AudioFormat format, int frameCount, int frequency) {
+    ByteBuffer buffer = createBuffer(frameCount * format.bytesPerFrame);
+    for (int i = 0; i < frameCount; i++) {
+      short value =
+          (short) (10000 * Math.sin(2 * Math.PI * frequency * i / (double) format.sampleRate));
+      for (int channel = 0; channel < format.channelCount; channel++) {
+        buffer.putShort(value);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static ByteBuffer createBuffer(int size) {
+    return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+  }
+}
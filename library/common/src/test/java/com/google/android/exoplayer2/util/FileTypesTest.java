@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.util;
 
+import static com.google.android.exoplayer2.testutil.TestUtil.createByteArray;
 import static com.google.android.exoplayer2.util.FileTypes.HEADER_CONTENT_TYPE;
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromMimeType;
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromUri;
@@ -94,4 +95,65 @@ public class FileTypesTest {
   public void inferFileFormat_fromEmptyUri_returnsUnknownFormat() {
     assertThat(inferFileTypeFromUri(Uri.EMPTY)).isEqualTo(FileTypes.UNKNOWN);
   }
+
+  @Test
+  public void inferFileFormat_fromContent_returnsExpectedFormat() {
+    assertThat(inferFileTypeFromContent(createByteArray(0x1A, 0x45, 0xDF, 0xA3, 0x9F)))
+        .isEqualTo(FileTypes.MATROSKA);
+    assertThat(inferFileTypeFromContent(Util.getUtf8Bytes("fLaC"))).isEqualTo(FileTypes.FLAC);
+    assertThat(inferFileTypeFromContent(Util.getUtf8Bytes("ID3"))).isEqualTo(FileTypes.MP3);
+  }
+
+  @Test
+  public void inferFileFormat_fromContentWithWildcards_returnsExpectedFormat() {
+    assertThat(inferFileTypeFromContent(createByteArray(0, 0, 0, 0x18, 'f', 't', 'y', 'p')))
+        .isEqualTo(FileTypes.MP4);
+    assertThat(inferFileTypeFromContent(Util.getUtf8Bytes("RIFF\0\0\0\0WAVEfmt ")))
+        .isEqualTo(FileTypes.WAV);
+    assertThat(inferFileTypeFromContent(Util.getUtf8Bytes("RIFF\0\0\0\0AVI LIST")))
+        .isEqualTo(FileTypes.AVI);
+  }
+
+  @Test
+  public void inferFileFormat_fromContentWithPrefixOfOtherMagicNumber_returnsExpectedFormat() {
+    // Starts like an MPEG-PS pack header, but is an MP4 file.
+    assertThat(inferFileTypeFromContent(createByteArray(0, 0, 1, 0, 'm', 'o', 'o', 'v')))
+        .isEqualTo(FileTypes.MP4);
+  }
+
+  @Test
+  public void inferFileFormat_fromContentWithFrameSync_distinguishesAdtsAndMp3() {
+    assertThat(inferFileTypeFromContent(createByteArray(0xFF, 0xF1, 0x50, 0x80)))
+        .isEqualTo(FileTypes.ADTS);
+    assertThat(inferFileTypeFromContent(createByteArray(0xFF, 0xFB, 0x90, 0x64)))
+        .isEqualTo(FileTypes.MP3);
+    assertThat(inferFileTypeFromContent(createByteArray(0xFF, 0xD8, 0xFF, 0xE1)))
+        .isEqualTo(FileTypes.JPEG);
+    // MPEG audio version 01 is reserved.
+    assertThat(inferFileTypeFromContent(createByteArray(0xFF, 0xEB, 0x90, 0x64)))
+        .isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  @Test
+  public void inferFileFormat_fromTruncatedOrUnknownContent_returnsUnknownFormat() {
+    assertThat(inferFileTypeFromContent(Util.getUtf8Bytes("RIFF\0\0\0\0WAV")))
+        .isEqualTo(FileTypes.UNKNOWN);
+    assertThat(inferFileTypeFromContent(Util.getUtf8Bytes("unknown content")))
+        .isEqualTo(FileTypes.UNKNOWN);
+    assertThat(inferFileTypeFromContent(new byte[0])).isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  @Test
+  public void inferFileFormat_fromContentAtOffset_ignoresDataOutsideRange() {
+    byte[] data = Util.getUtf8Bytes("xxfLaCxx");
+
+    assertThat(FileTypes.inferFileTypeFromContent(data, /* offset= */ 2, /* length= */ 4))
+        .isEqualTo(FileTypes.FLAC);
+    assertThat(FileTypes.inferFileTypeFromContent(data, /* offset= */ 2, /* length= */ 3))
+        .isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  private static @FileTypes.Type int inferFileTypeFromContent(byte[] data) {
+    return FileTypes.inferFileTypeFromContent(data, /* offset= */ 0, data.length);
+  }
 }
@@ -402,6 +402,70 @@ public class ListenerSetTest {
     verify(listener, never()).callback1();
   }
 
+  @Test
+  public void queueCoalescedEvent_sendsOnlyMostRecentEventWithSameFlag() {
+    ListenerSet<TestListener> listenerSet =
+        new ListenerSet<>(Looper.myLooper(), Clock.DEFAULT, TestListener::iterationFinished);
+    TestListener listener = mock(TestListener.class);
+    listenerSet.add(listener);
+
+    listenerSet.queueCoalescedEvent(EVENT_ID_1, testListener -> testListener.callbackWithValue(1));
+    listenerSet.queueEvent(EVENT_ID_2, TestListener::callback2);
+    listenerSet.queueCoalescedEvent(EVENT_ID_1, testListener -> testListener.callbackWithValue(2));
+    listenerSet.flushEvents();
+    ShadowLooper.idleMainLooper();
+
+    InOrder inOrder = Mockito.inOrder(listener);
+    inOrder.verify(listener).callback2();
+    inOrder.verify(listener).callbackWithValue(2);
+    inOrder.verify(listener).iterationFinished(createFlagSet(EVENT_ID_1, EVENT_ID_2));
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void queueCoalescedEvent_afterFlush_doesNotReplaceFlushedEvent() {
+    ListenerSet<TestListener> listenerSet =
+        new ListenerSet<>(Looper.myLooper(), Clock.DEFAULT, TestListener::iterationFinished);
+    TestListener listener = mock(TestListener.class);
+    listenerSet.add(listener);
+
+    listenerSet.queueCoalescedEvent(EVENT_ID_1, testListener -> testListener.callbackWithValue(1));
+    listenerSet.flushEvents();
+    listenerSet.queueCoalescedEvent(EVENT_ID_1, testListener -> testListener.callbackWithValue(2));
+    listenerSet.flushEvents();
+    ShadowLooper.idleMainLooper();
+
+    InOrder inOrder = Mockito.inOrder(listener);
+    inOrder.verify(listener).callbackWithValue(1);
+    inOrder.verify(listener).callbackWithValue(2);
+    inOrder.verify(listener).iterationFinished(createFlagSet(EVENT_ID_1));
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void queueEvent_afterListenersChanged_usesListenersAtTimeOfQueueing() {
+    ListenerSet<TestListener> listenerSet =
+        new ListenerSet<>(Looper.myLooper(), Clock.DEFAULT, TestListener::iterationFinished);
+    TestListener listener1 = mock(TestListener.class);
+    TestListener listener2 = mock(TestListener.class);
+    listenerSet.add(listener1);
+
+    // Send enough events for queued events to be reused from the pool.
+    for (int i = 0; i < 3; i++) {
+      listenerSet.sendEvent(EVENT_ID_1, TestListener::callback1);
+    }
+    listenerSet.queueEvent(EVENT_ID_2, TestListener::callback2);
+    listenerSet.add(listener2);
+    listenerSet.queueEvent(EVENT_ID_3, TestListener::callback3);
+    listenerSet.flushEvents();
+
+    verify(listener1, times(3)).callback1();
+    verify(listener1).callback2();
+    verify(listener1).callback3();
+    verify(listener2, never()).callback2();
+    verify(listener2).callback3();
+  }
+
   private interface TestListener {
     default void callback1() {}
 
@@ -409,6 +473,8 @@ public class ListenerSetTest {
 
     default void callback3() {}
 
+    default void callbackWithValue(int value) {}
+
     default void iterationFinished(FlagSet flags) {}
   }
 
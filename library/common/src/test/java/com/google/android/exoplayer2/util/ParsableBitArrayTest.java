@@ -201,6 +201,40 @@ public final class ParsableBitArrayTest {
     assertThat(result[1]).isEqualTo((byte) 0x7F);
   }
 
+  @Test
+  public void readBitFields_matchesReadBits() {
+    byte[] testData = createByteArray(0x3C, 0xD2, 0x5F, 0x01, 0xFF, 0x14, 0x60, 0x99, 0xA5, 0x7E);
+    for (int numBits = 1; numBits <= 32; numBits++) {
+      for (int startPosition = 0; startPosition < 8; startPosition++) {
+        int length = (testData.length * 8 - startPosition) / numBits;
+        ParsableBitArray expectedArray = new ParsableBitArray(testData);
+        expectedArray.setPosition(startPosition);
+        int[] expectedFields = new int[length + 1];
+        for (int i = 1; i <= length; i++) {
+          expectedFields[i] = expectedArray.readBits(numBits);
+        }
+        ParsableBitArray testArray = new ParsableBitArray(testData);
+        testArray.setPosition(startPosition);
+        int[] fields = new int[length + 1];
+
+        testArray.readBitFields(fields, /* offset= */ 1, length, numBits);
+
+        assertThat(fields).isEqualTo(expectedFields);
+        assertThat(testArray.getPosition()).isEqualTo(expectedArray.getPosition());
+      }
+    }
+  }
+
+  @Test
+  public void readBitFields_beyondLimit_throws() {
+    ParsableBitArray testArray = new ParsableBitArray(createByteArray(0x3C, 0xD2));
+    testArray.setPosition(1);
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> testArray.readBitFields(new int[4], /* offset= */ 0, /* length= */ 4, 4));
+  }
+
   @Test
   public void skipBytes() {
     byte[] testData = createByteArray(0x3C, 0xD2, 0x5F, 0x01);
@@ -186,6 +186,72 @@ public final class ParsableByteArrayTest {
     assertThat(testArray.getPosition()).isEqualTo(4);
   }
 
+  @Test
+  public void readUnsignedInts() {
+    byte[] data =
+        ByteBuffer.allocate(16).putInt(0).putInt(1).putInt(Integer.MAX_VALUE).putInt(-1).array();
+    ParsableByteArray testArray = new ParsableByteArray(data);
+    testArray.skipBytes(4);
+    long[] values = new long[4];
+
+    testArray.readUnsignedInts(values, /* offset= */ 1, /* length= */ 3);
+
+    assertThat(values).asList().containsExactly(0L, 1L, (long) Integer.MAX_VALUE, 0xFFFFFFFFL);
+    assertThat(testArray.getPosition()).isEqualTo(16);
+  }
+
+  @Test
+  public void readUnsignedIntsToInts() {
+    ParsableByteArray testArray =
+        new ParsableByteArray(
+            ByteBuffer.allocate(12).putInt(0).putInt(1).putInt(Integer.MAX_VALUE).array());
+    int[] values = new int[3];
+
+    testArray.readUnsignedIntsToInts(values, /* offset= */ 0, /* length= */ 3);
+
+    assertThat(values).asList().containsExactly(0, 1, Integer.MAX_VALUE).inOrder();
+    assertThat(testArray.getPosition()).isEqualTo(12);
+  }
+
+  @Test
+  public void readUnsignedIntsToInts_withTopBitSet_throws() {
+    ParsableByteArray testArray =
+        new ParsableByteArray(ByteBuffer.allocate(12).putInt(0).putInt(-1).putInt(1).array());
+
+    try {
+      testArray.readUnsignedIntsToInts(new int[3], /* offset= */ 0, /* length= */ 3);
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void readUnsignedLongsToLongs() {
+    ParsableByteArray testArray =
+        new ParsableByteArray(
+            ByteBuffer.allocate(24).putLong(0).putLong(1).putLong(Long.MAX_VALUE).array());
+    long[] values = new long[3];
+
+    testArray.readUnsignedLongsToLongs(values, /* offset= */ 0, /* length= */ 3);
+
+    assertThat(values).asList().containsExactly(0L, 1L, Long.MAX_VALUE).inOrder();
+    assertThat(testArray.getPosition()).isEqualTo(24);
+  }
+
+  @Test
+  public void readUnsignedLongsToLongs_withTopBitSet_throws() {
+    ParsableByteArray testArray =
+        new ParsableByteArray(ByteBuffer.allocate(16).putLong(1).putLong(Long.MIN_VALUE).array());
+
+    try {
+      testArray.readUnsignedLongsToLongs(new long[2], /* offset= */ 0, /* length= */ 2);
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
   @Test
   public void readUnsignedLongToLong() {
     testReadUnsignedLongToLong(0);
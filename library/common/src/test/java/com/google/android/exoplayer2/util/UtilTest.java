@@ -848,6 +848,54 @@ public class UtilTest {
     }
   }
 
+  @Test
+  public void scaleLargeTimestampsInPlace_withDivisorMultipleOfMultiplier_scalesRangeOnly() {
+    long[] timestamps = new long[] {7, Long.MAX_VALUE, 3_000_000, 9};
+
+    Util.scaleLargeTimestampsInPlace(
+        timestamps,
+        /* fromIndex= */ 1,
+        /* toIndex= */ 3,
+        /* multiplier= */ 1_000,
+        /* divisor= */ 1_000_000);
+
+    assertThat(timestamps).asList().containsExactly(7L, Long.MAX_VALUE / 1_000, 3_000L, 9L);
+  }
+
+  @Test
+  public void scaleLargeTimestampsInPlace_withMultiplierMultipleOfDivisor_scalesRangeOnly() {
+    long[] timestamps = new long[] {7, 4_000_000_000_000L, 3, 9};
+
+    Util.scaleLargeTimestampsInPlace(
+        timestamps,
+        /* fromIndex= */ 1,
+        /* toIndex= */ 3,
+        /* multiplier= */ 1_000_000_000,
+        /* divisor= */ 1_000_000);
+
+    assertThat(timestamps).asList().containsExactly(7L, 4_000_000_000_000_000L, 3_000L, 9L);
+  }
+
+  @Test
+  public void scaleLargeTimestampsInPlace_withNonMultipleFactors_scalesRangeOnly() {
+    long[] timestamps = new long[] {7, 1L << 60, 10, 9};
+
+    Util.scaleLargeTimestampsInPlace(
+        timestamps, /* fromIndex= */ 1, /* toIndex= */ 3, /* multiplier= */ 3, /* divisor= */ 2);
+
+    assertThat(timestamps).asList().containsExactly(7L, 3L << 59, 15L, 9L);
+  }
+
+  @Test
+  public void scaleLargeTimestampsInPlace_withEmptyRange_leavesTimestampsUnchanged() {
+    long[] timestamps = new long[] {7, 8, 9};
+
+    Util.scaleLargeTimestampsInPlace(
+        timestamps, /* fromIndex= */ 1, /* toIndex= */ 1, /* multiplier= */ 3, /* divisor= */ 2);
+
+    assertThat(timestamps).asList().containsExactly(7L, 8L, 9L);
+  }
+
   @Test
   public void parseXsDuration_returnsParsedDurationInMillis() {
     assertThat(parseXsDuration("PT150.279S")).isEqualTo(150279L);
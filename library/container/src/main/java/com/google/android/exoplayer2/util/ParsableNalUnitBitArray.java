@@ -195,10 +195,26 @@ public final class ParsableNalUnitBitArray {
   }
 
   private int readExpGolombCodeNum() {
+    // Count the leading zero bits a byte at a time, rather than reading them one by one.
+    Assertions.checkState(byteOffset < byteLimit);
+    int unreadBits = data[byteOffset] & (0xFF >> bitOffset);
     int leadingZeros = 0;
-    while (!readBit()) {
-      leadingZeros++;
+    while (unreadBits == 0) {
+      leadingZeros += 8 - bitOffset;
+      bitOffset = 0;
+      byteOffset += shouldSkipByte(byteOffset + 1) ? 2 : 1;
+      Assertions.checkState(byteOffset < byteLimit);
+      unreadBits = data[byteOffset] & 0xFF;
+    }
+    int leadingZerosInByte = Integer.numberOfLeadingZeros(unreadBits) - 24 - bitOffset;
+    leadingZeros += leadingZerosInByte;
+    // Skip the leading zeros in the byte and the one bit that terminates them.
+    bitOffset += leadingZerosInByte + 1;
+    if (bitOffset == 8) {
+      bitOffset = 0;
+      byteOffset += shouldSkipByte(byteOffset + 1) ? 2 : 1;
     }
+    assertValidOffset();
     return (1 << leadingZeros) - 1 + (leadingZeros > 0 ? readBits(leadingZeros) : 0);
   }
 
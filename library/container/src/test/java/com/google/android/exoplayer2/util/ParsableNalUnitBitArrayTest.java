@@ -109,6 +109,31 @@ public final class ParsableNalUnitBitArrayTest {
     assertThat(array.canReadBits(1)).isFalse();
   }
 
+  @Test
+  public void readExpGolomb_acrossBytes() {
+    // 0000 0000 | 0001 0010 | 1100 0010
+    ParsableNalUnitBitArray array =
+        new ParsableNalUnitBitArray(createByteArray(0x00, 0x12, 0xC2), 0, 3);
+    array.skipBits(1);
+    // 10 leading zeros, a 1 bit and 00 1011 0000.
+    assertThat(array.readUnsignedExpGolombCodedInt()).isEqualTo((1 << 10) - 1 + 0xB0);
+    // A 1 bit with no leading zeros.
+    assertThat(array.readUnsignedExpGolombCodedInt()).isEqualTo(0);
+    assertThat(array.canReadBits(1)).isTrue();
+    assertThat(array.canReadBits(2)).isFalse();
+  }
+
+  @Test
+  public void readSignedExpGolomb_afterEmulationPreventionByte() {
+    ParsableNalUnitBitArray array =
+        new ParsableNalUnitBitArray(createByteArray(0x00, 0x00, 0x03, 0x01, 0x30), 0, 5);
+    array.skipBits(16);
+    // 0000 0001 | 0011 0000: 7 leading zeros, a 1 bit and 001 1000, so codeNum = 127 + 24.
+    assertThat(array.readSignedExpGolombCodedInt()).isEqualTo(76);
+    assertThat(array.canReadBits(1)).isTrue();
+    assertThat(array.canReadBits(2)).isFalse();
+  }
+
   @Test
   public void reset() {
     ParsableNalUnitBitArray array = new ParsableNalUnitBitArray(createByteArray(0, 0), 0, 2);
@@ -460,6 +460,8 @@ public interface ExoPlayer extends Player {
 
     /* package */ Clock clock;
     /* package */ long foregroundModeTimeoutMs;
+    /* package */ boolean dynamicSchedulingEnabled;
+    /* package */ int mediaSourcePreparationWindowSize;
     /* package */ Supplier<RenderersFactory> renderersFactorySupplier;
     /* package */ Supplier<MediaSource.Factory> mediaSourceFactorySupplier;
     /* package */ Supplier<TrackSelector> trackSelectorSupplier;
@@ -683,6 +685,7 @@ public interface ExoPlayer extends Player {
       releaseTimeoutMs = DEFAULT_RELEASE_TIMEOUT_MS;
       detachSurfaceTimeoutMs = DEFAULT_DETACH_SURFACE_TIMEOUT_MS;
       usePlatformDiagnostics = true;
+      mediaSourcePreparationWindowSize = C.LENGTH_UNSET;
     }
 
     /**
@@ -701,6 +704,55 @@ public interface ExoPlayer extends Player {
       return this;
     }
 
+    /**
+     * Sets whether dynamic scheduling of the playback loop is enabled.
+     *
+     * <p>By default, the player renders media every 10 milliseconds while playing. If dynamic
+     * scheduling is enabled, the player instead waits for the shortest duration that any enabled
+     * {@link Renderer} reports via {@link Renderer#getDurationToProgressUs(long, long)}, which
+     * reduces the number of playback loop iterations and the associated CPU usage while playing.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * @param dynamicSchedulingEnabled Whether dynamic scheduling is enabled.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder experimentalSetDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+      checkState(!buildCalled);
+      this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+      return this;
+    }
+
+    /**
+     * Sets the number of media items before and after the current media item whose media sources
+     * are kept prepared, or {@link C#LENGTH_UNSET} to keep the media sources of all media items in
+     * the playlist prepared.
+     *
+     * <p>If set, media sources are prepared when they enter the window around the current media
+     * item (or when the player needs to create a period from them), and released once they leave
+     * the window and have no more active periods. This bounds the resources held by the player
+     * for long playlists, for example the manifests of adaptive streams, independently of the
+     * playlist length. The timeline of a released media source remains the last one it reported.
+     *
+     * <p>The default value is {@link C#LENGTH_UNSET}.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * @param preparationWindowSize The number of media items before and after the current media
+     *     item whose media sources are kept prepared, or {@link C#LENGTH_UNSET}.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder experimentalSetMediaSourcePreparationWindowSize(int preparationWindowSize) {
+      checkState(!buildCalled);
+      checkArgument(preparationWindowSize >= 0 || preparationWindowSize == C.LENGTH_UNSET);
+      this.mediaSourcePreparationWindowSize = preparationWindowSize;
+      return this;
+    }
+
     /**
      * Sets the {@link RenderersFactory} that will be used by the player.
      *
@@ -152,7 +152,6 @@ import java.util.concurrent.TimeoutException;
   private final ListenerSet<Listener> listeners;
   private final CopyOnWriteArraySet<AudioOffloadListener> audioOffloadListeners;
   private final Timeline.Period period;
-  private final List<MediaSourceHolderSnapshot> mediaSourceHolderSnapshots;
   private final boolean useLazyPreparation;
   private final MediaSource.Factory mediaSourceFactory;
   private final AnalyticsCollector analyticsCollector;
@@ -179,6 +178,7 @@ import java.util.concurrent.TimeoutException;
   private boolean foregroundMode;
   private SeekParameters seekParameters;
   private ShuffleOrder shuffleOrder;
+  private PlaylistTimeline playlistTimeline;
   private boolean pauseAtEndOfMediaItems;
   private Commands availableCommands;
   private MediaMetadata mediaMetadata;
@@ -277,8 +277,8 @@ import java.util.concurrent.TimeoutException;
               clock,
               (listener, flags) -> listener.onEvents(this.wrappingPlayer, new Events(flags)));
       audioOffloadListeners = new CopyOnWriteArraySet<>();
-      mediaSourceHolderSnapshots = new ArrayList<>();
       shuffleOrder = new ShuffleOrder.DefaultShuffleOrder(/* length= */ 0);
+      playlistTimeline = new PlaylistTimeline(ImmutableList.of(), shuffleOrder);
       emptyTrackSelectorResult =
           new TrackSelectorResult(
               new RendererConfiguration[renderers.length],
@@ -373,6 +373,13 @@ import java.util.concurrent.TimeoutException;
       if (builder.foregroundModeTimeoutMs > 0) {
         internalPlayer.experimentalSetForegroundModeTimeoutMs(builder.foregroundModeTimeoutMs);
       }
+      if (builder.dynamicSchedulingEnabled) {
+        internalPlayer.experimentalSetDynamicSchedulingEnabled(true);
+      }
+      if (builder.mediaSourcePreparationWindowSize != C.LENGTH_UNSET) {
+        internalPlayer.experimentalSetMediaSourcePreparationWindowSize(
+            builder.mediaSourcePreparationWindowSize);
+      }
 
       audioBecomingNoisyManager =
           new AudioBecomingNoisyManager(builder.context, eventHandler, componentListener);
@@ -641,15 +648,15 @@ import java.util.concurrent.TimeoutException;
   @Override
   public void addMediaSources(List<MediaSource> mediaSources) {
     verifyApplicationThread();
-    addMediaSources(/* index= */ mediaSourceHolderSnapshots.size(), mediaSources);
+    addMediaSources(/* index= */ playlistTimeline.getChildCount(), mediaSources);
   }
 
   @Override
   public void addMediaSources(int index, List<MediaSource> mediaSources) {
     verifyApplicationThread();
     checkArgument(index >= 0);
-    index = min(index, mediaSourceHolderSnapshots.size());
-    if (mediaSourceHolderSnapshots.isEmpty()) {
+    index = min(index, playlistTimeline.getChildCount());
+    if (playlistTimeline.getChildCount() == 0) {
       // Handle initial items in a playlist as a set operation to ensure state changes and initial
       // position are updated correctly.
       setMediaSources(mediaSources, /* resetPosition= */ maskingWindowIndex == C.INDEX_UNSET);
@@ -671,7 +678,7 @@ import java.util.concurrent.TimeoutException;
   public void removeMediaItems(int fromIndex, int toIndex) {
     verifyApplicationThread();
     checkArgument(fromIndex >= 0 && toIndex >= fromIndex);
-    int playlistSize = mediaSourceHolderSnapshots.size();
+    int playlistSize = playlistTimeline.getChildCount();
     toIndex = min(toIndex, playlistSize);
     if (fromIndex >= playlistSize || fromIndex == toIndex) {
       // Do nothing.
@@ -695,7 +702,7 @@ import java.util.concurrent.TimeoutException;
   public void moveMediaItems(int fromIndex, int toIndex, int newFromIndex) {
     verifyApplicationThread();
     checkArgument(fromIndex >= 0 && fromIndex <= toIndex && newFromIndex >= 0);
-    int playlistSize = mediaSourceHolderSnapshots.size();
+    int playlistSize = playlistTimeline.getChildCount();
     toIndex = min(toIndex, playlistSize);
     newFromIndex = min(newFromIndex, playlistSize - (toIndex - fromIndex));
     if (fromIndex >= playlistSize || fromIndex == toIndex || fromIndex == newFromIndex) {
@@ -704,7 +711,8 @@ import java.util.concurrent.TimeoutException;
     }
     Timeline oldTimeline = getCurrentTimeline();
     pendingOperationAcks++;
-    Util.moveItems(mediaSourceHolderSnapshots, fromIndex, toIndex, newFromIndex);
+    playlistTimeline =
+        playlistTimeline.copyWithMovedChildren(fromIndex, toIndex, newFromIndex, shuffleOrder);
     Timeline newTimeline = createMaskingTimeline();
     PlaybackInfo newPlaybackInfo =
         maskTimelineAndPosition(
@@ -731,14 +739,14 @@ import java.util.concurrent.TimeoutException;
   public void replaceMediaItems(int fromIndex, int toIndex, List<MediaItem> mediaItems) {
     verifyApplicationThread();
     checkArgument(fromIndex >= 0 && toIndex >= fromIndex);
-    int playlistSize = mediaSourceHolderSnapshots.size();
+    int playlistSize = playlistTimeline.getChildCount();
     if (fromIndex > playlistSize) {
       // Do nothing.
       return;
     }
     toIndex = min(toIndex, playlistSize);
     List<MediaSource> mediaSources = createMediaSources(mediaItems);
-    if (mediaSourceHolderSnapshots.isEmpty()) {
+    if (playlistTimeline.getChildCount() == 0) {
       // Handle initial items in a playlist as a set operation to ensure state changes and initial
       // position are updated correctly.
       setMediaSources(mediaSources, /* resetPosition= */ maskingWindowIndex == C.INDEX_UNSET);
@@ -762,8 +770,9 @@ import java.util.concurrent.TimeoutException;
   @Override
   public void setShuffleOrder(ShuffleOrder shuffleOrder) {
     verifyApplicationThread();
-    checkArgument(shuffleOrder.getLength() == mediaSourceHolderSnapshots.size());
+    checkArgument(shuffleOrder.getLength() == playlistTimeline.getChildCount());
     this.shuffleOrder = shuffleOrder;
+    playlistTimeline = playlistTimeline.copyWithShuffleOrder(shuffleOrder);
     Timeline timeline = createMaskingTimeline();
     PlaybackInfo newPlaybackInfo =
         maskTimelineAndPosition(
@@ -1919,11 +1928,9 @@ import java.util.concurrent.TimeoutException;
         maskingPeriodIndex = 0;
       }
       if (!newTimeline.isEmpty()) {
-        List<Timeline> timelines = ((PlaylistTimeline) newTimeline).getChildTimelines();
-        checkState(timelines.size() == mediaSourceHolderSnapshots.size());
-        for (int i = 0; i < timelines.size(); i++) {
-          mediaSourceHolderSnapshots.get(i).timeline = timelines.get(i);
-        }
+        PlaylistTimeline newPlaylistTimeline = (PlaylistTimeline) newTimeline;
+        checkState(newPlaylistTimeline.getChildCount() == playlistTimeline.getChildCount());
+        playlistTimeline = newPlaylistTimeline.copyWithShuffleOrder(shuffleOrder);
       }
       boolean positionDiscontinuity = false;
       long discontinuityWindowStartPositionUs = C.TIME_UNSET;
@@ -2286,9 +2293,9 @@ import java.util.concurrent.TimeoutException;
     int currentWindowIndex = getCurrentWindowIndexInternal(playbackInfo);
     long currentPositionMs = getCurrentPosition();
     pendingOperationAcks++;
-    if (!mediaSourceHolderSnapshots.isEmpty()) {
+    if (playlistTimeline.getChildCount() > 0) {
       removeMediaSourceHolders(
-          /* fromIndex= */ 0, /* toIndexExclusive= */ mediaSourceHolderSnapshots.size());
+          /* fromIndex= */ 0, /* toIndexExclusive= */ playlistTimeline.getChildCount());
     }
     List<MediaSourceList.MediaSourceHolder> holders =
         addMediaSourceHolders(/* index= */ 0, mediaSources);
@@ -2341,15 +2348,13 @@ import java.util.concurrent.TimeoutException;
       int index, List<MediaSource> mediaSources) {
     List<MediaSourceList.MediaSourceHolder> holders = new ArrayList<>();
     for (int i = 0; i < mediaSources.size(); i++) {
-      MediaSourceList.MediaSourceHolder holder =
-          new MediaSourceList.MediaSourceHolder(mediaSources.get(i), useLazyPreparation);
-      holders.add(holder);
-      mediaSourceHolderSnapshots.add(
-          i + index, new MediaSourceHolderSnapshot(holder.uid, holder.mediaSource.getTimeline()));
+      holders.add(new MediaSourceList.MediaSourceHolder(mediaSources.get(i), useLazyPreparation));
     }
     shuffleOrder =
         shuffleOrder.cloneAndInsert(
             /* insertionIndex= */ index, /* insertionCount= */ holders.size());
+    // The timeline copies the current timelines of the holders, so it doesn't change with them.
+    playlistTimeline = playlistTimeline.copyWithInsertedChildren(index, holders, shuffleOrder);
     return holders;
   }
 
@@ -2377,7 +2382,7 @@ import java.util.concurrent.TimeoutException;
     int currentIndex = getCurrentWindowIndexInternal(playbackInfo);
     long contentPositionMs = getContentPositionInternal(playbackInfo);
     Timeline oldTimeline = playbackInfo.timeline;
-    int currentMediaSourceCount = mediaSourceHolderSnapshots.size();
+    int currentMediaSourceCount = playlistTimeline.getChildCount();
     pendingOperationAcks++;
     removeMediaSourceHolders(fromIndex, /* toIndexExclusive= */ toIndex);
     Timeline newTimeline = createMaskingTimeline();
@@ -2402,14 +2407,13 @@ import java.util.concurrent.TimeoutException;
   }
 
   private void removeMediaSourceHolders(int fromIndex, int toIndexExclusive) {
-    for (int i = toIndexExclusive - 1; i >= fromIndex; i--) {
-      mediaSourceHolderSnapshots.remove(i);
-    }
     shuffleOrder = shuffleOrder.cloneAndRemove(fromIndex, toIndexExclusive);
+    playlistTimeline =
+        playlistTimeline.copyWithRemovedChildren(fromIndex, toIndexExclusive, shuffleOrder);
   }
 
   private Timeline createMaskingTimeline() {
-    return new PlaylistTimeline(mediaSourceHolderSnapshots, shuffleOrder);
+    return playlistTimeline;
   }
 
   private PlaybackInfo maskTimelineAndPosition(
@@ -2867,28 +2871,6 @@ import java.util.concurrent.TimeoutException;
         : PLAY_WHEN_READY_CHANGE_REASON_USER_REQUEST;
   }
 
-  private static final class MediaSourceHolderSnapshot implements MediaSourceInfoHolder {
-
-    private final Object uid;
-
-    private Timeline timeline;
-
-    public MediaSourceHolderSnapshot(Object uid, Timeline timeline) {
-      this.uid = uid;
-      this.timeline = timeline;
-    }
-
-    @Override
-    public Object getUid() {
-      return uid;
-    }
-
-    @Override
-    public Timeline getTimeline() {
-      return timeline;
-    }
-  }
-
   private final class ComponentListener
       implements VideoRendererEventListener,
           AudioRendererEventListener,
@@ -227,6 +227,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
   private boolean deliverPendingMessageAtStartPositionRequired;
   @Nullable private ExoPlaybackException pendingRecoverableRendererError;
   private long setForegroundModeTimeoutMs;
+  private boolean dynamicSchedulingEnabled;
   private long playbackMaybeBecameStuckAtMs;
 
   public ExoPlayerImplInternal(
@@ -311,6 +312,14 @@ import java.util.concurrent.atomic.AtomicBoolean;
     this.setForegroundModeTimeoutMs = setForegroundModeTimeoutMs;
   }
 
+  public void experimentalSetDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+    this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+  }
+
+  public void experimentalSetMediaSourcePreparationWindowSize(int preparationWindowSize) {
+    mediaSourceList.setPreparationWindowSize(preparationWindowSize);
+  }
+
   public void experimentalSetOffloadSchedulingEnabled(boolean offloadSchedulingEnabled) {
     handler
         .obtainMessage(
@@ -1032,8 +1041,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
     boolean renderersEnded = true;
     boolean renderersAllowPlayback = true;
+    long rendererPositionElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
     if (playingPeriodHolder.prepared) {
-      long rendererPositionElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
       playingPeriodHolder.mediaPeriod.discardBuffer(
           playbackInfo.positionUs - backBufferDurationUs, retainBackBufferFromKeyframe);
       for (int i = 0; i < renderers.length; i++) {
@@ -1041,9 +1050,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
         if (!isRendererEnabled(renderer)) {
           continue;
         }
-        // TODO: Each renderer should return the maximum delay before which it wishes to be called
-        // again. The minimum of these values should then be used as the delay before the next
-        // invocation of this method.
         renderer.render(rendererPositionUs, rendererPositionElapsedRealtimeUs);
         renderersEnded = renderersEnded && renderer.isEnded();
         // Determine whether the renderer allows playback to continue. Playback can continue if the
@@ -1139,7 +1145,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
       // No need to schedule next work.
     } else if (isPlaying || playbackInfo.playbackState == Player.STATE_BUFFERING) {
       // We are actively playing or waiting for data to be ready. Schedule next work quickly.
-      scheduleNextWork(operationStartTimeMs, ACTIVE_INTERVAL_MS);
+      long intervalMs =
+          dynamicSchedulingEnabled && isPlaying
+              ? getDynamicSchedulingIntervalMs(rendererPositionElapsedRealtimeUs)
+              : ACTIVE_INTERVAL_MS;
+      scheduleNextWork(operationStartTimeMs, intervalMs);
     } else if (playbackInfo.playbackState == Player.STATE_READY && enabledRendererCount != 0) {
       // We are ready, but not playing. Schedule next work less often to handle non-urgent updates.
       scheduleNextWork(operationStartTimeMs, IDLE_INTERVAL_MS);
@@ -1173,6 +1183,27 @@ import java.util.concurrent.atomic.AtomicBoolean;
     return window.isLive() && window.isDynamic && window.windowStartTimeMs != C.TIME_UNSET;
   }
 
+  /**
+   * Returns the interval after which the renderers should be rendered again, as the minimum of the
+   * durations reported by the enabled renderers, capped at {@link #IDLE_INTERVAL_MS} and at least 1
+   * ms.
+   */
+  private long getDynamicSchedulingIntervalMs(long rendererPositionElapsedRealtimeUs) {
+    long intervalUs = Util.msToUs(IDLE_INTERVAL_MS);
+    for (Renderer renderer : renderers) {
+      if (isRendererEnabled(renderer)) {
+        intervalUs =
+            min(
+                intervalUs,
+                renderer.getDurationToProgressUs(
+                    rendererPositionUs, rendererPositionElapsedRealtimeUs));
+      }
+    }
+    // A duration shorter than 1 ms would round down to an immediate iteration, which busy-loops
+    // while a renderer waits for its next output to become due.
+    return max(1, Util.usToMs(intervalUs));
+  }
+
   private void scheduleNextWork(long thisOperationStartTimeMs, long intervalMs) {
     handler.sendEmptyMessageAtTime(MSG_DO_SOME_WORK, thisOperationStartTimeMs + intervalMs);
   }
@@ -2055,6 +2086,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
     maybeUpdateReadingPeriod();
     maybeUpdateReadingRenderers();
     maybeUpdatePlayingPeriod();
+    mediaSourceList.setCurrentPeriodUid(playbackInfo.periodId.periodUid);
   }
 
   private void maybeUpdateLoadingPeriod() throws ExoPlaybackException {
@@ -41,6 +41,7 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.HandlerWrapper;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -88,10 +89,15 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   private final MediaSourceListInfoRefreshListener mediaSourceListInfoListener;
   private final HashMap<MediaSourceList.MediaSourceHolder, MediaSourceAndListener> childSources;
   private final Set<MediaSourceHolder> enabledMediaSourceHolders;
+  private final Set<MediaSourceHolder> preparationWindowMediaSourceHolders;
+  private final Set<MediaSourceHolder> mediaSourceHoldersWithUpdatedTimeline;
   private final AnalyticsCollector eventListener;
   private final HandlerWrapper eventHandler;
   private ShuffleOrder shuffleOrder;
+  private PlaylistTimeline playlistTimeline;
   private boolean isPrepared;
+  private int preparationWindowSize;
+  @Nullable private MediaSourceHolder currentMediaSourceHolder;
 
   @Nullable private TransferListener mediaTransferListener;
 
@@ -121,6 +127,49 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     eventHandler = analyticsCollectorHandler;
     childSources = new HashMap<>();
     enabledMediaSourceHolders = new HashSet<>();
+    preparationWindowMediaSourceHolders = new HashSet<>();
+    mediaSourceHoldersWithUpdatedTimeline = new HashSet<>();
+    playlistTimeline = new PlaylistTimeline(ImmutableList.of(), shuffleOrder);
+    preparationWindowSize = C.LENGTH_UNSET;
+  }
+
+  /**
+   * Sets the number of media sources before and after the current media source that are kept
+   * prepared, or {@link C#LENGTH_UNSET} to prepare all media sources in the playlist.
+   *
+   * <p>If set, media sources outside of the preparation window are only prepared when a period is
+   * created from them, and are released once they have no more active periods. Their timeline
+   * remains the last timeline they reported, or a placeholder if they were never prepared.
+   *
+   * <p>Must be called before the playlist is prepared.
+   *
+   * @param preparationWindowSize The number of media sources before and after the current media
+   *     source that are kept prepared, or {@link C#LENGTH_UNSET}.
+   */
+  public void setPreparationWindowSize(int preparationWindowSize) {
+    Assertions.checkState(!isPrepared);
+    Assertions.checkArgument(preparationWindowSize >= 0 || preparationWindowSize == C.LENGTH_UNSET);
+    this.preparationWindowSize = preparationWindowSize;
+  }
+
+  /**
+   * Sets the period whose media source is the current one, around which media sources are kept
+   * prepared if a preparation window size is set.
+   *
+   * @param periodUid The UID of the current period in the concatenated timeline.
+   */
+  public void setCurrentPeriodUid(Object periodUid) {
+    if (preparationWindowSize == C.LENGTH_UNSET) {
+      return;
+    }
+    @Nullable
+    MediaSourceHolder mediaSourceHolder =
+        mediaSourceByUid.get(getMediaSourceHolderUid(periodUid));
+    if (mediaSourceHolder == null || mediaSourceHolder == currentMediaSourceHolder) {
+      return;
+    }
+    currentMediaSourceHolder = mediaSourceHolder;
+    updatePreparationWindow();
   }
 
   /**
@@ -148,32 +197,19 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       int index, List<MediaSourceHolder> holders, ShuffleOrder shuffleOrder) {
     if (!holders.isEmpty()) {
       this.shuffleOrder = shuffleOrder;
-      for (int insertionIndex = index; insertionIndex < index + holders.size(); insertionIndex++) {
-        MediaSourceHolder holder = holders.get(insertionIndex - index);
-        if (insertionIndex > 0) {
-          MediaSourceHolder previousHolder = mediaSourceHolders.get(insertionIndex - 1);
-          Timeline previousTimeline = previousHolder.mediaSource.getTimeline();
-          holder.reset(
-              /* firstWindowIndexInChild= */ previousHolder.firstWindowIndexInChild
-                  + previousTimeline.getWindowCount());
-        } else {
-          holder.reset(/* firstWindowIndexInChild= */ 0);
-        }
-        Timeline newTimeline = holder.mediaSource.getTimeline();
-        correctOffsets(
-            /* startIndex= */ insertionIndex,
-            /* windowOffsetUpdate= */ newTimeline.getWindowCount());
-        mediaSourceHolders.add(insertionIndex, holder);
+      for (int i = 0; i < holders.size(); i++) {
+        holders.get(i).reset();
+      }
+      mediaSourceHolders.addAll(index, holders);
+      playlistTimeline = playlistTimeline.copyWithInsertedChildren(index, holders, shuffleOrder);
+      for (int i = 0; i < holders.size(); i++) {
+        MediaSourceHolder holder = holders.get(i);
         mediaSourceByUid.put(holder.uid, holder);
-        if (isPrepared) {
-          prepareChildSource(holder);
-          if (mediaSourceByMediaPeriod.isEmpty()) {
-            enabledMediaSourceHolders.add(holder);
-          } else {
-            disableChildSource(holder);
-          }
+        if (isPrepared && preparationWindowSize == C.LENGTH_UNSET) {
+          prepareAddedChildSource(holder);
         }
       }
+      updatePreparationWindow();
     }
     return createTimeline();
   }
@@ -198,6 +234,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     Assertions.checkArgument(fromIndex >= 0 && fromIndex <= toIndex && toIndex <= getSize());
     this.shuffleOrder = shuffleOrder;
     removeMediaSourcesInternal(fromIndex, toIndex);
+    updatePreparationWindow();
     return createTimeline();
   }
 
@@ -242,16 +279,10 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     if (fromIndex == toIndex || fromIndex == newFromIndex) {
       return createTimeline();
     }
-    int startIndex = min(fromIndex, newFromIndex);
-    int newEndIndex = newFromIndex + (toIndex - fromIndex) - 1;
-    int endIndex = max(newEndIndex, toIndex - 1);
-    int windowOffset = mediaSourceHolders.get(startIndex).firstWindowIndexInChild;
     Util.moveItems(mediaSourceHolders, fromIndex, toIndex, newFromIndex);
-    for (int i = startIndex; i <= endIndex; i++) {
-      MediaSourceHolder holder = mediaSourceHolders.get(i);
-      holder.firstWindowIndexInChild = windowOffset;
-      windowOffset += holder.mediaSource.getTimeline().getWindowCount();
-    }
+    playlistTimeline =
+        playlistTimeline.copyWithMovedChildren(fromIndex, toIndex, newFromIndex, shuffleOrder);
+    updatePreparationWindow();
     return createTimeline();
   }
 
@@ -293,12 +324,16 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   public void prepare(@Nullable TransferListener mediaTransferListener) {
     Assertions.checkState(!isPrepared);
     this.mediaTransferListener = mediaTransferListener;
+    isPrepared = true;
+    if (preparationWindowSize != C.LENGTH_UNSET) {
+      updatePreparationWindow();
+      return;
+    }
     for (int i = 0; i < mediaSourceHolders.size(); i++) {
       MediaSourceHolder mediaSourceHolder = mediaSourceHolders.get(i);
       prepareChildSource(mediaSourceHolder);
       enabledMediaSourceHolders.add(mediaSourceHolder);
     }
-    isPrepared = true;
   }
 
   /**
@@ -315,6 +350,10 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     MediaSource.MediaPeriodId childMediaPeriodId =
         id.copyWithPeriodUid(getChildPeriodUid(id.periodUid));
     MediaSourceHolder holder = checkNotNull(mediaSourceByUid.get(mediaSourceHolderUid));
+    if (!childSources.containsKey(holder)) {
+      // The source is outside of the preparation window, so prepare it on demand.
+      prepareChildSource(holder);
+    }
     enableMediaSource(holder);
     holder.activeMediaPeriodIds.add(childMediaPeriodId);
     MediaPeriod mediaPeriod =
@@ -353,21 +392,44 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
     childSources.clear();
     enabledMediaSourceHolders.clear();
+    preparationWindowMediaSourceHolders.clear();
+    currentMediaSourceHolder = null;
     isPrepared = false;
   }
 
-  /** Creates a timeline reflecting the current state of the playlist. */
+  /**
+   * Creates a timeline reflecting the current state of the playlist.
+   *
+   * <p>The timeline is updated incrementally as the playlist is edited and as the timelines of
+   * media sources change, so this takes time proportional to the number of media sources whose
+   * timeline changed since the last call, rather than to the size of the playlist.
+   */
   public Timeline createTimeline() {
+    for (MediaSourceHolder holder : mediaSourceHoldersWithUpdatedTimeline) {
+      int childIndex = playlistTimeline.getChildIndexByChildUid(holder.uid);
+      if (childIndex != C.INDEX_UNSET) {
+        playlistTimeline =
+            playlistTimeline.copyWithUpdatedChildTimeline(
+                childIndex, holder.mediaSource.getTimeline());
+      }
+    }
+    mediaSourceHoldersWithUpdatedTimeline.clear();
     if (mediaSourceHolders.isEmpty()) {
       return Timeline.EMPTY;
     }
-    int windowOffset = 0;
-    for (int i = 0; i < mediaSourceHolders.size(); i++) {
-      MediaSourceHolder mediaSourceHolder = mediaSourceHolders.get(i);
-      mediaSourceHolder.firstWindowIndexInChild = windowOffset;
-      windowOffset += mediaSourceHolder.mediaSource.getTimeline().getWindowCount();
-    }
-    return new PlaylistTimeline(mediaSourceHolders, shuffleOrder);
+    playlistTimeline = playlistTimeline.copyWithShuffleOrder(shuffleOrder);
+    return playlistTimeline;
+  }
+
+  /**
+   * Returns the index of the first window of the media source of the given holder in the last
+   * {@linkplain #createTimeline() created timeline}, or 0 if it has been removed from the playlist.
+   */
+  /* package */ int getFirstWindowIndexInChild(MediaSourceHolder holder) {
+    int childIndex = playlistTimeline.getChildIndexByChildUid(holder.uid);
+    return childIndex == C.INDEX_UNSET
+        ? 0
+        : playlistTimeline.getFirstWindowIndexByChildIndex(childIndex);
   }
 
   /** Returns the shuffle order */
@@ -404,12 +466,15 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   }
 
   private void removeMediaSourcesInternal(int fromIndex, int toIndex) {
-    for (int index = toIndex - 1; index >= fromIndex; index--) {
-      MediaSourceHolder holder = mediaSourceHolders.remove(index);
+    List<MediaSourceHolder> removedHolders =
+        new ArrayList<>(mediaSourceHolders.subList(fromIndex, toIndex));
+    mediaSourceHolders.subList(fromIndex, toIndex).clear();
+    // The shuffle order is updated by the callers, and applied when the timeline is created.
+    playlistTimeline = playlistTimeline.copyWithRemovedChildren(fromIndex, toIndex, shuffleOrder);
+    for (int i = removedHolders.size() - 1; i >= 0; i--) {
+      MediaSourceHolder holder = removedHolders.get(i);
       mediaSourceByUid.remove(holder.uid);
-      Timeline oldTimeline = holder.mediaSource.getTimeline();
-      correctOffsets(
-          /* startIndex= */ index, /* windowOffsetUpdate= */ -oldTimeline.getWindowCount());
+      preparationWindowMediaSourceHolders.remove(holder);
       holder.isRemoved = true;
       if (isPrepared) {
         maybeReleaseChildSource(holder);
@@ -417,13 +482,42 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
   }
 
-  private void correctOffsets(int startIndex, int windowOffsetUpdate) {
-    for (int i = startIndex; i < mediaSourceHolders.size(); i++) {
-      MediaSourceHolder mediaSourceHolder = mediaSourceHolders.get(i);
-      mediaSourceHolder.firstWindowIndexInChild += windowOffsetUpdate;
+  private void updatePreparationWindow() {
+    if (preparationWindowSize == C.LENGTH_UNSET || !isPrepared) {
+      return;
+    }
+    // The playlist timeline is kept in sync with the holders, and looks up the index of a holder in
+    // logarithmic time.
+    int currentIndex = 0;
+    if (currentMediaSourceHolder != null) {
+      currentIndex = playlistTimeline.getChildIndexByChildUid(currentMediaSourceHolder.uid);
+      if (currentIndex == C.INDEX_UNSET) {
+        // The current media source has been removed. Keep the window around its former position
+        // until the next current period is set.
+        return;
+      }
+    }
+    int fromIndex = max(0, currentIndex - preparationWindowSize);
+    int toIndex = min(mediaSourceHolders.size(), currentIndex + preparationWindowSize + 1);
+    preparationWindowMediaSourceHolders.clear();
+    for (int i = fromIndex; i < toIndex; i++) {
+      MediaSourceHolder holder = mediaSourceHolders.get(i);
+      preparationWindowMediaSourceHolders.add(holder);
+      if (!childSources.containsKey(holder)) {
+        prepareAddedChildSource(holder);
+      }
+    }
+    List<MediaSourceHolder> preparedHolders = new ArrayList<>(childSources.keySet());
+    for (int i = 0; i < preparedHolders.size(); i++) {
+      maybeReleaseChildSource(preparedHolders.get(i));
     }
   }
 
+  private boolean isInPreparationWindow(MediaSourceHolder holder) {
+    return preparationWindowSize == C.LENGTH_UNSET
+        || preparationWindowMediaSourceHolders.contains(holder);
+  }
+
   // Internal methods to manage child sources.
 
   @Nullable
@@ -441,15 +535,18 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     return null;
   }
 
-  private static int getWindowIndexForChildWindowIndex(
+  private int getWindowIndexForChildWindowIndex(
       MediaSourceHolder mediaSourceHolder, int windowIndex) {
-    return windowIndex + mediaSourceHolder.firstWindowIndexInChild;
+    return windowIndex + getFirstWindowIndexInChild(mediaSourceHolder);
   }
 
   private void prepareChildSource(MediaSourceHolder holder) {
     MediaSource mediaSource = holder.mediaSource;
     MediaSource.MediaSourceCaller caller =
-        (source, timeline) -> mediaSourceListInfoListener.onPlaylistUpdateRequested();
+        (source, timeline) -> {
+          mediaSourceHoldersWithUpdatedTimeline.add(holder);
+          mediaSourceListInfoListener.onPlaylistUpdateRequested();
+        };
     ForwardingEventListener eventListener = new ForwardingEventListener(holder);
     childSources.put(holder, new MediaSourceAndListener(mediaSource, caller, eventListener));
     mediaSource.addEventListener(Util.createHandlerForCurrentOrMainLooper(), eventListener);
@@ -457,10 +554,25 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     mediaSource.prepareSource(caller, mediaTransferListener, playerId);
   }
 
+  private void prepareAddedChildSource(MediaSourceHolder holder) {
+    prepareChildSource(holder);
+    if (mediaSourceByMediaPeriod.isEmpty()) {
+      enabledMediaSourceHolders.add(holder);
+    } else {
+      disableChildSource(holder);
+    }
+  }
+
   private void maybeReleaseChildSource(MediaSourceHolder mediaSourceHolder) {
-    // Release if the source has been removed from the playlist and no periods are still active.
-    if (mediaSourceHolder.isRemoved && mediaSourceHolder.activeMediaPeriodIds.isEmpty()) {
-      MediaSourceAndListener removedChild = checkNotNull(childSources.remove(mediaSourceHolder));
+    // Release if the source has been removed from the playlist or is outside of the preparation
+    // window, and no periods are still active.
+    if ((mediaSourceHolder.isRemoved || !isInPreparationWindow(mediaSourceHolder))
+        && mediaSourceHolder.activeMediaPeriodIds.isEmpty()) {
+      @Nullable MediaSourceAndListener removedChild = childSources.remove(mediaSourceHolder);
+      if (removedChild == null) {
+        // The source was never prepared because it was outside of the preparation window.
+        return;
+      }
       removedChild.mediaSource.releaseSource(removedChild.caller);
       removedChild.mediaSource.removeEventListener(removedChild.eventListener);
       removedChild.mediaSource.removeDrmEventListener(removedChild.eventListener);
@@ -489,7 +601,6 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     public final Object uid;
     public final List<MediaSource.MediaPeriodId> activeMediaPeriodIds;
 
-    public int firstWindowIndexInChild;
     public boolean isRemoved;
 
     public MediaSourceHolder(MediaSource mediaSource, boolean useLazyPreparation) {
@@ -498,8 +609,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       this.uid = new Object();
     }
 
-    public void reset(int firstWindowIndexInChild) {
-      this.firstWindowIndexInChild = firstWindowIndexInChild;
+    public void reset() {
       this.isRemoved = false;
       this.activeMediaPeriodIds.clear();
     }
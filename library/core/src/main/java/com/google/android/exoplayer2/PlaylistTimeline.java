@@ -15,18 +15,33 @@
  */
 package com.google.android.exoplayer2;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.source.ForwardingTimeline;
 import com.google.android.exoplayer2.source.ShuffleOrder;
 import com.google.android.exoplayer2.source.ads.AdPlaybackState;
-import com.google.android.exoplayer2.util.Util;
-import java.util.Arrays;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 
 /**
  * Timeline exposing concatenated timelines of playlist media sources.
  *
+ * <p>The child timelines are stored in a persistent balanced tree in which each node also holds the
+ * window and period counts of its subtree. Mapping window and period indices to children takes
+ * logarithmic time, and copies with inserted, removed or moved children share all unchanged
+ * subtrees with the original timeline, so that editing large playlists doesn't require rebuilding
+ * the whole timeline.
+ *
+ * <p>Each child also has a key, and the keys increase in playlist order. A persistent hash trie maps
+ * the child uids to their keys, so that the index of a child can be found by searching the tree
+ * for its key. Inserted and moved children get keys between those of their new neighbors. If there
+ * is no room between these keys, the keys of the nearest children around the insertion index are
+ * spread out again.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -35,93 +50,265 @@ import java.util.List;
 @Deprecated
 /* package */ final class PlaylistTimeline extends AbstractConcatenatedTimeline {
 
-  private final int windowCount;
-  private final int periodCount;
-  private final int[] firstPeriodInChildIndices;
-  private final int[] firstWindowInChildIndices;
-  private final Timeline[] timelines;
-  private final Object[] uids;
-  private final HashMap<Object, Integer> childIndexByUid;
+  /** The difference between the keys of adjacent children, where there is enough room. */
+  private static final long KEY_SPACING = 1L << 32;
+
+  /**
+   * The minimum difference between the keys of children that are inserted or moved. If there is
+   * less room, the keys of the surrounding children are reassigned.
+   */
+  private static final long MIN_KEY_SPACING = 1L << 8;
+
+  private final ShuffleOrder shuffleOrder;
+  @Nullable private final Node root;
+  private final ChildKeys childKeysByUid;
 
   /** Creates an instance. */
   public PlaylistTimeline(
       Collection<? extends MediaSourceInfoHolder> mediaSourceInfoHolders,
       ShuffleOrder shuffleOrder) {
-    this(getTimelines(mediaSourceInfoHolders), getUids(mediaSourceInfoHolders), shuffleOrder);
+    super(/* isAtomic= */ false, shuffleOrder);
+    this.shuffleOrder = shuffleOrder;
+    List<Node> children = createChildren(mediaSourceInfoHolders);
+    long keySpacing = min(KEY_SPACING, Long.MAX_VALUE / (children.size() + 1));
+    root =
+        buildTree(
+            children,
+            /* fromIndex= */ 0,
+            /* toIndex= */ children.size(),
+            /* firstKey= */ keySpacing,
+            keySpacing);
+    childKeysByUid = putChildKeys(ChildKeys.EMPTY, root);
   }
 
-  private PlaylistTimeline(Timeline[] timelines, Object[] uids, ShuffleOrder shuffleOrder) {
+  private PlaylistTimeline(
+      @Nullable Node root, ChildKeys childKeysByUid, ShuffleOrder shuffleOrder) {
     super(/* isAtomic= */ false, shuffleOrder);
-    int childCount = timelines.length;
-    this.timelines = timelines;
-    firstPeriodInChildIndices = new int[childCount];
-    firstWindowInChildIndices = new int[childCount];
-    this.uids = uids;
-    childIndexByUid = new HashMap<>();
-    int index = 0;
-    int windowCount = 0;
-    int periodCount = 0;
-    for (Timeline timeline : timelines) {
-      this.timelines[index] = timeline;
-      firstWindowInChildIndices[index] = windowCount;
-      firstPeriodInChildIndices[index] = periodCount;
-      windowCount += this.timelines[index].getWindowCount();
-      periodCount += this.timelines[index].getPeriodCount();
-      childIndexByUid.put(uids[index], index++);
-    }
-    this.windowCount = windowCount;
-    this.periodCount = periodCount;
+    this.shuffleOrder = shuffleOrder;
+    this.root = root;
+    this.childKeysByUid = childKeysByUid;
+  }
+
+  /** Returns the number of child timelines. */
+  public int getChildCount() {
+    return getChildCount(root);
   }
 
   /** Returns the child timelines. */
   /* package */ List<Timeline> getChildTimelines() {
-    return Arrays.asList(timelines);
+    List<Timeline> timelines = new ArrayList<>(getChildCount(root));
+    addChildTimelines(root, timelines);
+    return timelines;
+  }
+
+  /**
+   * Returns a copy of the timeline with the children of the given {@link MediaSourceInfoHolder
+   * holders} inserted at {@code index}.
+   *
+   * @param index The index at which to insert the children.
+   * @param mediaSourceInfoHolders The holders of the children to insert.
+   * @param shuffleOrder The shuffle order of the new timeline.
+   * @return The new timeline.
+   */
+  public PlaylistTimeline copyWithInsertedChildren(
+      int index,
+      Collection<? extends MediaSourceInfoHolder> mediaSourceInfoHolders,
+      ShuffleOrder shuffleOrder) {
+    Assertions.checkArgument(index >= 0 && index <= getChildCount(root));
+    return insertChildren(
+        root, childKeysByUid, index, createChildren(mediaSourceInfoHolders), shuffleOrder);
+  }
+
+  /**
+   * Returns a copy of the timeline with the children from {@code fromIndex} (inclusive) to {@code
+   * toIndex} (exclusive) removed.
+   *
+   * @param fromIndex The index of the first child to remove.
+   * @param toIndex The index after the last child to remove.
+   * @param shuffleOrder The shuffle order of the new timeline.
+   * @return The new timeline.
+   */
+  public PlaylistTimeline copyWithRemovedChildren(
+      int fromIndex, int toIndex, ShuffleOrder shuffleOrder) {
+    Assertions.checkArgument(fromIndex >= 0 && fromIndex <= toIndex);
+    Assertions.checkArgument(toIndex <= getChildCount(root));
+    @Nullable Node removed = drop(take(root, toIndex), fromIndex);
+    Node newRoot = concat(take(root, fromIndex), drop(root, toIndex));
+    return new PlaylistTimeline(newRoot, removeChildKeys(childKeysByUid, removed), shuffleOrder);
+  }
+
+  /**
+   * Returns a copy of the timeline with the children from {@code fromIndex} (inclusive) to {@code
+   * toIndex} (exclusive) moved so that the first of them is at {@code newFromIndex}.
+   *
+   * @param fromIndex The index of the first child to move.
+   * @param toIndex The index after the last child to move.
+   * @param newFromIndex The new index of the first moved child.
+   * @param shuffleOrder The shuffle order of the new timeline.
+   * @return The new timeline.
+   */
+  public PlaylistTimeline copyWithMovedChildren(
+      int fromIndex, int toIndex, int newFromIndex, ShuffleOrder shuffleOrder) {
+    int childCount = getChildCount(root);
+    Assertions.checkArgument(fromIndex >= 0 && fromIndex <= toIndex && toIndex <= childCount);
+    Assertions.checkArgument(newFromIndex >= 0 && newFromIndex + toIndex - fromIndex <= childCount);
+    List<Node> moved = new ArrayList<>(toIndex - fromIndex);
+    addChildren(drop(take(root, toIndex), fromIndex), moved);
+    @Nullable Node remaining = concat(take(root, fromIndex), drop(root, toIndex));
+    // The keys of the moved children are replaced when they are inserted again.
+    return insertChildren(remaining, childKeysByUid, newFromIndex, moved, shuffleOrder);
+  }
+
+  /**
+   * Returns a copy of the timeline with a new shuffle order.
+   *
+   * @param shuffleOrder The shuffle order of the new timeline. Must have the same length as the
+   *     current shuffle order.
+   * @return The new timeline.
+   */
+  public PlaylistTimeline copyWithShuffleOrder(ShuffleOrder shuffleOrder) {
+    return new PlaylistTimeline(root, childKeysByUid, shuffleOrder);
+  }
+
+  /**
+   * Returns a copy of the timeline in which the child at {@code childIndex} is replaced by {@code
+   * timeline}.
+   *
+   * @param childIndex The index of the child to replace.
+   * @param timeline The new timeline of the child.
+   * @return The new timeline.
+   */
+  public PlaylistTimeline copyWithUpdatedChildTimeline(int childIndex, Timeline timeline) {
+    Assertions.checkArgument(childIndex >= 0 && childIndex < getChildCount(root));
+    return new PlaylistTimeline(
+        replaceTimeline(Assertions.checkNotNull(root), childIndex, timeline),
+        childKeysByUid,
+        shuffleOrder);
   }
 
   @Override
   protected int getChildIndexByPeriodIndex(int periodIndex) {
-    return Util.binarySearchFloor(firstPeriodInChildIndices, periodIndex + 1, false, false);
+    Node node = Assertions.checkNotNull(root);
+    int childIndex = 0;
+    while (true) {
+      int leftPeriodCount = getPeriodCount(node.left);
+      if (periodIndex < leftPeriodCount) {
+        node = Assertions.checkNotNull(node.left);
+        continue;
+      }
+      periodIndex -= leftPeriodCount;
+      childIndex += getChildCount(node.left);
+      int nodePeriodCount = node.timeline.getPeriodCount();
+      if (periodIndex < nodePeriodCount) {
+        return childIndex;
+      }
+      periodIndex -= nodePeriodCount;
+      childIndex++;
+      node = Assertions.checkNotNull(node.right);
+    }
   }
 
   @Override
   protected int getChildIndexByWindowIndex(int windowIndex) {
-    return Util.binarySearchFloor(firstWindowInChildIndices, windowIndex + 1, false, false);
+    Node node = Assertions.checkNotNull(root);
+    int childIndex = 0;
+    while (true) {
+      int leftWindowCount = getWindowCount(node.left);
+      if (windowIndex < leftWindowCount) {
+        node = Assertions.checkNotNull(node.left);
+        continue;
+      }
+      windowIndex -= leftWindowCount;
+      childIndex += getChildCount(node.left);
+      int nodeWindowCount = node.timeline.getWindowCount();
+      if (windowIndex < nodeWindowCount) {
+        return childIndex;
+      }
+      windowIndex -= nodeWindowCount;
+      childIndex++;
+      node = Assertions.checkNotNull(node.right);
+    }
   }
 
   @Override
   protected int getChildIndexByChildUid(Object childUid) {
-    Integer index = childIndexByUid.get(childUid);
-    return index == null ? C.INDEX_UNSET : index;
+    long key = childKeysByUid.get(childUid);
+    if (key == ChildKeys.NO_KEY) {
+      return C.INDEX_UNSET;
+    }
+    @Nullable Node node = root;
+    int childIndex = 0;
+    while (node != null) {
+      if (key < node.key) {
+        node = node.left;
+      } else if (key > node.key) {
+        childIndex += getChildCount(node.left) + 1;
+        node = node.right;
+      } else {
+        return childIndex + getChildCount(node.left);
+      }
+    }
+    return C.INDEX_UNSET;
   }
 
   @Override
   protected Timeline getTimelineByChildIndex(int childIndex) {
-    return timelines[childIndex];
+    return getNode(root, childIndex).timeline;
   }
 
   @Override
   protected int getFirstPeriodIndexByChildIndex(int childIndex) {
-    return firstPeriodInChildIndices[childIndex];
+    Node node = Assertions.checkNotNull(root);
+    int firstPeriodIndex = 0;
+    while (true) {
+      int leftChildCount = getChildCount(node.left);
+      if (childIndex < leftChildCount) {
+        node = Assertions.checkNotNull(node.left);
+        continue;
+      }
+      firstPeriodIndex += getPeriodCount(node.left);
+      if (childIndex == leftChildCount) {
+        return firstPeriodIndex;
+      }
+      firstPeriodIndex += node.timeline.getPeriodCount();
+      childIndex -= leftChildCount + 1;
+      node = Assertions.checkNotNull(node.right);
+    }
   }
 
   @Override
   protected int getFirstWindowIndexByChildIndex(int childIndex) {
-    return firstWindowInChildIndices[childIndex];
+    Node node = Assertions.checkNotNull(root);
+    int firstWindowIndex = 0;
+    while (true) {
+      int leftChildCount = getChildCount(node.left);
+      if (childIndex < leftChildCount) {
+        node = Assertions.checkNotNull(node.left);
+        continue;
+      }
+      firstWindowIndex += getWindowCount(node.left);
+      if (childIndex == leftChildCount) {
+        return firstWindowIndex;
+      }
+      firstWindowIndex += node.timeline.getWindowCount();
+      childIndex -= leftChildCount + 1;
+      node = Assertions.checkNotNull(node.right);
+    }
   }
 
   @Override
   protected Object getChildUidByChildIndex(int childIndex) {
-    return uids[childIndex];
+    return getNode(root, childIndex).uid;
   }
 
   @Override
   public int getWindowCount() {
-    return windowCount;
+    return getWindowCount(root);
   }
 
   @Override
   public int getPeriodCount() {
-    return periodCount;
+    return getPeriodCount(root);
   }
 
   /**
@@ -139,52 +326,494 @@ import java.util.List;
    * playback.
    */
   public PlaylistTimeline copyWithPlaceholderTimeline(ShuffleOrder shuffleOrder) {
-    Timeline[] newTimelines = new Timeline[timelines.length];
-    for (int i = 0; i < timelines.length; i++) {
-      newTimelines[i] =
-          new ForwardingTimeline(timelines[i]) {
-            private final Window window = new Window();
-
-            @Override
-            public Period getPeriod(int periodIndex, Period period, boolean setIds) {
-              Period superPeriod = super.getPeriod(periodIndex, period, setIds);
-              if (super.getWindow(superPeriod.windowIndex, window).isLive()) {
-                // Reset the ad playback state for placeholder period of a live streams.
-                superPeriod.set(
-                    period.id,
-                    period.uid,
-                    period.windowIndex,
-                    period.durationUs,
-                    period.positionInWindowUs,
-                    AdPlaybackState.NONE,
-                    /* isPlaceholder= */ true);
-              } else {
-                superPeriod.isPlaceholder = true;
-              }
-              return superPeriod;
-            }
-          };
+    return new PlaylistTimeline(copyWithPlaceholderTimelines(root), childKeysByUid, shuffleOrder);
+  }
+
+  @Nullable
+  private static Node copyWithPlaceholderTimelines(@Nullable Node node) {
+    if (node == null) {
+      return null;
     }
-    return new PlaylistTimeline(newTimelines, uids, shuffleOrder);
+    Timeline placeholderTimeline =
+        new ForwardingTimeline(node.timeline) {
+          private final Window window = new Window();
+
+          @Override
+          public Period getPeriod(int periodIndex, Period period, boolean setIds) {
+            Period superPeriod = super.getPeriod(periodIndex, period, setIds);
+            if (super.getWindow(superPeriod.windowIndex, window).isLive()) {
+              // Reset the ad playback state for placeholder period of a live streams.
+              superPeriod.set(
+                  period.id,
+                  period.uid,
+                  period.windowIndex,
+                  period.durationUs,
+                  period.positionInWindowUs,
+                  AdPlaybackState.NONE,
+                  /* isPlaceholder= */ true);
+            } else {
+              superPeriod.isPlaceholder = true;
+            }
+            return superPeriod;
+          }
+        };
+    return new Node(
+        copyWithPlaceholderTimelines(node.left),
+        placeholderTimeline,
+        node.uid,
+        node.key,
+        copyWithPlaceholderTimelines(node.right));
   }
 
-  private static Object[] getUids(
+  // Tree operations.
+
+  private static List<Node> createChildren(
       Collection<? extends MediaSourceInfoHolder> mediaSourceInfoHolders) {
-    Object[] uids = new Object[mediaSourceInfoHolders.size()];
-    int i = 0;
+    List<Node> children = new ArrayList<>(mediaSourceInfoHolders.size());
     for (MediaSourceInfoHolder holder : mediaSourceInfoHolders) {
-      uids[i++] = holder.getUid();
+      children.add(
+          new Node(
+              /* left= */ null,
+              holder.getTimeline(),
+              holder.getUid(),
+              /* key= */ 0,
+              /* right= */ null));
     }
-    return uids;
+    return children;
   }
 
-  private static Timeline[] getTimelines(
-      Collection<? extends MediaSourceInfoHolder> mediaSourceInfoHolders) {
-    Timeline[] timelines = new Timeline[mediaSourceInfoHolders.size()];
-    int i = 0;
-    for (MediaSourceInfoHolder holder : mediaSourceInfoHolders) {
-      timelines[i++] = holder.getTimeline();
+  /**
+   * Returns a balanced tree of the children from {@code fromIndex} to {@code toIndex}, in which the
+   * child at index {@code i} has the key {@code firstKey + i * keySpacing}.
+   */
+  @Nullable
+  private static Node buildTree(
+      List<Node> children, int fromIndex, int toIndex, long firstKey, long keySpacing) {
+    if (fromIndex == toIndex) {
+      return null;
+    }
+    int middleIndex = (fromIndex + toIndex) >>> 1;
+    Node child = children.get(middleIndex);
+    return new Node(
+        buildTree(children, fromIndex, middleIndex, firstKey, keySpacing),
+        child.timeline,
+        child.uid,
+        firstKey + middleIndex * keySpacing,
+        buildTree(children, middleIndex + 1, toIndex, firstKey, keySpacing));
+  }
+
+  /**
+   * Returns a timeline with the given children inserted at {@code index}, assigning them keys
+   * between those of their new neighbors.
+   *
+   * <p>If the keys would be spaced less than {@link #MIN_KEY_SPACING} apart, the range of children
+   * whose keys are reassigned is widened around {@code index} until there is enough room, doubling
+   * its size each time. This keeps the number of reassigned keys proportional to the local density
+   * of keys, rather than to the size of the playlist.
+   */
+  private static PlaylistTimeline insertChildren(
+      @Nullable Node root,
+      ChildKeys childKeysByUid,
+      int index,
+      List<Node> children,
+      ShuffleOrder shuffleOrder) {
+    int childCount = getChildCount(root);
+    int fromIndex = index;
+    int toIndex = index;
+    long keySpacing;
+    long firstKey;
+    while (true) {
+      long keyBefore = fromIndex > 0 ? getNode(root, fromIndex - 1).key : 0;
+      int relabeledCount = toIndex - fromIndex + children.size();
+      if (toIndex < childCount) {
+        keySpacing = (getNode(root, toIndex).key - keyBefore) / (relabeledCount + 1);
+      } else {
+        keySpacing = min(KEY_SPACING, (Long.MAX_VALUE - keyBefore) / (relabeledCount + 1));
+      }
+      firstKey = keyBefore + keySpacing;
+      if (keySpacing >= MIN_KEY_SPACING || (fromIndex == 0 && toIndex == childCount)) {
+        break;
+      }
+      int radius = max(1, toIndex - fromIndex);
+      fromIndex = max(0, fromIndex - radius);
+      toIndex = min(childCount, toIndex + radius);
+    }
+    Assertions.checkState(keySpacing > 0);
+    List<Node> relabeledChildren = new ArrayList<>(toIndex - fromIndex + children.size());
+    addChildren(drop(take(root, index), fromIndex), relabeledChildren);
+    relabeledChildren.addAll(children);
+    addChildren(drop(take(root, toIndex), index), relabeledChildren);
+    @Nullable
+    Node relabeled =
+        buildTree(
+            relabeledChildren,
+            /* fromIndex= */ 0,
+            /* toIndex= */ relabeledChildren.size(),
+            firstKey,
+            keySpacing);
+    Node newRoot = concat(concat(take(root, fromIndex), relabeled), drop(root, toIndex));
+    return new PlaylistTimeline(
+        newRoot, putChildKeys(childKeysByUid, relabeled), shuffleOrder);
+  }
+
+  private static Node replaceTimeline(Node node, int childIndex, Timeline timeline) {
+    int leftChildCount = getChildCount(node.left);
+    if (childIndex < leftChildCount) {
+      return new Node(
+          replaceTimeline(Assertions.checkNotNull(node.left), childIndex, timeline),
+          node,
+          node.right);
+    } else if (childIndex > leftChildCount) {
+      return new Node(
+          node.left,
+          node,
+          replaceTimeline(
+              Assertions.checkNotNull(node.right), childIndex - leftChildCount - 1, timeline));
+    }
+    return new Node(node.left, timeline, node.uid, node.key, node.right);
+  }
+
+  private static Node getNode(@Nullable Node node, int childIndex) {
+    while (true) {
+      node = Assertions.checkNotNull(node);
+      int leftChildCount = getChildCount(node.left);
+      if (childIndex < leftChildCount) {
+        node = node.left;
+      } else if (childIndex == leftChildCount) {
+        return node;
+      } else {
+        childIndex -= leftChildCount + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /** Returns the tree of the first {@code count} children of the given tree. */
+  @Nullable
+  private static Node take(@Nullable Node node, int count) {
+    if (node == null || count <= 0) {
+      return null;
+    }
+    if (count >= node.childCount) {
+      return node;
+    }
+    int leftChildCount = getChildCount(node.left);
+    if (count <= leftChildCount) {
+      return take(node.left, count);
+    }
+    return join(node.left, node, take(node.right, count - leftChildCount - 1));
+  }
+
+  /** Returns the tree of the children of the given tree after the first {@code count} children. */
+  @Nullable
+  private static Node drop(@Nullable Node node, int count) {
+    if (node == null || count <= 0) {
+      return node;
+    }
+    if (count >= node.childCount) {
+      return null;
+    }
+    int leftChildCount = getChildCount(node.left);
+    if (count > leftChildCount) {
+      return drop(node.right, count - leftChildCount - 1);
+    }
+    return join(drop(node.left, count), node, node.right);
+  }
+
+  /** Returns the concatenation of two trees. */
+  @Nullable
+  private static Node concat(@Nullable Node left, @Nullable Node right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    return join(left, getNode(right, /* childIndex= */ 0), drop(right, /* count= */ 1));
+  }
+
+  /**
+   * Returns a balanced tree of the children of {@code left}, the child of {@code middle} and the
+   * children of {@code right}, in that order. The heights of {@code left} and {@code right} may
+   * differ arbitrarily.
+   */
+  private static Node join(@Nullable Node left, Node middle, @Nullable Node right) {
+    int leftHeight = getHeight(left);
+    int rightHeight = getHeight(right);
+    if (leftHeight > rightHeight + 1) {
+      left = Assertions.checkNotNull(left);
+      return balance(left.left, left, join(left.right, middle, right));
+    }
+    if (rightHeight > leftHeight + 1) {
+      right = Assertions.checkNotNull(right);
+      return balance(join(left, middle, right.left), right, right.right);
+    }
+    return new Node(left, middle, right);
+  }
+
+  /**
+   * Returns a balanced tree equivalent to joining {@code left}, {@code middle} and {@code right},
+   * where the heights of {@code left} and {@code right} differ by at most two.
+   */
+  private static Node balance(@Nullable Node left, Node middle, @Nullable Node right) {
+    int leftHeight = getHeight(left);
+    int rightHeight = getHeight(right);
+    if (leftHeight > rightHeight + 1) {
+      left = Assertions.checkNotNull(left);
+      if (getHeight(left.left) >= getHeight(left.right)) {
+        return new Node(left.left, left, new Node(left.right, middle, right));
+      }
+      Node leftRight = Assertions.checkNotNull(left.right);
+      return new Node(
+          new Node(left.left, left, leftRight.left),
+          leftRight,
+          new Node(leftRight.right, middle, right));
+    }
+    if (rightHeight > leftHeight + 1) {
+      right = Assertions.checkNotNull(right);
+      if (getHeight(right.right) >= getHeight(right.left)) {
+        return new Node(new Node(left, middle, right.left), right, right.right);
+      }
+      Node rightLeft = Assertions.checkNotNull(right.left);
+      return new Node(
+          new Node(left, middle, rightLeft.left),
+          rightLeft,
+          new Node(rightLeft.right, right, right.right));
+    }
+    return new Node(left, middle, right);
+  }
+
+  private static void addChildTimelines(@Nullable Node node, List<Timeline> timelines) {
+    if (node != null) {
+      addChildTimelines(node.left, timelines);
+      timelines.add(node.timeline);
+      addChildTimelines(node.right, timelines);
+    }
+  }
+
+  private static void addChildren(@Nullable Node node, List<Node> children) {
+    if (node != null) {
+      addChildren(node.left, children);
+      children.add(node);
+      addChildren(node.right, children);
+    }
+  }
+
+  private static ChildKeys putChildKeys(ChildKeys childKeysByUid, @Nullable Node node) {
+    if (node != null) {
+      childKeysByUid = childKeysByUid.put(node.uid, node.key);
+      childKeysByUid = putChildKeys(childKeysByUid, node.left);
+      childKeysByUid = putChildKeys(childKeysByUid, node.right);
+    }
+    return childKeysByUid;
+  }
+
+  private static ChildKeys removeChildKeys(ChildKeys childKeysByUid, @Nullable Node node) {
+    if (node != null) {
+      childKeysByUid = childKeysByUid.remove(node.uid);
+      childKeysByUid = removeChildKeys(childKeysByUid, node.left);
+      childKeysByUid = removeChildKeys(childKeysByUid, node.right);
+    }
+    return childKeysByUid;
+  }
+
+  private static int getHeight(@Nullable Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static int getChildCount(@Nullable Node node) {
+    return node == null ? 0 : node.childCount;
+  }
+
+  private static int getWindowCount(@Nullable Node node) {
+    return node == null ? 0 : node.windowCount;
+  }
+
+  private static int getPeriodCount(@Nullable Node node) {
+    return node == null ? 0 : node.periodCount;
+  }
+
+  /** An immutable node of the tree, holding a child timeline and the totals of its subtree. */
+  private static final class Node {
+
+    @Nullable public final Node left;
+    @Nullable public final Node right;
+    public final Timeline timeline;
+    public final Object uid;
+    public final long key;
+    public final int height;
+    public final int childCount;
+    public final int windowCount;
+    public final int periodCount;
+
+    public Node(@Nullable Node left, Node middle, @Nullable Node right) {
+      this(left, middle.timeline, middle.uid, middle.key, right);
+    }
+
+    public Node(
+        @Nullable Node left, Timeline timeline, Object uid, long key, @Nullable Node right) {
+      this.left = left;
+      this.right = right;
+      this.timeline = timeline;
+      this.uid = uid;
+      this.key = key;
+      height = max(getHeight(left), getHeight(right)) + 1;
+      childCount = getChildCount(left) + getChildCount(right) + 1;
+      windowCount = getWindowCount(left) + getWindowCount(right) + timeline.getWindowCount();
+      periodCount = getPeriodCount(left) + getPeriodCount(right) + timeline.getPeriodCount();
+    }
+  }
+
+  /**
+   * An immutable hash array mapped trie from child uids to the keys of their nodes. Each level of
+   * the trie consumes five bits of the hash code, and uids with equal hash codes are chained.
+   */
+  private static final class ChildKeys {
+
+    /** Returned by {@link #get(Object)} if the uid is not mapped. */
+    public static final long NO_KEY = Long.MIN_VALUE;
+
+    public static final ChildKeys EMPTY = new ChildKeys(/* bitmap= */ 0, new Object[0]);
+
+    private static final int BITS_PER_LEVEL = 5;
+
+    private final int bitmap;
+    // Each entry is either a ChildKeys, or an Entry chain of uids with the same hash code.
+    private final Object[] entries;
+
+    private ChildKeys(int bitmap, Object[] entries) {
+      this.bitmap = bitmap;
+      this.entries = entries;
+    }
+
+    /** Returns the key of the uid, or {@link #NO_KEY} if it's not mapped. */
+    public long get(Object uid) {
+      int hash = uid.hashCode();
+      ChildKeys childKeys = this;
+      for (int shift = 0; ; shift += BITS_PER_LEVEL) {
+        int bit = getBit(hash, shift);
+        if ((childKeys.bitmap & bit) == 0) {
+          return NO_KEY;
+        }
+        Object entry = childKeys.entries[childKeys.getEntryIndex(bit)];
+        if (entry instanceof ChildKeys) {
+          childKeys = (ChildKeys) entry;
+          continue;
+        }
+        for (@Nullable Entry e = (Entry) entry; e != null; e = e.next) {
+          if (e.hash == hash && e.uid.equals(uid)) {
+            return e.key;
+          }
+        }
+        return NO_KEY;
+      }
+    }
+
+    /** Returns a copy in which {@code uid} is mapped to {@code key}. */
+    public ChildKeys put(Object uid, long key) {
+      return put(uid, uid.hashCode(), key, /* shift= */ 0);
+    }
+
+    /** Returns a copy in which {@code uid} is not mapped. */
+    public ChildKeys remove(Object uid) {
+      return remove(uid, uid.hashCode(), /* shift= */ 0);
+    }
+
+    private ChildKeys put(Object uid, int hash, long key, int shift) {
+      int bit = getBit(hash, shift);
+      int index = getEntryIndex(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] newEntries = new Object[entries.length + 1];
+        System.arraycopy(entries, 0, newEntries, 0, index);
+        newEntries[index] = new Entry(uid, hash, key, /* next= */ null);
+        System.arraycopy(entries, index, newEntries, index + 1, entries.length - index);
+        return new ChildKeys(bitmap | bit, newEntries);
+      }
+      Object entry = entries[index];
+      Object newEntry;
+      if (entry instanceof ChildKeys) {
+        newEntry = ((ChildKeys) entry).put(uid, hash, key, shift + BITS_PER_LEVEL);
+      } else {
+        Entry chain = (Entry) entry;
+        if (chain.hash == hash) {
+          newEntry = new Entry(uid, hash, key, chain.remove(uid));
+        } else {
+          // Move the chain one level down, where the hash codes eventually differ.
+          int nextShift = shift + BITS_PER_LEVEL;
+          newEntry =
+              new ChildKeys(getBit(chain.hash, nextShift), new Object[] {chain})
+                  .put(uid, hash, key, nextShift);
+        }
+      }
+      Object[] newEntries = entries.clone();
+      newEntries[index] = newEntry;
+      return new ChildKeys(bitmap, newEntries);
+    }
+
+    private ChildKeys remove(Object uid, int hash, int shift) {
+      int bit = getBit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = getEntryIndex(bit);
+      Object entry = entries[index];
+      @Nullable Object newEntry;
+      if (entry instanceof ChildKeys) {
+        ChildKeys childKeys = ((ChildKeys) entry).remove(uid, hash, shift + BITS_PER_LEVEL);
+        newEntry = childKeys.bitmap == 0 ? null : childKeys;
+      } else {
+        Entry chain = (Entry) entry;
+        newEntry = chain.hash == hash ? chain.remove(uid) : chain;
+      }
+      if (newEntry == entry) {
+        return this;
+      }
+      if (newEntry == null) {
+        Object[] newEntries = new Object[entries.length - 1];
+        System.arraycopy(entries, 0, newEntries, 0, index);
+        System.arraycopy(entries, index + 1, newEntries, index, newEntries.length - index);
+        return new ChildKeys(bitmap & ~bit, newEntries);
+      }
+      Object[] newEntries = entries.clone();
+      newEntries[index] = newEntry;
+      return new ChildKeys(bitmap, newEntries);
+    }
+
+    private int getEntryIndex(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static int getBit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & 0x1F);
+    }
+  }
+
+  /** An immutable chain of uids with the same hash code and their keys. */
+  private static final class Entry {
+
+    public final Object uid;
+    public final int hash;
+    public final long key;
+    @Nullable public final Entry next;
+
+    public Entry(Object uid, int hash, long key, @Nullable Entry next) {
+      this.uid = uid;
+      this.hash = hash;
+      this.key = key;
+      this.next = next;
+    }
+
+    /** Returns the chain without {@code uid}, or null if it's empty. */
+    @Nullable
+    public Entry remove(Object uid) {
+      if (this.uid.equals(uid)) {
+        return next;
+      }
+      if (next == null) {
+        return this;
+      }
+      @Nullable Entry newNext = next.remove(uid);
+      return newNext == next ? this : new Entry(this.uid, hash, key, newNext);
     }
-    return timelines;
   }
 }
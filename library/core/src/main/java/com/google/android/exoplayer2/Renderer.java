@@ -260,6 +260,13 @@ public interface Renderer extends PlayerMessage.Target {
    */
   int STATE_STARTED = 2;
 
+  /**
+   * The default duration after which the player should call {@link #render(long, long)} again if
+   * the renderer doesn't provide a more specific value from {@link #getDurationToProgressUs(long,
+   * long)}.
+   */
+  long DEFAULT_DURATION_TO_PROGRESS_US = 10_000L;
+
   /**
    * Returns the name of this renderer, for logging and debugging purposes. Should typically be the
    * renderer's (un-obfuscated) class name.
@@ -472,6 +479,30 @@ public interface Renderer extends PlayerMessage.Target {
    */
   void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException;
 
+  /**
+   * Returns the minimum duration after which the renderer is able to make progress if {@link
+   * #render(long, long)} is called again with an updated position.
+   *
+   * <p>This is used by the player to schedule the next iteration of the rendering loop when dynamic
+   * scheduling is enabled (see {@link ExoPlayer.Builder#experimentalSetDynamicSchedulingEnabled}).
+   * Renderers should return a conservative value, as media may be rendered late if it's too large.
+   * The value is only used while the player is playing and may be capped by the player.
+   *
+   * <p>The default implementation returns {@link #DEFAULT_DURATION_TO_PROGRESS_US}.
+   *
+   * <p>This method may be called when the renderer is in the following states: {@link
+   * #STATE_ENABLED}, {@link #STATE_STARTED}.
+   *
+   * @param positionUs The current media position in microseconds, as passed to the last call to
+   *     {@link #render(long, long)}.
+   * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
+   *     measured at the start of the current iteration of the rendering loop.
+   * @return The duration in microseconds after which the renderer should be rendered again.
+   */
+  default long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    return DEFAULT_DURATION_TO_PROGRESS_US;
+  }
+
   /**
    * Whether the renderer is able to immediately render media from the current position.
    *
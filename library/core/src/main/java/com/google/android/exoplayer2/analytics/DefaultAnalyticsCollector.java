@@ -80,11 +80,24 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
   private final Window window;
   private final MediaPeriodQueueTracker mediaPeriodQueueTracker;
   private final SparseArray<EventTime> eventTimes;
+  private final Runnable flushEventsRunnable;
 
   private ListenerSet<AnalyticsListener> listeners;
   private @MonotonicNonNull Player player;
   private @MonotonicNonNull HandlerWrapper handler;
   private boolean isSeeking;
+  private boolean hasPendingFlush;
+
+  // Values of the coalesced events that are queued but not flushed yet.
+  @Nullable private EventTime pendingDroppedFramesEventTime;
+  private int pendingDroppedFrameCount;
+  private long pendingDroppedFramesElapsedMs;
+  @Nullable private EventTime pendingFrameProcessingOffsetEventTime;
+  private long pendingTotalProcessingOffsetUs;
+  private int pendingProcessingOffsetFrameCount;
+  @Nullable private EventTime pendingBandwidthEventTime;
+  private int pendingBandwidthElapsedMs;
+  private long pendingBandwidthBytesTransferred;
 
   /**
    * Creates an analytics collector.
@@ -98,6 +111,11 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
     window = new Window();
     mediaPeriodQueueTracker = new MediaPeriodQueueTracker(period);
     eventTimes = new SparseArray<>();
+    flushEventsRunnable =
+        () -> {
+          hasPendingFlush = false;
+          flushEvents();
+        };
   }
 
   /**
@@ -321,10 +339,19 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
   @Override
   public final void onDroppedFrames(int count, long elapsedMs) {
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
-    sendEvent(
+    if (!canCoalesce(pendingDroppedFramesEventTime, eventTime)) {
+      flushEvents();
+    }
+    pendingDroppedFramesEventTime = eventTime;
+    pendingDroppedFrameCount += count;
+    pendingDroppedFramesElapsedMs += elapsedMs;
+    int droppedFrameCount = pendingDroppedFrameCount;
+    long droppedFramesElapsedMs = pendingDroppedFramesElapsedMs;
+    sendCoalescedEvent(
         eventTime,
         AnalyticsListener.EVENT_DROPPED_VIDEO_FRAMES,
-        listener -> listener.onDroppedVideoFrames(eventTime, count, elapsedMs));
+        listener ->
+            listener.onDroppedVideoFrames(eventTime, droppedFrameCount, droppedFramesElapsedMs));
   }
 
   @Override
@@ -359,11 +386,20 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
   @Override
   public final void onVideoFrameProcessingOffset(long totalProcessingOffsetUs, int frameCount) {
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
-    sendEvent(
+    if (!canCoalesce(pendingFrameProcessingOffsetEventTime, eventTime)) {
+      flushEvents();
+    }
+    pendingFrameProcessingOffsetEventTime = eventTime;
+    pendingTotalProcessingOffsetUs += totalProcessingOffsetUs;
+    pendingProcessingOffsetFrameCount += frameCount;
+    long processingOffsetUs = pendingTotalProcessingOffsetUs;
+    int processingOffsetFrameCount = pendingProcessingOffsetFrameCount;
+    sendCoalescedEvent(
         eventTime,
         AnalyticsListener.EVENT_VIDEO_FRAME_PROCESSING_OFFSET,
         listener ->
-            listener.onVideoFrameProcessingOffset(eventTime, totalProcessingOffsetUs, frameCount));
+            listener.onVideoFrameProcessingOffset(
+                eventTime, processingOffsetUs, processingOffsetFrameCount));
   }
 
   @Override
@@ -803,11 +839,20 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
   @Override
   public final void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate) {
     EventTime eventTime = generateLoadingMediaPeriodEventTime();
-    sendEvent(
+    if (!canCoalesce(pendingBandwidthEventTime, eventTime)) {
+      flushEvents();
+    }
+    pendingBandwidthEventTime = eventTime;
+    pendingBandwidthElapsedMs += elapsedMs;
+    pendingBandwidthBytesTransferred += bytesTransferred;
+    int totalElapsedMs = pendingBandwidthElapsedMs;
+    long totalBytesTransferred = pendingBandwidthBytesTransferred;
+    sendCoalescedEvent(
         eventTime,
         AnalyticsListener.EVENT_BANDWIDTH_ESTIMATE,
         listener ->
-            listener.onBandwidthEstimate(eventTime, elapsedMs, bytesTransferred, bitrateEstimate));
+            listener.onBandwidthEstimate(
+                eventTime, totalElapsedMs, totalBytesTransferred, bitrateEstimate));
   }
 
   // DrmSessionEventListener implementation.
@@ -885,7 +930,41 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
   protected final void sendEvent(
       EventTime eventTime, int eventFlag, ListenerSet.Event<AnalyticsListener> eventInvocation) {
     eventTimes.put(eventFlag, eventTime);
-    listeners.sendEvent(eventFlag, eventInvocation);
+    listeners.queueEvent(eventFlag, eventInvocation);
+    flushEvents();
+  }
+
+  /**
+   * Queues a high-frequency event that replaces any event with the same flag that is still queued.
+   * Queued events are sent with the next event that isn't coalesced, or at the latest once the
+   * current {@link Looper} message has been handled.
+   *
+   * <p>The event must report the accumulated values of all the events it replaces.
+   */
+  private void sendCoalescedEvent(
+      EventTime eventTime, int eventFlag, ListenerSet.Event<AnalyticsListener> eventInvocation) {
+    eventTimes.put(eventFlag, eventTime);
+    listeners.queueCoalescedEvent(eventFlag, eventInvocation);
+    if (handler == null) {
+      flushEvents();
+    } else if (!hasPendingFlush) {
+      hasPendingFlush = true;
+      handler.post(flushEventsRunnable);
+    }
+  }
+
+  /** Sends all queued events to the listeners and resets the values of the coalesced events. */
+  private void flushEvents() {
+    pendingDroppedFramesEventTime = null;
+    pendingDroppedFrameCount = 0;
+    pendingDroppedFramesElapsedMs = 0;
+    pendingFrameProcessingOffsetEventTime = null;
+    pendingTotalProcessingOffsetUs = 0;
+    pendingProcessingOffsetFrameCount = 0;
+    pendingBandwidthEventTime = null;
+    pendingBandwidthElapsedMs = 0;
+    pendingBandwidthBytesTransferred = 0;
+    listeners.flushEvents();
   }
 
   /** Generates an {@link EventTime} for the currently playing item in the player. */
@@ -945,6 +1024,17 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
     listeners.release();
   }
 
+  /**
+   * Returns whether a coalesced event with {@code eventTime} can replace a queued one with {@code
+   * pendingEventTime}, which is the case if there is no such event or if both are for the same
+   * media period.
+   */
+  private static boolean canCoalesce(@Nullable EventTime pendingEventTime, EventTime eventTime) {
+    return pendingEventTime == null
+        || (pendingEventTime.windowIndex == eventTime.windowIndex
+            && Objects.equal(pendingEventTime.mediaPeriodId, eventTime.mediaPeriodId));
+  }
+
   private EventTime generateEventTime(@Nullable MediaPeriodId mediaPeriodId) {
     checkNotNull(player);
     @Nullable
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.Arrays;
+
+/**
+ * An immutable histogram of durations with a fixed memory footprint.
+ *
+ * <p>Durations are counted in logarithmically sized buckets, so that quantiles are estimated with a
+ * relative error of at most {@link #RELATIVE_ACCURACY}, for durations up to {@link
+ * #MAX_DURATION_MS}. Longer durations are counted in the last bucket. Histograms can be merged
+ * exactly by adding their bucket counts.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class DurationHistogram {
+
+  /** The maximum relative error of the estimated quantiles. */
+  public static final double RELATIVE_ACCURACY = 0.05;
+
+  /** The longest duration that's counted accurately, in milliseconds. */
+  public static final long MAX_DURATION_MS = 24 * 60 * 60 * 1000L;
+
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  // Bucket 0 counts zero durations. Bucket i > 0 counts durations in (GAMMA^(i-1), GAMMA^i].
+  private static final int BUCKET_COUNT = getBucketIndexUnbounded(MAX_DURATION_MS) + 1;
+
+  /** An empty histogram. */
+  public static final DurationHistogram EMPTY = new DurationHistogram(new long[BUCKET_COUNT]);
+
+  /**
+   * A builder for {@link DurationHistogram} instances.
+   *
+   * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3
+   *     (which contains the same ExoPlayer code). See <a
+   *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+   *     migration guide</a> for more details, including a script to help with the migration.
+   */
+  @Deprecated
+  public static final class Builder {
+
+    private final long[] bucketCounts;
+
+    /** Creates a builder for an empty histogram. */
+    public Builder() {
+      bucketCounts = new long[BUCKET_COUNT];
+    }
+
+    /**
+     * Adds a duration.
+     *
+     * @param durationMs The duration, in milliseconds. Negative durations are counted as zero.
+     * @return This builder.
+     */
+    public Builder add(long durationMs) {
+      bucketCounts[getBucketIndex(durationMs)]++;
+      return this;
+    }
+
+    /**
+     * Adds all durations of a histogram.
+     *
+     * @param histogram The {@link DurationHistogram} to add.
+     * @return This builder.
+     */
+    public Builder addAll(DurationHistogram histogram) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        bucketCounts[i] += histogram.bucketCounts[i];
+      }
+      return this;
+    }
+
+    /** Builds the {@link DurationHistogram}. The builder can still be used afterwards. */
+    public DurationHistogram build() {
+      return new DurationHistogram(bucketCounts.clone());
+    }
+  }
+
+  /**
+   * Returns a histogram containing the durations of all input histograms.
+   *
+   * @param histograms The {@link DurationHistogram DurationHistograms} to merge.
+   * @return The merged {@link DurationHistogram}.
+   */
+  public static DurationHistogram merge(DurationHistogram... histograms) {
+    Builder builder = new Builder();
+    for (DurationHistogram histogram : histograms) {
+      builder.addAll(histogram);
+    }
+    return builder.build();
+  }
+
+  private final long[] bucketCounts;
+  private final long count;
+
+  private DurationHistogram(long[] bucketCounts) {
+    this.bucketCounts = bucketCounts;
+    long count = 0;
+    for (long bucketCount : bucketCounts) {
+      count += bucketCount;
+    }
+    this.count = count;
+  }
+
+  /** Returns the number of durations in the histogram. */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns an estimate of a quantile of the durations, in milliseconds, or {@link C#TIME_UNSET} if
+   * the histogram is empty.
+   *
+   * @param quantile The quantile, between 0 and 1. For example, 0.5 for the median.
+   */
+  public long getQuantileMs(double quantile) {
+    Assertions.checkArgument(quantile >= 0 && quantile <= 1);
+    if (count == 0) {
+      return C.TIME_UNSET;
+    }
+    long rank = min(count - 1, (long) (quantile * (count - 1)));
+    long cumulativeCount = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulativeCount += bucketCounts[i];
+      if (cumulativeCount > rank) {
+        return getBucketValueMs(i);
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    return Arrays.equals(bucketCounts, ((DurationHistogram) obj).bucketCounts);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bucketCounts);
+  }
+
+  private static int getBucketIndex(long durationMs) {
+    return durationMs <= 0 ? 0 : min(BUCKET_COUNT - 1, getBucketIndexUnbounded(durationMs));
+  }
+
+  private static int getBucketIndexUnbounded(long durationMs) {
+    return max(1, (int) Math.ceil(Math.log(durationMs) / LOG_GAMMA));
+  }
+
+  private static long getBucketValueMs(int bucketIndex) {
+    if (bucketIndex == 0) {
+      return 0;
+    }
+    // The value with the smallest maximum relative error to all values in the bucket.
+    return Math.round(2 * Math.pow(GAMMA, bucketIndex) / (GAMMA + 1));
+  }
+}
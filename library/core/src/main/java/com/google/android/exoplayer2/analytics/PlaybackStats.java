@@ -254,11 +254,13 @@ public final class PlaybackStats {
     int backgroundJoiningCount = 0;
     long totalValidJoinTimeMs = C.TIME_UNSET;
     int validJoinTimeCount = 0;
+    DurationHistogram.Builder validJoinTimeHistogram = new DurationHistogram.Builder();
     int totalPauseCount = 0;
     int totalPauseBufferCount = 0;
     int totalSeekCount = 0;
     int totalRebufferCount = 0;
     long maxRebufferTimeMs = C.TIME_UNSET;
+    DurationHistogram.Builder rebufferTimeHistogram = new DurationHistogram.Builder();
     int adPlaybackCount = 0;
     long totalVideoFormatHeightTimeMs = 0;
     long totalVideoFormatHeightTimeProduct = 0;
@@ -299,6 +301,7 @@ public final class PlaybackStats {
         totalValidJoinTimeMs += stats.totalValidJoinTimeMs;
       }
       validJoinTimeCount += stats.validJoinTimeCount;
+      validJoinTimeHistogram.addAll(stats.validJoinTimeHistogram);
       totalPauseCount += stats.totalPauseCount;
       totalPauseBufferCount += stats.totalPauseBufferCount;
       totalSeekCount += stats.totalSeekCount;
@@ -308,6 +311,7 @@ public final class PlaybackStats {
       } else if (stats.maxRebufferTimeMs != C.TIME_UNSET) {
         maxRebufferTimeMs = max(maxRebufferTimeMs, stats.maxRebufferTimeMs);
       }
+      rebufferTimeHistogram.addAll(stats.rebufferTimeHistogram);
       adPlaybackCount += stats.adPlaybackCount;
       totalVideoFormatHeightTimeMs += stats.totalVideoFormatHeightTimeMs;
       totalVideoFormatHeightTimeProduct += stats.totalVideoFormatHeightTimeProduct;
@@ -353,11 +357,13 @@ public final class PlaybackStats {
         backgroundJoiningCount,
         totalValidJoinTimeMs,
         validJoinTimeCount,
+        validJoinTimeHistogram.build(),
         totalPauseCount,
         totalPauseBufferCount,
         totalSeekCount,
         totalRebufferCount,
         maxRebufferTimeMs,
+        rebufferTimeHistogram.build(),
         adPlaybackCount,
         /* videoFormatHistory= */ Collections.emptyList(),
         /* audioFormatHistory= */ Collections.emptyList(),
@@ -426,6 +432,11 @@ public final class PlaybackStats {
    * The number of playbacks with a valid join time as documented in {@link #totalValidJoinTimeMs}.
    */
   public final int validJoinTimeCount;
+  /**
+   * The histogram of valid join times as documented in {@link #totalValidJoinTimeMs}, with one
+   * entry per playback with a valid join time.
+   */
+  public final DurationHistogram validJoinTimeHistogram;
   /** The total number of times a playback has been paused. */
   public final int totalPauseCount;
   /** The total number of times a playback has been paused while rebuffering. */
@@ -445,6 +456,11 @@ public final class PlaybackStats {
    * rebuffer occurred.
    */
   public final long maxRebufferTimeMs;
+  /**
+   * The histogram of the times spent during single rebuffers, with one entry per rebuffer. This
+   * excludes initial joining and buffering after seek.
+   */
+  public final DurationHistogram rebufferTimeHistogram;
   /** The number of ad playbacks. */
   public final int adPlaybackCount;
 
@@ -557,11 +573,13 @@ public final class PlaybackStats {
       int backgroundJoiningCount,
       long totalValidJoinTimeMs,
       int validJoinTimeCount,
+      DurationHistogram validJoinTimeHistogram,
       int totalPauseCount,
       int totalPauseBufferCount,
       int totalSeekCount,
       int totalRebufferCount,
       long maxRebufferTimeMs,
+      DurationHistogram rebufferTimeHistogram,
       int adPlaybackCount,
       List<EventTimeAndFormat> videoFormatHistory,
       List<EventTimeAndFormat> audioFormatHistory,
@@ -597,11 +615,13 @@ public final class PlaybackStats {
     this.backgroundJoiningCount = backgroundJoiningCount;
     this.totalValidJoinTimeMs = totalValidJoinTimeMs;
     this.validJoinTimeCount = validJoinTimeCount;
+    this.validJoinTimeHistogram = validJoinTimeHistogram;
     this.totalPauseCount = totalPauseCount;
     this.totalPauseBufferCount = totalPauseBufferCount;
     this.totalSeekCount = totalSeekCount;
     this.totalRebufferCount = totalRebufferCount;
     this.maxRebufferTimeMs = maxRebufferTimeMs;
+    this.rebufferTimeHistogram = rebufferTimeHistogram;
     this.adPlaybackCount = adPlaybackCount;
     this.videoFormatHistory = Collections.unmodifiableList(videoFormatHistory);
     this.audioFormatHistory = Collections.unmodifiableList(audioFormatHistory);
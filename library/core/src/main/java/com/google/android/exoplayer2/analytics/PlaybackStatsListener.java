@@ -100,6 +100,11 @@ public final class PlaybackStatsListener
   /**
    * Creates listener for playback stats.
    *
+   * <p>Without history, the memory used per playback session is constant, so the listener can be
+   * used for long-running sessions. Distributions of rebuffer and join times are still available
+   * as {@link DurationHistogram DurationHistograms}, which are merged across sessions in {@link
+   * #getCombinedPlaybackStats()}.
+   *
    * @param keepHistory Whether the reported {@link PlaybackStats} should keep the full history of
    *     events.
    * @param callback An optional callback for finished {@link PlaybackStats}.
@@ -367,6 +372,7 @@ public final class PlaybackStatsListener
     private final List<EventTimeAndFormat> audioFormatHistory;
     private final List<EventTimeAndException> fatalErrorHistory;
     private final List<EventTimeAndException> nonFatalErrorHistory;
+    private final DurationHistogram.Builder rebufferTimeHistogramBuilder;
     private final boolean isAd;
 
     private long firstReportedTimeMs;
@@ -428,6 +434,7 @@ public final class PlaybackStatsListener
       currentPlaybackStateStartTimeMs = startTime.realtimeMs;
       firstReportedTimeMs = C.TIME_UNSET;
       maxRebufferTimeMs = C.TIME_UNSET;
+      rebufferTimeHistogramBuilder = new DurationHistogram.Builder();
       isAd = startTime.mediaPeriodId != null && startTime.mediaPeriodId.isAd();
       initialAudioFormatBitrate = C.LENGTH_UNSET;
       initialVideoFormatBitrate = C.LENGTH_UNSET;
@@ -592,13 +599,23 @@ public final class PlaybackStatsListener
     public PlaybackStats build(boolean isFinal) {
       long[] playbackStateDurationsMs = this.playbackStateDurationsMs;
       List<long[]> mediaTimeHistory = this.mediaTimeHistory;
-      if (!isFinal) {
+      DurationHistogram rebufferTimeHistogram;
+      if (isFinal) {
+        rebufferTimeHistogram = rebufferTimeHistogramBuilder.build();
+      } else {
         long buildTimeMs = SystemClock.elapsedRealtime();
         playbackStateDurationsMs =
             Arrays.copyOf(this.playbackStateDurationsMs, PlaybackStats.PLAYBACK_STATE_COUNT);
         long lastStateDurationMs = max(0, buildTimeMs - currentPlaybackStateStartTimeMs);
         playbackStateDurationsMs[currentPlaybackState] += lastStateDurationMs;
         maybeUpdateMaxRebufferTimeMs(buildTimeMs);
+        rebufferTimeHistogram =
+            isRebufferingState(currentPlaybackState)
+                ? new DurationHistogram.Builder()
+                    .addAll(rebufferTimeHistogramBuilder.build())
+                    .add(buildTimeMs - lastRebufferStartTimeMs)
+                    .build()
+                : rebufferTimeHistogramBuilder.build();
         maybeRecordVideoFormatTime(buildTimeMs);
         maybeRecordAudioFormatTime(buildTimeMs);
         mediaTimeHistory = new ArrayList<>(this.mediaTimeHistory);
@@ -629,11 +646,15 @@ public final class PlaybackStatsListener
           /* backgroundJoiningCount= */ hasBackgroundJoin ? 1 : 0,
           validJoinTimeMs,
           /* validJoinTimeCount= */ isJoinTimeInvalid ? 0 : 1,
+          isJoinTimeInvalid
+              ? DurationHistogram.EMPTY
+              : new DurationHistogram.Builder().add(validJoinTimeMs).build(),
           pauseCount,
           pauseBufferCount,
           seekCount,
           rebufferCount,
           maxRebufferTimeMs,
+          rebufferTimeHistogram,
           /* adPlaybackCount= */ isAd ? 1 : 0,
           videoHistory,
           audioHistory,
@@ -686,6 +707,9 @@ public final class PlaybackStatsListener
         pauseBufferCount++;
       }
       maybeUpdateMaxRebufferTimeMs(eventTime.realtimeMs);
+      if (isRebufferingState(currentPlaybackState) && !isRebufferingState(newPlaybackState)) {
+        rebufferTimeHistogramBuilder.add(eventTime.realtimeMs - lastRebufferStartTimeMs);
+      }
 
       currentPlaybackState = newPlaybackState;
       currentPlaybackStateStartTimeMs = eventTime.realtimeMs;
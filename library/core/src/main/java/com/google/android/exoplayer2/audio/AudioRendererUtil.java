@@ -0,0 +1,56 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.android.exoplayer2.Renderer.DEFAULT_DURATION_TO_PROGRESS_US;
+import static java.lang.Math.max;
+
+import com.google.android.exoplayer2.Renderer;
+
+/**
+ * Utility methods for audio renderers.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class AudioRendererUtil {
+
+  private AudioRendererUtil() {}
+
+  /**
+   * Returns the {@linkplain Renderer#getDurationToProgressUs(long, long) duration to progress} of
+   * an audio renderer whose {@link AudioSink} is full.
+   *
+   * <p>The sink can't accept more data until some of its buffered audio has been played out, so
+   * the renderer waits for half of the buffered duration to leave a margin against underruns, but
+   * for no less than {@link Renderer#DEFAULT_DURATION_TO_PROGRESS_US}.
+   *
+   * @param nextBufferToWritePresentationTimeUs The presentation time of the buffer the sink didn't
+   *     accept, in microseconds.
+   * @param positionUs The current media position, in microseconds.
+   * @param playbackSpeed The playback speed.
+   * @return The duration after which the renderer should be rendered again, in microseconds.
+   */
+  public static long getDurationToProgressUsForFullSink(
+      long nextBufferToWritePresentationTimeUs, long positionUs, float playbackSpeed) {
+    long durationUs =
+        (long) ((nextBufferToWritePresentationTimeUs - positionUs) / playbackSpeed / 2);
+    return max(DEFAULT_DURATION_TO_PROGRESS_US, durationUs);
+  }
+}
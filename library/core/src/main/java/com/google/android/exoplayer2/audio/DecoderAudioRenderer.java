@@ -160,6 +160,7 @@ public abstract class DecoderAudioRenderer<
   private boolean inputStreamEnded;
   private boolean outputStreamEnded;
   private long outputStreamOffsetUs;
+  private long nextBufferToWritePresentationTimeUs;
   private final long[] pendingOutputStreamOffsetsUs;
   private int pendingOutputStreamOffsetCount;
 
@@ -217,6 +218,7 @@ public abstract class DecoderAudioRenderer<
     super(C.TRACK_TYPE_AUDIO);
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
     this.audioSink = audioSink;
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     audioSink.setListener(new AudioSinkListener());
     flagsOnlyBuffer = DecoderInputBuffer.newNoDataInstance();
     decoderReinitializationState = REINITIALIZATION_STATE_NONE;
@@ -455,9 +457,11 @@ public abstract class DecoderAudioRenderer<
       decoderCounters.renderedOutputBufferCount++;
       outputBuffer.release();
       outputBuffer = null;
+      nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
       return true;
     }
 
+    nextBufferToWritePresentationTimeUs = outputBuffer.timeUs;
     return false;
   }
 
@@ -561,6 +565,15 @@ public abstract class DecoderAudioRenderer<
     return outputStreamEnded && audioSink.isEnded();
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (nextBufferToWritePresentationTimeUs == C.TIME_UNSET) {
+      return super.getDurationToProgressUs(positionUs, elapsedRealtimeUs);
+    }
+    return AudioRendererUtil.getDurationToProgressUsForFullSink(
+        nextBufferToWritePresentationTimeUs, positionUs, getPlaybackParameters().speed);
+  }
+
   @Override
   public boolean isReady() {
     return audioSink.hasPendingData()
@@ -607,6 +620,7 @@ public abstract class DecoderAudioRenderer<
     }
 
     currentPositionUs = positionUs;
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     allowFirstBufferPositionDiscontinuity = true;
     allowPositionDiscontinuity = true;
     inputStreamEnded = false;
@@ -632,6 +646,7 @@ public abstract class DecoderAudioRenderer<
     inputFormat = null;
     audioTrackNeedsConfigure = true;
     setOutputStreamOffsetUs(C.TIME_UNSET);
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     try {
       setSourceDrmSession(null);
       releaseDecoder();
@@ -114,6 +114,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
   private boolean allowFirstBufferPositionDiscontinuity;
   private boolean allowPositionDiscontinuity;
   private boolean audioSinkNeedsReset;
+  private long nextBufferToWritePresentationTimeUs;
 
   private boolean experimentalKeepAudioTrackOnSeek;
 
@@ -263,6 +264,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     this.context = context;
     this.audioSink = audioSink;
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     audioSink.setListener(new AudioSinkListener());
   }
 
@@ -580,6 +582,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     }
 
     currentPositionUs = positionUs;
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     allowFirstBufferPositionDiscontinuity = true;
     allowPositionDiscontinuity = true;
   }
@@ -601,6 +604,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
   protected void onDisabled() {
     audioSinkNeedsReset = true;
     inputFormat = null;
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     try {
       audioSink.flush();
     } finally {
@@ -634,6 +638,15 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     return super.isEnded() && audioSink.isEnded();
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (nextBufferToWritePresentationTimeUs == C.TIME_UNSET) {
+      return super.getDurationToProgressUs(positionUs, elapsedRealtimeUs);
+    }
+    return AudioRendererUtil.getDurationToProgressUsForFullSink(
+        nextBufferToWritePresentationTimeUs, positionUs, getPlaybackParameters().speed);
+  }
+
   @Override
   public boolean isReady() {
     return audioSink.hasPendingData() || super.isReady();
@@ -691,6 +704,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
       Format format)
       throws ExoPlaybackException {
     checkNotNull(buffer);
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
 
     if (decryptOnlyCodecFormat != null
         && (bufferFlags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
@@ -727,6 +741,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
       return true;
     }
 
+    nextBufferToWritePresentationTimeUs = bufferPresentationTimeUs;
     return false;
   }
 
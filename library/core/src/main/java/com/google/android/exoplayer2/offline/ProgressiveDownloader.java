@@ -20,10 +20,15 @@ import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.source.CacheSeekIndexStore;
+import com.google.android.exoplayer2.source.ProgressiveMediaSource;
+import com.google.android.exoplayer2.source.SeekIndex;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheWriter;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.PriorityTaskManager.PriorityTooLowException;
 import com.google.android.exoplayer2.util.RunnableFutureTask;
@@ -44,14 +49,18 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 @Deprecated
 public final class ProgressiveDownloader implements Downloader {
 
+  private static final String TAG = "ProgressiveDownloader";
+
   private final Executor executor;
   private final DataSpec dataSpec;
   private final CacheDataSource dataSource;
   private final CacheWriter cacheWriter;
   @Nullable private final PriorityTaskManager priorityTaskManager;
+  @Nullable private final ExtractorsFactory seekIndexExtractorsFactory;
 
   @Nullable private ProgressListener progressListener;
   private volatile @MonotonicNonNull RunnableFutureTask<Void, IOException> downloadRunnable;
+  @Nullable private volatile ProgressiveSeekIndexer seekIndexer;
   private volatile boolean isCanceled;
 
   /**
@@ -78,7 +87,33 @@ public final class ProgressiveDownloader implements Downloader {
    */
   public ProgressiveDownloader(
       MediaItem mediaItem, CacheDataSource.Factory cacheDataSourceFactory, Executor executor) {
+    this(mediaItem, cacheDataSourceFactory, executor, /* seekIndexExtractorsFactory= */ null);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * <p>If {@code seekIndexExtractorsFactory} is not null, streams whose extractor has to search for
+   * seek positions, such as MPEG-TS and MPEG-PS streams, are extracted once after they have been
+   * downloaded. The resulting {@link SeekIndex} is stored in the cache alongside the stream, so
+   * that offline playback can seek without searching the stream. Playback uses it if {@link
+   * ProgressiveMediaSource.Factory#setSeekIndexStore} is set to a {@link CacheSeekIndexStore} for
+   * the same cache.
+   *
+   * @param mediaItem The media item with a uri to the stream to be downloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     download will be written.
+   * @param executor An {@link Executor} used to make requests for the media being downloaded.
+   * @param seekIndexExtractorsFactory An {@link ExtractorsFactory} providing the extractors used to
+   *     index the downloaded stream, or null to not index it.
+   */
+  public ProgressiveDownloader(
+      MediaItem mediaItem,
+      CacheDataSource.Factory cacheDataSourceFactory,
+      Executor executor,
+      @Nullable ExtractorsFactory seekIndexExtractorsFactory) {
     this.executor = Assertions.checkNotNull(executor);
+    this.seekIndexExtractorsFactory = seekIndexExtractorsFactory;
     Assertions.checkNotNull(mediaItem.localConfiguration);
     dataSpec =
         new DataSpec.Builder()
@@ -125,6 +160,9 @@ public final class ProgressiveDownloader implements Downloader {
         try {
           downloadRunnable.get();
           finished = true;
+          if (seekIndexExtractorsFactory != null && !isCanceled) {
+            buildSeekIndex(seekIndexExtractorsFactory);
+          }
         } catch (ExecutionException e) {
           Throwable cause = Assertions.checkNotNull(e.getCause());
           if (cause instanceof PriorityTooLowException) {
@@ -154,6 +192,10 @@ public final class ProgressiveDownloader implements Downloader {
     if (downloadRunnable != null) {
       downloadRunnable.cancel(/* interruptIfRunning= */ true);
     }
+    @Nullable ProgressiveSeekIndexer seekIndexer = this.seekIndexer;
+    if (seekIndexer != null) {
+      seekIndexer.cancel();
+    }
   }
 
   @Override
@@ -161,6 +203,24 @@ public final class ProgressiveDownloader implements Downloader {
     dataSource.getCache().removeResource(dataSource.getCacheKeyFactory().buildCacheKey(dataSpec));
   }
 
+  private void buildSeekIndex(ExtractorsFactory extractorsFactory) {
+    ProgressiveSeekIndexer seekIndexer =
+        new ProgressiveSeekIndexer(dataSource, dataSpec, extractorsFactory);
+    this.seekIndexer = seekIndexer;
+    try {
+      @Nullable SeekIndex seekIndex = seekIndexer.buildSeekIndex();
+      if (seekIndex != null) {
+        new CacheSeekIndexStore(dataSource.getCache(), dataSource.getCacheKeyFactory())
+            .store(dataSpec, seekIndex);
+      }
+    } catch (IOException e) {
+      // The stream has been downloaded, so failing to index it doesn't fail the download.
+      Log.w(TAG, "Failed to index downloaded stream", e);
+    } finally {
+      this.seekIndexer = null;
+    }
+  }
+
   private void onProgress(long contentLength, long bytesCached, long newBytesCached) {
     if (progressListener == null) {
       return;
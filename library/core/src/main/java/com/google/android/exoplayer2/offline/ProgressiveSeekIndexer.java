@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static java.lang.Math.max;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.BinarySearchSeeker;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.source.BundledExtractorsAdapter;
+import com.google.android.exoplayer2.source.ProgressiveMediaExtractor;
+import com.google.android.exoplayer2.source.SeekIndex;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.IOException;
+
+/**
+ * Builds a {@link SeekIndex} for a progressive stream by extracting it once from start to end.
+ *
+ * <p>Only streams whose extractor has to search for seek positions are indexed, since seeking in
+ * other streams doesn't benefit from an index.
+ *
+ * <p>The index is the same {@link SeekIndex} that {@link
+ * com.google.android.exoplayer2.source.ProgressiveMediaSource} records during playback, rather than
+ * a table with an entry per sample. Its entries are spaced at least one second apart and are thinned
+ * for long streams, so that it stays small enough to persist. A seek resumes extraction from the
+ * closest preceding entry, and the samples between the entry and the seek position are decoded but
+ * not rendered, as for any other seek to a sync sample before the seek position.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class ProgressiveSeekIndexer implements ExtractorOutput, TrackOutput {
+
+  /** The number of bytes extracted between attempts to add an entry to the seek index. */
+  private static final long ENTRY_CHECK_INTERVAL_BYTES = 16 * 1024;
+
+  private final DataSource dataSource;
+  private final DataSpec dataSpec;
+  private final ExtractorsFactory extractorsFactory;
+  private final DummyTrackOutput dummyTrackOutput;
+
+  @Nullable private SeekMap seekMap;
+  private long largestTimestampUs;
+  private volatile boolean isCanceled;
+
+  /**
+   * Creates an instance.
+   *
+   * @param dataSource The {@link DataSource} from which to read the stream. Typically reads from a
+   *     cache into which the stream has been downloaded.
+   * @param dataSpec The {@link DataSpec} of the whole stream.
+   * @param extractorsFactory The {@link ExtractorsFactory} providing the extractors to try.
+   */
+  public ProgressiveSeekIndexer(
+      DataSource dataSource, DataSpec dataSpec, ExtractorsFactory extractorsFactory) {
+    this.dataSource = dataSource;
+    this.dataSpec = dataSpec;
+    this.extractorsFactory = extractorsFactory;
+    dummyTrackOutput = new DummyTrackOutput();
+    largestTimestampUs = Long.MIN_VALUE;
+  }
+
+  /**
+   * Extracts the stream and returns its {@link SeekIndex}.
+   *
+   * @return The {@link SeekIndex}, or {@code null} if the stream doesn't need to be indexed, its
+   *     length is unknown or indexing was {@linkplain #cancel() canceled}.
+   * @throws IOException If an error occurs reading or extracting the stream.
+   */
+  @Nullable
+  public SeekIndex buildSeekIndex() throws IOException {
+    ProgressiveMediaExtractor extractor = new BundledExtractorsAdapter(extractorsFactory);
+    PositionHolder positionHolder = new PositionHolder();
+    @Nullable SeekIndex seekIndex = null;
+    int result = Extractor.RESULT_CONTINUE;
+    long nextEntryCheckPosition = 0;
+    try {
+      while (result == Extractor.RESULT_CONTINUE && !isCanceled) {
+        long position = positionHolder.position;
+        try {
+          long length = dataSource.open(dataSpec.subrange(position));
+          if (length == C.LENGTH_UNSET) {
+            return null;
+          }
+          length += position;
+          if (seekIndex == null) {
+            seekIndex = new SeekIndex(length);
+          }
+          extractor.init(
+              dataSource,
+              dataSpec.uri,
+              dataSource.getResponseHeaders(),
+              position,
+              length,
+              /* output= */ this);
+          while (result == Extractor.RESULT_CONTINUE && !isCanceled) {
+            result = extractor.read(positionHolder);
+            @Nullable SeekMap seekMap = this.seekMap;
+            if (seekMap != null && !(seekMap instanceof BinarySearchSeeker.BinarySearchSeekMap)) {
+              return null;
+            }
+            long currentInputPosition = extractor.getCurrentInputPosition();
+            if (result != Extractor.RESULT_SEEK
+                && largestTimestampUs != Long.MIN_VALUE
+                && (currentInputPosition >= nextEntryCheckPosition
+                    || result == Extractor.RESULT_END_OF_INPUT)) {
+              nextEntryCheckPosition = currentInputPosition + ENTRY_CHECK_INTERVAL_BYTES;
+              seekIndex.add(largestTimestampUs, currentInputPosition);
+            }
+          }
+        } finally {
+          if (result == Extractor.RESULT_SEEK) {
+            result = Extractor.RESULT_CONTINUE;
+          }
+          DataSourceUtil.closeQuietly(dataSource);
+        }
+      }
+    } finally {
+      extractor.release();
+    }
+    return isCanceled || seekMap == null ? null : seekIndex;
+  }
+
+  /** Cancels indexing. May be called from any thread. */
+  public void cancel() {
+    isCanceled = true;
+  }
+
+  // ExtractorOutput implementation.
+
+  @Override
+  public TrackOutput track(int id, int type) {
+    return this;
+  }
+
+  @Override
+  public void endTracks() {
+    // Do nothing.
+  }
+
+  @Override
+  public void seekMap(SeekMap seekMap) {
+    this.seekMap = seekMap;
+  }
+
+  // TrackOutput implementation.
+
+  @Override
+  public void format(Format format) {
+    // Do nothing.
+  }
+
+  @Override
+  public int sampleData(
+      DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+      throws IOException {
+    return dummyTrackOutput.sampleData(input, length, allowEndOfInput, sampleDataPart);
+  }
+
+  @Override
+  public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+    data.skipBytes(length);
+  }
+
+  @Override
+  public void sampleMetadata(
+      long timeUs,
+      @C.BufferFlags int flags,
+      int size,
+      int offset,
+      @Nullable CryptoData cryptoData) {
+    largestTimestampUs = max(largestTimestampUs, timeUs);
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.source;
 
+import static java.lang.Math.min;
+
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
@@ -23,10 +25,13 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IndexSeekableExtractor;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.RestorableExtractor;
 import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
 import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.FileTypes;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
@@ -45,10 +50,18 @@ import java.util.Map;
 @Deprecated
 public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor {
 
+  /**
+   * The number of bytes requested from upstream at a time while sniffing. Sniffers mostly peek a
+   * few bytes at a time, and some scan tens of kilobytes for a sync word, so reading larger chunks
+   * avoids issuing thousands of small upstream reads for a single stream.
+   */
+  private static final int SNIFF_READ_AHEAD_LENGTH = 32 * 1024;
+
   private final ExtractorsFactory extractorsFactory;
 
   @Nullable private Extractor extractor;
   @Nullable private ExtractorInput extractorInput;
+  private int sniffedExtractorIndex;
 
   /**
    * Creates a holder that will select an extractor and initialize it using the specified output.
@@ -57,6 +70,16 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
    */
   public BundledExtractorsAdapter(ExtractorsFactory extractorsFactory) {
     this.extractorsFactory = extractorsFactory;
+    sniffedExtractorIndex = C.INDEX_UNSET;
+  }
+
+  /**
+   * Returns the index of the extractor selected by sniffing, in the array returned by the {@link
+   * ExtractorsFactory}, or {@link C#INDEX_UNSET} if no extractor has been selected by sniffing. An
+   * index of 0 means the {@link ExtractorsFactory} guessed the type of the stream correctly.
+   */
+  public int getSniffedExtractorIndex() {
+    return sniffedExtractorIndex;
   }
 
   @Override
@@ -68,25 +91,32 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
       long length,
       ExtractorOutput output)
       throws IOException {
-    ExtractorInput extractorInput = new DefaultExtractorInput(dataReader, position, length);
-    this.extractorInput = extractorInput;
     if (extractor != null) {
+      extractorInput = new DefaultExtractorInput(dataReader, position, length);
       return;
     }
-    Extractor[] extractors = extractorsFactory.createExtractors(uri, responseHeaders);
+    SniffingDataReader sniffingDataReader = new SniffingDataReader(dataReader);
+    ExtractorInput extractorInput = new DefaultExtractorInput(sniffingDataReader, position, length);
+    this.extractorInput = extractorInput;
+    // Let the factory put the extractors for the type inferred from the content first.
+    Extractor[] extractors =
+        extractorsFactory.createExtractors(
+            uri, responseHeaders, inferFileTypeFromContent(extractorInput));
     if (extractors.length == 1) {
-      this.extractor = extractors[0];
+      // There's nothing to sniff.
+      extractor = extractors[0];
     } else {
-      for (Extractor extractor : extractors) {
+      for (int i = 0; i < extractors.length; i++) {
         try {
-          if (extractor.sniff(extractorInput)) {
-            this.extractor = extractor;
+          if (extractors[i].sniff(extractorInput)) {
+            extractor = extractors[i];
+            sniffedExtractorIndex = i;
             break;
           }
         } catch (EOFException e) {
           // Do nothing.
         } finally {
-          Assertions.checkState(this.extractor != null || extractorInput.getPosition() == position);
+          Assertions.checkState(extractor != null || extractorInput.getPosition() == position);
           extractorInput.resetPeekPosition();
         }
       }
@@ -98,9 +128,43 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
             Assertions.checkNotNull(uri));
       }
     }
+    sniffingDataReader.stopReadingAhead();
     extractor.init(output);
   }
 
+  @Override
+  public boolean restoreSnapshot(byte[] snapshot, ExtractorOutput output) {
+    if (extractor != null) {
+      return false;
+    }
+    for (Extractor extractor : extractorsFactory.createExtractors()) {
+      if (extractor instanceof RestorableExtractor) {
+        extractor.init(output);
+        if (((RestorableExtractor) extractor).restoreSnapshot(snapshot)) {
+          this.extractor = extractor;
+          return true;
+        }
+      }
+      extractor.release();
+    }
+    return false;
+  }
+
+  @Override
+  public void requestSnapshot() {
+    if (extractor instanceof RestorableExtractor) {
+      ((RestorableExtractor) extractor).requestSnapshot();
+    }
+  }
+
+  @Override
+  @Nullable
+  public byte[] createSnapshot() {
+    return extractor instanceof RestorableExtractor
+        ? ((RestorableExtractor) extractor).createSnapshot()
+        : null;
+  }
+
   @Override
   public void release() {
     if (extractor != null) {
@@ -127,9 +191,83 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     Assertions.checkNotNull(extractor).seek(position, seekTimeUs);
   }
 
+  @Override
+  public void seekToIndexedPosition(long position, long seekTimeUs) {
+    Extractor extractor = Assertions.checkNotNull(this.extractor);
+    if (extractor instanceof IndexSeekableExtractor) {
+      ((IndexSeekableExtractor) extractor).seekToIndexedPosition(position, seekTimeUs);
+    } else {
+      extractor.seek(position, seekTimeUs);
+    }
+  }
+
   @Override
   public int read(PositionHolder positionHolder) throws IOException {
     return Assertions.checkNotNull(extractor)
         .read(Assertions.checkNotNull(extractorInput), positionHolder);
   }
+
+  private static @FileTypes.Type int inferFileTypeFromContent(ExtractorInput input)
+      throws IOException {
+    byte[] data = new byte[FileTypes.CONTENT_INFERENCE_LENGTH];
+    int length = 0;
+    while (length < data.length) {
+      int bytesPeeked = input.peek(data, length, data.length - length);
+      if (bytesPeeked == C.RESULT_END_OF_INPUT) {
+        break;
+      }
+      length += bytesPeeked;
+    }
+    input.resetPeekPosition();
+    return FileTypes.inferFileTypeFromContent(data, /* offset= */ 0, length);
+  }
+
+  /**
+   * A {@link DataReader} that reads ahead of the requested data in chunks of {@link
+   * #SNIFF_READ_AHEAD_LENGTH} bytes until {@link #stopReadingAhead()} is called, and reads directly
+   * from upstream once the data read ahead has been consumed.
+   */
+  private static final class SniffingDataReader implements DataReader {
+
+    private final DataReader upstream;
+    private final byte[] readAheadBuffer;
+
+    private int readAheadPosition;
+    private int readAheadLimit;
+    private boolean readingAhead;
+
+    public SniffingDataReader(DataReader upstream) {
+      this.upstream = upstream;
+      readAheadBuffer = new byte[SNIFF_READ_AHEAD_LENGTH];
+      readingAhead = true;
+    }
+
+    /** Stops reading ahead. Data that has already been read ahead is still returned first. */
+    public void stopReadingAhead() {
+      readingAhead = false;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (readAheadPosition == readAheadLimit) {
+        if (!readingAhead || length >= readAheadBuffer.length) {
+          return upstream.read(buffer, offset, length);
+        }
+        // A single upstream read, which doesn't wait for more data than is already available.
+        int bytesRead = upstream.read(readAheadBuffer, /* offset= */ 0, readAheadBuffer.length);
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        readAheadPosition = 0;
+        readAheadLimit = bytesRead;
+      }
+      int bytesToCopy = min(length, readAheadLimit - readAheadPosition);
+      System.arraycopy(readAheadBuffer, readAheadPosition, buffer, offset, bytesToCopy);
+      readAheadPosition += bytesToCopy;
+      return bytesToCopy;
+    }
+  }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
+import java.io.IOException;
+
+/**
+ * A {@link SeekIndexStore} that stores each {@link SeekIndex} in the {@link ContentMetadata} of the
+ * stream in a {@link Cache}, under {@link ContentMetadata#KEY_SEEK_INDEX}.
+ *
+ * <p>Streams are identified by the cache key that the {@link CacheKeyFactory} builds for them,
+ * which should be the same factory as is used by the {@link
+ * com.google.android.exoplayer2.upstream.cache.CacheDataSource} reading the stream.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class CacheSeekIndexStore implements SeekIndexStore {
+
+  private final Cache cache;
+  private final CacheKeyFactory cacheKeyFactory;
+
+  /**
+   * Creates an instance that uses {@link CacheKeyFactory#DEFAULT}.
+   *
+   * @param cache The {@link Cache} in which to store the indices.
+   */
+  public CacheSeekIndexStore(Cache cache) {
+    this(cache, CacheKeyFactory.DEFAULT);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cache The {@link Cache} in which to store the indices.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} that builds the cache keys of the streams.
+   */
+  public CacheSeekIndexStore(Cache cache, CacheKeyFactory cacheKeyFactory) {
+    this.cache = cache;
+    this.cacheKeyFactory = cacheKeyFactory;
+  }
+
+  @Override
+  @Nullable
+  public SeekIndex load(DataSpec dataSpec) {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    @Nullable
+    byte[] data =
+        cache
+            .getContentMetadata(key)
+            .get(ContentMetadata.KEY_SEEK_INDEX, /* defaultValue= */ (byte[]) null);
+    return data != null ? SeekIndex.fromByteArray(data) : null;
+  }
+
+  @Override
+  public void store(DataSpec dataSpec, SeekIndex seekIndex) throws IOException {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    mutations.set(ContentMetadata.KEY_SEEK_INDEX, seekIndex.toByteArray());
+    cache.applyContentMetadataMutations(key, mutations);
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.RestorableExtractor;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+
+/**
+ * A snapshot of the state that a {@link RestorableExtractor} read from the headers of a progressive
+ * stream, which lets later playbacks of the same stream start extraction without reading the
+ * headers.
+ *
+ * <p>A snapshot records the length of the stream and, where known, a version of its content such as
+ * an HTTP entity tag, which are compared with those of the stream before the snapshot is restored.
+ * Streams whose content can change without changing either should not use snapshots, or the
+ * {@link ExtractorSnapshotStore} should be cleared when their content changes.
+ *
+ * <p>The snapshot can be serialized, so that it can be persisted by an {@link
+ * ExtractorSnapshotStore}.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class ExtractorSnapshot {
+
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 16;
+
+  private final long contentLength;
+  @Nullable private final String contentVersion;
+  private final byte[] extractorSnapshot;
+
+  /**
+   * Creates an instance.
+   *
+   * @param contentLength The length of the stream in bytes. Used to detect when a persisted
+   *     snapshot no longer matches the stream.
+   * @param contentVersion A version of the content of the stream, such as the value of its ETag or
+   *     Last-Modified response header, or {@code null} if unknown. Used to detect when a persisted
+   *     snapshot no longer matches the stream.
+   * @param extractorSnapshot The snapshot returned by {@link RestorableExtractor#createSnapshot()}.
+   */
+  public ExtractorSnapshot(
+      long contentLength, @Nullable String contentVersion, byte[] extractorSnapshot) {
+    this.contentLength = contentLength;
+    this.contentVersion = contentVersion;
+    this.extractorSnapshot = extractorSnapshot;
+  }
+
+  /**
+   * Returns a snapshot deserialized from data returned by {@link #toByteArray()}, or {@code null}
+   * if the data is malformed or was written by an incompatible version.
+   */
+  @Nullable
+  public static ExtractorSnapshot fromByteArray(byte[] data) {
+    ParsableByteArray buffer = new ParsableByteArray(data);
+    if (buffer.bytesLeft() < HEADER_SIZE || buffer.readInt() != VERSION) {
+      return null;
+    }
+    long contentLength = buffer.readLong();
+    int contentVersionLength = buffer.readInt();
+    if (contentVersionLength > buffer.bytesLeft()) {
+      return null;
+    }
+    @Nullable
+    String contentVersion =
+        contentVersionLength >= 0 ? buffer.readString(contentVersionLength) : null;
+    byte[] extractorSnapshot = new byte[buffer.bytesLeft()];
+    buffer.readBytes(extractorSnapshot, /* offset= */ 0, extractorSnapshot.length);
+    return new ExtractorSnapshot(contentLength, contentVersion, extractorSnapshot);
+  }
+
+  /** Returns the length of the stream in bytes. */
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  /** Returns the version of the content of the stream, or {@code null} if unknown. */
+  @Nullable
+  public String getContentVersion() {
+    return contentVersion;
+  }
+
+  /**
+   * Returns whether the snapshot may be restored for a stream with the given length and content
+   * version. The content versions are only compared if both are known.
+   *
+   * @param contentLength The length of the stream in bytes.
+   * @param contentVersion The version of the content of the stream, or {@code null} if unknown.
+   */
+  public boolean matches(long contentLength, @Nullable String contentVersion) {
+    return this.contentLength == contentLength
+        && (this.contentVersion == null
+            || contentVersion == null
+            || this.contentVersion.equals(contentVersion));
+  }
+
+  /** Returns the snapshot to pass to {@link RestorableExtractor#restoreSnapshot(byte[])}. */
+  public byte[] getExtractorSnapshot() {
+    return extractorSnapshot;
+  }
+
+  /** Serializes the snapshot. */
+  public byte[] toByteArray() {
+    @Nullable
+    byte[] contentVersionBytes = contentVersion != null ? Util.getUtf8Bytes(contentVersion) : null;
+    int contentVersionLength = contentVersionBytes != null ? contentVersionBytes.length : 0;
+    ByteBuffer buffer =
+        ByteBuffer.allocate(HEADER_SIZE + contentVersionLength + extractorSnapshot.length);
+    buffer.putInt(VERSION);
+    buffer.putLong(contentLength);
+    if (contentVersionBytes != null) {
+      buffer.putInt(contentVersionBytes.length);
+      buffer.put(contentVersionBytes);
+    } else {
+      buffer.putInt(C.LENGTH_UNSET);
+    }
+    buffer.put(extractorSnapshot);
+    return buffer.array();
+  }
+}
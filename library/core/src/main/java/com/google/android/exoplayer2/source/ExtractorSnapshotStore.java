@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.IOException;
+
+/**
+ * Persists the {@link ExtractorSnapshot} created for a progressive stream, so that later playbacks
+ * of the same stream can start extraction without reading its headers.
+ *
+ * <p>Methods are called on the loading thread.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public interface ExtractorSnapshotStore {
+
+  /**
+   * Returns the snapshot stored for a stream, or {@code null} if there is none.
+   *
+   * @param dataSpec A {@link DataSpec} identifying the stream.
+   * @throws IOException If an error occurs reading the snapshot.
+   */
+  @Nullable
+  ExtractorSnapshot load(DataSpec dataSpec) throws IOException;
+
+  /**
+   * Stores the snapshot for a stream, replacing any previously stored snapshot.
+   *
+   * @param dataSpec A {@link DataSpec} identifying the stream.
+   * @param extractorSnapshot The {@link ExtractorSnapshot}.
+   * @throws IOException If an error occurs writing the snapshot.
+   */
+  void store(DataSpec dataSpec, ExtractorSnapshot extractorSnapshot) throws IOException;
+}
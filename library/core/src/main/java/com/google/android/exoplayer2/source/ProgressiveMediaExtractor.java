@@ -16,11 +16,14 @@
 package com.google.android.exoplayer2.source;
 
 import android.net.Uri;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.analytics.PlayerId;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.IndexSeekableExtractor;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.RestorableExtractor;
 import com.google.android.exoplayer2.upstream.DataReader;
 import java.io.IOException;
 import java.util.List;
@@ -70,6 +73,44 @@ public interface ProgressiveMediaExtractor {
       ExtractorOutput output)
       throws IOException;
 
+  /**
+   * Initializes the underlying infrastructure from a snapshot of the state read from the headers of
+   * the stream, instead of detecting the format of the stream.
+   *
+   * <p>Must be called before {@link #init}. If the snapshot is restored, the tracks and {@link
+   * com.google.android.exoplayer2.extractor.SeekMap} of the stream are output to {@code output},
+   * and {@link #init} doesn't read the input to detect its format.
+   *
+   * @param snapshot A snapshot returned by {@link #createSnapshot()} for the same stream.
+   * @param output The {@link ExtractorOutput} that will be used to initialize the restored
+   *     extractor.
+   * @return Whether the snapshot was restored. Only snapshots of a {@link RestorableExtractor} can
+   *     be restored. The default implementation returns {@code false}.
+   */
+  default boolean restoreSnapshot(byte[] snapshot, ExtractorOutput output) {
+    return false;
+  }
+
+  /**
+   * Requests that a snapshot of the state read from the headers of the stream is available from
+   * {@link #createSnapshot()} once the headers have been read.
+   *
+   * <p>Must be called after {@link #init} and before the headers are read. The default
+   * implementation does nothing.
+   */
+  default void requestSnapshot() {}
+
+  /**
+   * Returns a snapshot of the state read from the headers of the stream, or {@code null} if no
+   * snapshot was {@link #requestSnapshot() requested}, the headers haven't been read yet, or the
+   * extractor doesn't support snapshots (see {@link RestorableExtractor}). The default
+   * implementation returns {@code null}.
+   */
+  @Nullable
+  default byte[] createSnapshot() {
+    return null;
+  }
+
   /** Releases any held resources. */
   void release();
 
@@ -94,6 +135,21 @@ public interface ProgressiveMediaExtractor {
    */
   void seek(long position, long seekTimeUs);
 
+  /**
+   * Notifies the extracting infrastructure that a seek has occurred to a position that is known to
+   * correspond to the seek time, for example because it was taken from a {@link SeekIndex}.
+   *
+   * <p>Extractors that otherwise search the stream for the position of the seek time resume reading
+   * from {@code position} directly (see {@link IndexSeekableExtractor}). For other extractors, this
+   * is equivalent to {@link #seek(long, long)}.
+   *
+   * @param position The byte offset in the stream from which data will be provided.
+   * @param seekTimeUs The seek time in microseconds.
+   */
+  default void seekToIndexedPosition(long position, long seekTimeUs) {
+    seek(position, seekTimeUs);
+  }
+
   /**
    * Extracts data starting at the current input stream position.
    *
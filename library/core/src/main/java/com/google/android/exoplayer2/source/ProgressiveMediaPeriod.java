@@ -31,12 +31,14 @@ import com.google.android.exoplayer2.SeekParameters;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.drm.DrmSessionEventListener;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.extractor.BinarySearchSeeker;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.SeekMap.SeekPoints;
 import com.google.android.exoplayer2.extractor.SeekMap.Unseekable;
+import com.google.android.exoplayer2.extractor.SeekPoint;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.metadata.icy.IcyHeaders;
@@ -55,14 +57,18 @@ import com.google.android.exoplayer2.upstream.Loader.Loadable;
 import com.google.android.exoplayer2.upstream.StatsDataSource;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.ConditionVariable;
+import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
+import com.google.common.base.Ascii;
+import com.google.common.net.HttpHeaders;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
@@ -104,6 +110,15 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    */
   private static final long DEFAULT_LAST_SAMPLE_DURATION_US = 10_000;
 
+  /**
+   * The number of bytes extracted between attempts to add an entry to the seek index. Samples that
+   * are in flight at the position of an entry need to be complete by the next attempt, so this
+   * needs to cover the interleaving distance of typical containers.
+   */
+  private static final long SEEK_INDEX_ENTRY_CHECK_INTERVAL_BYTES = 64 * 1024;
+
+  private static final String TAG = "ProgressiveMediaPeriod";
+
   private static final Map<String, String> ICY_METADATA_HEADERS = createIcyMetadataHeaders();
 
   private static final Format ICY_FORMAT =
@@ -118,6 +133,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private final Listener listener;
   private final Allocator allocator;
   @Nullable private final String customCacheKey;
+  @Nullable private final SeekIndexStore seekIndexStore;
+  @Nullable private final ExtractorSnapshotStore extractorSnapshotStore;
   private final long continueLoadingCheckIntervalBytes;
   private final Loader loader;
   private final ProgressiveMediaExtractor progressiveMediaExtractor;
@@ -153,6 +170,17 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private boolean loadingFinished;
   private boolean released;
 
+  // Seek index state. Written by the loading thread.
+  @Nullable private volatile SeekIndex seekIndex;
+  private boolean isRecordingSeekIndex;
+  private boolean seekIndexModified;
+
+  // Extractor snapshot state. Written by the loading thread.
+  private boolean extractorSnapshotLoaded;
+  private long extractorSnapshotContentLength;
+  @Nullable private String extractorSnapshotContentVersion;
+  private boolean isExtractorSnapshotPending;
+
   /**
    * @param uri The {@link Uri} of the media stream.
    * @param dataSource The data source to read the media.
@@ -167,6 +195,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * @param allocator An {@link Allocator} from which to obtain media buffer allocations.
    * @param customCacheKey A custom key that uniquely identifies the original stream. Used for cache
    *     indexing. May be null.
+   * @param seekIndexStore The {@link SeekIndexStore} in which to persist a {@link SeekIndex} for
+   *     streams whose extractor has to search for seek positions, or null to not index them.
+   * @param extractorSnapshotStore The {@link ExtractorSnapshotStore} in which to persist an {@link
+   *     ExtractorSnapshot} for streams whose extractor supports snapshots, or null to read the
+   *     headers of streams each time.
    * @param continueLoadingCheckIntervalBytes The number of bytes that should be loaded between each
    *     invocation of {@link Callback#onContinueLoadingRequested(SequenceableLoader)}.
    */
@@ -183,6 +216,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       Listener listener,
       Allocator allocator,
       @Nullable String customCacheKey,
+      @Nullable SeekIndexStore seekIndexStore,
+      @Nullable ExtractorSnapshotStore extractorSnapshotStore,
       int continueLoadingCheckIntervalBytes) {
     this.uri = uri;
     this.dataSource = dataSource;
@@ -193,6 +228,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     this.listener = listener;
     this.allocator = allocator;
     this.customCacheKey = customCacheKey;
+    this.seekIndexStore = seekIndexStore;
+    this.extractorSnapshotStore = extractorSnapshotStore;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
     loader = new Loader("ProgressiveMediaPeriod");
     this.progressiveMediaExtractor = progressiveMediaExtractor;
@@ -210,6 +247,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     pendingResetPositionUs = C.TIME_UNSET;
     durationUs = C.TIME_UNSET;
     dataType = C.DATA_TYPE_MEDIA;
+    extractorSnapshotContentLength = C.LENGTH_UNSET;
   }
 
   public void release() {
@@ -228,6 +266,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   @Override
   public void onLoaderReleased() {
+    maybeStoreSeekIndex();
     for (SampleQueue sampleQueue : sampleQueues) {
       sampleQueue.release();
     }
@@ -697,6 +736,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   @Override
   public void seekMap(SeekMap seekMap) {
+    isRecordingSeekIndex = seekIndex != null && isSearchingSeekMap(seekMap);
+    isExtractorSnapshotPending = extractorSnapshotContentLength != C.LENGTH_UNSET;
     handler.post(() -> setSeekMap(seekMap));
   }
 
@@ -719,6 +760,106 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     handler.post(() -> isLengthKnown = true);
   }
 
+  /** Loads the persisted seek index, or creates an empty one. Called by the loading thread. */
+  private void loadSeekIndex(DataSpec dataSpec, long contentLength) {
+    @Nullable SeekIndex seekIndex = null;
+    try {
+      seekIndex = checkNotNull(seekIndexStore).load(dataSpec);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to load seek index", e);
+    }
+    if (seekIndex == null || seekIndex.getContentLength() != contentLength) {
+      // The stream has changed since the index was persisted.
+      seekIndex = new SeekIndex(contentLength);
+    }
+    this.seekIndex = seekIndex;
+  }
+
+  /** Persists the seek index if it has been modified. Called by the loading thread. */
+  private void maybeStoreSeekIndex() {
+    @Nullable SeekIndex seekIndex = this.seekIndex;
+    if (!seekIndexModified || seekIndex == null) {
+      return;
+    }
+    seekIndexModified = false;
+    try {
+      checkNotNull(seekIndexStore)
+          .store(new DataSpec.Builder().setUri(uri).setKey(customCacheKey).build(), seekIndex);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to store seek index", e);
+    }
+  }
+
+  /**
+   * Restores the extractor from the persisted snapshot of the stream, or arranges for a snapshot to
+   * be stored once the extractor has read the headers if there is no valid one. Called by the
+   * loading thread.
+   */
+  private void loadExtractorSnapshot(
+      DataSpec dataSpec, long contentLength, Map<String, List<String>> responseHeaders) {
+    extractorSnapshotLoaded = true;
+    @Nullable String contentVersion = getContentVersion(responseHeaders);
+    @Nullable ExtractorSnapshot extractorSnapshot = null;
+    try {
+      extractorSnapshot = checkNotNull(extractorSnapshotStore).load(dataSpec);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to load extractor snapshot", e);
+    }
+    if (extractorSnapshot != null
+        && extractorSnapshot.matches(contentLength, contentVersion)
+        && progressiveMediaExtractor.restoreSnapshot(
+            extractorSnapshot.getExtractorSnapshot(), /* output= */ this)) {
+      return;
+    }
+    // There is no snapshot, or the stream has changed since it was persisted.
+    extractorSnapshotContentLength = contentLength;
+    extractorSnapshotContentVersion = contentVersion;
+  }
+
+  /**
+   * Persists a snapshot of the extractor, which has just output its seek map. Called by the loading
+   * thread.
+   */
+  private void storeExtractorSnapshot() {
+    isExtractorSnapshotPending = false;
+    long contentLength = extractorSnapshotContentLength;
+    extractorSnapshotContentLength = C.LENGTH_UNSET;
+    @Nullable byte[] snapshot = progressiveMediaExtractor.createSnapshot();
+    if (snapshot == null) {
+      return;
+    }
+    try {
+      checkNotNull(extractorSnapshotStore)
+          .store(
+              new DataSpec.Builder().setUri(uri).setKey(customCacheKey).build(),
+              new ExtractorSnapshot(contentLength, extractorSnapshotContentVersion, snapshot));
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to store extractor snapshot", e);
+    }
+  }
+
+  /**
+   * Returns the version of the content of a stream from its ETag or, if absent, its Last-Modified
+   * response header, or null if it has neither.
+   */
+  @Nullable
+  private static String getContentVersion(Map<String, List<String>> responseHeaders) {
+    @Nullable String lastModified = null;
+    for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+      @Nullable String name = header.getKey();
+      List<String> values = header.getValue();
+      if (name == null || values.isEmpty()) {
+        continue;
+      }
+      if (Ascii.equalsIgnoreCase(name, HttpHeaders.ETAG)) {
+        return HttpHeaders.ETAG + ": " + values.get(0);
+      } else if (Ascii.equalsIgnoreCase(name, HttpHeaders.LAST_MODIFIED)) {
+        lastModified = HttpHeaders.LAST_MODIFIED + ": " + values.get(0);
+      }
+    }
+    return lastModified;
+  }
+
   private TrackOutput prepareTrackOutput(TrackId id) {
     int trackCount = sampleQueues.length;
     for (int i = 0; i < trackCount; i++) {
@@ -740,7 +881,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   }
 
   private void setSeekMap(SeekMap seekMap) {
-    this.seekMap = icyHeaders == null ? seekMap : new Unseekable(/* durationUs= */ C.TIME_UNSET);
+    @Nullable SeekIndex seekIndex = this.seekIndex;
+    if (icyHeaders != null) {
+      this.seekMap = new Unseekable(/* durationUs= */ C.TIME_UNSET);
+    } else if (seekIndex != null && isSearchingSeekMap(seekMap)) {
+      this.seekMap = new IndexedSeekMap(seekMap, seekIndex);
+    } else {
+      this.seekMap = seekMap;
+    }
     durationUs = seekMap.getDurationUs();
     isLive = !isLengthKnown && seekMap.getDurationUs() == C.TIME_UNSET;
     dataType = isLive ? C.DATA_TYPE_MEDIA_PROGRESSIVE_LIVE : C.DATA_TYPE_MEDIA;
@@ -809,9 +957,20 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         pendingResetPositionUs = C.TIME_UNSET;
         return;
       }
-      loadable.setLoadPosition(
-          checkNotNull(seekMap).getSeekPoints(pendingResetPositionUs).first.position,
-          pendingResetPositionUs);
+      SeekMap seekMap = checkNotNull(this.seekMap);
+      long indexedPosition =
+          seekMap instanceof IndexedSeekMap
+              ? ((IndexedSeekMap) seekMap).getIndexedPosition(pendingResetPositionUs)
+              : C.INDEX_UNSET;
+      if (indexedPosition != C.INDEX_UNSET) {
+        loadable.setLoadPosition(
+            indexedPosition, pendingResetPositionUs, /* isIndexedPosition= */ true);
+      } else {
+        loadable.setLoadPosition(
+            seekMap.getSeekPoints(pendingResetPositionUs).first.position,
+            pendingResetPositionUs,
+            /* isIndexedPosition= */ false);
+      }
       for (SampleQueue sampleQueue : sampleQueues) {
         sampleQueue.setStartTimeUs(pendingResetPositionUs);
       }
@@ -871,7 +1030,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       for (SampleQueue sampleQueue : sampleQueues) {
         sampleQueue.reset();
       }
-      loadable.setLoadPosition(0, 0);
+      loadable.setLoadPosition(0, 0, /* isIndexedPosition= */ false);
       return true;
     }
   }
@@ -922,6 +1081,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     return pendingResetPositionUs != C.TIME_UNSET;
   }
 
+  /**
+   * Returns whether the extractor that output the {@link SeekMap} searches the stream for seek
+   * positions, and can therefore benefit from a {@link SeekIndex}.
+   */
+  private static boolean isSearchingSeekMap(SeekMap seekMap) {
+    return seekMap instanceof BinarySearchSeeker.BinarySearchSeekMap;
+  }
+
   @EnsuresNonNull({"trackState", "seekMap"})
   private void assertPrepared() {
     Assertions.checkState(prepared);
@@ -973,7 +1140,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     private volatile boolean loadCanceled;
 
     private boolean pendingExtractorSeek;
+    private boolean isIndexedPosition;
     private long seekTimeUs;
+    private long nextSeekIndexEntryCheckPosition;
+    private long pendingSeekIndexEntryPosition;
     private DataSpec dataSpec;
     @Nullable private TrackOutput icyTrackOutput;
     private boolean seenIcyMetadata;
@@ -992,6 +1162,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       this.loadCondition = loadCondition;
       this.positionHolder = new PositionHolder();
       this.pendingExtractorSeek = true;
+      pendingSeekIndexEntryPosition = C.INDEX_UNSET;
       loadTaskId = LoadEventInfo.getNewId();
       dataSpec = buildDataSpec(/* position= */ 0);
     }
@@ -1014,6 +1185,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           if (length != C.LENGTH_UNSET) {
             length += position;
             onLengthKnown();
+            if (seekIndexStore != null && seekIndex == null) {
+              loadSeekIndex(buildDataSpec(/* position= */ 0), length);
+            }
           }
           icyHeaders = IcyHeaders.parse(dataSource.getResponseHeaders());
           DataSource extractorDataSource = dataSource;
@@ -1022,6 +1196,13 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             icyTrackOutput = icyTrack();
             icyTrackOutput.format(ICY_FORMAT);
           }
+          if (extractorSnapshotStore != null
+              && !extractorSnapshotLoaded
+              && length != C.LENGTH_UNSET
+              && icyHeaders == null) {
+            loadExtractorSnapshot(
+                buildDataSpec(/* position= */ 0), length, dataSource.getResponseHeaders());
+          }
           progressiveMediaExtractor.init(
               extractorDataSource,
               uri,
@@ -1033,9 +1214,16 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           if (icyHeaders != null) {
             progressiveMediaExtractor.disableSeekingOnMp3Streams();
           }
+          if (extractorSnapshotContentLength != C.LENGTH_UNSET) {
+            progressiveMediaExtractor.requestSnapshot();
+          }
 
           if (pendingExtractorSeek) {
-            progressiveMediaExtractor.seek(position, seekTimeUs);
+            if (isIndexedPosition) {
+              progressiveMediaExtractor.seekToIndexedPosition(position, seekTimeUs);
+            } else {
+              progressiveMediaExtractor.seek(position, seekTimeUs);
+            }
             pendingExtractorSeek = false;
           }
           while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
@@ -1045,7 +1233,13 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
               throw new InterruptedIOException();
             }
             result = progressiveMediaExtractor.read(positionHolder);
+            if (isExtractorSnapshotPending) {
+              storeExtractorSnapshot();
+            }
             long currentInputPosition = progressiveMediaExtractor.getCurrentInputPosition();
+            if (isRecordingSeekIndex) {
+              maybeAddSeekIndexEntry(currentInputPosition, result);
+            }
             if (currentInputPosition > position + continueLoadingCheckIntervalBytes) {
               position = currentInputPosition;
               loadCondition.close();
@@ -1061,6 +1255,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           DataSourceUtil.closeQuietly(dataSource);
         }
       }
+      if (result == Extractor.RESULT_END_OF_INPUT) {
+        maybeStoreSeekIndex();
+      }
     }
 
     // IcyDataSource.Listener
@@ -1096,11 +1293,83 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           .build();
     }
 
-    private void setLoadPosition(long position, long timeUs) {
+    private void setLoadPosition(long position, long timeUs, boolean isIndexedPosition) {
       positionHolder.position = position;
       seekTimeUs = timeUs;
       pendingExtractorSeek = true;
+      this.isIndexedPosition = isIndexedPosition;
       seenIcyMetadata = false;
+      nextSeekIndexEntryCheckPosition = 0;
+      pendingSeekIndexEntryPosition = C.INDEX_UNSET;
+    }
+
+    /**
+     * Adds an entry for the input position of the previous attempt to the seek index, if enough
+     * data has been extracted since that attempt or if the end of the input has been reached.
+     *
+     * <p>The timestamp of the entry is the largest one queued at the current attempt rather than
+     * at its position. Samples that started before the position are only queued once complete, and
+     * reading from the position doesn't output them, so the timestamp has to include them.
+     */
+    private void maybeAddSeekIndexEntry(long position, @Extractor.ReadResult int result) {
+      if (position == C.INDEX_UNSET || result == Extractor.RESULT_SEEK) {
+        // The extractor continues from a different position.
+        nextSeekIndexEntryCheckPosition = 0;
+        pendingSeekIndexEntryPosition = C.INDEX_UNSET;
+        return;
+      }
+      if (result != Extractor.RESULT_END_OF_INPUT && position < nextSeekIndexEntryCheckPosition) {
+        return;
+      }
+      nextSeekIndexEntryCheckPosition = position + SEEK_INDEX_ENTRY_CHECK_INTERVAL_BYTES;
+      long timeUs = getLargestQueuedTimestampUs(/* includeDisabledTracks= */ true);
+      if (pendingSeekIndexEntryPosition != C.INDEX_UNSET
+          && timeUs != Long.MIN_VALUE
+          && checkNotNull(seekIndex).add(timeUs, pendingSeekIndexEntryPosition)) {
+        seekIndexModified = true;
+      }
+      pendingSeekIndexEntryPosition = position;
+    }
+  }
+
+  /**
+   * A {@link SeekMap} that resolves seek positions using a {@link SeekIndex} where it covers them,
+   * and otherwise delegates to the {@link SeekMap} output by the extractor.
+   */
+  private static final class IndexedSeekMap implements SeekMap {
+
+    private final SeekMap seekMap;
+    private final SeekIndex seekIndex;
+
+    public IndexedSeekMap(SeekMap seekMap, SeekIndex seekIndex) {
+      this.seekMap = seekMap;
+      this.seekIndex = seekIndex;
+    }
+
+    /**
+     * Returns the indexed position from which to load to seek to {@code timeUs}, or {@link
+     * C#INDEX_UNSET} if the index doesn't cover it.
+     */
+    public long getIndexedPosition(long timeUs) {
+      return seekIndex.getPosition(timeUs);
+    }
+
+    @Override
+    public boolean isSeekable() {
+      return seekMap.isSeekable();
+    }
+
+    @Override
+    public long getDurationUs() {
+      return seekMap.getDurationUs();
+    }
+
+    @Override
+    public SeekPoints getSeekPoints(long timeUs) {
+      long position = seekIndex.getPosition(timeUs);
+      return position != C.INDEX_UNSET
+          ? new SeekPoints(new SeekPoint(timeUs, position))
+          : seekMap.getSeekPoints(timeUs);
     }
   }
 
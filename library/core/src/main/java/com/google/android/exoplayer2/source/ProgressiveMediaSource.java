@@ -66,6 +66,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     private DrmSessionManagerProvider drmSessionManagerProvider;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private int continueLoadingCheckIntervalBytes;
+    @Nullable private SeekIndexStore seekIndexStore;
+    @Nullable private ExtractorSnapshotStore extractorSnapshotStore;
 
     /**
      * Creates a new factory for {@link ProgressiveMediaSource}s.
@@ -186,6 +188,45 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets the {@link SeekIndexStore} in which to persist a {@link SeekIndex} for streams that have
+     * no index of their own, such as MPEG-TS, MPEG-PS and FLAC streams without a seek table. The
+     * default value is {@code null}, in which case seeking in such streams searches the stream each
+     * time.
+     *
+     * <p>Seek indices are recorded while streams are extracted, and make seeks within the already
+     * extracted part of a stream resume extraction directly from a recorded position in later
+     * playbacks. A {@link CacheSeekIndexStore} persists them alongside the cached stream.
+     *
+     * @param seekIndexStore The {@link SeekIndexStore}, or {@code null}.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setSeekIndexStore(@Nullable SeekIndexStore seekIndexStore) {
+      this.seekIndexStore = seekIndexStore;
+      return this;
+    }
+
+    /**
+     * Sets the {@link ExtractorSnapshotStore} in which to persist an {@link ExtractorSnapshot} of
+     * the state read from the headers of streams whose extractor supports snapshots, such as
+     * unfragmented MP4 streams. The default value is {@code null}, in which case the headers are
+     * read each time a stream is prepared.
+     *
+     * <p>Snapshots are created once the headers of a stream have been read, and let later
+     * preparations of the same stream output its tracks and start loading samples without reading
+     * the headers. A {@link CacheExtractorSnapshotStore} persists them alongside the cached stream.
+     *
+     * @param extractorSnapshotStore The {@link ExtractorSnapshotStore}, or {@code null}.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setExtractorSnapshotStore(
+        @Nullable ExtractorSnapshotStore extractorSnapshotStore) {
+      this.extractorSnapshotStore = extractorSnapshotStore;
+      return this;
+    }
+
     @CanIgnoreReturnValue
     @Override
     public Factory setDrmSessionManagerProvider(
@@ -215,6 +256,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
           progressiveMediaExtractorFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
+          seekIndexStore,
+          extractorSnapshotStore,
           continueLoadingCheckIntervalBytes);
     }
 
@@ -236,6 +279,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
   private final ProgressiveMediaExtractor.Factory progressiveMediaExtractorFactory;
   private final DrmSessionManager drmSessionManager;
   private final LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy;
+  @Nullable private final SeekIndexStore seekIndexStore;
+  @Nullable private final ExtractorSnapshotStore extractorSnapshotStore;
   private final int continueLoadingCheckIntervalBytes;
 
   private boolean timelineIsPlaceholder;
@@ -250,6 +295,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       ProgressiveMediaExtractor.Factory progressiveMediaExtractorFactory,
       DrmSessionManager drmSessionManager,
       LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy,
+      @Nullable SeekIndexStore seekIndexStore,
+      @Nullable ExtractorSnapshotStore extractorSnapshotStore,
       int continueLoadingCheckIntervalBytes) {
     this.localConfiguration = checkNotNull(mediaItem.localConfiguration);
     this.mediaItem = mediaItem;
@@ -257,6 +304,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     this.progressiveMediaExtractorFactory = progressiveMediaExtractorFactory;
     this.drmSessionManager = drmSessionManager;
     this.loadableLoadErrorHandlingPolicy = loadableLoadErrorHandlingPolicy;
+    this.seekIndexStore = seekIndexStore;
+    this.extractorSnapshotStore = extractorSnapshotStore;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
     this.timelineIsPlaceholder = true;
     this.timelineDurationUs = C.TIME_UNSET;
@@ -298,6 +347,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
         this,
         allocator,
         localConfiguration.customCacheKey,
+        seekIndexStore,
+        extractorSnapshotStore,
         continueLoadingCheckIntervalBytes);
   }
 
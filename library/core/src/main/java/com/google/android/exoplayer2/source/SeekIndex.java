@@ -0,0 +1,214 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.IndexSeekableExtractor;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An index of positions in a progressive stream from which extraction can be resumed, recorded
+ * while the stream is extracted.
+ *
+ * <p>Each entry associates a byte position with the largest sample timestamp that had been
+ * extracted when that position was reached. Reading from the position therefore yields all samples
+ * with larger timestamps. An {@link IndexSeekableExtractor} can resume from such a position
+ * directly, which avoids searching the stream when seeking.
+ *
+ * <p>The index can be serialized, so that it can be persisted by a {@link SeekIndexStore} and used
+ * by later playbacks of the same stream.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class SeekIndex {
+
+  /**
+   * The initial minimum difference between the timestamps of two entries, in microseconds. It's
+   * doubled each time every second entry is removed.
+   */
+  @VisibleForTesting /* package */ static final long MIN_ENTRY_INTERVAL_US = 1_000_000;
+
+  /**
+   * The maximum difference between the timestamps of two adjacent entries for seeks between them to
+   * use the index, in microseconds, while the minimum entry interval is {@link
+   * #MIN_ENTRY_INTERVAL_US}. Larger gaps usually result from seeks during extraction, and resuming
+   * from the earlier entry would require reading too much data. The gap is scaled with the entry
+   * interval, so that the index remains usable after entries are removed.
+   */
+  @VisibleForTesting /* package */ static final long MAX_ENTRY_GAP_US = 10_000_000;
+
+  /**
+   * The maximum number of entries. When it's reached, every second entry is removed, so that the
+   * serialized index stays small for long streams.
+   */
+  @VisibleForTesting /* package */ static final int MAX_ENTRY_COUNT = 2048;
+
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 24;
+  private static final int ENTRY_SIZE = 16;
+
+  private final long contentLength;
+
+  private long entryIntervalUs;
+  private long[] timesUs;
+  private long[] positions;
+  private int size;
+
+  /**
+   * Creates an empty instance.
+   *
+   * @param contentLength The length of the stream in bytes. Used to detect when a persisted index
+   *     no longer matches the stream.
+   */
+  public SeekIndex(long contentLength) {
+    this.contentLength = contentLength;
+    entryIntervalUs = MIN_ENTRY_INTERVAL_US;
+    timesUs = new long[16];
+    positions = new long[16];
+  }
+
+  /**
+   * Returns an index deserialized from data returned by {@link #toByteArray()}, or {@code null} if
+   * the data is malformed or was written by an incompatible version.
+   */
+  @Nullable
+  public static SeekIndex fromByteArray(byte[] data) {
+    ParsableByteArray buffer = new ParsableByteArray(data);
+    if (buffer.bytesLeft() < HEADER_SIZE || buffer.readInt() != VERSION) {
+      return null;
+    }
+    long contentLength = buffer.readLong();
+    long entryIntervalUs = buffer.readLong();
+    int size = buffer.readInt();
+    if (entryIntervalUs < MIN_ENTRY_INTERVAL_US
+        || size < 0
+        || size > MAX_ENTRY_COUNT
+        || buffer.bytesLeft() != size * ENTRY_SIZE) {
+      return null;
+    }
+    SeekIndex seekIndex = new SeekIndex(contentLength);
+    seekIndex.entryIntervalUs = entryIntervalUs;
+    for (int i = 0; i < size; i++) {
+      long timeUs = buffer.readLong();
+      long position = buffer.readLong();
+      seekIndex.add(timeUs, position);
+    }
+    return seekIndex;
+  }
+
+  /** Returns the length of the stream in bytes. */
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  /** Returns the number of entries. */
+  public synchronized int getEntryCount() {
+    return size;
+  }
+
+  /**
+   * Adds an entry, unless it is within the minimum entry interval of an existing entry or
+   * inconsistent with the existing entries.
+   *
+   * @param timeUs The largest timestamp of the samples extracted before {@code position}, in
+   *     microseconds.
+   * @param position The position in the stream, in bytes.
+   * @return Whether the entry was added.
+   */
+  public synchronized boolean add(long timeUs, long position) {
+    int index = Arrays.binarySearch(timesUs, /* fromIndex= */ 0, /* toIndex= */ size, timeUs);
+    if (index >= 0) {
+      return false;
+    }
+    index = -index - 1;
+    if (index > 0
+        && (timeUs - timesUs[index - 1] < entryIntervalUs
+            || position < positions[index - 1])) {
+      return false;
+    }
+    if (index < size
+        && (timesUs[index] - timeUs < entryIntervalUs || position > positions[index])) {
+      return false;
+    }
+    if (size == timesUs.length) {
+      timesUs = Arrays.copyOf(timesUs, size * 2);
+      positions = Arrays.copyOf(positions, size * 2);
+    }
+    System.arraycopy(timesUs, index, timesUs, index + 1, size - index);
+    System.arraycopy(positions, index, positions, index + 1, size - index);
+    timesUs[index] = timeUs;
+    positions[index] = position;
+    size++;
+    if (size > MAX_ENTRY_COUNT) {
+      removeEverySecondEntry();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the position from which to resume extraction to obtain the samples at and after {@code
+   * timeUs}, or {@link C#INDEX_UNSET} if the index doesn't cover {@code timeUs}.
+   */
+  public synchronized long getPosition(long timeUs) {
+    int index = Arrays.binarySearch(timesUs, /* fromIndex= */ 0, /* toIndex= */ size, timeUs);
+    if (index < 0) {
+      // Use the entry before the insertion point.
+      index = -index - 2;
+    }
+    if (index < 0
+        || index == size - 1
+        || timesUs[index + 1] - timesUs[index]
+            > MAX_ENTRY_GAP_US / MIN_ENTRY_INTERVAL_US * entryIntervalUs) {
+      return C.INDEX_UNSET;
+    }
+    return positions[index];
+  }
+
+  /** Serializes the index. */
+  public synchronized byte[] toByteArray() {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size * ENTRY_SIZE);
+    buffer.putInt(VERSION);
+    buffer.putLong(contentLength);
+    buffer.putLong(entryIntervalUs);
+    buffer.putInt(size);
+    for (int i = 0; i < size; i++) {
+      buffer.putLong(timesUs[i]);
+      buffer.putLong(positions[i]);
+    }
+    return buffer.array();
+  }
+
+  private void removeEverySecondEntry() {
+    int newSize = 0;
+    for (int i = 0; i < size; i += 2) {
+      timesUs[newSize] = timesUs[i];
+      positions[newSize] = positions[i];
+      newSize++;
+    }
+    size = newSize;
+    entryIntervalUs *= 2;
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+
+import android.content.Context;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.offline.DownloadHelper;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.Util;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.HashMap;
+
+/**
+ * Preloads the start of upcoming {@link MediaItem MediaItems}, so that playback can start
+ * immediately once one of them is set on the player.
+ *
+ * <p>Items added with {@link #add(MediaItem)} are prepared and the first {@link
+ * Builder#setPreloadDurationMs(long) preload duration} of their media is loaded on the preload
+ * thread. The {@link MediaSource} returned by {@link #getMediaSource(MediaItem)} should then be set
+ * on the player with {@link com.google.android.exoplayer2.ExoPlayer#setMediaSource(MediaSource)}.
+ *
+ * <p>The preload looper must be the playback looper of the player (see {@link
+ * com.google.android.exoplayer2.ExoPlayer.Builder#setPlaybackLooper(Looper)}), and the {@link
+ * LoadControl} must be the one of the player (see {@link
+ * com.google.android.exoplayer2.ExoPlayer.Builder#setLoadControl(LoadControl)}), so that the media
+ * loaded while preloading is allocated from, and counted by, the player's {@link Allocator}. The
+ * same {@link BandwidthMeter} should be set on the player so that preloading transfers inform its
+ * bandwidth estimate.
+ *
+ * <p>Instances must be accessed from a single application thread.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class PreloadManager {
+
+  /** The default duration of media to preload for each item, in milliseconds. */
+  public static final long DEFAULT_PRELOAD_DURATION_MS = 5_000;
+
+  /**
+   * A builder for {@link PreloadManager} instances.
+   *
+   * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3
+   *     (which contains the same ExoPlayer code). See <a
+   *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+   *     migration guide</a> for more details, including a script to help with the migration.
+   */
+  @Deprecated
+  public static final class Builder {
+
+    private final Context context;
+    private final Looper preloadLooper;
+    private final LoadControl loadControl;
+    @Nullable private MediaSource.Factory mediaSourceFactory;
+    @Nullable private TrackSelector trackSelector;
+    @Nullable private BandwidthMeter bandwidthMeter;
+    @Nullable private RenderersFactory renderersFactory;
+    private long preloadDurationMs;
+    private boolean buildCalled;
+
+    /**
+     * Creates a builder.
+     *
+     * @param context A {@link Context}.
+     * @param preloadLooper The {@link Looper} of the thread on which preloading happens. Must be
+     *     the playback looper of the player.
+     * @param loadControl The {@link LoadControl} whose {@link Allocator} is used by the preloaded
+     *     periods. Must be the load control of the player.
+     */
+    public Builder(Context context, Looper preloadLooper, LoadControl loadControl) {
+      this.context = context.getApplicationContext();
+      this.preloadLooper = preloadLooper;
+      this.loadControl = loadControl;
+      preloadDurationMs = DEFAULT_PRELOAD_DURATION_MS;
+    }
+
+    /**
+     * Sets the {@link MediaSource.Factory} used to create the sources of added items. The default
+     * is a {@link DefaultMediaSourceFactory}.
+     *
+     * @param mediaSourceFactory A {@link MediaSource.Factory}.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMediaSourceFactory(MediaSource.Factory mediaSourceFactory) {
+      checkState(!buildCalled);
+      this.mediaSourceFactory = mediaSourceFactory;
+      return this;
+    }
+
+    /**
+     * Sets the {@link TrackSelector} used to select the preloaded tracks. It's initialized by the
+     * {@link PreloadManager}, so it must not be the track selector of the player. The default is a
+     * {@link DefaultTrackSelector}.
+     *
+     * @param trackSelector A {@link TrackSelector}.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTrackSelector(TrackSelector trackSelector) {
+      checkState(!buildCalled);
+      this.trackSelector = trackSelector;
+      return this;
+    }
+
+    /**
+     * Sets the {@link BandwidthMeter} notified of the preloading transfers. The default is the
+     * singleton {@link DefaultBandwidthMeter}.
+     *
+     * @param bandwidthMeter A {@link BandwidthMeter}.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setBandwidthMeter(BandwidthMeter bandwidthMeter) {
+      checkState(!buildCalled);
+      this.bandwidthMeter = bandwidthMeter;
+      return this;
+    }
+
+    /**
+     * Sets the {@link RenderersFactory} whose renderer capabilities are used to select the
+     * preloaded tracks. The default is a {@link DefaultRenderersFactory}.
+     *
+     * @param renderersFactory A {@link RenderersFactory}.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setRenderersFactory(RenderersFactory renderersFactory) {
+      checkState(!buildCalled);
+      this.renderersFactory = renderersFactory;
+      return this;
+    }
+
+    /**
+     * Sets the duration of media to preload for each item, in milliseconds. The default is {@link
+     * #DEFAULT_PRELOAD_DURATION_MS}.
+     *
+     * @param preloadDurationMs The duration of media to preload, in milliseconds.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setPreloadDurationMs(long preloadDurationMs) {
+      checkState(!buildCalled);
+      checkArgument(preloadDurationMs >= 0);
+      this.preloadDurationMs = preloadDurationMs;
+      return this;
+    }
+
+    /**
+     * Builds a {@link PreloadManager}.
+     *
+     * @throws IllegalStateException If this method has already been called.
+     */
+    public PreloadManager build() {
+      checkState(!buildCalled);
+      buildCalled = true;
+      if (mediaSourceFactory == null) {
+        mediaSourceFactory = new DefaultMediaSourceFactory(context);
+      }
+      if (trackSelector == null) {
+        trackSelector = new DefaultTrackSelector(context);
+      }
+      if (bandwidthMeter == null) {
+        bandwidthMeter = DefaultBandwidthMeter.getSingletonInstance(context);
+      }
+      if (renderersFactory == null) {
+        renderersFactory = new DefaultRenderersFactory(context);
+      }
+      return new PreloadManager(this);
+    }
+  }
+
+  private final MediaSource.Factory mediaSourceFactory;
+  private final TrackSelector trackSelector;
+  private final BandwidthMeter bandwidthMeter;
+  private final RendererCapabilities[] rendererCapabilities;
+  private final Allocator allocator;
+  private final Looper preloadLooper;
+  private final long preloadDurationUs;
+  private final PreloadMediaSource.PreloadControl preloadControl;
+  private final HashMap<MediaItem, PreloadMediaSource> mediaSources;
+
+  private boolean released;
+
+  @SuppressWarnings("nullness:argument") // Builder fields are non-null after build().
+  private PreloadManager(Builder builder) {
+    mediaSourceFactory = builder.mediaSourceFactory;
+    trackSelector = builder.trackSelector;
+    bandwidthMeter = builder.bandwidthMeter;
+    rendererCapabilities = DownloadHelper.getRendererCapabilities(builder.renderersFactory);
+    allocator = builder.loadControl.getAllocator();
+    preloadLooper = builder.preloadLooper;
+    preloadDurationUs = Util.msToUs(builder.preloadDurationMs);
+    preloadControl =
+        (mediaSource, bufferedDurationUs) -> bufferedDurationUs < preloadDurationUs;
+    mediaSources = new HashMap<>();
+    trackSelector.init(/* listener= */ () -> {}, bandwidthMeter);
+  }
+
+  /**
+   * Adds a {@link MediaItem} to preload. Does nothing if the item was already added.
+   *
+   * @param mediaItem The {@link MediaItem} to preload.
+   */
+  public void add(MediaItem mediaItem) {
+    checkState(!released);
+    if (mediaSources.containsKey(mediaItem)) {
+      return;
+    }
+    PreloadMediaSource mediaSource =
+        new PreloadMediaSource(
+            mediaSourceFactory.createMediaSource(mediaItem),
+            preloadControl,
+            trackSelector,
+            bandwidthMeter,
+            rendererCapabilities,
+            allocator,
+            preloadLooper);
+    mediaSources.put(mediaItem, mediaSource);
+    mediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+  }
+
+  /**
+   * Returns the {@link MediaSource} to set on the player to play a {@link MediaItem}, or null if
+   * the item wasn't {@link #add(MediaItem) added}.
+   *
+   * @param mediaItem The {@link MediaItem}.
+   */
+  @Nullable
+  public MediaSource getMediaSource(MediaItem mediaItem) {
+    return mediaSources.get(mediaItem);
+  }
+
+  /**
+   * Removes a {@link MediaItem} and releases the resources held for preloading it. Its {@link
+   * MediaSource} can still be used by the player.
+   *
+   * @param mediaItem The {@link MediaItem} to remove.
+   */
+  public void remove(MediaItem mediaItem) {
+    @Nullable PreloadMediaSource mediaSource = mediaSources.remove(mediaItem);
+    if (mediaSource != null) {
+      mediaSource.releasePreloadMediaSource();
+    }
+  }
+
+  /** Releases the manager and the resources held for preloading all items. */
+  public void release() {
+    if (released) {
+      return;
+    }
+    released = true;
+    for (PreloadMediaSource mediaSource : mediaSources.values()) {
+      mediaSource.releasePreloadMediaSource();
+    }
+    mediaSources.clear();
+    trackSelector.release();
+  }
+}
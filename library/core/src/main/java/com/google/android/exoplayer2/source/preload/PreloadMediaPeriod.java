@@ -0,0 +1,301 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.offline.StreamKey;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import java.io.IOException;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A {@link MediaPeriod} that can be prepared, have its tracks selected and load media before it's
+ * handed over to a player.
+ *
+ * <p>If the player selects the same tracks as were selected for preloading, the sample streams
+ * created for preloading, and the media they already loaded, are retained by the wrapped period and
+ * bound to the player's track selections.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class PreloadMediaPeriod implements MediaPeriod, MediaPeriod.Callback {
+
+  /** The wrapped {@link MediaPeriod}. */
+  public final MediaPeriod mediaPeriod;
+
+  @Nullable private Callback callback;
+  private boolean preparing;
+  private boolean prepared;
+  private boolean preparedByPlayer;
+  @Nullable private PreloadTrackSelection preloadTrackSelection;
+
+  /**
+   * Creates an instance.
+   *
+   * @param mediaPeriod The {@link MediaPeriod} to wrap.
+   */
+  public PreloadMediaPeriod(MediaPeriod mediaPeriod) {
+    this.mediaPeriod = mediaPeriod;
+  }
+
+  /**
+   * Prepares the period for preloading.
+   *
+   * @param callback The {@link Callback} notified while the period is preloading. It's replaced by
+   *     the player's callback once the player prepares the period.
+   * @param positionUs The position at which to start preloading, in microseconds.
+   */
+  public void preload(Callback callback, long positionUs) {
+    this.callback = callback;
+    if (prepared) {
+      callback.onPrepared(this);
+    } else if (!preparing) {
+      preparing = true;
+      mediaPeriod.prepare(/* callback= */ this, positionUs);
+    }
+  }
+
+  /**
+   * Selects tracks for preloading. Must only be called after the period is prepared and before the
+   * player selects tracks.
+   *
+   * @param selections The track selections for preloading.
+   * @param positionUs The position at which to start preloading, in microseconds.
+   * @return The actual position at which the tracks were enabled, in microseconds.
+   */
+  public long selectTracksForPreloading(
+      @NullableType ExoTrackSelection[] selections, long positionUs) {
+    @NullableType SampleStream[] streams = new SampleStream[selections.length];
+    boolean[] streamResetFlags = new boolean[selections.length];
+    long trackSelectionPositionUs =
+        mediaPeriod.selectTracks(
+            selections,
+            /* mayRetainStreamFlags= */ new boolean[selections.length],
+            streams,
+            streamResetFlags,
+            positionUs);
+    preloadTrackSelection =
+        new PreloadTrackSelection(
+            selections, streams, streamResetFlags, positionUs, trackSelectionPositionUs);
+    return trackSelectionPositionUs;
+  }
+
+  // MediaPeriod implementation.
+
+  @Override
+  public void prepare(Callback callback, long positionUs) {
+    this.callback = callback;
+    preparedByPlayer = true;
+    if (prepared) {
+      callback.onPrepared(this);
+    } else if (!preparing) {
+      // If preparation was already started for preloading, the player is notified once it
+      // completes.
+      preparing = true;
+      mediaPeriod.prepare(/* callback= */ this, positionUs);
+    }
+  }
+
+  @Override
+  public void maybeThrowPrepareError() throws IOException {
+    mediaPeriod.maybeThrowPrepareError();
+  }
+
+  @Override
+  public TrackGroupArray getTrackGroups() {
+    return mediaPeriod.getTrackGroups();
+  }
+
+  @Override
+  public List<StreamKey> getStreamKeys(List<ExoTrackSelection> trackSelections) {
+    return mediaPeriod.getStreamKeys(trackSelections);
+  }
+
+  @Override
+  public long selectTracks(
+      @NullableType ExoTrackSelection[] selections,
+      boolean[] mayRetainStreamFlags,
+      @NullableType SampleStream[] streams,
+      boolean[] streamResetFlags,
+      long positionUs) {
+    @Nullable PreloadTrackSelection preloadTrackSelection = this.preloadTrackSelection;
+    this.preloadTrackSelection = null;
+    if (preloadTrackSelection == null) {
+      return mediaPeriod.selectTracks(
+          selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+    }
+    preloadTrackSelection.disableSelections();
+    @NullableType SampleStream[] preloadedStreams = preloadTrackSelection.streams;
+    if (preloadedStreams.length == streams.length) {
+      // Let the wrapped period retain the preloaded streams whose tracks the player selected too,
+      // and the media they have loaded. Retained streams are bound to the player's selections,
+      // which may adapt differently from the ones used for preloading.
+      boolean[] mayRetainPreloadedStreamFlags = new boolean[selections.length];
+      if (preloadTrackSelection.positionUs == positionUs) {
+        for (int i = 0; i < selections.length; i++) {
+          mayRetainPreloadedStreamFlags[i] =
+              preloadTrackSelection.hasSameSelection(/* index= */ i, selections[i]);
+        }
+      }
+      System.arraycopy(preloadedStreams, 0, streams, 0, streams.length);
+      long trackSelectionPositionUs =
+          mediaPeriod.selectTracks(
+              selections, mayRetainPreloadedStreamFlags, streams, streamResetFlags, positionUs);
+      for (int i = 0; i < streamResetFlags.length; i++) {
+        if (mayRetainPreloadedStreamFlags[i] && streams[i] == preloadedStreams[i]) {
+          // The player hasn't read from the stream yet, so report whether it was reset when it was
+          // created for preloading.
+          streamResetFlags[i] |= preloadTrackSelection.streamResetFlags[i];
+        }
+      }
+      return trackSelectionPositionUs;
+    }
+    // The number of renderers differs, so disable all preloaded streams first.
+    mediaPeriod.selectTracks(
+        new ExoTrackSelection[preloadedStreams.length],
+        /* mayRetainStreamFlags= */ new boolean[preloadedStreams.length],
+        preloadedStreams.clone(),
+        new boolean[preloadedStreams.length],
+        positionUs);
+    return mediaPeriod.selectTracks(
+        selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+  }
+
+  @Override
+  public void discardBuffer(long positionUs, boolean toKeyframe) {
+    mediaPeriod.discardBuffer(positionUs, toKeyframe);
+  }
+
+  @Override
+  public long readDiscontinuity() {
+    return mediaPeriod.readDiscontinuity();
+  }
+
+  @Override
+  public long seekToUs(long positionUs) {
+    return mediaPeriod.seekToUs(positionUs);
+  }
+
+  @Override
+  public long getAdjustedSeekPositionUs(long positionUs, SeekParameters seekParameters) {
+    return mediaPeriod.getAdjustedSeekPositionUs(positionUs, seekParameters);
+  }
+
+  @Override
+  public long getBufferedPositionUs() {
+    return mediaPeriod.getBufferedPositionUs();
+  }
+
+  @Override
+  public long getNextLoadPositionUs() {
+    return mediaPeriod.getNextLoadPositionUs();
+  }
+
+  @Override
+  public boolean continueLoading(long positionUs) {
+    return mediaPeriod.continueLoading(positionUs);
+  }
+
+  @Override
+  public boolean isLoading() {
+    return mediaPeriod.isLoading();
+  }
+
+  @Override
+  public void reevaluateBuffer(long positionUs) {
+    mediaPeriod.reevaluateBuffer(positionUs);
+  }
+
+  // MediaPeriod.Callback implementation.
+
+  @Override
+  public void onPrepared(MediaPeriod mediaPeriod) {
+    prepared = true;
+    checkNotNull(callback).onPrepared(/* mediaPeriod= */ this);
+  }
+
+  @Override
+  public void onContinueLoadingRequested(MediaPeriod mediaPeriod) {
+    checkNotNull(callback).onContinueLoadingRequested(/* source= */ this);
+  }
+
+  /** Returns whether the player has prepared the period. */
+  public boolean isPreparedByPlayer() {
+    return preparedByPlayer;
+  }
+
+  private static final class PreloadTrackSelection {
+
+    public final @NullableType ExoTrackSelection[] selections;
+    public final @NullableType SampleStream[] streams;
+    public final boolean[] streamResetFlags;
+    public final long positionUs;
+    public final long trackSelectionPositionUs;
+
+    public PreloadTrackSelection(
+        @NullableType ExoTrackSelection[] selections,
+        @NullableType SampleStream[] streams,
+        boolean[] streamResetFlags,
+        long positionUs,
+        long trackSelectionPositionUs) {
+      this.selections = selections;
+      this.streams = streams;
+      this.streamResetFlags = streamResetFlags;
+      this.positionUs = positionUs;
+      this.trackSelectionPositionUs = trackSelectionPositionUs;
+    }
+
+    /** Disables the selections used for preloading, which the player doesn't use. */
+    public void disableSelections() {
+      for (@Nullable ExoTrackSelection selection : selections) {
+        if (selection != null) {
+          selection.disable();
+        }
+      }
+    }
+
+    /**
+     * Returns whether the preloading selection at {@code index} is non-null and selects the same
+     * tracks as {@code otherSelection}.
+     */
+    public boolean hasSameSelection(int index, @Nullable ExoTrackSelection otherSelection) {
+      @Nullable ExoTrackSelection selection = selections[index];
+      if (selection == null
+          || otherSelection == null
+          || !selection.getTrackGroup().equals(otherSelection.getTrackGroup())
+          || selection.length() != otherSelection.length()) {
+        return false;
+      }
+      for (int i = 0; i < selection.length(); i++) {
+        if (selection.getIndexInTrackGroup(i) != otherSelection.getIndexInTrackGroup(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Pair;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.WrappingMediaSource;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectorResult;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * A {@link MediaSource} that can prepare the wrapped source, and load the start of its media,
+ * before it's set on a player.
+ *
+ * <p>Preloading is started by {@link #preload(long)}. The source is prepared, a period is created
+ * at the requested position, tracks are selected using the provided {@link TrackSelector} and media
+ * is loaded for as long as the {@link PreloadControl} allows. When the player later creates a
+ * period at the same position, the preloaded period is handed over to it so playback can start
+ * from the media that is already loaded.
+ *
+ * <p>Preloading happens on the thread of the {@code preloadLooper} passed to the constructor, which
+ * must be the playback looper of the player the source will be set on (see {@link
+ * com.google.android.exoplayer2.ExoPlayer.Builder#setPlaybackLooper(Looper)}).
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class PreloadMediaSource extends WrappingMediaSource {
+
+  /** Controls how much media a {@link PreloadMediaSource} loads while preloading. */
+  public interface PreloadControl {
+
+    /**
+     * Called on the preload thread when the source wants to continue loading.
+     *
+     * @param mediaSource The {@link PreloadMediaSource} that is preloading.
+     * @param bufferedDurationUs The duration of media that has been loaded from the preload start
+     *     position, in microseconds.
+     * @return Whether the source should continue loading.
+     */
+    boolean onContinueLoadingRequested(PreloadMediaSource mediaSource, long bufferedDurationUs);
+  }
+
+  private static final String TAG = "PreloadMediaSource";
+
+  private final PreloadControl preloadControl;
+  private final TrackSelector trackSelector;
+  private final BandwidthMeter bandwidthMeter;
+  private final RendererCapabilities[] rendererCapabilities;
+  private final Allocator allocator;
+  private final Handler preloadHandler;
+
+  // Accessed on the preload thread only.
+  @Nullable private MediaSourceCaller preloadCaller;
+  @Nullable private PreloadMediaPeriod preloadMediaPeriod;
+  @Nullable private MediaPeriodId preloadMediaPeriodId;
+  private long preloadStartPositionUs;
+  private long preloadPeriodPositionUs;
+  private long preloadLoadingPositionUs;
+  private boolean periodCreatedByPlayer;
+
+  /**
+   * Creates an instance.
+   *
+   * @param mediaSource The {@link MediaSource} to wrap.
+   * @param preloadControl The {@link PreloadControl} that decides how much media is preloaded.
+   * @param trackSelector The {@link TrackSelector} used to select the tracks that are preloaded.
+   *     It must be initialized.
+   * @param bandwidthMeter The {@link BandwidthMeter} notified of the preloading transfers.
+   * @param rendererCapabilities The {@link RendererCapabilities} of the renderers of the player.
+   * @param allocator The {@link Allocator} used by the preloaded period.
+   * @param preloadLooper The {@link Looper} of the thread on which preloading happens. Must be the
+   *     playback looper of the player the source will be set on.
+   */
+  public PreloadMediaSource(
+      MediaSource mediaSource,
+      PreloadControl preloadControl,
+      TrackSelector trackSelector,
+      BandwidthMeter bandwidthMeter,
+      RendererCapabilities[] rendererCapabilities,
+      Allocator allocator,
+      Looper preloadLooper) {
+    super(mediaSource);
+    this.preloadControl = preloadControl;
+    this.trackSelector = trackSelector;
+    this.bandwidthMeter = bandwidthMeter;
+    this.rendererCapabilities = rendererCapabilities;
+    this.allocator = allocator;
+    preloadHandler = Util.createHandler(preloadLooper, /* callback= */ null);
+    preloadStartPositionUs = C.TIME_UNSET;
+  }
+
+  /**
+   * Starts preloading. Does nothing if preloading was already started.
+   *
+   * <p>Can be called from any thread.
+   *
+   * @param startPositionUs The position in the window at which to start preloading, in
+   *     microseconds, or {@link C#TIME_UNSET} to preload from the default position.
+   */
+  public void preload(long startPositionUs) {
+    preloadHandler.post(
+        () -> {
+          if (preloadCaller != null) {
+            return;
+          }
+          preloadStartPositionUs = startPositionUs;
+          preloadCaller = (source, timeline) -> onPreloadTimelineRefreshed(timeline);
+          mediaSource.prepareSource(
+              preloadCaller, bandwidthMeter.getTransferListener(), PlayerId.UNSET);
+        });
+  }
+
+  /**
+   * Releases the resources held for preloading. The source can still be used by a player after
+   * calling this method, but it may need to prepare again.
+   *
+   * <p>Can be called from any thread.
+   */
+  public void releasePreloadMediaSource() {
+    preloadHandler.post(
+        () -> {
+          if (preloadMediaPeriod != null) {
+            mediaSource.releasePeriod(preloadMediaPeriod.mediaPeriod);
+            preloadMediaPeriod = null;
+            preloadMediaPeriodId = null;
+          }
+          if (preloadCaller != null) {
+            mediaSource.releaseSource(preloadCaller);
+            preloadCaller = null;
+          }
+        });
+  }
+
+  @Override
+  public MediaPeriod createPeriod(MediaPeriodId id, Allocator allocator, long startPositionUs) {
+    periodCreatedByPlayer = true;
+    @Nullable PreloadMediaPeriod preloadMediaPeriod = this.preloadMediaPeriod;
+    @Nullable MediaPeriodId preloadMediaPeriodId = this.preloadMediaPeriodId;
+    this.preloadMediaPeriod = null;
+    this.preloadMediaPeriodId = null;
+    if (preloadMediaPeriod != null && preloadMediaPeriodId != null) {
+      if (!id.isAd()
+          && id.periodUid.equals(preloadMediaPeriodId.periodUid)
+          && startPositionUs == preloadPeriodPositionUs) {
+        return preloadMediaPeriod;
+      }
+      mediaSource.releasePeriod(preloadMediaPeriod.mediaPeriod);
+    }
+    return new PreloadMediaPeriod(mediaSource.createPeriod(id, allocator, startPositionUs));
+  }
+
+  @Override
+  public void releasePeriod(MediaPeriod mediaPeriod) {
+    mediaSource.releasePeriod(((PreloadMediaPeriod) mediaPeriod).mediaPeriod);
+  }
+
+  private void onPreloadTimelineRefreshed(Timeline timeline) {
+    if (periodCreatedByPlayer || preloadMediaPeriod != null || timeline.isEmpty()) {
+      return;
+    }
+    Timeline.Window window = timeline.getWindow(/* windowIndex= */ 0, new Timeline.Window());
+    if (window.isPlaceholder) {
+      return;
+    }
+    Pair<Object, Long> periodPosition =
+        timeline.getPeriodPositionUs(
+            window, new Timeline.Period(), /* windowIndex= */ 0, preloadStartPositionUs);
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(periodPosition.first);
+    long periodPositionUs = periodPosition.second;
+    PreloadMediaPeriod mediaPeriod =
+        new PreloadMediaPeriod(
+            mediaSource.createPeriod(mediaPeriodId, allocator, periodPositionUs));
+    preloadMediaPeriod = mediaPeriod;
+    preloadMediaPeriodId = mediaPeriodId;
+    preloadPeriodPositionUs = periodPositionUs;
+    mediaPeriod.preload(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod preparedMediaPeriod) {
+            onPreloadMediaPeriodPrepared(mediaPeriod, mediaPeriodId, timeline);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            maybeContinuePreloading(mediaPeriod);
+          }
+        },
+        periodPositionUs);
+  }
+
+  private void onPreloadMediaPeriodPrepared(
+      PreloadMediaPeriod mediaPeriod, MediaPeriodId mediaPeriodId, Timeline timeline) {
+    if (mediaPeriod != preloadMediaPeriod) {
+      return;
+    }
+    TrackSelectorResult trackSelectorResult;
+    try {
+      trackSelectorResult =
+          trackSelector.selectTracks(
+              rendererCapabilities, mediaPeriod.getTrackGroups(), mediaPeriodId, timeline);
+    } catch (ExoPlaybackException e) {
+      Log.e(TAG, "Failed to select tracks for preloading", e);
+      return;
+    }
+    for (@Nullable ExoTrackSelection selection : trackSelectorResult.selections) {
+      if (selection != null) {
+        selection.enable();
+      }
+    }
+    preloadLoadingPositionUs =
+        mediaPeriod.selectTracksForPreloading(
+            trackSelectorResult.selections, preloadPeriodPositionUs);
+    maybeContinuePreloading(mediaPeriod);
+  }
+
+  private void maybeContinuePreloading(PreloadMediaPeriod mediaPeriod) {
+    if (mediaPeriod != preloadMediaPeriod) {
+      return;
+    }
+    long bufferedPositionUs = mediaPeriod.getBufferedPositionUs();
+    if (bufferedPositionUs == C.TIME_END_OF_SOURCE) {
+      return;
+    }
+    if (preloadControl.onContinueLoadingRequested(
+        /* mediaSource= */ this, bufferedPositionUs - preloadLoadingPositionUs)) {
+      mediaPeriod.continueLoading(preloadLoadingPositionUs);
+    }
+  }
+}
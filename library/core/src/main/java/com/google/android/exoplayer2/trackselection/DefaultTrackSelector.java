@@ -61,6 +61,7 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Ints;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
@@ -2209,6 +2210,12 @@ public class DefaultTrackSelector extends MappingTrackSelector
   /** Ordering where all elements are equal. */
   private static final Ordering<Integer> NO_ORDER = Ordering.from((first, second) -> 0);
 
+  /**
+   * The number of track groups whose possible selections are cached, above which the cache is
+   * cleared before selecting tracks.
+   */
+  private static final int MAX_POSSIBLE_SELECTIONS_CACHE_SIZE = 256;
+
   private final Object lock;
   @Nullable public final Context context;
   private final ExoTrackSelection.Factory trackSelectionFactory;
@@ -2224,6 +2231,18 @@ public class DefaultTrackSelector extends MappingTrackSelector
   @GuardedBy("lock")
   private AudioAttributes audioAttributes;
 
+  /**
+   * Incremented when an input of the track selection changes, other than the mapped tracks, the
+   * overrides and the disabled flags. Invalidates {@link #possibleSelectionsCache}.
+   */
+  @GuardedBy("lock")
+  private int selectionInputsGeneration;
+
+  // Only accessed on the thread selecting tracks.
+  private final HashMap<PossibleSelectionsKey, List<?>> possibleSelectionsCache;
+  private int possibleSelectionsCacheGeneration;
+  @Nullable private Parameters possibleSelectionsCacheParameters;
+
   /**
    * @param context Any {@link Context}.
    */
@@ -2296,6 +2315,7 @@ public class DefaultTrackSelector extends MappingTrackSelector
       this.parameters = defaultParameters.buildUpon().set(parameters).build();
     }
     this.audioAttributes = AudioAttributes.DEFAULT;
+    this.possibleSelectionsCache = new HashMap<>();
     this.deviceIsTV = context != null && Util.isTv(context);
     if (!deviceIsTV && context != null && Util.SDK_INT >= 32) {
       spatializer = SpatializerWrapperV32.tryCreateInstance(context);
@@ -2382,6 +2402,11 @@ public class DefaultTrackSelector extends MappingTrackSelector
     boolean parametersChanged;
     synchronized (lock) {
       parametersChanged = !this.parameters.equals(parameters);
+      if (parametersChanged
+          && !clearOverridesAndDisabledFlags(this.parameters)
+              .equals(clearOverridesAndDisabledFlags(parameters))) {
+        selectionInputsGeneration++;
+      }
       this.parameters = parameters;
     }
 
@@ -2418,8 +2443,10 @@ public class DefaultTrackSelector extends MappingTrackSelector
           Timeline timeline)
           throws ExoPlaybackException {
     Parameters parameters;
+    int selectionInputsGeneration;
     synchronized (lock) {
       parameters = this.parameters;
+      selectionInputsGeneration = this.selectionInputsGeneration;
       if (parameters.constrainAudioChannelCountToDeviceCapabilities
           && Util.SDK_INT >= 32
           && spatializer != null) {
@@ -2428,13 +2455,24 @@ public class DefaultTrackSelector extends MappingTrackSelector
         spatializer.ensureInitialized(this, checkStateNotNull(Looper.myLooper()));
       }
     }
+    if (possibleSelectionsCacheGeneration != selectionInputsGeneration
+        || possibleSelectionsCache.size() > MAX_POSSIBLE_SELECTIONS_CACHE_SIZE) {
+      possibleSelectionsCache.clear();
+      possibleSelectionsCacheGeneration = selectionInputsGeneration;
+    }
     int rendererCount = mappedTrackInfo.getRendererCount();
-    ExoTrackSelection.@NullableType Definition[] definitions =
-        selectAllTracks(
-            mappedTrackInfo,
-            rendererFormatSupports,
-            rendererMixedMimeTypeAdaptationSupport,
-            parameters);
+    ExoTrackSelection.@NullableType Definition[] definitions;
+    possibleSelectionsCacheParameters = parameters;
+    try {
+      definitions =
+          selectAllTracks(
+              mappedTrackInfo,
+              rendererFormatSupports,
+              rendererMixedMimeTypeAdaptationSupport,
+              parameters);
+    } finally {
+      possibleSelectionsCacheParameters = null;
+    }
 
     applyTrackSelectionOverrides(mappedTrackInfo, parameters, definitions);
     applyLegacyRendererOverrides(mappedTrackInfo, parameters, definitions);
@@ -2585,7 +2623,9 @@ public class DefaultTrackSelector extends MappingTrackSelector
         (int rendererIndex, TrackGroup group, @Capabilities int[] support) ->
             VideoTrackInfo.createForTrackGroup(
                 rendererIndex, group, params, support, mixedMimeTypeSupports[rendererIndex]),
-        VideoTrackInfo::compareSelections);
+        VideoTrackInfo::compareSelections,
+        params,
+        /* typeSpecificInputs= */ Ints.asList(mixedMimeTypeSupports));
   }
 
   // Audio track selection implementation.
@@ -2620,6 +2660,7 @@ public class DefaultTrackSelector extends MappingTrackSelector
       }
     }
     boolean hasVideoRendererWithMappedTracksFinal = hasVideoRendererWithMappedTracks;
+    ImmutableList<String> localeLanguages = ImmutableList.copyOf(Util.getSystemLanguageCodes());
     return selectTracksForType(
         C.TRACK_TYPE_AUDIO,
         mappedTrackInfo,
@@ -2631,8 +2672,12 @@ public class DefaultTrackSelector extends MappingTrackSelector
                 params,
                 support,
                 hasVideoRendererWithMappedTracksFinal,
+                localeLanguages,
                 this::isAudioFormatWithinAudioChannelCountConstraints),
-        AudioTrackInfo::compareSelections);
+        AudioTrackInfo::compareSelections,
+        params,
+        /* typeSpecificInputs= */ ImmutableList.of(
+            hasVideoRendererWithMappedTracksFinal, localeLanguages));
   }
 
   /**
@@ -2700,7 +2745,9 @@ public class DefaultTrackSelector extends MappingTrackSelector
         (int rendererIndex, TrackGroup group, @Capabilities int[] support) ->
             TextTrackInfo.createForTrackGroup(
                 rendererIndex, group, params, support, selectedAudioLanguage),
-        TextTrackInfo::compareSelections);
+        TextTrackInfo::compareSelections,
+        params,
+        /* typeSpecificInputs= */ selectedAudioLanguage);
   }
 
   // Generic track selection methods.
@@ -2751,7 +2798,12 @@ public class DefaultTrackSelector extends MappingTrackSelector
       MappedTrackInfo mappedTrackInfo,
       @Capabilities int[][][] formatSupport,
       TrackInfo.Factory<T> trackInfoFactory,
-      Comparator<List<T>> selectionComparator) {
+      Comparator<List<T>> selectionComparator,
+      Parameters params,
+      @Nullable Object typeSpecificInputs) {
+    // The possible selections only depend on the arguments, so they can be reused for as long as
+    // the parameters of the current selection and the other inputs are unchanged.
+    boolean useCache = params == possibleSelectionsCacheParameters;
     ArrayList<List<T>> possibleSelections = new ArrayList<>();
     int rendererCount = mappedTrackInfo.getRendererCount();
     for (int rendererIndex = 0; rendererIndex < rendererCount; rendererIndex++) {
@@ -2760,32 +2812,25 @@ public class DefaultTrackSelector extends MappingTrackSelector
         for (int groupIndex = 0; groupIndex < groups.length; groupIndex++) {
           TrackGroup trackGroup = groups.get(groupIndex);
           @Capabilities int[] groupSupport = formatSupport[rendererIndex][groupIndex];
-          List<T> trackInfos = trackInfoFactory.create(rendererIndex, trackGroup, groupSupport);
-          boolean[] usedTrackInSelection = new boolean[trackGroup.length];
-          for (int trackIndex = 0; trackIndex < trackGroup.length; trackIndex++) {
-            T trackInfo = trackInfos.get(trackIndex);
-            @SelectionEligibility int eligibility = trackInfo.getSelectionEligibility();
-            if (usedTrackInSelection[trackIndex] || eligibility == SELECTION_ELIGIBILITY_NO) {
-              continue;
-            }
-            List<T> selection;
-            if (eligibility == SELECTION_ELIGIBILITY_FIXED) {
-              selection = ImmutableList.of(trackInfo);
-            } else {
-              selection = new ArrayList<>();
-              selection.add(trackInfo);
-              for (int i = trackIndex + 1; i < trackGroup.length; i++) {
-                T otherTrackInfo = trackInfos.get(i);
-                if (otherTrackInfo.getSelectionEligibility() == SELECTION_ELIGIBILITY_ADAPTIVE) {
-                  if (trackInfo.isCompatibleForAdaptationWith(otherTrackInfo)) {
-                    selection.add(otherTrackInfo);
-                    usedTrackInSelection[i] = true;
-                  }
-                }
-              }
-            }
-            possibleSelections.add(selection);
+          if (!useCache) {
+            possibleSelections.addAll(
+                getPossibleSelections(
+                    trackInfoFactory.create(rendererIndex, trackGroup, groupSupport)));
+            continue;
+          }
+          PossibleSelectionsKey key =
+              new PossibleSelectionsKey(
+                  trackType, rendererIndex, trackGroup, groupSupport, typeSpecificInputs);
+          @SuppressWarnings("unchecked") // Keys include the track type, which determines T.
+          @Nullable
+          List<List<T>> groupSelections = (List<List<T>>) possibleSelectionsCache.get(key);
+          if (groupSelections == null) {
+            groupSelections =
+                getPossibleSelections(
+                    trackInfoFactory.create(rendererIndex, trackGroup, groupSupport));
+            possibleSelectionsCache.put(key, groupSelections);
           }
+          possibleSelections.addAll(groupSelections);
         }
       }
     }
@@ -2803,9 +2848,62 @@ public class DefaultTrackSelector extends MappingTrackSelector
         firstTrackInfo.rendererIndex);
   }
 
+  /**
+   * Returns the possible selections of a track group, each being a single track or tracks that can
+   * be adapted between.
+   */
+  private static <T extends TrackInfo<T>> List<List<T>> getPossibleSelections(List<T> trackInfos) {
+    ArrayList<List<T>> possibleSelections = new ArrayList<>();
+    boolean[] usedTrackInSelection = new boolean[trackInfos.size()];
+    for (int trackIndex = 0; trackIndex < trackInfos.size(); trackIndex++) {
+      T trackInfo = trackInfos.get(trackIndex);
+      @SelectionEligibility int eligibility = trackInfo.getSelectionEligibility();
+      if (usedTrackInSelection[trackIndex] || eligibility == SELECTION_ELIGIBILITY_NO) {
+        continue;
+      }
+      List<T> selection;
+      if (eligibility == SELECTION_ELIGIBILITY_FIXED) {
+        selection = ImmutableList.of(trackInfo);
+      } else {
+        selection = new ArrayList<>();
+        selection.add(trackInfo);
+        for (int i = trackIndex + 1; i < trackInfos.size(); i++) {
+          T otherTrackInfo = trackInfos.get(i);
+          if (otherTrackInfo.getSelectionEligibility() == SELECTION_ELIGIBILITY_ADAPTIVE) {
+            if (trackInfo.isCompatibleForAdaptationWith(otherTrackInfo)) {
+              selection.add(otherTrackInfo);
+              usedTrackInSelection[i] = true;
+            }
+          }
+        }
+      }
+      possibleSelections.add(selection);
+    }
+    return possibleSelections;
+  }
+
+  /**
+   * Returns a copy of the parameters without the overrides and disabled flags, which are applied
+   * after {@link #selectAllTracks}.
+   */
+  @SuppressWarnings("deprecation") // Clearing deprecated overrides and disabled track types.
+  private static Parameters clearOverridesAndDisabledFlags(Parameters parameters) {
+    Parameters.Builder builder =
+        parameters
+            .buildUpon()
+            .clearOverrides()
+            .clearSelectionOverrides()
+            .setDisabledTrackTypes(ImmutableSet.of());
+    builder.rendererDisabledFlags.clear();
+    return builder.build();
+  }
+
   private void maybeInvalidateForAudioChannelCountConstraints() {
     boolean shouldInvalidate;
     synchronized (lock) {
+      // The audio attributes or the spatializer state changed, which may change whether audio
+      // formats are within the audio channel count constraints.
+      selectionInputsGeneration++;
       shouldInvalidate =
           parameters.constrainAudioChannelCountToDeviceCapabilities
               && !deviceIsTV
@@ -3419,6 +3517,7 @@ public class DefaultTrackSelector extends MappingTrackSelector
         Parameters params,
         @Capabilities int[] formatSupport,
         boolean hasMappedVideoTracks,
+        List<String> localeLanguages,
         Predicate<Format> withinAudioChannelCountConstraints) {
       ImmutableList.Builder<AudioTrackInfo> listBuilder = ImmutableList.builder();
       for (int i = 0; i < trackGroup.length; i++) {
@@ -3430,6 +3529,7 @@ public class DefaultTrackSelector extends MappingTrackSelector
                 params,
                 formatSupport[i],
                 hasMappedVideoTracks,
+                localeLanguages,
                 withinAudioChannelCountConstraints));
       }
       return listBuilder.build();
@@ -3461,6 +3561,7 @@ public class DefaultTrackSelector extends MappingTrackSelector
         Parameters parameters,
         @Capabilities int formatSupport,
         boolean hasMappedVideoTracks,
+        List<String> localeLanguages,
         Predicate<Format> withinAudioChannelCountConstraints) {
       super(rendererIndex, trackGroup, trackIndex);
       this.parameters = parameters;
@@ -3495,13 +3596,12 @@ public class DefaultTrackSelector extends MappingTrackSelector
               && (format.channelCount == Format.NO_VALUE
                   || format.channelCount <= parameters.maxAudioChannelCount)
               && withinAudioChannelCountConstraints.apply(format);
-      String[] localeLanguages = Util.getSystemLanguageCodes();
       int bestLocaleMatchIndex = Integer.MAX_VALUE;
       int bestLocaleMatchScore = 0;
-      for (int i = 0; i < localeLanguages.length; i++) {
+      for (int i = 0; i < localeLanguages.size(); i++) {
         int score =
             getFormatLanguageScore(
-                format, localeLanguages[i], /* allowUndeterminedFormatLanguage= */ false);
+                format, localeLanguages.get(i), /* allowUndeterminedFormatLanguage= */ false);
         if (score > 0) {
           bestLocaleMatchIndex = i;
           bestLocaleMatchScore = score;
@@ -3752,6 +3852,58 @@ public class DefaultTrackSelector extends MappingTrackSelector
     }
   }
 
+  /** Key of the possible selections of a track group in the possible selections cache. */
+  private static final class PossibleSelectionsKey {
+
+    private final @C.TrackType int trackType;
+    private final int rendererIndex;
+    private final TrackGroup trackGroup;
+    private final @Capabilities int[] formatSupport;
+    @Nullable private final Object typeSpecificInputs;
+    private final int hashCode;
+
+    public PossibleSelectionsKey(
+        @C.TrackType int trackType,
+        int rendererIndex,
+        TrackGroup trackGroup,
+        @Capabilities int[] formatSupport,
+        @Nullable Object typeSpecificInputs) {
+      this.trackType = trackType;
+      this.rendererIndex = rendererIndex;
+      this.trackGroup = trackGroup;
+      this.formatSupport = formatSupport;
+      this.typeSpecificInputs = typeSpecificInputs;
+      int hashCode = 31 * trackType + rendererIndex;
+      hashCode = 31 * hashCode + System.identityHashCode(trackGroup);
+      hashCode = 31 * hashCode + Arrays.hashCode(formatSupport);
+      hashCode = 31 * hashCode + (typeSpecificInputs == null ? 0 : typeSpecificInputs.hashCode());
+      this.hashCode = hashCode;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      PossibleSelectionsKey other = (PossibleSelectionsKey) obj;
+      // Track groups are compared by identity, as the selections reference them and equal groups
+      // of different periods aren't interchangeable.
+      return trackType == other.trackType
+          && rendererIndex == other.rendererIndex
+          && trackGroup == other.trackGroup
+          && Arrays.equals(formatSupport, other.formatSupport)
+          && Util.areEqual(typeSpecificInputs, other.typeSpecificInputs);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
   private static final class OtherTrackScore implements Comparable<OtherTrackScore> {
 
     private final boolean isDefault;
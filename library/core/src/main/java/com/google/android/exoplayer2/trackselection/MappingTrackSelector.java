@@ -372,19 +372,24 @@ public abstract class MappingTrackSelector extends TrackSelector {
 
     // Associate each track group to a preferred renderer, and evaluate the support that the
     // renderer provides for each track in the group.
+    @Capabilities int[][] groupFormatSupports = new int[rendererCapabilities.length][];
     for (int groupIndex = 0; groupIndex < trackGroups.length; groupIndex++) {
       TrackGroup group = trackGroups.get(groupIndex);
-      // Associate the group to a preferred renderer.
+      // Associate the group to a preferred renderer. This evaluates the support that each renderer
+      // provides for each track in the group, so that it doesn't need to be evaluated again.
       boolean preferUnassociatedRenderer = group.type == C.TRACK_TYPE_METADATA;
       int rendererIndex =
           findRenderer(
-              rendererCapabilities, group, rendererTrackGroupCounts, preferUnassociatedRenderer);
-      // Evaluate the support that the renderer provides for each track in the group.
+              rendererCapabilities,
+              group,
+              rendererTrackGroupCounts,
+              preferUnassociatedRenderer,
+              groupFormatSupports);
       @Capabilities
       int[] rendererFormatSupport =
           rendererIndex == rendererCapabilities.length
               ? new int[group.length]
-              : getFormatSupport(rendererCapabilities[rendererIndex], group);
+              : groupFormatSupports[rendererIndex];
       // Stash the results.
       int rendererTrackGroupCount = rendererTrackGroupCounts[rendererIndex];
       rendererTrackGroups[rendererIndex][rendererTrackGroupCount] = group;
@@ -490,6 +495,8 @@ public abstract class MappingTrackSelector extends TrackSelector {
    * @param rendererTrackGroupCounts The number of already mapped track groups for each renderer.
    * @param preferUnassociatedRenderer Whether renderers unassociated to any track group should be
    *     preferred.
+   * @param formatSupports An array of the same length as {@code rendererCapabilities}, into which
+   *     the {@link Capabilities} of each renderer for each track in the group are written.
    * @return The index of the renderer to which the track group was mapped, or {@code
    *     renderers.length} if it was not mapped to any renderer.
    * @throws ExoPlaybackException If an error occurs finding a renderer.
@@ -498,20 +505,20 @@ public abstract class MappingTrackSelector extends TrackSelector {
       RendererCapabilities[] rendererCapabilities,
       TrackGroup group,
       int[] rendererTrackGroupCounts,
-      boolean preferUnassociatedRenderer)
+      boolean preferUnassociatedRenderer,
+      @Capabilities int[][] formatSupports)
       throws ExoPlaybackException {
     int bestRendererIndex = rendererCapabilities.length;
     @FormatSupport int bestFormatSupportLevel = C.FORMAT_UNSUPPORTED_TYPE;
     boolean bestRendererIsUnassociated = true;
     for (int rendererIndex = 0; rendererIndex < rendererCapabilities.length; rendererIndex++) {
-      RendererCapabilities rendererCapability = rendererCapabilities[rendererIndex];
+      @Capabilities
+      int[] formatSupport = getFormatSupport(rendererCapabilities[rendererIndex], group);
+      formatSupports[rendererIndex] = formatSupport;
       @FormatSupport int formatSupportLevel = C.FORMAT_UNSUPPORTED_TYPE;
-      for (int trackIndex = 0; trackIndex < group.length; trackIndex++) {
-        @FormatSupport
-        int trackFormatSupportLevel =
-            RendererCapabilities.getFormatSupport(
-                rendererCapability.supportsFormat(group.getFormat(trackIndex)));
-        formatSupportLevel = max(formatSupportLevel, trackFormatSupportLevel);
+      for (@Capabilities int trackFormatSupport : formatSupport) {
+        formatSupportLevel =
+            max(formatSupportLevel, RendererCapabilities.getFormatSupport(trackFormatSupport));
       }
       boolean rendererIsUnassociated = rendererTrackGroupCounts[rendererIndex] == 0;
       if (formatSupportLevel > bestFormatSupportLevel
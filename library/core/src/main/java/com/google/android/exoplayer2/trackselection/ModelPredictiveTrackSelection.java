@@ -0,0 +1,527 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.trackselection;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.Iterables;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * An adaptive {@link ExoTrackSelection} that plans the next few chunks ahead, in the style of
+ * model predictive control.
+ *
+ * <p>Each time a track is selected, the selection simulates downloading the next {@link
+ * Factory#Factory(int, float, int, float, float, float, float) horizon} of chunks with every
+ * sequence of tracks, using the sizes reported by the {@link MediaChunkIterator
+ * MediaChunkIterators}, the predicted throughput and the current buffer occupancy. It selects the
+ * first track of the sequence that maximizes:
+ *
+ * <ul>
+ *   <li>the sum of the quality utilities of the chunks, where the utility of a track is the log of
+ *       its bitrate relative to the lowest bitrate,
+ *   <li>minus the switch penalty times the utility difference between consecutive chunks,
+ *   <li>minus the rebuffer penalty times the predicted rebuffering duration, in seconds,
+ *   <li>minus the buffer penalty times the duration missing from the target buffer at the end of
+ *       the horizon, in seconds. Without this term, a short horizon drains the buffer to select
+ *       higher bitrates and leaves no margin for throughput drops beyond the horizon.
+ * </ul>
+ *
+ * <p>The current track is kept unless the best sequence starting with another track scores higher
+ * by at least the switch hysteresis, which avoids oscillating between adjacent tracks when the
+ * throughput is between their bitrates.
+ *
+ * <p>The predicted throughput is a fraction of the {@link BandwidthMeter#getBitrateEstimate()
+ * bitrate estimate}. Unlike {@link AdaptiveTrackSelection}, the whole estimate is available to each
+ * selection, so the bandwidth fraction should account for other adaptive selections loading at the
+ * same time.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class ModelPredictiveTrackSelection extends BaseTrackSelection {
+
+  /** Factory for {@link ModelPredictiveTrackSelection} instances. */
+  public static final class Factory implements ExoTrackSelection.Factory {
+
+    private final int horizonChunkCount;
+    private final float bandwidthFraction;
+    private final int targetBufferMs;
+    private final float bufferPenalty;
+    private final float rebufferPenalty;
+    private final float switchPenalty;
+    private final float switchHysteresis;
+    private final Clock clock;
+
+    /** Creates a factory with default parameters. */
+    public Factory() {
+      this(
+          DEFAULT_HORIZON_CHUNK_COUNT,
+          DEFAULT_BANDWIDTH_FRACTION,
+          DEFAULT_TARGET_BUFFER_MS,
+          DEFAULT_BUFFER_PENALTY,
+          DEFAULT_REBUFFER_PENALTY,
+          DEFAULT_SWITCH_PENALTY,
+          DEFAULT_SWITCH_HYSTERESIS);
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param horizonChunkCount The maximum number of upcoming chunks to plan for. The horizon is
+     *     shortened when there are too many track sequences to evaluate.
+     * @param bandwidthFraction The fraction of the bitrate estimate that is predicted to be
+     *     available for loading.
+     * @param targetBufferMs The buffered duration to reach at the end of the horizon, in
+     *     milliseconds.
+     * @param bufferPenalty The penalty for each second missing from the target buffer at the end
+     *     of the horizon, in units of the quality utility.
+     * @param rebufferPenalty The penalty for each second of predicted rebuffering, in units of the
+     *     quality utility.
+     * @param switchPenalty The penalty factor for the utility difference of a track switch.
+     * @param switchHysteresis The score margin by which a sequence starting with another track must
+     *     beat the best sequence continuing with the current track to switch, in units of the
+     *     quality utility.
+     */
+    public Factory(
+        int horizonChunkCount,
+        float bandwidthFraction,
+        int targetBufferMs,
+        float bufferPenalty,
+        float rebufferPenalty,
+        float switchPenalty,
+        float switchHysteresis) {
+      this(
+          horizonChunkCount,
+          bandwidthFraction,
+          targetBufferMs,
+          bufferPenalty,
+          rebufferPenalty,
+          switchPenalty,
+          switchHysteresis,
+          Clock.DEFAULT);
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param horizonChunkCount The maximum number of upcoming chunks to plan for. The horizon is
+     *     shortened when there are too many track sequences to evaluate.
+     * @param bandwidthFraction The fraction of the bitrate estimate that is predicted to be
+     *     available for loading.
+     * @param targetBufferMs The buffered duration to reach at the end of the horizon, in
+     *     milliseconds.
+     * @param bufferPenalty The penalty for each second missing from the target buffer at the end
+     *     of the horizon, in units of the quality utility.
+     * @param rebufferPenalty The penalty for each second of predicted rebuffering, in units of the
+     *     quality utility.
+     * @param switchPenalty The penalty factor for the utility difference of a track switch.
+     * @param switchHysteresis The score margin by which a sequence starting with another track must
+     *     beat the best sequence continuing with the current track to switch, in units of the
+     *     quality utility.
+     * @param clock A {@link Clock}.
+     */
+    public Factory(
+        int horizonChunkCount,
+        float bandwidthFraction,
+        int targetBufferMs,
+        float bufferPenalty,
+        float rebufferPenalty,
+        float switchPenalty,
+        float switchHysteresis,
+        Clock clock) {
+      checkArgument(horizonChunkCount > 0);
+      checkArgument(bandwidthFraction > 0);
+      checkArgument(targetBufferMs >= 0 && bufferPenalty >= 0);
+      checkArgument(rebufferPenalty >= 0 && switchPenalty >= 0 && switchHysteresis >= 0);
+      this.horizonChunkCount = horizonChunkCount;
+      this.bandwidthFraction = bandwidthFraction;
+      this.targetBufferMs = targetBufferMs;
+      this.bufferPenalty = bufferPenalty;
+      this.rebufferPenalty = rebufferPenalty;
+      this.switchPenalty = switchPenalty;
+      this.switchHysteresis = switchHysteresis;
+      this.clock = clock;
+    }
+
+    @Override
+    public @NullableType ExoTrackSelection[] createTrackSelections(
+        @NullableType Definition[] definitions,
+        BandwidthMeter bandwidthMeter,
+        MediaPeriodId mediaPeriodId,
+        Timeline timeline) {
+      return TrackSelectionUtil.createTrackSelectionsForDefinitions(
+          definitions,
+          definition ->
+              definition.tracks.length == 1
+                  ? new FixedTrackSelection(
+                      definition.group, /* track= */ definition.tracks[0], definition.type)
+                  : new ModelPredictiveTrackSelection(
+                      definition.group,
+                      definition.tracks,
+                      definition.type,
+                      bandwidthMeter,
+                      horizonChunkCount,
+                      bandwidthFraction,
+                      targetBufferMs,
+                      bufferPenalty,
+                      rebufferPenalty,
+                      switchPenalty,
+                      switchHysteresis,
+                      clock));
+    }
+  }
+
+  /** The default maximum number of upcoming chunks to plan for. */
+  public static final int DEFAULT_HORIZON_CHUNK_COUNT = 5;
+
+  /** The default fraction of the bitrate estimate predicted to be available for loading. */
+  public static final float DEFAULT_BANDWIDTH_FRACTION = 0.8f;
+
+  /** The default buffered duration to reach at the end of the horizon, in milliseconds. */
+  public static final int DEFAULT_TARGET_BUFFER_MS = 20_000;
+
+  /** The default penalty for each second missing from the target buffer. */
+  public static final float DEFAULT_BUFFER_PENALTY = 1f;
+
+  /** The default penalty for each second of predicted rebuffering. */
+  public static final float DEFAULT_REBUFFER_PENALTY = 3f;
+
+  /** The default penalty factor for the utility difference of a track switch. */
+  public static final float DEFAULT_SWITCH_PENALTY = 1f;
+
+  /** The default score margin required to switch away from the current track. */
+  public static final float DEFAULT_SWITCH_HYSTERESIS = 1f;
+
+  /** The maximum number of track sequences evaluated for a single selection. */
+  private static final int MAX_SEQUENCE_COUNT = 4096;
+
+  private final BandwidthMeter bandwidthMeter;
+  private final int horizonChunkCount;
+  private final float bandwidthFraction;
+  private final long targetBufferUs;
+  private final float bufferPenalty;
+  private final float rebufferPenalty;
+  private final float switchPenalty;
+  private final float switchHysteresis;
+  private final Clock clock;
+  private final double[] utilities;
+  private final int[] candidateIndices;
+  private final long[][] chunkBitsByTrack;
+  private final long[][] chunkDurationsUsByTrack;
+
+  private float playbackSpeed;
+  private int selectedIndex;
+  private @C.SelectionReason int reason;
+  private long latestBitrateEstimate;
+
+  // Inputs of the ongoing search.
+  private int candidateCount;
+  private long throughputBps;
+  private long timeToFirstByteUs;
+
+  /**
+   * Creates an instance with default parameters.
+   *
+   * @param group The {@link TrackGroup}.
+   * @param tracks The indices of the selected tracks within the {@link TrackGroup}. Must not be
+   *     empty. May be in any order.
+   * @param bandwidthMeter Provides an estimate of the currently available bandwidth.
+   */
+  public ModelPredictiveTrackSelection(
+      TrackGroup group, int[] tracks, BandwidthMeter bandwidthMeter) {
+    this(
+        group,
+        tracks,
+        TrackSelection.TYPE_UNSET,
+        bandwidthMeter,
+        DEFAULT_HORIZON_CHUNK_COUNT,
+        DEFAULT_BANDWIDTH_FRACTION,
+        DEFAULT_TARGET_BUFFER_MS,
+        DEFAULT_BUFFER_PENALTY,
+        DEFAULT_REBUFFER_PENALTY,
+        DEFAULT_SWITCH_PENALTY,
+        DEFAULT_SWITCH_HYSTERESIS,
+        Clock.DEFAULT);
+  }
+
+  private ModelPredictiveTrackSelection(
+      TrackGroup group,
+      int[] tracks,
+      @Type int type,
+      BandwidthMeter bandwidthMeter,
+      int horizonChunkCount,
+      float bandwidthFraction,
+      int targetBufferMs,
+      float bufferPenalty,
+      float rebufferPenalty,
+      float switchPenalty,
+      float switchHysteresis,
+      Clock clock) {
+    super(group, tracks, type);
+    this.bandwidthMeter = bandwidthMeter;
+    this.horizonChunkCount = horizonChunkCount;
+    this.bandwidthFraction = bandwidthFraction;
+    this.targetBufferUs = targetBufferMs * 1000L;
+    this.bufferPenalty = bufferPenalty;
+    this.rebufferPenalty = rebufferPenalty;
+    this.switchPenalty = switchPenalty;
+    this.switchHysteresis = switchHysteresis;
+    this.clock = clock;
+    // Tracks are ordered by decreasing bitrate, so the last track has the lowest bitrate.
+    double minBitrate = getBitrate(getFormat(length - 1));
+    utilities = new double[length];
+    for (int i = 0; i < length; i++) {
+      utilities[i] = Math.log(getBitrate(getFormat(i)) / minBitrate);
+    }
+    candidateIndices = new int[length];
+    chunkBitsByTrack = new long[length][horizonChunkCount];
+    chunkDurationsUsByTrack = new long[length][horizonChunkCount];
+    playbackSpeed = 1f;
+    reason = C.SELECTION_REASON_UNKNOWN;
+    latestBitrateEstimate = Long.MIN_VALUE;
+  }
+
+  @Override
+  public void onPlaybackSpeed(float playbackSpeed) {
+    this.playbackSpeed = playbackSpeed;
+  }
+
+  @Override
+  public void updateSelectedTrack(
+      long playbackPositionUs,
+      long bufferedDurationUs,
+      long availableDurationUs,
+      List<? extends MediaChunk> queue,
+      MediaChunkIterator[] mediaChunkIterators) {
+    long nowMs = clock.elapsedRealtime();
+    candidateCount = 0;
+    for (int i = 0; i < length; i++) {
+      if (!isTrackExcluded(i, nowMs)) {
+        candidateIndices[candidateCount++] = i;
+      }
+    }
+    if (candidateCount == 0) {
+      // Fall back to the lowest bitrate if all tracks are excluded.
+      candidateIndices[candidateCount++] = length - 1;
+    }
+
+    int previousSelectedIndex = selectedIndex;
+    @C.SelectionReason int previousReason = reason;
+    if (!queue.isEmpty()) {
+      int formatIndexOfPreviousChunk = indexOf(Iterables.getLast(queue).trackFormat);
+      if (formatIndexOfPreviousChunk != C.INDEX_UNSET) {
+        previousSelectedIndex = formatIndexOfPreviousChunk;
+        previousReason = Iterables.getLast(queue).trackSelectionReason;
+      }
+    }
+    boolean isInitialSelection = reason == C.SELECTION_REASON_UNKNOWN;
+
+    latestBitrateEstimate = bandwidthMeter.getBitrateEstimate();
+    throughputBps = (long) (latestBitrateEstimate * bandwidthFraction);
+    long timeToFirstByteEstimateUs = bandwidthMeter.getTimeToFirstByteEstimateUs();
+    timeToFirstByteUs = timeToFirstByteEstimateUs == C.TIME_UNSET ? 0 : timeToFirstByteEstimateUs;
+    int horizon = loadUpcomingChunks(mediaChunkIterators, queue);
+
+    int newSelectedIndex;
+    if (throughputBps <= 0) {
+      newSelectedIndex = candidateIndices[candidateCount - 1];
+    } else if (horizon == 0) {
+      newSelectedIndex = getHighestSustainableIndex();
+    } else {
+      newSelectedIndex =
+          getBestFirstIndex(
+              horizon,
+              isInitialSelection ? C.INDEX_UNSET : previousSelectedIndex,
+              Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed));
+    }
+
+    if (isInitialSelection) {
+      reason = C.SELECTION_REASON_INITIAL;
+    } else {
+      reason =
+          newSelectedIndex == previousSelectedIndex
+              ? previousReason
+              : C.SELECTION_REASON_ADAPTIVE;
+    }
+    selectedIndex = newSelectedIndex;
+  }
+
+  @Override
+  public int getSelectedIndex() {
+    return selectedIndex;
+  }
+
+  @Override
+  public @C.SelectionReason int getSelectionReason() {
+    return reason;
+  }
+
+  @Override
+  @Nullable
+  public Object getSelectionData() {
+    return null;
+  }
+
+  @Override
+  public long getLatestBitrateEstimate() {
+    return latestBitrateEstimate;
+  }
+
+  /**
+   * Loads the sizes and durations of the upcoming chunks of all candidates, and returns the number
+   * of chunks known for all of them, limited to the searchable horizon.
+   */
+  private int loadUpcomingChunks(
+      MediaChunkIterator[] mediaChunkIterators, List<? extends MediaChunk> queue) {
+    int maxHorizon = horizonChunkCount;
+    while (maxHorizon > 1 && Math.pow(candidateCount, maxHorizon) > MAX_SEQUENCE_COUNT) {
+      maxHorizon--;
+    }
+    long fallbackChunkDurationUs = getLastChunkDurationUs(queue);
+    int horizon = maxHorizon;
+    for (int c = 0; c < candidateCount; c++) {
+      int trackIndex = candidateIndices[c];
+      long[] chunkBits = chunkBitsByTrack[trackIndex];
+      long[] chunkDurationsUs = chunkDurationsUsByTrack[trackIndex];
+      double bitrate = getBitrate(getFormat(trackIndex));
+      int chunkCount = 0;
+      if (trackIndex < mediaChunkIterators.length) {
+        MediaChunkIterator iterator = mediaChunkIterators[trackIndex];
+        iterator.reset();
+        while (chunkCount < maxHorizon && iterator.next()) {
+          long durationUs = iterator.getChunkEndTimeUs() - iterator.getChunkStartTimeUs();
+          long length = iterator.getDataSpec().length;
+          chunkDurationsUs[chunkCount] = durationUs;
+          chunkBits[chunkCount] =
+              length != C.LENGTH_UNSET
+                  ? length * C.BITS_PER_BYTE
+                  : (long) (bitrate * durationUs / C.MICROS_PER_SECOND);
+          chunkCount++;
+        }
+        iterator.reset();
+      }
+      if (chunkCount == 0 && fallbackChunkDurationUs != C.TIME_UNSET) {
+        // Assume that upcoming chunks are similar to the last one, at the nominal bitrate.
+        for (; chunkCount < maxHorizon; chunkCount++) {
+          chunkDurationsUs[chunkCount] = fallbackChunkDurationUs;
+          chunkBits[chunkCount] =
+              (long) (bitrate * fallbackChunkDurationUs / C.MICROS_PER_SECOND);
+        }
+      }
+      horizon = Math.min(horizon, chunkCount);
+    }
+    return horizon;
+  }
+
+  /** Returns the candidate of highest bitrate that the predicted throughput can sustain. */
+  private int getHighestSustainableIndex() {
+    for (int c = 0; c < candidateCount; c++) {
+      int trackIndex = candidateIndices[c];
+      if (getBitrate(getFormat(trackIndex)) <= throughputBps) {
+        return trackIndex;
+      }
+    }
+    return candidateIndices[candidateCount - 1];
+  }
+
+  private int getBestFirstIndex(int horizon, int previousIndex, long bufferedDurationUs) {
+    int bestIndex = candidateIndices[candidateCount - 1];
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (int c = 0; c < candidateCount; c++) {
+      int trackIndex = candidateIndices[c];
+      double score =
+          getBestScore(/* step= */ 0, horizon, trackIndex, previousIndex, bufferedDurationUs);
+      if (trackIndex == previousIndex) {
+        score += switchHysteresis;
+      }
+      if (score > bestScore) {
+        bestScore = score;
+        bestIndex = trackIndex;
+      }
+    }
+    return bestIndex;
+  }
+
+  /**
+   * Returns the best score of the sequences loading the chunk at {@code step} from {@code
+   * trackIndex}, given the track of the previous chunk and the buffered duration before loading.
+   */
+  private double getBestScore(
+      int step, int horizon, int trackIndex, int previousIndex, long bufferedDurationUs) {
+    long loadDurationUs =
+        timeToFirstByteUs
+            + chunkBitsByTrack[trackIndex][step] * C.MICROS_PER_SECOND / throughputBps;
+    long rebufferDurationUs = max(0, loadDurationUs - bufferedDurationUs);
+    double score =
+        utilities[trackIndex] - rebufferPenalty * rebufferDurationUs / C.MICROS_PER_SECOND;
+    if (previousIndex != C.INDEX_UNSET) {
+      score -= switchPenalty * abs(utilities[trackIndex] - utilities[previousIndex]);
+    }
+    long nextBufferedDurationUs =
+        max(0, bufferedDurationUs - loadDurationUs)
+            + Util.getPlayoutDurationForMediaDuration(
+                chunkDurationsUsByTrack[trackIndex][step], playbackSpeed);
+    if (step + 1 == horizon) {
+      long bufferDeficitUs = max(0, targetBufferUs - nextBufferedDurationUs);
+      return score - bufferPenalty * bufferDeficitUs / C.MICROS_PER_SECOND;
+    }
+    double bestNextScore = Double.NEGATIVE_INFINITY;
+    for (int c = 0; c < candidateCount; c++) {
+      bestNextScore =
+          max(
+              bestNextScore,
+              getBestScore(
+                  step + 1, horizon, candidateIndices[c], trackIndex, nextBufferedDurationUs));
+    }
+    return score + bestNextScore;
+  }
+
+  /**
+   * Returns the duration of the last chunk in the queue, in microseconds, or {@link C#TIME_UNSET}
+   * if the queue is empty or if the last chunk has an undefined start or end time.
+   */
+  private static long getLastChunkDurationUs(List<? extends MediaChunk> queue) {
+    if (queue.isEmpty()) {
+      return C.TIME_UNSET;
+    }
+    MediaChunk lastChunk = Iterables.getLast(queue);
+    return lastChunk.startTimeUs != C.TIME_UNSET && lastChunk.endTimeUs != C.TIME_UNSET
+        ? lastChunk.endTimeUs - lastChunk.startTimeUs
+        : C.TIME_UNSET;
+  }
+
+  private static double getBitrate(Format format) {
+    return format.bitrate == Format.NO_VALUE ? 1 : max(1, format.bitrate);
+  }
+}
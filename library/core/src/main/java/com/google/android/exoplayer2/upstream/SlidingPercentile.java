@@ -15,9 +15,8 @@
  */
 package com.google.android.exoplayer2.upstream;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import androidx.annotation.Nullable;
+import java.util.ArrayDeque;
 
 /**
  * Calculate any percentile over a sliding window of weighted values. A maximum weight is
@@ -29,11 +28,16 @@ import java.util.Comparator;
  * rate observations. This is an alternative to sliding mean and exponential averaging which suffer
  * from susceptibility to outliers and slow adaptation to step functions.
  *
+ * <p>Samples are kept in a randomized balanced search tree ordered by value, in which each node
+ * stores the total weight of its subtree. Adding a sample, evicting the oldest sample and
+ * computing a percentile take logarithmic time in the number of samples.
+ *
  * <p>See the following Wikipedia articles:
  *
  * <ul>
  *   <li><a href="http://en.wikipedia.org/wiki/Moving_average">Moving average</a>
  *   <li><a href="http://en.wikipedia.org/wiki/Selection_algorithm">Selection algorithm</a>
+ *   <li><a href="http://en.wikipedia.org/wiki/Treap">Treap</a>
  * </ul>
  *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
@@ -44,26 +48,19 @@ import java.util.Comparator;
 @Deprecated
 public class SlidingPercentile {
 
-  // Orderings.
-  private static final Comparator<Sample> INDEX_COMPARATOR = (a, b) -> a.index - b.index;
-  private static final Comparator<Sample> VALUE_COMPARATOR =
-      (a, b) -> Float.compare(a.value, b.value);
-
-  private static final int SORT_ORDER_NONE = -1;
-  private static final int SORT_ORDER_BY_VALUE = 0;
-  private static final int SORT_ORDER_BY_INDEX = 1;
-
   private static final int MAX_RECYCLED_SAMPLES = 5;
 
   private final int maxWeight;
-  private final ArrayList<Sample> samples;
+  // Samples in the order in which they were added.
+  private final ArrayDeque<Sample> samples;
 
   private final Sample[] recycledSamples;
 
-  private int currentSortOrder;
+  @Nullable private Sample root;
   private int nextSampleIndex;
   private int totalWeight;
   private int recycledSampleCount;
+  private int randomState;
 
   /**
    * @param maxWeight The maximum weight.
@@ -71,14 +68,14 @@ public class SlidingPercentile {
   public SlidingPercentile(int maxWeight) {
     this.maxWeight = maxWeight;
     recycledSamples = new Sample[MAX_RECYCLED_SAMPLES];
-    samples = new ArrayList<>();
-    currentSortOrder = SORT_ORDER_NONE;
+    samples = new ArrayDeque<>();
+    randomState = 1;
   }
 
   /** Resets the sliding percentile. */
   public void reset() {
     samples.clear();
-    currentSortOrder = SORT_ORDER_NONE;
+    root = null;
     nextSampleIndex = 0;
     totalWeight = 0;
   }
@@ -90,28 +87,30 @@ public class SlidingPercentile {
    * @param value The value of the new observation.
    */
   public void addSample(int weight, float value) {
-    ensureSortedByIndex();
-
     Sample newSample =
         recycledSampleCount > 0 ? recycledSamples[--recycledSampleCount] : new Sample();
     newSample.index = nextSampleIndex++;
     newSample.weight = weight;
     newSample.value = value;
-    samples.add(newSample);
+    newSample.priority = nextPriority();
+    samples.addLast(newSample);
+    insert(newSample);
     totalWeight += weight;
 
     while (totalWeight > maxWeight) {
       int excessWeight = totalWeight - maxWeight;
-      Sample oldestSample = samples.get(0);
+      Sample oldestSample = samples.peekFirst();
+      remove(oldestSample);
       if (oldestSample.weight <= excessWeight) {
         totalWeight -= oldestSample.weight;
-        samples.remove(0);
+        samples.removeFirst();
         if (recycledSampleCount < MAX_RECYCLED_SAMPLES) {
           recycledSamples[recycledSampleCount++] = oldestSample;
         }
       } else {
         oldestSample.weight -= excessWeight;
         totalWeight -= excessWeight;
+        insert(oldestSample);
       }
     }
   }
@@ -123,34 +122,172 @@ public class SlidingPercentile {
    * @return The requested percentile value or {@link Float#NaN} if no samples have been added.
    */
   public float getPercentile(float percentile) {
-    ensureSortedByValue();
+    @Nullable Sample node = root;
+    if (node == null) {
+      return Float.NaN;
+    }
     float desiredWeight = percentile * totalWeight;
-    int accumulatedWeight = 0;
-    for (int i = 0; i < samples.size(); i++) {
-      Sample currentSample = samples.get(i);
-      accumulatedWeight += currentSample.weight;
-      if (accumulatedWeight >= desiredWeight) {
-        return currentSample.value;
+    long accumulatedWeight = 0;
+    while (true) {
+      long weightBeforeNode = accumulatedWeight + getSubtreeWeight(node.left);
+      if (node.left != null && weightBeforeNode >= desiredWeight) {
+        node = node.left;
+      } else if (weightBeforeNode + node.weight >= desiredWeight) {
+        return node.value;
+      } else if (node.right != null) {
+        accumulatedWeight = weightBeforeNode + node.weight;
+        node = node.right;
+      } else {
+        // Clamp to maximum value.
+        return node.value;
       }
     }
-    // Clamp to maximum value or NaN if no values.
-    return samples.isEmpty() ? Float.NaN : samples.get(samples.size() - 1).value;
   }
 
-  /** Sorts the samples by index. */
-  private void ensureSortedByIndex() {
-    if (currentSortOrder != SORT_ORDER_BY_INDEX) {
-      Collections.sort(samples, INDEX_COMPARATOR);
-      currentSortOrder = SORT_ORDER_BY_INDEX;
+  private void insert(Sample sample) {
+    sample.left = null;
+    sample.right = null;
+    sample.subtreeWeight = sample.weight;
+    root = insert(root, sample);
+  }
+
+  private void remove(Sample sample) {
+    root = remove(root, sample);
+  }
+
+  private int nextPriority() {
+    // Xorshift, so that the tree shape doesn't depend on the order of the values.
+    int x = randomState;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    randomState = x;
+    return x;
+  }
+
+  private static Sample insert(@Nullable Sample node, Sample sample) {
+    if (node == null) {
+      return sample;
+    }
+    if (sample.priority > node.priority) {
+      split(node, sample);
+      updateSubtreeWeight(sample);
+      return sample;
+    }
+    if (isBefore(sample, node)) {
+      node.left = insert(node.left, sample);
+    } else {
+      node.right = insert(node.right, sample);
     }
+    updateSubtreeWeight(node);
+    return node;
   }
 
-  /** Sorts the samples by value. */
-  private void ensureSortedByValue() {
-    if (currentSortOrder != SORT_ORDER_BY_VALUE) {
-      Collections.sort(samples, VALUE_COMPARATOR);
-      currentSortOrder = SORT_ORDER_BY_VALUE;
+  @Nullable
+  private static Sample remove(@Nullable Sample node, Sample sample) {
+    if (node == null) {
+      throw new IllegalStateException();
+    }
+    if (node == sample) {
+      return merge(node.left, node.right);
+    }
+    if (isBefore(sample, node)) {
+      node.left = remove(node.left, sample);
+    } else {
+      node.right = remove(node.right, sample);
     }
+    updateSubtreeWeight(node);
+    return node;
+  }
+
+  /**
+   * Splits the subtree rooted at {@code node} into the samples before and after {@code pivot}, and
+   * sets them as the left and right children of {@code pivot}.
+   */
+  private static void split(@Nullable Sample node, Sample pivot) {
+    @Nullable Sample leftTree = null;
+    @Nullable Sample rightTree = null;
+    // Rightmost node of the left tree and leftmost node of the right tree built so far.
+    @Nullable Sample leftTail = null;
+    @Nullable Sample rightTail = null;
+    // Path of nodes whose subtree weights need to be updated, bottom-up.
+    @Nullable Sample leftPath = null;
+    @Nullable Sample rightPath = null;
+    while (node != null) {
+      if (isBefore(node, pivot)) {
+        if (leftTail == null) {
+          leftTree = node;
+        } else {
+          leftTail.right = node;
+        }
+        node.parentOnPath = leftPath;
+        leftPath = node;
+        leftTail = node;
+        node = node.right;
+      } else {
+        if (rightTail == null) {
+          rightTree = node;
+        } else {
+          rightTail.left = node;
+        }
+        node.parentOnPath = rightPath;
+        rightPath = node;
+        rightTail = node;
+        node = node.left;
+      }
+    }
+    if (leftTail != null) {
+      leftTail.right = null;
+    }
+    if (rightTail != null) {
+      rightTail.left = null;
+    }
+    updateSubtreeWeightsOnPath(leftPath);
+    updateSubtreeWeightsOnPath(rightPath);
+    pivot.left = leftTree;
+    pivot.right = rightTree;
+  }
+
+  @Nullable
+  private static Sample merge(@Nullable Sample left, @Nullable Sample right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      updateSubtreeWeight(left);
+      return left;
+    } else {
+      right.left = merge(left, right.left);
+      updateSubtreeWeight(right);
+      return right;
+    }
+  }
+
+  private static void updateSubtreeWeightsOnPath(@Nullable Sample bottom) {
+    while (bottom != null) {
+      updateSubtreeWeight(bottom);
+      Sample parent = bottom.parentOnPath;
+      bottom.parentOnPath = null;
+      bottom = parent;
+    }
+  }
+
+  private static void updateSubtreeWeight(Sample node) {
+    node.subtreeWeight = getSubtreeWeight(node.left) + node.weight + getSubtreeWeight(node.right);
+  }
+
+  private static long getSubtreeWeight(@Nullable Sample node) {
+    return node == null ? 0 : node.subtreeWeight;
+  }
+
+  /** Returns whether {@code a} is before {@code b} in value order, breaking ties by index. */
+  private static boolean isBefore(Sample a, Sample b) {
+    int valueComparison = Float.compare(a.value, b.value);
+    return valueComparison < 0 || (valueComparison == 0 && a.index < b.index);
   }
 
   private static class Sample {
@@ -158,5 +295,10 @@ public class SlidingPercentile {
     public int index;
     public int weight;
     public float value;
+    public int priority;
+    public long subtreeWeight;
+    @Nullable public Sample left;
+    @Nullable public Sample right;
+    @Nullable public Sample parentOnPath;
   }
 }
@@ -16,7 +16,6 @@
 package com.google.android.exoplayer2.upstream.experimental;
 
 import androidx.annotation.Nullable;
-import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.TimeToFirstByteEstimator;
@@ -68,9 +67,7 @@ public final class ExponentialWeightedAverageTimeToFirstByteEstimator
    * @param smoothingFactor The exponential weighted average smoothing factor.
    * @param clock The {@link Clock} used for calculating time samples.
    */
-  @VisibleForTesting
-  /* package */ ExponentialWeightedAverageTimeToFirstByteEstimator(
-      double smoothingFactor, Clock clock) {
+  public ExponentialWeightedAverageTimeToFirstByteEstimator(double smoothingFactor, Clock clock) {
     this.smoothingFactor = smoothingFactor;
     this.clock = clock;
     initializedDataSpecs = new FixedSizeLinkedHashMap<>(/* maxSize= */ MAX_DATA_SPECS);
@@ -18,7 +18,6 @@ package com.google.android.exoplayer2.upstream.experimental;
 import static com.google.android.exoplayer2.util.Assertions.checkArgument;
 
 import androidx.annotation.Nullable;
-import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.SlidingPercentile;
@@ -80,9 +79,7 @@ public final class PercentileTimeToFirstByteEstimator implements TimeToFirstByte
    * @param percentile The percentile for estimating the time to the first byte.
    * @param clock The {@link Clock} to use.
    */
-  @VisibleForTesting
-  /* package */ PercentileTimeToFirstByteEstimator(
-      int numberOfSamples, float percentile, Clock clock) {
+  public PercentileTimeToFirstByteEstimator(int numberOfSamples, float percentile, Clock clock) {
     checkArgument(numberOfSamples > 0 && percentile > 0 && percentile <= 1);
     this.percentile = percentile;
     this.clock = clock;
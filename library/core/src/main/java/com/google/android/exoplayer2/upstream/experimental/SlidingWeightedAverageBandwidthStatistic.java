@@ -17,7 +17,6 @@ package com.google.android.exoplayer2.upstream.experimental;
 
 import static com.google.android.exoplayer2.util.Util.castNonNull;
 
-import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.util.Clock;
 import java.util.ArrayDeque;
 import java.util.Deque;
@@ -77,9 +76,11 @@ public class SlidingWeightedAverageBandwidthStatistic implements BandwidthStatis
     return getAgeBasedEvictionFunction(maxAgeMs, Clock.DEFAULT);
   }
 
-  @VisibleForTesting
-  /* package */ static SampleEvictionFunction getAgeBasedEvictionFunction(
-      long maxAgeMs, Clock clock) {
+  /**
+   * Gets a {@link SampleEvictionFunction} that maintains samples up to {@code maxAgeMs}, measured
+   * with the given {@link Clock}.
+   */
+  public static SampleEvictionFunction getAgeBasedEvictionFunction(long maxAgeMs, Clock clock) {
     return (samples) -> {
       if (samples.isEmpty()) {
         return false;
@@ -120,8 +121,7 @@ public class SlidingWeightedAverageBandwidthStatistic implements BandwidthStatis
    *     samples when new samples are added.
    * @param clock The {@link Clock} used.
    */
-  @VisibleForTesting
-  /* package */ SlidingWeightedAverageBandwidthStatistic(
+  public SlidingWeightedAverageBandwidthStatistic(
       SampleEvictionFunction sampleEvictionFunction, Clock clock) {
     this.samples = new ArrayDeque<>();
     this.sampleEvictionFunction = sampleEvictionFunction;
@@ -20,7 +20,7 @@ import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.Assertions.checkState;
 
 import android.os.Handler;
-import androidx.annotation.VisibleForTesting;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.upstream.BandwidthMeter;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.util.Clock;
@@ -40,14 +40,13 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
 public class SplitParallelSampleBandwidthEstimator implements BandwidthEstimator {
   /** A builder to create {@link SplitParallelSampleBandwidthEstimator} instances. */
   public static class Builder {
-    private BandwidthStatistic bandwidthStatistic;
+    @Nullable private BandwidthStatistic bandwidthStatistic;
     private int minSamples;
     private long minBytesTransferred;
     private Clock clock;
 
     /** Creates a new builder instance. */
     public Builder() {
-      bandwidthStatistic = new SlidingWeightedAverageBandwidthStatistic();
       clock = Clock.DEFAULT;
     }
 
@@ -94,15 +93,14 @@ public class SplitParallelSampleBandwidthEstimator implements BandwidthEstimator
     }
 
     /**
-     * Sets the {@link Clock} used by the estimator. By default, this is set to {@link
-     * Clock#DEFAULT}.
+     * Sets the {@link Clock} used by the estimator and by its default {@link BandwidthStatistic}.
+     * By default, this is set to {@link Clock#DEFAULT}.
      *
      * @param clock The {@link Clock} to be used.
      * @return This builder for convenience.
      */
     @CanIgnoreReturnValue
-    @VisibleForTesting
-    /* package */ Builder setClock(Clock clock) {
+    public Builder setClock(Clock clock) {
       this.clock = clock;
       return this;
     }
@@ -127,7 +125,13 @@ public class SplitParallelSampleBandwidthEstimator implements BandwidthEstimator
   private long totalBytesTransferred;
 
   private SplitParallelSampleBandwidthEstimator(Builder builder) {
-    this.bandwidthStatistic = builder.bandwidthStatistic;
+    this.bandwidthStatistic =
+        builder.bandwidthStatistic != null
+            ? builder.bandwidthStatistic
+            : new SlidingWeightedAverageBandwidthStatistic(
+                SlidingWeightedAverageBandwidthStatistic.getMaxCountEvictionFunction(
+                    SlidingWeightedAverageBandwidthStatistic.DEFAULT_MAX_SAMPLES_COUNT),
+                builder.clock);
     this.minSamples = builder.minSamples;
     this.minBytesTransferred = builder.minBytesTransferred;
     this.clock = builder.clock;
@@ -177,6 +177,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private long totalVideoFrameProcessingOffsetUs;
   private int videoFrameProcessingOffsetCount;
   private long lastFrameReleaseTimeNs;
+  private long nextOutputBufferDueElapsedRealtimeUs;
 
   private VideoSize decodedVideoSize;
   @Nullable private VideoSize reportedVideoSize;
@@ -359,6 +360,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
         new VideoFrameProcessorManager(frameReleaseHelper, /* renderer= */ this);
     deviceNeedsNoPostProcessWorkaround = deviceNeedsNoPostProcessWorkaround();
     joiningDeadlineMs = C.TIME_UNSET;
+    nextOutputBufferDueElapsedRealtimeUs = C.TIME_UNSET;
     scalingMode = C.VIDEO_SCALING_MODE_DEFAULT;
     decodedVideoSize = VideoSize.UNKNOWN;
     tunnelingAudioSessionId = C.AUDIO_SESSION_ID_UNSET;
@@ -565,6 +567,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     frameReleaseHelper.onPositionReset();
     lastBufferPresentationTimeUs = C.TIME_UNSET;
     initialPositionUs = C.TIME_UNSET;
+    nextOutputBufferDueElapsedRealtimeUs = C.TIME_UNSET;
     consecutiveDroppedFrameCount = 0;
     if (joining) {
       setJoiningDeadlineMs();
@@ -851,12 +854,23 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   @CallSuper
   @Override
   public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+    nextOutputBufferDueElapsedRealtimeUs = C.TIME_UNSET;
     super.render(positionUs, elapsedRealtimeUs);
     if (videoFrameProcessorManager.isEnabled()) {
       videoFrameProcessorManager.releaseProcessedFrames(positionUs, elapsedRealtimeUs);
     }
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (nextOutputBufferDueElapsedRealtimeUs == C.TIME_UNSET) {
+      return super.getDurationToProgressUs(positionUs, elapsedRealtimeUs);
+    }
+    // The pending output buffer can't be released before it's due, so there's no need to render
+    // again before then.
+    return max(0, nextOutputBufferDueElapsedRealtimeUs - elapsedRealtimeUs);
+  }
+
   @CallSuper
   @Override
   protected void resetCodecStateForFlush() {
@@ -1233,9 +1247,10 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       return false;
     }
 
+    long releaseThresholdUs = Util.SDK_INT >= 21 ? 50000 : 30000;
     if (Util.SDK_INT >= 21) {
       // Let the underlying framework time the release.
-      if (earlyUs < 50000) {
+      if (earlyUs < releaseThresholdUs) {
         if (adjustedReleaseTimeNs == lastFrameReleaseTimeNs) {
           // This frame should be displayed on the same vsync with the previous released frame. We
           // are likely rendering frames at a rate higher than the screen refresh rate. Skip
@@ -1252,7 +1267,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       }
     } else {
       // We need to time the release ourselves.
-      if (earlyUs < 30000) {
+      if (earlyUs < releaseThresholdUs) {
         if (earlyUs > 11000) {
           // We're a little too early to render the frame. Sleep until the frame can be rendered.
           // Note: The 11ms threshold was chosen fairly arbitrarily.
@@ -1271,7 +1286,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       }
     }
 
-    // We're either not playing, or it's not time to render the frame yet.
+    // It's not time to render the frame yet.
+    nextOutputBufferDueElapsedRealtimeUs = elapsedRealtimeNowUs + earlyUs - releaseThresholdUs;
     return false;
   }
 
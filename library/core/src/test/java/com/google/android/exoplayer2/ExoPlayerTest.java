@@ -10323,6 +10323,94 @@ public final class ExoPlayerTest {
     player.release();
   }
 
+  @Test
+  public void dynamicScheduling_disabled_rendersAtFixedInterval() throws Exception {
+    FakeDurationToProgressRenderer renderer =
+        new FakeDurationToProgressRenderer(/* durationToProgressUs= */ 50_000);
+
+    int renderCallsPerSecond =
+        getRenderCallsPerSecondOfPlayback(renderer, /* dynamicSchedulingEnabled= */ false);
+
+    // The playback loop runs every 10ms regardless of the duration reported by the renderer.
+    assertThat(renderCallsPerSecond).isIn(Range.closed(95, 105));
+  }
+
+  @Test
+  public void dynamicScheduling_enabled_rendersAtIntervalReportedByRenderer() throws Exception {
+    FakeDurationToProgressRenderer renderer =
+        new FakeDurationToProgressRenderer(/* durationToProgressUs= */ 50_000);
+
+    int renderCallsPerSecond =
+        getRenderCallsPerSecondOfPlayback(renderer, /* dynamicSchedulingEnabled= */ true);
+
+    assertThat(renderCallsPerSecond).isIn(Range.closed(19, 21));
+  }
+
+  @Test
+  public void dynamicScheduling_enabledWithDefaultRenderer_rendersAtDefaultInterval()
+      throws Exception {
+    FakeDurationToProgressRenderer renderer =
+        new FakeDurationToProgressRenderer(Renderer.DEFAULT_DURATION_TO_PROGRESS_US);
+
+    int renderCallsPerSecond =
+        getRenderCallsPerSecondOfPlayback(renderer, /* dynamicSchedulingEnabled= */ true);
+
+    assertThat(renderCallsPerSecond).isIn(Range.closed(95, 105));
+  }
+
+  @Test
+  public void dynamicScheduling_enabledWithMultipleRenderers_usesShortestReportedDuration()
+      throws Exception {
+    FakeDurationToProgressRenderer videoRenderer =
+        new FakeDurationToProgressRenderer(C.TRACK_TYPE_VIDEO, /* durationToProgressUs= */ 50_000);
+    FakeDurationToProgressRenderer audioRenderer =
+        new FakeDurationToProgressRenderer(C.TRACK_TYPE_AUDIO, /* durationToProgressUs= */ 25_000);
+    ExoPlayer player =
+        new TestExoPlayerBuilder(context)
+            .setRenderers(videoRenderer, audioRenderer)
+            .setDynamicSchedulingEnabled(true)
+            .build();
+    player.setMediaSource(
+        new FakeMediaSource(
+            new FakeTimeline(),
+            ExoPlayerTestRunner.VIDEO_FORMAT,
+            ExoPlayerTestRunner.AUDIO_FORMAT));
+    player.prepare();
+    runUntilPlaybackState(player, Player.STATE_READY);
+    videoRenderer.renderCount = 0;
+
+    player.play();
+    playUntilPosition(player, /* mediaItemIndex= */ 0, /* positionMs= */ 5000);
+    player.release();
+
+    assertThat(videoRenderer.renderCount / 5).isIn(Range.closed(38, 42));
+  }
+
+  /**
+   * Plays 5 seconds of a single audio item with the given renderer and returns the number of
+   * iterations of the playback loop per second of playback, as counted by the renderer.
+   */
+  private int getRenderCallsPerSecondOfPlayback(
+      FakeDurationToProgressRenderer renderer, boolean dynamicSchedulingEnabled)
+      throws Exception {
+    ExoPlayer player =
+        new TestExoPlayerBuilder(context)
+            .setRenderers(renderer)
+            .setDynamicSchedulingEnabled(dynamicSchedulingEnabled)
+            .build();
+    player.setMediaSource(
+        new FakeMediaSource(new FakeTimeline(), ExoPlayerTestRunner.AUDIO_FORMAT));
+    player.prepare();
+    runUntilPlaybackState(player, Player.STATE_READY);
+    renderer.renderCount = 0;
+
+    player.play();
+    playUntilPosition(player, /* mediaItemIndex= */ 0, /* positionMs= */ 5000);
+    player.release();
+
+    return renderer.renderCount / 5;
+  }
+
   @Test
   public void targetLiveOffsetInMedia_adjustsLiveOffsetToTargetOffset() throws Exception {
     long windowStartUnixTimeMs = 987_654_321_000L;
@@ -13215,6 +13303,34 @@ public final class ExoPlayerTest {
 
   // Internal classes.
 
+  /** {@link FakeRenderer} that counts render calls and reports a fixed duration to progress. */
+  private static final class FakeDurationToProgressRenderer extends FakeRenderer {
+
+    private final long durationToProgressUs;
+
+    public int renderCount;
+
+    public FakeDurationToProgressRenderer(long durationToProgressUs) {
+      this(C.TRACK_TYPE_AUDIO, durationToProgressUs);
+    }
+
+    public FakeDurationToProgressRenderer(@C.TrackType int trackType, long durationToProgressUs) {
+      super(trackType);
+      this.durationToProgressUs = durationToProgressUs;
+    }
+
+    @Override
+    public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+      renderCount++;
+      super.render(positionUs, elapsedRealtimeUs);
+    }
+
+    @Override
+    public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+      return durationToProgressUs;
+    }
+  }
+
   /** {@link FakeRenderer} that can sleep and be woken-up. */
   private static class FakeSleepRenderer extends FakeRenderer {
     private final AtomicBoolean sleepOnNextRender;
@@ -31,12 +31,15 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.analytics.AnalyticsCollector;
 import com.google.android.exoplayer2.analytics.DefaultAnalyticsCollector;
 import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.source.ForwardingTimeline;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.ShuffleOrder;
 import com.google.android.exoplayer2.testutil.FakeMediaSource;
 import com.google.android.exoplayer2.testutil.FakeShuffleOrder;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
 import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -149,7 +152,7 @@ public class MediaSourceListTest {
     for (int i = 0; i < mediaSources.size(); i++) {
       MediaSourceList.MediaSourceHolder mediaSourceHolder = mediaSources.get(i);
       assertThat(mediaSourceHolder.isRemoved).isFalse();
-      assertThat(mediaSourceHolder.firstWindowIndexInChild).isEqualTo(i);
+      assertThat(mediaSourceList.getFirstWindowIndexInChild(mediaSourceHolder)).isEqualTo(i);
     }
 
     // Set media items again. The second holder is re-used.
@@ -165,7 +168,7 @@ public class MediaSourceListTest {
     for (int i = 0; i < moreMediaSources.size(); i++) {
       MediaSourceList.MediaSourceHolder mediaSourceHolder = moreMediaSources.get(i);
       assertThat(mediaSourceHolder.isRemoved).isFalse();
-      assertThat(mediaSourceHolder.firstWindowIndexInChild).isEqualTo(i);
+      assertThat(mediaSourceList.getFirstWindowIndexInChild(mediaSourceHolder)).isEqualTo(i);
     }
     // Expect removed holders and sources to be removed without releasing.
     verify(mockMediaSource1, times(0)).releaseSource(any(MediaSource.MediaSourceCaller.class));
@@ -239,7 +242,7 @@ public class MediaSourceListTest {
             any(MediaSource.MediaSourceCaller.class), /* mediaTransferListener= */ isNull(), any());
 
     for (int i = 0; i < mediaSources.size(); i++) {
-      assertThat(mediaSources.get(i).firstWindowIndexInChild).isEqualTo(i);
+      assertThat(mediaSourceList.getFirstWindowIndexInChild(mediaSources.get(i))).isEqualTo(i);
       assertThat(mediaSources.get(i).isRemoved).isFalse();
     }
 
@@ -248,10 +251,10 @@ public class MediaSourceListTest {
     mediaSourceList.addMediaSources(
         /* index= */ 1, moreMediaSources, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 3));
 
-    assertThat(mediaSources.get(0).firstWindowIndexInChild).isEqualTo(0);
-    assertThat(moreMediaSources.get(0).firstWindowIndexInChild).isEqualTo(1);
-    assertThat(moreMediaSources.get(3).firstWindowIndexInChild).isEqualTo(4);
-    assertThat(mediaSources.get(1).firstWindowIndexInChild).isEqualTo(5);
+    assertThat(mediaSourceList.getFirstWindowIndexInChild(mediaSources.get(0))).isEqualTo(0);
+    assertThat(mediaSourceList.getFirstWindowIndexInChild(moreMediaSources.get(0))).isEqualTo(1);
+    assertThat(mediaSourceList.getFirstWindowIndexInChild(moreMediaSources.get(3))).isEqualTo(4);
+    assertThat(mediaSourceList.getFirstWindowIndexInChild(mediaSources.get(1))).isEqualTo(5);
   }
 
   @Test
@@ -315,6 +318,55 @@ public class MediaSourceListTest {
     assertDefaultFirstWindowInChildIndexOrder(holders);
   }
 
+  @Test
+  public void editsInLargePlaylist_onlyReadTimelinesAlongChangedPaths() {
+    int[] windowCountCalls = new int[1];
+    Timeline countingTimeline =
+        new ForwardingTimeline(new FakeTimeline(/* windowCount= */ 1)) {
+          @Override
+          public int getWindowCount() {
+            windowCountCalls[0]++;
+            return super.getWindowCount();
+          }
+        };
+    MediaSource mediaSource = mock(MediaSource.class);
+    when(mediaSource.getMediaItem()).thenReturn(MINIMAL_MEDIA_ITEM);
+    when(mediaSource.getInitialTimeline()).thenReturn(countingTimeline);
+    List<MediaSourceList.MediaSourceHolder> holders = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      holders.add(
+          new MediaSourceList.MediaSourceHolder(mediaSource, /* useLazyPreparation= */ true));
+    }
+    mediaSourceList.addMediaSources(
+        /* index= */ 0, holders, new ShuffleOrder.DefaultShuffleOrder(holders.size()));
+    MediaSourceList.MediaSourceHolder lastHolder = holders.get(holders.size() - 1);
+    windowCountCalls[0] = 0;
+
+    for (int i = 0; i < 100; i++) {
+      int size = mediaSourceList.getSize();
+      mediaSourceList.addMediaSources(
+          /* index= */ 0,
+          ImmutableList.of(
+              new MediaSourceList.MediaSourceHolder(
+                  mediaSource, /* useLazyPreparation= */ true)),
+          new ShuffleOrder.DefaultShuffleOrder(size + 1));
+      mediaSourceList.moveMediaSource(
+          /* currentIndex= */ size / 2,
+          /* newIndex= */ 0,
+          new ShuffleOrder.DefaultShuffleOrder(size + 1));
+      Timeline timeline =
+          mediaSourceList.removeMediaSourceRange(
+              /* fromIndex= */ size / 3,
+              /* toIndex= */ size / 3 + 1,
+              new ShuffleOrder.DefaultShuffleOrder(size));
+      assertThat(timeline.getWindowCount()).isEqualTo(size);
+      assertThat(mediaSourceList.getFirstWindowIndexInChild(lastHolder)).isEqualTo(size - 1);
+    }
+
+    // Reading the timelines of all media sources after each edit would take 3 million calls.
+    assertThat(windowCountCalls[0]).isLessThan(100 * 300);
+  }
+
   @Test
   public void removeMediaSources_whenUnprepared_expectNoRelease() {
     MediaSource mockMediaSource1 = mock(MediaSource.class);
@@ -386,6 +438,76 @@ public class MediaSourceListTest {
     verify(mockMediaSource4, times(0)).releaseSource(any(MediaSource.MediaSourceCaller.class));
   }
 
+  @Test
+  public void prepare_withPreparationWindow_preparesOnlySourcesInWindow() {
+    MediaSource[] mockMediaSources = createMockMediaSources(/* count= */ 4);
+    mediaSourceList.setPreparationWindowSize(1);
+    mediaSourceList.setMediaSources(
+        createFakeHoldersWithSources(/* useLazyPreparation= */ false, mockMediaSources),
+        new ShuffleOrder.DefaultShuffleOrder(/* length= */ 4));
+
+    mediaSourceList.prepare(/* mediaTransferListener= */ null);
+
+    verifyPrepareSourceCalls(mockMediaSources, /* expectedCounts...= */ 1, 1, 0, 0);
+  }
+
+  @Test
+  public void setCurrentPeriodUid_withPreparationWindow_preparesAndReleasesSources() {
+    MediaSource[] mockMediaSources = createMockMediaSources(/* count= */ 5);
+    List<MediaSourceList.MediaSourceHolder> holders =
+        createFakeHoldersWithSources(/* useLazyPreparation= */ false, mockMediaSources);
+    mediaSourceList.setPreparationWindowSize(1);
+    mediaSourceList.setMediaSources(holders, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 5));
+    mediaSourceList.prepare(/* mediaTransferListener= */ null);
+
+    mediaSourceList.setCurrentPeriodUid(
+        PlaylistTimeline.getConcatenatedUid(holders.get(3).uid, /* childPeriodOrWindowUid= */ 0));
+
+    verifyPrepareSourceCalls(mockMediaSources, /* expectedCounts...= */ 1, 1, 1, 1, 1);
+    verify(mockMediaSources[0], times(1)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[1], times(1)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[2], times(0)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[3], times(0)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[4], times(0)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    assertThat(holders.get(0).isRemoved).isFalse();
+  }
+
+  @Test
+  public void removeMediaSourceRange_withPreparationWindowAndCurrentSourceRemoved_keepsWindow() {
+    MediaSource[] mockMediaSources = createMockMediaSources(/* count= */ 5);
+    List<MediaSourceList.MediaSourceHolder> holders =
+        createFakeHoldersWithSources(/* useLazyPreparation= */ false, mockMediaSources);
+    mediaSourceList.setPreparationWindowSize(1);
+    mediaSourceList.setMediaSources(holders, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 5));
+    mediaSourceList.prepare(/* mediaTransferListener= */ null);
+    mediaSourceList.setCurrentPeriodUid(
+        PlaylistTimeline.getConcatenatedUid(holders.get(3).uid, /* childPeriodOrWindowUid= */ 0));
+
+    mediaSourceList.removeMediaSourceRange(
+        /* fromIndex= */ 3, /* toIndex= */ 4, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 4));
+
+    verifyPrepareSourceCalls(mockMediaSources, /* expectedCounts...= */ 1, 1, 1, 1, 1);
+    verify(mockMediaSources[0], times(1)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[1], times(1)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[2], times(0)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[3], times(1)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+    verify(mockMediaSources[4], times(0)).releaseSource(any(MediaSource.MediaSourceCaller.class));
+  }
+
+  @Test
+  public void addMediaSources_withPreparationWindow_preparesOnlySourcesInWindow() {
+    MediaSource[] mockMediaSources = createMockMediaSources(/* count= */ 3);
+    mediaSourceList.setPreparationWindowSize(1);
+    mediaSourceList.prepare(/* mediaTransferListener= */ null);
+
+    mediaSourceList.addMediaSources(
+        /* index= */ 0,
+        createFakeHoldersWithSources(/* useLazyPreparation= */ false, mockMediaSources),
+        new ShuffleOrder.DefaultShuffleOrder(/* length= */ 3));
+
+    verifyPrepareSourceCalls(mockMediaSources, /* expectedCounts...= */ 1, 1, 0);
+  }
+
   @Test
   public void release_mediaSourceListUnprepared_expectSourcesNotReleased() {
     MediaSource mockMediaSource = mock(MediaSource.class);
@@ -520,7 +642,7 @@ public class MediaSourceListTest {
         .isEqualTo(-1);
   }
 
-  private static void assertDefaultFirstWindowInChildIndexOrder(
+  private void assertDefaultFirstWindowInChildIndexOrder(
       List<MediaSourceList.MediaSourceHolder> holders) {
     int[] indices = new int[holders.size()];
     for (int i = 0; i < indices.length; i++) {
@@ -529,11 +651,31 @@ public class MediaSourceListTest {
     assertFirstWindowInChildIndices(holders, indices);
   }
 
-  private static void assertFirstWindowInChildIndices(
+  private void assertFirstWindowInChildIndices(
       List<MediaSourceList.MediaSourceHolder> holders, int... firstWindowInChildIndices) {
     assertThat(holders).hasSize(firstWindowInChildIndices.length);
     for (int i = 0; i < holders.size(); i++) {
-      assertThat(holders.get(i).firstWindowIndexInChild).isEqualTo(firstWindowInChildIndices[i]);
+      assertThat(mediaSourceList.getFirstWindowIndexInChild(holders.get(i)))
+          .isEqualTo(firstWindowInChildIndices[i]);
+    }
+  }
+
+  private static MediaSource[] createMockMediaSources(int count) {
+    MediaSource[] mediaSources = new MediaSource[count];
+    for (int i = 0; i < count; i++) {
+      mediaSources[i] = mock(MediaSource.class);
+      when(mediaSources[i].getMediaItem()).thenReturn(MINIMAL_MEDIA_ITEM);
+    }
+    return mediaSources;
+  }
+
+  private static void verifyPrepareSourceCalls(MediaSource[] mediaSources, int... expectedCounts) {
+    for (int i = 0; i < mediaSources.length; i++) {
+      verify(mediaSources[i], times(expectedCounts[i]))
+          .prepareSource(
+              any(MediaSource.MediaSourceCaller.class),
+              /* mediaTransferListener= */ isNull(),
+              any());
     }
   }
 
@@ -20,9 +20,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.ForwardingTimeline;
 import com.google.android.exoplayer2.source.ShuffleOrder;
 import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.util.Util;
 import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -72,4 +75,344 @@ public class PlaylistTimelineTest {
       }
     }
   }
+
+  @Test
+  public void copyWithInsertedChildren_equalsTimelineCreatedFromAllChildren() {
+    List<MediaSourceInfoHolder> holders = createHolders(/* count= */ 100);
+    PlaylistTimeline playlistTimeline =
+        createPlaylistTimeline(holders.subList(/* fromIndex= */ 0, /* toIndex= */ 40));
+
+    playlistTimeline =
+        playlistTimeline.copyWithInsertedChildren(
+            /* index= */ 40,
+            holders.subList(/* fromIndex= */ 90, /* toIndex= */ 100),
+            new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 50));
+    playlistTimeline =
+        playlistTimeline.copyWithInsertedChildren(
+            /* index= */ 0,
+            holders.subList(/* fromIndex= */ 40, /* toIndex= */ 90),
+            new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 100));
+
+    List<MediaSourceInfoHolder> expectedHolders = new ArrayList<>();
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 40, /* toIndex= */ 90));
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 0, /* toIndex= */ 40));
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 90, /* toIndex= */ 100));
+    assertTimelineEquals(playlistTimeline, createPlaylistTimeline(expectedHolders));
+  }
+
+  @Test
+  public void copyWithRemovedChildren_equalsTimelineCreatedFromRemainingChildren() {
+    List<MediaSourceInfoHolder> holders = createHolders(/* count= */ 100);
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(holders);
+
+    playlistTimeline =
+        playlistTimeline.copyWithRemovedChildren(
+            /* fromIndex= */ 10,
+            /* toIndex= */ 75,
+            new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 35));
+
+    List<MediaSourceInfoHolder> expectedHolders = new ArrayList<>();
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 0, /* toIndex= */ 10));
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 75, /* toIndex= */ 100));
+    assertTimelineEquals(playlistTimeline, createPlaylistTimeline(expectedHolders));
+  }
+
+  @Test
+  public void copyWithRemovedChildren_removeAll_returnsEmptyTimeline() {
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(createHolders(/* count= */ 10));
+
+    playlistTimeline =
+        playlistTimeline.copyWithRemovedChildren(
+            /* fromIndex= */ 0,
+            /* toIndex= */ 10,
+            new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 0));
+
+    assertThat(playlistTimeline.isEmpty()).isTrue();
+    assertThat(playlistTimeline.getPeriodCount()).isEqualTo(0);
+    assertThat(playlistTimeline.getChildTimelines()).isEmpty();
+  }
+
+  @Test
+  public void copyWithMovedChildren_equalsTimelineCreatedFromMovedChildren() {
+    List<MediaSourceInfoHolder> holders = createHolders(/* count= */ 100);
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(holders);
+
+    playlistTimeline =
+        playlistTimeline.copyWithMovedChildren(
+            /* fromIndex= */ 5,
+            /* toIndex= */ 20,
+            /* newFromIndex= */ 60,
+            new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 100));
+    List<MediaSourceInfoHolder> expectedHolders = new ArrayList<>(holders);
+    Util.moveItems(expectedHolders, /* fromIndex= */ 5, /* toIndex= */ 20, /* newIndex= */ 60);
+
+    assertTimelineEquals(playlistTimeline, createPlaylistTimeline(expectedHolders));
+  }
+
+  @Test
+  public void copyWithInsertedChildren_doesNotChangeOriginalTimeline() {
+    List<MediaSourceInfoHolder> holders = createHolders(/* count= */ 20);
+    PlaylistTimeline playlistTimeline =
+        createPlaylistTimeline(holders.subList(/* fromIndex= */ 0, /* toIndex= */ 10));
+
+    playlistTimeline.copyWithInsertedChildren(
+        /* index= */ 5,
+        holders.subList(/* fromIndex= */ 10, /* toIndex= */ 20),
+        new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 20));
+
+    assertTimelineEquals(
+        playlistTimeline,
+        createPlaylistTimeline(holders.subList(/* fromIndex= */ 0, /* toIndex= */ 10)));
+  }
+
+  @Test
+  public void manyEdits_lookupsMatchTimelineCreatedFromAllChildren() {
+    List<MediaSourceInfoHolder> holders = createHolders(/* count= */ 2000);
+    List<MediaSourceInfoHolder> expectedHolders = new ArrayList<>();
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(expectedHolders);
+
+    // Append items one by one, and remove and move items in between, as in a growing queue.
+    for (int i = 0; i < holders.size(); i++) {
+      int index = i % 7 == 0 ? expectedHolders.size() / 2 : expectedHolders.size();
+      playlistTimeline =
+          playlistTimeline.copyWithInsertedChildren(
+              index,
+              ImmutableList.of(holders.get(i)),
+              new ShuffleOrder.UnshuffledShuffleOrder(expectedHolders.size() + 1));
+      expectedHolders.add(index, holders.get(i));
+      if (i % 5 == 4) {
+        playlistTimeline =
+            playlistTimeline.copyWithRemovedChildren(
+                /* fromIndex= */ 1,
+                /* toIndex= */ 3,
+                new ShuffleOrder.UnshuffledShuffleOrder(expectedHolders.size() - 2));
+        expectedHolders.subList(/* fromIndex= */ 1, /* toIndex= */ 3).clear();
+      }
+      if (i % 11 == 10) {
+        int size = expectedHolders.size();
+        playlistTimeline =
+            playlistTimeline.copyWithMovedChildren(
+                /* fromIndex= */ size - 3,
+                /* toIndex= */ size,
+                /* newFromIndex= */ 0,
+                new ShuffleOrder.UnshuffledShuffleOrder(size));
+        Util.moveItems(expectedHolders, size - 3, size, /* newIndex= */ 0);
+      }
+    }
+
+    assertTimelineEquals(playlistTimeline, createPlaylistTimeline(expectedHolders));
+  }
+
+  @Test
+  public void repeatedInsertionsAtSameIndex_lookupsMatchTimelineCreatedFromAllChildren() {
+    List<MediaSourceInfoHolder> holders = createHolders(/* count= */ 3000);
+    List<MediaSourceInfoHolder> expectedHolders = new ArrayList<>(holders.subList(0, 10));
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(expectedHolders);
+
+    // Insert at the front and at a fixed index, so that the keys around them run out of room.
+    for (int i = 10; i < holders.size(); i++) {
+      int index = i % 2 == 0 ? 0 : 5;
+      playlistTimeline =
+          playlistTimeline.copyWithInsertedChildren(
+              index,
+              ImmutableList.of(holders.get(i)),
+              new ShuffleOrder.UnshuffledShuffleOrder(expectedHolders.size() + 1));
+      expectedHolders.add(index, holders.get(i));
+    }
+
+    assertTimelineEquals(playlistTimeline, createPlaylistTimeline(expectedHolders));
+  }
+
+  @Test
+  public void getIndexOfPeriod_withCollidingChildUidHashCodes_returnsIndexOfEachChild() {
+    List<MediaSourceInfoHolder> holders = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      holders.add(
+          new FakeMediaSourceInfoHolder(
+              new CollidingUid(/* hashCode= */ i % 3 == 0 ? 0 : i), new FakeTimeline(1)));
+    }
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(holders.subList(0, 50));
+
+    playlistTimeline =
+        playlistTimeline
+            .copyWithInsertedChildren(
+                /* index= */ 25,
+                holders.subList(/* fromIndex= */ 50, /* toIndex= */ 100),
+                new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 100))
+            .copyWithRemovedChildren(
+                /* fromIndex= */ 0,
+                /* toIndex= */ 10,
+                new ShuffleOrder.UnshuffledShuffleOrder(/* length= */ 90));
+
+    List<MediaSourceInfoHolder> expectedHolders = new ArrayList<>();
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 10, /* toIndex= */ 25));
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 50, /* toIndex= */ 100));
+    expectedHolders.addAll(holders.subList(/* fromIndex= */ 25, /* toIndex= */ 50));
+    assertTimelineEquals(playlistTimeline, createPlaylistTimeline(expectedHolders));
+    Object removedPeriodUid =
+        createPlaylistTimeline(holders).getPeriod(0, new Timeline.Period(), true).uid;
+    assertThat(playlistTimeline.getIndexOfPeriod(removedPeriodUid)).isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void copyWithUpdatedChildTimeline_equalsTimelineCreatedFromUpdatedChildren() {
+    List<MediaSourceInfoHolder> holders = createHolders(/* count= */ 20);
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(holders);
+    FakeMediaSourceInfoHolder updatedHolder =
+        new FakeMediaSourceInfoHolder(holders.get(7).getUid(), new FakeTimeline(5));
+
+    playlistTimeline =
+        playlistTimeline.copyWithUpdatedChildTimeline(
+            /* childIndex= */ 7, updatedHolder.getTimeline());
+
+    List<MediaSourceInfoHolder> expectedHolders = new ArrayList<>(holders);
+    expectedHolders.set(7, updatedHolder);
+    assertTimelineEquals(playlistTimeline, createPlaylistTimeline(expectedHolders));
+  }
+
+  @Test
+  public void editsAndLookups_inLargePlaylist_takeLogarithmicTime() {
+    int childCount = 1 << 16;
+    OperationCounter operationCounter = new OperationCounter();
+    Timeline timeline = new CountingTimeline(new FakeTimeline(1), operationCounter);
+    List<MediaSourceInfoHolder> holders = new ArrayList<>();
+    for (int i = 0; i < childCount + 1000; i++) {
+      holders.add(new FakeMediaSourceInfoHolder(new CountingUid(operationCounter), timeline));
+    }
+    PlaylistTimeline playlistTimeline = createPlaylistTimeline(holders.subList(0, childCount));
+    Timeline.Period period = new Timeline.Period();
+    Object lastPeriodUid =
+        playlistTimeline.getPeriod(childCount - 1, period, /* setIds= */ true).uid;
+    operationCounter.count = 0;
+
+    // Insert items one by one at the front and in the middle, and remove and move items, looking
+    // up the period of the last item after each edit as ExoPlayerImpl does.
+    for (int i = 0; i < 1000; i++) {
+      int size = playlistTimeline.getChildCount();
+      playlistTimeline =
+          playlistTimeline.copyWithInsertedChildren(
+              /* index= */ i % 2 == 0 ? 0 : size / 2,
+              ImmutableList.of(holders.get(childCount + i)),
+              new ShuffleOrder.UnshuffledShuffleOrder(size + 1));
+      if (i % 10 == 0) {
+        playlistTimeline =
+            playlistTimeline
+                .copyWithRemovedChildren(
+                    /* fromIndex= */ size / 3,
+                    /* toIndex= */ size / 3 + 1,
+                    new ShuffleOrder.UnshuffledShuffleOrder(size))
+                .copyWithMovedChildren(
+                    /* fromIndex= */ 1,
+                    /* toIndex= */ 3,
+                    /* newFromIndex= */ size - 10,
+                    new ShuffleOrder.UnshuffledShuffleOrder(size));
+      }
+      assertThat(playlistTimeline.getIndexOfPeriod(lastPeriodUid))
+          .isEqualTo(playlistTimeline.getPeriodCount() - 1);
+    }
+
+    // Rebuilding the tree or indexing all child uids after each edit would take more than 65
+    // million operations.
+    assertThat(operationCounter.count).isLessThan(1000 * 200);
+  }
+
+  private static void assertTimelineEquals(
+      PlaylistTimeline actualTimeline, PlaylistTimeline expectedTimeline) {
+    assertThat(actualTimeline).isEqualTo(expectedTimeline);
+    assertThat(actualTimeline.getChildTimelines())
+        .containsExactlyElementsIn(expectedTimeline.getChildTimelines())
+        .inOrder();
+    Timeline.Period period = new Timeline.Period();
+    for (int i = 0; i < expectedTimeline.getPeriodCount(); i++) {
+      Object uid = expectedTimeline.getPeriod(i, period, /* setIds= */ true).uid;
+      assertThat(actualTimeline.getIndexOfPeriod(uid)).isEqualTo(i);
+    }
+  }
+
+  private static PlaylistTimeline createPlaylistTimeline(List<MediaSourceInfoHolder> holders) {
+    return new PlaylistTimeline(holders, new ShuffleOrder.UnshuffledShuffleOrder(holders.size()));
+  }
+
+  /** Creates holders with child timelines of zero to three windows, including empty ones. */
+  private static List<MediaSourceInfoHolder> createHolders(int count) {
+    List<MediaSourceInfoHolder> holders = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      holders.add(new FakeMediaSourceInfoHolder("uid" + i, new FakeTimeline(i % 4)));
+    }
+    return holders;
+  }
+
+  /** A uid with a given hash code. */
+  private static final class CollidingUid {
+
+    private final int hashCode;
+
+    public CollidingUid(int hashCode) {
+      this.hashCode = hashCode;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /** Counts operations whose number is proportional to the time taken by edits and lookups. */
+  private static final class OperationCounter {
+    public int count;
+  }
+
+  /** A uid counting the calls to {@link #hashCode()}, made when it's indexed or looked up. */
+  private static final class CountingUid {
+
+    private final OperationCounter operationCounter;
+
+    public CountingUid(OperationCounter operationCounter) {
+      this.operationCounter = operationCounter;
+    }
+
+    @Override
+    public int hashCode() {
+      operationCounter.count++;
+      return super.hashCode();
+    }
+  }
+
+  /** A timeline counting the calls to {@link #getWindowCount()}, made once per tree node created. */
+  private static final class CountingTimeline extends ForwardingTimeline {
+
+    private final OperationCounter operationCounter;
+
+    public CountingTimeline(Timeline timeline, OperationCounter operationCounter) {
+      super(timeline);
+      this.operationCounter = operationCounter;
+    }
+
+    @Override
+    public int getWindowCount() {
+      operationCounter.count++;
+      return super.getWindowCount();
+    }
+  }
+
+  private static final class FakeMediaSourceInfoHolder implements MediaSourceInfoHolder {
+
+    private final Object uid;
+    private final Timeline timeline;
+
+    public FakeMediaSourceInfoHolder(Object uid, Timeline timeline) {
+      this.uid = uid;
+      this.timeline = timeline;
+    }
+
+    @Override
+    public Object getUid() {
+      return uid;
+    }
+
+    @Override
+    public Timeline getTimeline() {
+      return timeline;
+    }
+  }
 }
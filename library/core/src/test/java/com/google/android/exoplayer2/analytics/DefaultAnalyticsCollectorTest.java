@@ -20,6 +20,7 @@ import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_AU
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_AUDIO_ENABLED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_AUDIO_INPUT_FORMAT_CHANGED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_AUDIO_POSITION_ADVANCING;
+import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_BANDWIDTH_ESTIMATE;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_DOWNSTREAM_FORMAT_CHANGED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_DRM_KEYS_LOADED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_DRM_SESSION_ACQUIRED;
@@ -1886,6 +1887,61 @@ public final class DefaultAnalyticsCollectorTest {
     inOrder.verify(listener3).onSurfaceSizeChanged(any(), eq(0), eq(0));
   }
 
+  @Test
+  public void highFrequencyEvents_inSameIteration_areCoalescedWithAccumulatedValues() {
+    AnalyticsCollector analyticsCollector = new DefaultAnalyticsCollector(Clock.DEFAULT);
+    analyticsCollector.setPlayer(
+        new ExoPlayer.Builder(ApplicationProvider.getApplicationContext()).build(),
+        Looper.myLooper());
+    AnalyticsListener listener = mock(AnalyticsListener.class);
+    analyticsCollector.addListener(listener);
+
+    analyticsCollector.onDroppedFrames(/* count= */ 2, /* elapsedMs= */ 10);
+    analyticsCollector.onVideoFrameProcessingOffset(
+        /* totalProcessingOffsetUs= */ 100, /* frameCount= */ 1);
+    analyticsCollector.onBandwidthSample(
+        /* elapsedMs= */ 100, /* bytesTransferred= */ 1_000, /* bitrateEstimate= */ 8_000);
+    analyticsCollector.onDroppedFrames(/* count= */ 3, /* elapsedMs= */ 20);
+    analyticsCollector.onVideoFrameProcessingOffset(
+        /* totalProcessingOffsetUs= */ 200, /* frameCount= */ 2);
+    analyticsCollector.onBandwidthSample(
+        /* elapsedMs= */ 200, /* bytesTransferred= */ 3_000, /* bitrateEstimate= */ 9_000);
+    idleMainLooper();
+
+    verify(listener).onDroppedVideoFrames(any(), eq(5), eq(30L));
+    verify(listener).onVideoFrameProcessingOffset(any(), eq(300L), eq(3));
+    verify(listener).onBandwidthEstimate(any(), eq(300), eq(4_000L), eq(9_000L));
+    verify(listener)
+        .onEvents(
+            any(),
+            argThat(
+                events ->
+                    events.size() == 3
+                        && events.contains(EVENT_DROPPED_VIDEO_FRAMES)
+                        && events.contains(EVENT_VIDEO_FRAME_PROCESSING_OFFSET)
+                        && events.contains(EVENT_BANDWIDTH_ESTIMATE)));
+  }
+
+  @Test
+  public void highFrequencyEvent_followedByOtherEvent_isSentFirst() {
+    AnalyticsCollector analyticsCollector = new DefaultAnalyticsCollector(Clock.DEFAULT);
+    analyticsCollector.setPlayer(
+        new ExoPlayer.Builder(ApplicationProvider.getApplicationContext()).build(),
+        Looper.myLooper());
+    AnalyticsListener listener = mock(AnalyticsListener.class);
+    analyticsCollector.addListener(listener);
+
+    analyticsCollector.onDroppedFrames(/* count= */ 2, /* elapsedMs= */ 10);
+    analyticsCollector.onSurfaceSizeChanged(/* width= */ 0, /* height= */ 0);
+    analyticsCollector.onDroppedFrames(/* count= */ 3, /* elapsedMs= */ 20);
+    idleMainLooper();
+
+    InOrder inOrder = inOrder(listener);
+    inOrder.verify(listener).onDroppedVideoFrames(any(), eq(2), eq(10L));
+    inOrder.verify(listener).onSurfaceSizeChanged(any(), eq(0), eq(0));
+    inOrder.verify(listener).onDroppedVideoFrames(any(), eq(3), eq(20L));
+  }
+
   @Test
   public void release_withCallbacksArrivingAfterRelease_onPlayerReleasedForwardedLast()
       throws Exception {
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link DurationHistogram}. */
+@RunWith(AndroidJUnit4.class)
+public class DurationHistogramTest {
+
+  @Test
+  public void empty_hasNoCountAndUnsetQuantiles() {
+    assertThat(DurationHistogram.EMPTY.getCount()).isEqualTo(0);
+    assertThat(DurationHistogram.EMPTY.getQuantileMs(0.5)).isEqualTo(C.TIME_UNSET);
+  }
+
+  @Test
+  public void getQuantileMs_estimatesWithinRelativeAccuracy() {
+    DurationHistogram.Builder builder = new DurationHistogram.Builder();
+    for (int durationMs = 1; durationMs <= 10_000; durationMs++) {
+      builder.add(durationMs);
+    }
+    DurationHistogram histogram = builder.build();
+
+    assertThat(histogram.getCount()).isEqualTo(10_000);
+    assertThat((double) histogram.getQuantileMs(0.5))
+        .isWithin(5_000 * DurationHistogram.RELATIVE_ACCURACY)
+        .of(5_000);
+    assertThat((double) histogram.getQuantileMs(0.99))
+        .isWithin(9_900 * DurationHistogram.RELATIVE_ACCURACY)
+        .of(9_900);
+    assertThat((double) histogram.getQuantileMs(1))
+        .isWithin(10_000 * DurationHistogram.RELATIVE_ACCURACY)
+        .of(10_000);
+  }
+
+  @Test
+  public void getQuantileMs_withZeroAndNegativeDurations_returnsZero() {
+    DurationHistogram histogram = new DurationHistogram.Builder().add(0).add(-5).add(100).build();
+
+    assertThat(histogram.getQuantileMs(0)).isEqualTo(0);
+    assertThat(histogram.getQuantileMs(0.5)).isEqualTo(0);
+  }
+
+  @Test
+  public void getQuantileMs_withDurationAboveMax_returnsApproximateMax() {
+    DurationHistogram histogram =
+        new DurationHistogram.Builder().add(10 * DurationHistogram.MAX_DURATION_MS).build();
+
+    assertThat((double) histogram.getQuantileMs(0.5))
+        .isWithin(DurationHistogram.MAX_DURATION_MS * DurationHistogram.RELATIVE_ACCURACY)
+        .of(DurationHistogram.MAX_DURATION_MS);
+  }
+
+  @Test
+  public void merge_equalsHistogramOfAllDurations() {
+    DurationHistogram first = new DurationHistogram.Builder().add(10).add(2_000).build();
+    DurationHistogram second = new DurationHistogram.Builder().add(300).build();
+
+    DurationHistogram merged = DurationHistogram.merge(first, second, DurationHistogram.EMPTY);
+
+    assertThat(merged.getCount()).isEqualTo(3);
+    assertThat(merged)
+        .isEqualTo(new DurationHistogram.Builder().add(10).add(300).add(2_000).build());
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.Renderer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link AudioRendererUtil}. */
+@RunWith(AndroidJUnit4.class)
+public final class AudioRendererUtilTest {
+
+  @Test
+  public void getDurationToProgressUsForFullSink_returnsHalfOfBufferedDuration() {
+    long durationUs =
+        AudioRendererUtil.getDurationToProgressUsForFullSink(
+            /* nextBufferToWritePresentationTimeUs= */ 1_200_000,
+            /* positionUs= */ 1_000_000,
+            /* playbackSpeed= */ 1f);
+
+    assertThat(durationUs).isEqualTo(100_000);
+  }
+
+  @Test
+  public void getDurationToProgressUsForFullSink_withFastPlayback_scalesToRealTime() {
+    long durationUs =
+        AudioRendererUtil.getDurationToProgressUsForFullSink(
+            /* nextBufferToWritePresentationTimeUs= */ 1_200_000,
+            /* positionUs= */ 1_000_000,
+            /* playbackSpeed= */ 2f);
+
+    assertThat(durationUs).isEqualTo(50_000);
+  }
+
+  @Test
+  public void getDurationToProgressUsForFullSink_withLittleBufferedAudio_returnsDefaultDuration() {
+    long durationUs =
+        AudioRendererUtil.getDurationToProgressUsForFullSink(
+            /* nextBufferToWritePresentationTimeUs= */ 1_001_000,
+            /* positionUs= */ 1_000_000,
+            /* playbackSpeed= */ 1f);
+
+    assertThat(durationUs).isEqualTo(Renderer.DEFAULT_DURATION_TO_PROGRESS_US);
+  }
+}
@@ -24,11 +24,15 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.source.CacheSeekIndexStore;
+import com.google.android.exoplayer2.source.SeekIndex;
 import com.google.android.exoplayer2.testutil.FailOnCloseDataSink;
 import com.google.android.exoplayer2.testutil.FakeDataSet;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
@@ -173,6 +177,59 @@ public class ProgressiveDownloaderTest {
     assertThat(progressListener.bytesDownloaded).isEqualTo(2_000_000);
   }
 
+  @Test
+  public void download_withSeekIndexExtractorsFactory_storesSeekIndexForTsStream()
+      throws Exception {
+    Uri uri = Uri.parse("test:///bbb_2500ms.ts");
+    byte[] tsData =
+        TestUtil.getByteArray(
+            ApplicationProvider.getApplicationContext(), "media/ts/bbb_2500ms.ts");
+    FakeDataSet data = new FakeDataSet();
+    data.newData(uri).appendReadData(tsData);
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(downloadCache)
+            .setUpstreamDataSourceFactory(new FakeDataSource.Factory().setFakeDataSet(data));
+    ProgressiveDownloader downloader =
+        new ProgressiveDownloader(
+            MediaItem.fromUri(uri),
+            cacheDataSourceFactory,
+            Runnable::run,
+            new DefaultExtractorsFactory());
+
+    downloader.download(/* progressListener= */ null);
+
+    SeekIndex seekIndex = new CacheSeekIndexStore(downloadCache).load(new DataSpec(uri));
+    assertThat(seekIndex).isNotNull();
+    assertThat(seekIndex.getContentLength()).isEqualTo(tsData.length);
+    assertThat(seekIndex.getEntryCount()).isEqualTo(3);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 1_500_000)).isNotEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void download_withSeekIndexExtractorsFactory_doesNotIndexMp4Stream() throws Exception {
+    Uri uri = Uri.parse("test:///sample.mp4");
+    FakeDataSet data = new FakeDataSet();
+    data.newData(uri)
+        .appendReadData(
+            TestUtil.getByteArray(
+                ApplicationProvider.getApplicationContext(), "media/mp4/sample.mp4"));
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(downloadCache)
+            .setUpstreamDataSourceFactory(new FakeDataSource.Factory().setFakeDataSet(data));
+    ProgressiveDownloader downloader =
+        new ProgressiveDownloader(
+            MediaItem.fromUri(uri),
+            cacheDataSourceFactory,
+            Runnable::run,
+            new DefaultExtractorsFactory());
+
+    downloader.download(/* progressListener= */ null);
+
+    assertThat(new CacheSeekIndexStore(downloadCache).load(new DataSpec(uri))).isNull();
+  }
+
   private static final class TestProgressListener implements Downloader.ProgressListener {
 
     public long bytesDownloaded;
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.RestorableExtractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.util.FileTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Bytes;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link BundledExtractorsAdapter}. */
+@RunWith(AndroidJUnit4.class)
+public final class BundledExtractorsAdapterTest {
+
+  private static final int SCANNED_LENGTH = 10_000;
+
+  @Test
+  public void init_withScanningSniffer_readsAheadWhileSniffing() throws IOException {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100_000);
+    CountingDataReader dataReader = new CountingDataReader(data);
+    ScanningExtractor rejectingExtractor = new ScanningExtractor(/* accept= */ false);
+    ScanningExtractor acceptingExtractor = new ScanningExtractor(/* accept= */ true);
+    BundledExtractorsAdapter adapter =
+        new BundledExtractorsAdapter(
+            () -> new Extractor[] {rejectingExtractor, acceptingExtractor});
+
+    adapter.init(
+        dataReader,
+        Uri.EMPTY,
+        ImmutableMap.of(),
+        /* position= */ 0,
+        /* length= */ data.length,
+        new FakeExtractorOutput());
+
+    assertThat(acceptingExtractor.initialized).isTrue();
+    // The sniffers scanned the data one byte at a time, but it was read in a few large chunks.
+    assertThat(dataReader.readCount).isLessThan(5);
+  }
+
+  @Test
+  public void read_afterSniffing_returnsAllData() throws IOException {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100_000);
+    CountingDataReader dataReader = new CountingDataReader(data);
+    ScanningExtractor acceptingExtractor = new ScanningExtractor(/* accept= */ true);
+    BundledExtractorsAdapter adapter =
+        new BundledExtractorsAdapter(
+            () -> new Extractor[] {new ScanningExtractor(/* accept= */ false), acceptingExtractor});
+    adapter.init(
+        dataReader,
+        Uri.EMPTY,
+        ImmutableMap.of(),
+        /* position= */ 0,
+        /* length= */ data.length,
+        new FakeExtractorOutput());
+    PositionHolder positionHolder = new PositionHolder();
+
+    while (adapter.read(positionHolder) == Extractor.RESULT_CONTINUE) {}
+
+    assertThat(acceptingExtractor.readData.toByteArray()).isEqualTo(data);
+    assertThat(adapter.getCurrentInputPosition()).isEqualTo(data.length);
+  }
+
+  @Test
+  public void init_withMultipleExtractors_passesContentInferredFileTypeToFactory()
+      throws IOException {
+    byte[] data =
+        Bytes.concat(Util.getUtf8Bytes("fLaC"), TestUtil.buildTestData(/* length= */ 100_000));
+    AtomicInteger contentInferredFileType = new AtomicInteger(C.INDEX_UNSET);
+    ExtractorsFactory extractorsFactory =
+        new ExtractorsFactory() {
+          @Override
+          public Extractor[] createExtractors() {
+            return new Extractor[] {
+              new ScanningExtractor(/* accept= */ false), new ScanningExtractor(/* accept= */ true)
+            };
+          }
+
+          @Override
+          public Extractor[] createExtractors(
+              Uri uri, Map<String, List<String>> responseHeaders, int fileType) {
+            contentInferredFileType.set(fileType);
+            return createExtractors();
+          }
+        };
+
+    initAdapter(extractorsFactory, data);
+
+    assertThat(contentInferredFileType.get()).isEqualTo(FileTypes.FLAC);
+  }
+
+  @Test
+  public void init_withMultipleExtractors_reportsIndexOfSniffedExtractor() throws IOException {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100_000);
+    ScanningExtractor acceptingExtractor = new ScanningExtractor(/* accept= */ true);
+    ScanningExtractor rejectingExtractor = new ScanningExtractor(/* accept= */ false);
+
+    BundledExtractorsAdapter firstExtractorAdapter =
+        initAdapter(() -> new Extractor[] {acceptingExtractor, rejectingExtractor}, data);
+    BundledExtractorsAdapter secondExtractorAdapter =
+        initAdapter(() -> new Extractor[] {rejectingExtractor, acceptingExtractor}, data);
+
+    assertThat(firstExtractorAdapter.getSniffedExtractorIndex()).isEqualTo(0);
+    assertThat(secondExtractorAdapter.getSniffedExtractorIndex()).isEqualTo(1);
+  }
+
+  @Test
+  public void init_withSingleExtractor_createsExtractorsOnceAndDoesNotSniff() throws IOException {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100_000);
+    CountingExtractorsFactory extractorsFactory =
+        new CountingExtractorsFactory(
+            () -> new Extractor[] {new ScanningExtractor(/* accept= */ false)});
+    BundledExtractorsAdapter adapter = new BundledExtractorsAdapter(extractorsFactory);
+    adapter.init(
+        new CountingDataReader(data),
+        Uri.EMPTY,
+        ImmutableMap.of(),
+        /* position= */ 0,
+        /* length= */ data.length,
+        new FakeExtractorOutput());
+    PositionHolder positionHolder = new PositionHolder();
+
+    while (adapter.read(positionHolder) == Extractor.RESULT_CONTINUE) {}
+
+    ScanningExtractor extractor = (ScanningExtractor) extractorsFactory.extractors[0];
+    assertThat(extractorsFactory.createExtractorsCount).isEqualTo(1);
+    assertThat(extractor.initialized).isTrue();
+    assertThat(extractor.readData.toByteArray()).isEqualTo(data);
+    assertThat(adapter.getSniffedExtractorIndex()).isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void init_withMultipleExtractors_createsExtractorsOnce() throws IOException {
+    byte[] data =
+        Bytes.concat(Util.getUtf8Bytes("fLaC"), TestUtil.buildTestData(/* length= */ 100_000));
+    CountingExtractorsFactory extractorsFactory =
+        new CountingExtractorsFactory(
+            () ->
+                new Extractor[] {
+                  new ScanningExtractor(/* accept= */ false),
+                  new ScanningExtractor(/* accept= */ true)
+                });
+
+    initAdapter(extractorsFactory, data);
+
+    assertThat(extractorsFactory.createExtractorsCount).isEqualTo(1);
+  }
+
+  @Test
+  public void init_afterRestoringSnapshot_doesNotSniff() throws IOException {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100_000);
+    byte[] snapshot = TestUtil.buildTestData(/* length= */ 10);
+    CountingDataReader dataReader = new CountingDataReader(data);
+    ScanningExtractor restorableExtractor = new RestorableScanningExtractor(snapshot);
+    BundledExtractorsAdapter adapter =
+        new BundledExtractorsAdapter(
+            () -> new Extractor[] {new ScanningExtractor(/* accept= */ true), restorableExtractor});
+
+    boolean restored = adapter.restoreSnapshot(snapshot, new FakeExtractorOutput());
+    adapter.init(
+        dataReader,
+        Uri.EMPTY,
+        ImmutableMap.of(),
+        /* position= */ 0,
+        /* length= */ data.length,
+        new FakeExtractorOutput());
+
+    assertThat(restored).isTrue();
+    assertThat(restorableExtractor.initialized).isTrue();
+    assertThat(dataReader.readCount).isEqualTo(0);
+    assertThat(adapter.createSnapshot()).isEqualTo(snapshot);
+  }
+
+  @Test
+  public void restoreSnapshot_withUnknownSnapshot_returnsFalse() throws IOException {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100_000);
+    ScanningExtractor acceptingExtractor = new ScanningExtractor(/* accept= */ true);
+    BundledExtractorsAdapter adapter =
+        new BundledExtractorsAdapter(
+            () ->
+                new Extractor[] {
+                  new RestorableScanningExtractor(TestUtil.buildTestData(/* length= */ 10)),
+                  acceptingExtractor
+                });
+
+    boolean restored =
+        adapter.restoreSnapshot(
+            TestUtil.buildTestData(/* length= */ 10, /* seed= */ 1), new FakeExtractorOutput());
+    adapter.init(
+        new CountingDataReader(data),
+        Uri.EMPTY,
+        ImmutableMap.of(),
+        /* position= */ 0,
+        /* length= */ data.length,
+        new FakeExtractorOutput());
+
+    assertThat(restored).isFalse();
+    assertThat(acceptingExtractor.initialized).isTrue();
+    assertThat(adapter.createSnapshot()).isNull();
+  }
+
+  private static BundledExtractorsAdapter initAdapter(
+      ExtractorsFactory extractorsFactory, byte[] data) throws IOException {
+    BundledExtractorsAdapter adapter = new BundledExtractorsAdapter(extractorsFactory);
+    adapter.init(
+        new CountingDataReader(data),
+        Uri.EMPTY,
+        ImmutableMap.of(),
+        /* position= */ 0,
+        /* length= */ data.length,
+        new FakeExtractorOutput());
+    return adapter;
+  }
+
+  /**
+   * An {@link ExtractorsFactory} that counts how often extractors are created, and keeps the last
+   * extractors it created.
+   */
+  private static final class CountingExtractorsFactory implements ExtractorsFactory {
+
+    private final ExtractorsFactory extractorsFactory;
+
+    private int createExtractorsCount;
+    private Extractor[] extractors;
+
+    public CountingExtractorsFactory(ExtractorsFactory extractorsFactory) {
+      this.extractorsFactory = extractorsFactory;
+      extractors = new Extractor[0];
+    }
+
+    @Override
+    public Extractor[] createExtractors() {
+      createExtractorsCount++;
+      extractors = extractorsFactory.createExtractors();
+      return extractors;
+    }
+  }
+
+  /**
+   * A {@link DataReader} that reads from a byte array, and counts the reads and records the largest
+   * requested length.
+   */
+  private static final class CountingDataReader implements DataReader {
+
+    private final byte[] data;
+
+    private int position;
+    private int readCount;
+    private int maxReadLength;
+
+    public CountingDataReader(byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      readCount++;
+      maxReadLength = max(maxReadLength, length);
+      if (position == data.length) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int bytesRead = min(length, data.length - position);
+      System.arraycopy(data, position, buffer, offset, bytesRead);
+      position += bytesRead;
+      return bytesRead;
+    }
+  }
+
+  /**
+   * An {@link Extractor} whose sniffer peeks one byte at a time, like sniffers searching for a sync
+   * word, and which reads all data in {@link #read}.
+   */
+  private static class ScanningExtractor implements Extractor {
+
+    private final boolean accept;
+    private final ByteArrayOutputStream readData;
+
+    private boolean initialized;
+
+    public ScanningExtractor(boolean accept) {
+      this.accept = accept;
+      readData = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException {
+      for (int i = 0; i < SCANNED_LENGTH; i++) {
+        input.advancePeekPosition(1);
+      }
+      return accept;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+      initialized = true;
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException {
+      byte[] buffer = new byte[1000];
+      int bytesRead = input.read(buffer, /* offset= */ 0, buffer.length);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        return RESULT_END_OF_INPUT;
+      }
+      readData.write(buffer, /* offset= */ 0, bytesRead);
+      return RESULT_CONTINUE;
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {
+      // Do nothing.
+    }
+
+    @Override
+    public void release() {
+      // Do nothing.
+    }
+  }
+
+  /**
+   * A {@link ScanningExtractor} that rejects the stream when sniffing, but restores a given
+   * snapshot.
+   */
+  private static final class RestorableScanningExtractor extends ScanningExtractor
+      implements RestorableExtractor {
+
+    private final byte[] snapshot;
+
+    private boolean restored;
+
+    public RestorableScanningExtractor(byte[] snapshot) {
+      super(/* accept= */ false);
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public void requestSnapshot() {}
+
+    @Override
+    @Nullable
+    public byte[] createSnapshot() {
+      return restored ? snapshot : null;
+    }
+
+    @Override
+    public boolean restoreSnapshot(byte[] snapshot) {
+      restored = Arrays.equals(snapshot, this.snapshot);
+      return restored;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ExtractorSnapshot}. */
+@RunWith(AndroidJUnit4.class)
+public final class ExtractorSnapshotTest {
+
+  private static final long CONTENT_LENGTH = 10_000_000;
+  private static final String CONTENT_VERSION = "ETag: \"abc\"";
+
+  @Test
+  public void toByteArray_fromByteArray_roundTrips() {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100);
+    ExtractorSnapshot extractorSnapshot =
+        new ExtractorSnapshot(CONTENT_LENGTH, CONTENT_VERSION, data);
+
+    ExtractorSnapshot restoredExtractorSnapshot =
+        ExtractorSnapshot.fromByteArray(extractorSnapshot.toByteArray());
+
+    assertThat(restoredExtractorSnapshot).isNotNull();
+    assertThat(restoredExtractorSnapshot.getContentLength()).isEqualTo(CONTENT_LENGTH);
+    assertThat(restoredExtractorSnapshot.getContentVersion()).isEqualTo(CONTENT_VERSION);
+    assertThat(restoredExtractorSnapshot.getExtractorSnapshot()).isEqualTo(data);
+  }
+
+  @Test
+  public void toByteArray_fromByteArray_withoutContentVersion_roundTrips() {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100);
+    ExtractorSnapshot extractorSnapshot =
+        new ExtractorSnapshot(CONTENT_LENGTH, /* contentVersion= */ null, data);
+
+    ExtractorSnapshot restoredExtractorSnapshot =
+        ExtractorSnapshot.fromByteArray(extractorSnapshot.toByteArray());
+
+    assertThat(restoredExtractorSnapshot).isNotNull();
+    assertThat(restoredExtractorSnapshot.getContentVersion()).isNull();
+    assertThat(restoredExtractorSnapshot.getExtractorSnapshot()).isEqualTo(data);
+  }
+
+  @Test
+  public void matches_comparesContentLengthAndVersion() {
+    ExtractorSnapshot extractorSnapshot =
+        new ExtractorSnapshot(
+            CONTENT_LENGTH, CONTENT_VERSION, TestUtil.buildTestData(/* length= */ 10));
+
+    assertThat(extractorSnapshot.matches(CONTENT_LENGTH, CONTENT_VERSION)).isTrue();
+    assertThat(extractorSnapshot.matches(CONTENT_LENGTH, /* contentVersion= */ null)).isTrue();
+    assertThat(extractorSnapshot.matches(CONTENT_LENGTH - 1, CONTENT_VERSION)).isFalse();
+    assertThat(extractorSnapshot.matches(CONTENT_LENGTH, "ETag: \"def\"")).isFalse();
+  }
+
+  @Test
+  public void fromByteArray_malformedData_returnsNull() {
+    byte[] data =
+        new ExtractorSnapshot(
+                CONTENT_LENGTH, CONTENT_VERSION, TestUtil.buildTestData(/* length= */ 100))
+            .toByteArray();
+
+    assertThat(ExtractorSnapshot.fromByteArray(new byte[0])).isNull();
+    assertThat(ExtractorSnapshot.fromByteArray(Arrays.copyOf(data, 11))).isNull();
+    data[3] = 3; // Unsupported version.
+    assertThat(ExtractorSnapshot.fromByteArray(data)).isNull();
+  }
+}
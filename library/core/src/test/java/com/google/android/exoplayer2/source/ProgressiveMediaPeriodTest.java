@@ -19,17 +19,32 @@ import static com.google.android.exoplayer2.robolectric.RobolectricUtil.runMainL
 import static com.google.common.truth.Truth.assertThat;
 
 import android.net.Uri;
+import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.drm.DrmSessionEventListener;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
 import com.google.android.exoplayer2.upstream.AssetDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
@@ -39,6 +54,9 @@ import org.junit.runner.RunWith;
 @RunWith(AndroidJUnit4.class)
 public final class ProgressiveMediaPeriodTest {
 
+  private static final String TS_ASSET_PATH = "media/ts/bbb_2500ms.ts";
+  private static final long TS_SEEK_POSITION_US = 1_500_000;
+
   @Test
   public void prepareUsingBundledExtractors_updatesSourceInfoBeforeOnPreparedCallback()
       throws TimeoutException {
@@ -53,6 +71,108 @@ public final class ProgressiveMediaPeriodTest {
         new MediaParserExtractorAdapter(PlayerId.UNSET));
   }
 
+  @Test
+  public void prepareTwice_withExtractorSnapshotStore_restoresStoredSnapshot()
+      throws TimeoutException {
+    InMemoryExtractorSnapshotStore extractorSnapshotStore = new InMemoryExtractorSnapshotStore();
+
+    prepareMediaPeriod(extractorSnapshotStore);
+    runMainLooperUntil(() -> extractorSnapshotStore.extractorSnapshot != null);
+    prepareMediaPeriod(extractorSnapshotStore);
+
+    assertThat(extractorSnapshotStore.loadCount).isEqualTo(2);
+    // The snapshot was restored by the second period, which therefore didn't store a new one.
+    assertThat(extractorSnapshotStore.storeCount).isEqualTo(1);
+  }
+
+  @Test
+  public void seekToUs_withSeekIndexRecordedByEarlierPeriod_readsSameSamplesAsBinarySearchSeek()
+      throws TimeoutException {
+    InMemorySeekIndexStore seekIndexStore = new InMemorySeekIndexStore(/* seekIndex= */ null);
+    ProgressiveMediaPeriod recordingMediaPeriod =
+        createTsMediaPeriod(seekIndexStore, /* openedPositions= */ new ArrayList<>());
+    prepareAndSelectAudioTrack(recordingMediaPeriod);
+    runMainLooperUntil(() -> seekIndexStore.seekIndex != null);
+    recordingMediaPeriod.release();
+    long indexedPosition = seekIndexStore.seekIndex.getPosition(TS_SEEK_POSITION_US);
+    List<Long> indexedOpenedPositions = Collections.synchronizedList(new ArrayList<>());
+    ProgressiveMediaPeriod indexedMediaPeriod =
+        createTsMediaPeriod(seekIndexStore, indexedOpenedPositions);
+    ProgressiveMediaPeriod binarySearchMediaPeriod =
+        createTsMediaPeriod(/* seekIndexStore= */ null, /* openedPositions= */ new ArrayList<>());
+
+    List<Long> indexedSampleTimesUs =
+        seekAndReadAudioSampleTimesUs(indexedMediaPeriod, TS_SEEK_POSITION_US);
+    List<Long> binarySearchSampleTimesUs =
+        seekAndReadAudioSampleTimesUs(binarySearchMediaPeriod, TS_SEEK_POSITION_US);
+    indexedMediaPeriod.release();
+    binarySearchMediaPeriod.release();
+
+    // The indexed period loaded from the position the index recorded for the seek position.
+    assertThat(indexedOpenedPositions).contains(indexedPosition);
+    assertThat(indexedSampleTimesUs).isNotEmpty();
+    assertThat(indexedSampleTimesUs).containsExactlyElementsIn(binarySearchSampleTimesUs).inOrder();
+  }
+
+  @Test
+  public void prepare_withSeekIndexForDifferentContentLength_replacesSeekIndex()
+      throws IOException, TimeoutException {
+    long contentLength =
+        TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), TS_ASSET_PATH).length;
+    SeekIndex staleSeekIndex = new SeekIndex(contentLength + 1);
+    staleSeekIndex.add(/* timeUs= */ 0, /* position= */ 0);
+    staleSeekIndex.add(/* timeUs= */ 2_000_000, /* position= */ 100);
+    InMemorySeekIndexStore seekIndexStore = new InMemorySeekIndexStore(staleSeekIndex);
+    ProgressiveMediaPeriod mediaPeriod =
+        createTsMediaPeriod(seekIndexStore, /* openedPositions= */ new ArrayList<>());
+
+    prepareAndSelectAudioTrack(mediaPeriod);
+    runMainLooperUntil(() -> seekIndexStore.seekIndex != staleSeekIndex);
+    mediaPeriod.release();
+
+    SeekIndex seekIndex = seekIndexStore.seekIndex;
+    assertThat(seekIndex.getContentLength()).isEqualTo(contentLength);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 1_000_000)).isNotEqualTo(0L);
+  }
+
+  private static void prepareMediaPeriod(ExtractorSnapshotStore extractorSnapshotStore)
+      throws TimeoutException {
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    ProgressiveMediaPeriod mediaPeriod =
+        new ProgressiveMediaPeriod(
+            Uri.parse("asset://android_asset/media/mp4/sample.mp4"),
+            new AssetDataSource(ApplicationProvider.getApplicationContext()),
+            new BundledExtractorsAdapter(Mp4Extractor.FACTORY),
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            new DefaultLoadErrorHandlingPolicy(),
+            new MediaSourceEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            (durationUs, isSeekable, isLive) -> {},
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+            /* customCacheKey= */ null,
+            /* seekIndexStore= */ null,
+            extractorSnapshotStore,
+            ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES);
+    AtomicBoolean prepareCallbackCalled = new AtomicBoolean(false);
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepareCallbackCalled.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            source.continueLoading(/* positionUs= */ 0);
+          }
+        },
+        /* positionUs= */ 0);
+    runMainLooperUntil(prepareCallbackCalled::get);
+    mediaPeriod.release();
+  }
+
   private static void testExtractorsUpdatesSourceInfoBeforeOnPreparedCallback(
       ProgressiveMediaExtractor extractor) throws TimeoutException {
     AtomicBoolean sourceInfoRefreshCalled = new AtomicBoolean(false);
@@ -73,6 +193,8 @@ public final class ProgressiveMediaPeriodTest {
             sourceInfoRefreshListener,
             new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
             /* customCacheKey= */ null,
+            /* seekIndexStore= */ null,
+            /* extractorSnapshotStore= */ null,
             ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES);
 
     AtomicBoolean prepareCallbackCalled = new AtomicBoolean(false);
@@ -96,4 +218,156 @@ public final class ProgressiveMediaPeriodTest {
 
     assertThat(sourceInfoRefreshCalledBeforeOnPrepared.get()).isTrue();
   }
+
+  /**
+   * Creates a period for the TS test asset.
+   *
+   * @param seekIndexStore The {@link SeekIndexStore}, or null to not index the stream.
+   * @param openedPositions A list to which the positions at which the stream is opened are added.
+   */
+  private static ProgressiveMediaPeriod createTsMediaPeriod(
+      @Nullable SeekIndexStore seekIndexStore, List<Long> openedPositions) {
+    DataSource dataSource = new AssetDataSource(ApplicationProvider.getApplicationContext());
+    dataSource.addTransferListener(
+        new TransferListener() {
+          @Override
+          public void onTransferInitializing(
+              DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+          @Override
+          public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            openedPositions.add(dataSpec.position);
+          }
+
+          @Override
+          public void onBytesTransferred(
+              DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {}
+
+          @Override
+          public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+        });
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    return new ProgressiveMediaPeriod(
+        Uri.parse("asset://android_asset/" + TS_ASSET_PATH),
+        dataSource,
+        new BundledExtractorsAdapter(TsExtractor.FACTORY),
+        DrmSessionManager.DRM_UNSUPPORTED,
+        new DrmSessionEventListener.EventDispatcher()
+            .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+        new DefaultLoadErrorHandlingPolicy(),
+        new MediaSourceEventListener.EventDispatcher()
+            .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+        (durationUs, isSeekable, isLive) -> {},
+        new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+        /* customCacheKey= */ null,
+        seekIndexStore,
+        /* extractorSnapshotStore= */ null,
+        /* continueLoadingCheckIntervalBytes= */ 64 * 1024);
+  }
+
+  /** Prepares the period, enables its audio track and returns the track's {@link SampleStream}. */
+  private static SampleStream prepareAndSelectAudioTrack(ProgressiveMediaPeriod mediaPeriod)
+      throws TimeoutException {
+    AtomicBoolean prepareCallbackCalled = new AtomicBoolean(false);
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepareCallbackCalled.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            source.continueLoading(/* positionUs= */ 0);
+          }
+        },
+        /* positionUs= */ 0);
+    runMainLooperUntil(prepareCallbackCalled::get);
+    TrackGroupArray trackGroups = mediaPeriod.getTrackGroups();
+    @Nullable TrackGroup audioTrackGroup = null;
+    for (int i = 0; i < trackGroups.length; i++) {
+      if (MimeTypes.isAudio(trackGroups.get(i).getFormat(0).sampleMimeType)) {
+        audioTrackGroup = trackGroups.get(i);
+      }
+    }
+    SampleStream[] sampleStreams = new SampleStream[1];
+    mediaPeriod.selectTracks(
+        new ExoTrackSelection[] {new FixedTrackSelection(audioTrackGroup, /* track= */ 0)},
+        /* mayRetainStreamFlags= */ new boolean[] {false},
+        sampleStreams,
+        /* streamResetFlags= */ new boolean[] {true},
+        /* positionUs= */ 0);
+    return sampleStreams[0];
+  }
+
+  /**
+   * Prepares the period, seeks it to {@code positionUs} before it has loaded the samples at that
+   * position, and returns the timestamps of the audio samples at or after {@code positionUs}.
+   */
+  private static List<Long> seekAndReadAudioSampleTimesUs(
+      ProgressiveMediaPeriod mediaPeriod, long positionUs) throws TimeoutException {
+    SampleStream sampleStream = prepareAndSelectAudioTrack(mediaPeriod);
+    mediaPeriod.seekToUs(positionUs);
+    mediaPeriod.continueLoading(positionUs);
+
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    List<Long> sampleTimesUs = new ArrayList<>();
+    while (true) {
+      runMainLooperUntil(sampleStream::isReady);
+      int result = sampleStream.readData(formatHolder, buffer, /* readFlags= */ 0);
+      if (result != C.RESULT_BUFFER_READ) {
+        continue;
+      }
+      if (buffer.isEndOfStream()) {
+        return sampleTimesUs;
+      }
+      if (buffer.timeUs >= positionUs) {
+        sampleTimesUs.add(buffer.timeUs);
+      }
+    }
+  }
+
+  /** A {@link SeekIndexStore} that holds a single index in memory. */
+  private static final class InMemorySeekIndexStore implements SeekIndexStore {
+
+    @Nullable private volatile SeekIndex seekIndex;
+
+    public InMemorySeekIndexStore(@Nullable SeekIndex seekIndex) {
+      this.seekIndex = seekIndex;
+    }
+
+    @Override
+    @Nullable
+    public SeekIndex load(DataSpec dataSpec) {
+      return seekIndex;
+    }
+
+    @Override
+    public void store(DataSpec dataSpec, SeekIndex seekIndex) {
+      this.seekIndex = seekIndex;
+    }
+  }
+
+  /** An {@link ExtractorSnapshotStore} that holds a single snapshot in memory. */
+  private static final class InMemoryExtractorSnapshotStore implements ExtractorSnapshotStore {
+
+    @Nullable private volatile ExtractorSnapshot extractorSnapshot;
+    private volatile int loadCount;
+    private volatile int storeCount;
+
+    @Override
+    @Nullable
+    public ExtractorSnapshot load(DataSpec dataSpec) {
+      loadCount++;
+      return extractorSnapshot;
+    }
+
+    @Override
+    public void store(DataSpec dataSpec, ExtractorSnapshot extractorSnapshot) {
+      storeCount++;
+      this.extractorSnapshot = extractorSnapshot;
+    }
+  }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SeekIndex}. */
+@RunWith(AndroidJUnit4.class)
+public final class SeekIndexTest {
+
+  private static final long CONTENT_LENGTH = 10_000_000;
+
+  @Test
+  public void add_closeOrInconsistentEntries_rejectsEntries() {
+    SeekIndex seekIndex = new SeekIndex(CONTENT_LENGTH);
+
+    assertThat(seekIndex.add(/* timeUs= */ 2_000_000, /* position= */ 2000)).isTrue();
+    assertThat(seekIndex.add(/* timeUs= */ 4_000_000, /* position= */ 4000)).isTrue();
+    // Duplicate timestamp.
+    assertThat(seekIndex.add(/* timeUs= */ 2_000_000, /* position= */ 2000)).isFalse();
+    // Within the minimum interval of an existing entry.
+    assertThat(seekIndex.add(/* timeUs= */ 2_500_000, /* position= */ 2500)).isFalse();
+    // Positions that aren't ordered like the timestamps.
+    assertThat(seekIndex.add(/* timeUs= */ 3_000_000, /* position= */ 1000)).isFalse();
+    assertThat(seekIndex.add(/* timeUs= */ 3_000_000, /* position= */ 5000)).isFalse();
+    assertThat(seekIndex.add(/* timeUs= */ 3_000_000, /* position= */ 3000)).isTrue();
+    assertThat(seekIndex.getEntryCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void getPosition_returnsPositionOfEarlierEntryWithinCoveredRange() {
+    SeekIndex seekIndex = new SeekIndex(CONTENT_LENGTH);
+    seekIndex.add(/* timeUs= */ 1_000_000, /* position= */ 1000);
+    seekIndex.add(/* timeUs= */ 3_000_000, /* position= */ 3000);
+    seekIndex.add(/* timeUs= */ 5_000_000, /* position= */ 5000);
+
+    assertThat(seekIndex.getPosition(/* timeUs= */ 500_000)).isEqualTo(C.INDEX_UNSET);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 1_000_000)).isEqualTo(1000);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 2_999_999)).isEqualTo(1000);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 3_000_000)).isEqualTo(3000);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 4_500_000)).isEqualTo(3000);
+    // The last entry only bounds the covered range.
+    assertThat(seekIndex.getPosition(/* timeUs= */ 5_000_000)).isEqualTo(C.INDEX_UNSET);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 6_000_000)).isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void getPosition_betweenDistantEntries_returnsIndexUnset() {
+    SeekIndex seekIndex = new SeekIndex(CONTENT_LENGTH);
+    seekIndex.add(/* timeUs= */ 1_000_000, /* position= */ 1000);
+    seekIndex.add(/* timeUs= */ 2_000_000, /* position= */ 2000);
+    long distantTimeUs = 2_000_000 + SeekIndex.MAX_ENTRY_GAP_US + 1;
+    seekIndex.add(distantTimeUs, /* position= */ 5000);
+
+    assertThat(seekIndex.getPosition(/* timeUs= */ 1_500_000)).isEqualTo(1000);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 3_000_000)).isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void add_beyondMaxEntryCount_removesEverySecondEntry() {
+    SeekIndex seekIndex = new SeekIndex(CONTENT_LENGTH);
+    for (int i = 0; i <= SeekIndex.MAX_ENTRY_COUNT; i++) {
+      seekIndex.add(/* timeUs= */ i * SeekIndex.MIN_ENTRY_INTERVAL_US, /* position= */ i * 100L);
+    }
+
+    assertThat(seekIndex.getEntryCount()).isEqualTo(SeekIndex.MAX_ENTRY_COUNT / 2 + 1);
+    assertThat(seekIndex.getPosition(/* timeUs= */ 3 * SeekIndex.MIN_ENTRY_INTERVAL_US))
+        .isEqualTo(200);
+  }
+
+  @Test
+  public void getPosition_afterManyRemovalsInVeryLongStream_returnsPositionOfEarlierEntry() {
+    SeekIndex seekIndex = new SeekIndex(CONTENT_LENGTH);
+    // Add an entry for every second of a stream that is long enough for every second entry to be
+    // removed 8 times.
+    int durationSeconds = SeekIndex.MAX_ENTRY_COUNT * 256;
+    for (int i = 0; i < durationSeconds; i++) {
+      seekIndex.add(/* timeUs= */ i * SeekIndex.MIN_ENTRY_INTERVAL_US, /* position= */ i * 100L);
+    }
+    SeekIndex restoredSeekIndex = SeekIndex.fromByteArray(seekIndex.toByteArray());
+
+    assertThat(seekIndex.getEntryCount()).isAtMost(SeekIndex.MAX_ENTRY_COUNT);
+    assertThat(restoredSeekIndex).isNotNull();
+    for (int i = 0; i < durationSeconds - 1000; i += 997) {
+      long timeUs = i * SeekIndex.MIN_ENTRY_INTERVAL_US + 500_000;
+      long position = seekIndex.getPosition(timeUs);
+      assertThat(position).isNotEqualTo(C.INDEX_UNSET);
+      assertThat(position).isAtMost(i * 100L);
+      // The entries are 256 seconds apart.
+      assertThat(position).isAtLeast((i - 256) * 100L);
+      assertThat(restoredSeekIndex.getPosition(timeUs)).isEqualTo(position);
+    }
+  }
+
+  @Test
+  public void toByteArray_fromByteArray_roundTrips() {
+    SeekIndex seekIndex = new SeekIndex(CONTENT_LENGTH);
+    seekIndex.add(/* timeUs= */ 1_000_000, /* position= */ 1000);
+    seekIndex.add(/* timeUs= */ 3_000_000, /* position= */ 3000);
+    seekIndex.add(/* timeUs= */ 5_000_000, /* position= */ 5000);
+
+    SeekIndex restoredSeekIndex = SeekIndex.fromByteArray(seekIndex.toByteArray());
+
+    assertThat(restoredSeekIndex).isNotNull();
+    assertThat(restoredSeekIndex.getContentLength()).isEqualTo(CONTENT_LENGTH);
+    assertThat(restoredSeekIndex.getEntryCount()).isEqualTo(3);
+    assertThat(restoredSeekIndex.getPosition(/* timeUs= */ 4_000_000)).isEqualTo(3000);
+  }
+
+  @Test
+  public void fromByteArray_malformedData_returnsNull() {
+    SeekIndex seekIndex = new SeekIndex(CONTENT_LENGTH);
+    seekIndex.add(/* timeUs= */ 1_000_000, /* position= */ 1000);
+    byte[] data = seekIndex.toByteArray();
+
+    assertThat(SeekIndex.fromByteArray(new byte[0])).isNull();
+    assertThat(SeekIndex.fromByteArray(Arrays.copyOf(data, data.length - 1))).isNull();
+    data[3] = 1; // Unsupported version.
+    assertThat(SeekIndex.fromByteArray(data)).isNull();
+  }
+}
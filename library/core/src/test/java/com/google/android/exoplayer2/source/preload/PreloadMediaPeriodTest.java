@@ -0,0 +1,222 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.source.EmptySampleStream;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.util.MimeTypes;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link PreloadMediaPeriod}. */
+@RunWith(AndroidJUnit4.class)
+public final class PreloadMediaPeriodTest {
+
+  private static final TrackGroup VIDEO_TRACK_GROUP =
+      new TrackGroup(
+          new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).setId("0").build(),
+          new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).setId("1").build());
+
+  @Test
+  public void selectTracks_withPreloadedTracks_retainsStreamsAndBindsPlayerSelections() {
+    SelectionRecordingMediaPeriod wrappedMediaPeriod = new SelectionRecordingMediaPeriod();
+    PreloadMediaPeriod preloadMediaPeriod = preparePreloadMediaPeriod(wrappedMediaPeriod);
+    preloadMediaPeriod.selectTracksForPreloading(
+        new ExoTrackSelection[] {new FixedTrackSelection(VIDEO_TRACK_GROUP, /* track= */ 0)},
+        /* positionUs= */ 0);
+    @Nullable SampleStream preloadedStream = wrappedMediaPeriod.lastStreams[0];
+
+    ExoTrackSelection playerSelection = new FixedTrackSelection(VIDEO_TRACK_GROUP, /* track= */ 0);
+    @NullableType SampleStream[] streams = new SampleStream[1];
+    boolean[] streamResetFlags = new boolean[1];
+    preloadMediaPeriod.selectTracks(
+        new ExoTrackSelection[] {playerSelection},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        streamResetFlags,
+        /* positionUs= */ 0);
+
+    assertThat(wrappedMediaPeriod.lastSelections[0]).isSameInstanceAs(playerSelection);
+    assertThat(wrappedMediaPeriod.lastMayRetainStreamFlags[0]).isTrue();
+    assertThat(streams[0]).isSameInstanceAs(preloadedStream);
+    assertThat(streamResetFlags[0]).isTrue();
+  }
+
+  @Test
+  public void selectTracks_withOtherTracks_replacesPreloadedStreams() {
+    SelectionRecordingMediaPeriod wrappedMediaPeriod = new SelectionRecordingMediaPeriod();
+    PreloadMediaPeriod preloadMediaPeriod = preparePreloadMediaPeriod(wrappedMediaPeriod);
+    preloadMediaPeriod.selectTracksForPreloading(
+        new ExoTrackSelection[] {new FixedTrackSelection(VIDEO_TRACK_GROUP, /* track= */ 0)},
+        /* positionUs= */ 0);
+    @Nullable SampleStream preloadedStream = wrappedMediaPeriod.lastStreams[0];
+
+    ExoTrackSelection playerSelection = new FixedTrackSelection(VIDEO_TRACK_GROUP, /* track= */ 1);
+    @NullableType SampleStream[] streams = new SampleStream[1];
+    preloadMediaPeriod.selectTracks(
+        new ExoTrackSelection[] {playerSelection},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        /* streamResetFlags= */ new boolean[1],
+        /* positionUs= */ 0);
+
+    assertThat(wrappedMediaPeriod.lastSelections[0]).isSameInstanceAs(playerSelection);
+    assertThat(wrappedMediaPeriod.lastMayRetainStreamFlags[0]).isFalse();
+    assertThat(streams[0]).isNotNull();
+    assertThat(streams[0]).isNotSameInstanceAs(preloadedStream);
+  }
+
+  @Test
+  public void selectTracks_atOtherPosition_replacesPreloadedStreams() {
+    SelectionRecordingMediaPeriod wrappedMediaPeriod = new SelectionRecordingMediaPeriod();
+    PreloadMediaPeriod preloadMediaPeriod = preparePreloadMediaPeriod(wrappedMediaPeriod);
+    preloadMediaPeriod.selectTracksForPreloading(
+        new ExoTrackSelection[] {new FixedTrackSelection(VIDEO_TRACK_GROUP, /* track= */ 0)},
+        /* positionUs= */ 0);
+    @Nullable SampleStream preloadedStream = wrappedMediaPeriod.lastStreams[0];
+
+    @NullableType SampleStream[] streams = new SampleStream[1];
+    preloadMediaPeriod.selectTracks(
+        new ExoTrackSelection[] {new FixedTrackSelection(VIDEO_TRACK_GROUP, /* track= */ 0)},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        /* streamResetFlags= */ new boolean[1],
+        /* positionUs= */ 1_000);
+
+    assertThat(wrappedMediaPeriod.lastMayRetainStreamFlags[0]).isFalse();
+    assertThat(streams[0]).isNotSameInstanceAs(preloadedStream);
+  }
+
+  private static PreloadMediaPeriod preparePreloadMediaPeriod(MediaPeriod wrappedMediaPeriod) {
+    PreloadMediaPeriod preloadMediaPeriod = new PreloadMediaPeriod(wrappedMediaPeriod);
+    preloadMediaPeriod.preload(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {}
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {}
+        },
+        /* positionUs= */ 0);
+    return preloadMediaPeriod;
+  }
+
+  /**
+   * A {@link MediaPeriod} that prepares immediately, records the arguments of the last call to
+   * {@link #selectTracks} and creates a new stream for each selection whose stream isn't retained.
+   */
+  private static final class SelectionRecordingMediaPeriod implements MediaPeriod {
+
+    private @NullableType ExoTrackSelection[] lastSelections;
+    private boolean[] lastMayRetainStreamFlags;
+    private @NullableType SampleStream[] lastStreams;
+
+    public SelectionRecordingMediaPeriod() {
+      lastSelections = new ExoTrackSelection[0];
+      lastMayRetainStreamFlags = new boolean[0];
+      lastStreams = new SampleStream[0];
+    }
+
+    @Override
+    public void prepare(Callback callback, long positionUs) {
+      callback.onPrepared(/* mediaPeriod= */ this);
+    }
+
+    @Override
+    public void maybeThrowPrepareError() {}
+
+    @Override
+    public TrackGroupArray getTrackGroups() {
+      return new TrackGroupArray(VIDEO_TRACK_GROUP);
+    }
+
+    @Override
+    public long selectTracks(
+        @NullableType ExoTrackSelection[] selections,
+        boolean[] mayRetainStreamFlags,
+        @NullableType SampleStream[] streams,
+        boolean[] streamResetFlags,
+        long positionUs) {
+      lastSelections = selections.clone();
+      lastMayRetainStreamFlags = mayRetainStreamFlags.clone();
+      for (int i = 0; i < selections.length; i++) {
+        if (selections[i] == null || !mayRetainStreamFlags[i]) {
+          streams[i] = null;
+        }
+        if (streams[i] == null && selections[i] != null) {
+          streams[i] = new EmptySampleStream();
+          streamResetFlags[i] = true;
+        }
+      }
+      lastStreams = streams.clone();
+      return positionUs;
+    }
+
+    @Override
+    public void discardBuffer(long positionUs, boolean toKeyframe) {}
+
+    @Override
+    public long readDiscontinuity() {
+      return C.TIME_UNSET;
+    }
+
+    @Override
+    public long seekToUs(long positionUs) {
+      return positionUs;
+    }
+
+    @Override
+    public long getAdjustedSeekPositionUs(long positionUs, SeekParameters seekParameters) {
+      return positionUs;
+    }
+
+    @Override
+    public long getBufferedPositionUs() {
+      return C.TIME_END_OF_SOURCE;
+    }
+
+    @Override
+    public long getNextLoadPositionUs() {
+      return C.TIME_END_OF_SOURCE;
+    }
+
+    @Override
+    public boolean continueLoading(long positionUs) {
+      return false;
+    }
+
+    @Override
+    public boolean isLoading() {
+      return false;
+    }
+
+    @Override
+    public void reevaluateBuffer(long positionUs) {}
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.android.exoplayer2.testutil.FakeTimeline.TimelineWindowDefinition.DEFAULT_WINDOW_OFFSET_IN_FIRST_PERIOD_US;
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.testutil.FakeMediaSource;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link PreloadMediaSource}. */
+@RunWith(AndroidJUnit4.class)
+public class PreloadMediaSourceTest {
+
+  private static final Format VIDEO_FORMAT =
+      new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build();
+
+  private Timeline timeline;
+  private FakeMediaSource wrappedMediaSource;
+  private DefaultAllocator allocator;
+  private PreloadMediaSource preloadMediaSource;
+
+  @Before
+  public void setUp() {
+    timeline = new FakeTimeline();
+    wrappedMediaSource = new FakeMediaSource(timeline, VIDEO_FORMAT);
+    allocator =
+        new DefaultAllocator(
+            /* trimOnReset= */ true, /* individualAllocationSize= */ C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext()).build();
+    TrackSelector trackSelector =
+        new DefaultTrackSelector(ApplicationProvider.getApplicationContext());
+    trackSelector.init(/* listener= */ () -> {}, bandwidthMeter);
+    preloadMediaSource =
+        new PreloadMediaSource(
+            wrappedMediaSource,
+            (mediaSource, bufferedDurationUs) -> bufferedDurationUs < 1_000_000,
+            trackSelector,
+            bandwidthMeter,
+            new RendererCapabilities[] {new FakeRenderer(C.TRACK_TYPE_VIDEO).getCapabilities()},
+            allocator,
+            Looper.getMainLooper());
+  }
+
+  @Test
+  public void preload_preparesSourceAndCreatesPeriodAtDefaultPosition() {
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(wrappedMediaSource.isPrepared()).isTrue();
+    assertThat(wrappedMediaSource.getCreatedMediaPeriods()).hasSize(1);
+    assertThat(wrappedMediaSource.getCreatedMediaPeriods().get(0).periodUid)
+        .isEqualTo(timeline.getUidOfPeriod(/* periodIndex= */ 0));
+  }
+
+  @Test
+  public void createPeriod_atPreloadedPosition_returnsPreparedPreloadedPeriod() {
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+    preparePlayerSource();
+
+    MediaPeriod mediaPeriod =
+        preloadMediaSource.createPeriod(
+            new MediaPeriodId(timeline.getUidOfPeriod(/* periodIndex= */ 0)),
+            allocator,
+            /* startPositionUs= */ DEFAULT_WINDOW_OFFSET_IN_FIRST_PERIOD_US);
+    AtomicBoolean prepared = new AtomicBoolean();
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepared.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {}
+        },
+        /* positionUs= */ DEFAULT_WINDOW_OFFSET_IN_FIRST_PERIOD_US);
+
+    assertThat(prepared.get()).isTrue();
+    assertThat(wrappedMediaSource.getCreatedMediaPeriods()).hasSize(1);
+  }
+
+  @Test
+  public void createPeriod_atDifferentPosition_createsNewPeriod() {
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+    preparePlayerSource();
+
+    MediaPeriod mediaPeriod =
+        preloadMediaSource.createPeriod(
+            new MediaPeriodId(timeline.getUidOfPeriod(/* periodIndex= */ 0)),
+            allocator,
+            /* startPositionUs= */ DEFAULT_WINDOW_OFFSET_IN_FIRST_PERIOD_US + 1_000);
+    preloadMediaSource.releasePeriod(mediaPeriod);
+
+    assertThat(wrappedMediaSource.getCreatedMediaPeriods()).hasSize(2);
+  }
+
+  @Test
+  public void releasePreloadMediaSource_releasesWrappedSource() {
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    preloadMediaSource.releasePreloadMediaSource();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    wrappedMediaSource.assertReleased();
+    assertThat(wrappedMediaSource.isPrepared()).isFalse();
+  }
+
+  private void preparePlayerSource() {
+    MediaSource.MediaSourceCaller caller = (source, newTimeline) -> {};
+    preloadMediaSource.prepareSource(caller, /* mediaTransferListener= */ null, PlayerId.UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+  }
+}
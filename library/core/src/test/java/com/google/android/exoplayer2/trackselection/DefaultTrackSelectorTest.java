@@ -602,6 +602,62 @@ public final class DefaultTrackSelectorTest {
     assertFixedSelection(result.selections[0], trackGroups.get(0), 1);
   }
 
+  @Test
+  public void selectTracks_withSameTrackGroupsAndChangedFormatSupport_reevaluatesTracks()
+      throws ExoPlaybackException {
+    Format.Builder formatBuilder = AUDIO_FORMAT.buildUpon();
+    Format format128k = formatBuilder.setId("128k").setAverageBitrate(128 * 1024).build();
+    Format format256k = formatBuilder.setId("256k").setAverageBitrate(256 * 1024).build();
+    TrackGroupArray trackGroups = new TrackGroupArray(new TrackGroup(format128k, format256k));
+    RendererCapabilities limitedRendererCapabilities =
+        new FakeMappedRendererCapabilities(
+            C.TRACK_TYPE_AUDIO,
+            ImmutableMap.of(
+                format128k.id, FORMAT_HANDLED, format256k.id, FORMAT_EXCEEDS_CAPABILITIES));
+
+    TrackSelectorResult result =
+        trackSelector.selectTracks(
+            new RendererCapabilities[] {ALL_AUDIO_FORMAT_SUPPORTED_RENDERER_CAPABILITIES},
+            trackGroups,
+            periodId,
+            TIMELINE);
+    assertAdaptiveSelection(result.selections[0], trackGroups.get(0), 1, 0);
+
+    result =
+        trackSelector.selectTracks(
+            new RendererCapabilities[] {limitedRendererCapabilities},
+            trackGroups,
+            periodId,
+            TIMELINE);
+    assertFixedSelection(result.selections[0], trackGroups.get(0), 0);
+  }
+
+  @Test
+  public void selectTracks_afterOverrideIsCleared_restoresDefaultSelection()
+      throws ExoPlaybackException {
+    Format.Builder formatBuilder = AUDIO_FORMAT.buildUpon();
+    Format format128k = formatBuilder.setAverageBitrate(128 * 1024).build();
+    Format format256k = formatBuilder.setAverageBitrate(256 * 1024).build();
+    TrackGroupArray trackGroups = new TrackGroupArray(new TrackGroup(format128k, format256k));
+    RendererCapabilities[] rendererCapabilities = {
+      ALL_AUDIO_FORMAT_SUPPORTED_RENDERER_CAPABILITIES
+    };
+    TrackSelectorResult result =
+        trackSelector.selectTracks(rendererCapabilities, trackGroups, periodId, TIMELINE);
+    assertAdaptiveSelection(result.selections[0], trackGroups.get(0), 1, 0);
+
+    trackSelector.setParameters(
+        trackSelector
+            .buildUponParameters()
+            .addOverride(new TrackSelectionOverride(trackGroups.get(0), /* trackIndex= */ 0)));
+    result = trackSelector.selectTracks(rendererCapabilities, trackGroups, periodId, TIMELINE);
+    assertFixedSelection(result.selections[0], trackGroups.get(0), 0);
+
+    trackSelector.setParameters(trackSelector.buildUponParameters().clearOverrides());
+    result = trackSelector.selectTracks(rendererCapabilities, trackGroups, periodId, TIMELINE);
+    assertAdaptiveSelection(result.selections[0], trackGroups.get(0), 1, 0);
+  }
+
   /**
    * Tests that track selector will select audio track with language that match preferred language
    * given by {@link Parameters}.
@@ -111,6 +111,25 @@ public final class MappingTrackSelectorTest {
     trackSelector.assertMappedTrackGroups(1, audioGroup0, audioGroup1);
   }
 
+  @Test
+  public void selectTracks_evaluatesFormatSupportOncePerRenderer() throws ExoPlaybackException {
+    FakeRendererCapabilities videoCapabilities = new FakeRendererCapabilities(C.TRACK_TYPE_VIDEO);
+    FakeRendererCapabilities audioCapabilities = new FakeRendererCapabilities(C.TRACK_TYPE_AUDIO);
+    FakeMappingTrackSelector trackSelector = new FakeMappingTrackSelector();
+    TrackGroupArray trackGroups = new TrackGroupArray(VIDEO_TRACK_GROUP, AUDIO_TRACK_GROUP);
+
+    trackSelector.selectTracks(
+        new RendererCapabilities[] {videoCapabilities, audioCapabilities},
+        trackGroups,
+        periodId,
+        TIMELINE);
+
+    assertThat(videoCapabilities.supportsFormatCallCount).isEqualTo(2);
+    assertThat(audioCapabilities.supportsFormatCallCount).isEqualTo(2);
+    trackSelector.assertMappedTrackGroups(/* rendererIndex= */ 0, VIDEO_TRACK_GROUP);
+    trackSelector.assertMappedTrackGroups(/* rendererIndex= */ 1, AUDIO_TRACK_GROUP);
+  }
+
   @Test
   public void selectTracks_multipleMetadataTracks_mappedToDifferentRenderers()
       throws ExoPlaybackException {
@@ -172,6 +191,8 @@ public final class MappingTrackSelectorTest {
 
     private final int trackType;
 
+    public int supportsFormatCallCount;
+
     public FakeRendererCapabilities(int trackType) {
       this.trackType = trackType;
     }
@@ -188,6 +209,7 @@ public final class MappingTrackSelectorTest {
 
     @Override
     public @Capabilities int supportsFormat(Format format) throws ExoPlaybackException {
+      supportsFormatCallCount++;
       return MimeTypes.getTrackType(format.sampleMimeType) == trackType
           ? RendererCapabilities.create(
               C.FORMAT_HANDLED, ADAPTIVE_SEAMLESS, TUNNELING_NOT_SUPPORTED)
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.trackselection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeMediaChunk;
+import com.google.android.exoplayer2.testutil.FakeMediaChunkIterator;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection.Definition;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+/** Unit tests for {@link ModelPredictiveTrackSelection}. */
+@RunWith(AndroidJUnit4.class)
+public final class ModelPredictiveTrackSelectionTest {
+
+  private static final int CHUNK_COUNT = 10;
+  private static final int CHUNK_DURATION_SEC = 2;
+
+  @Mock private BandwidthMeter mockBandwidthMeter;
+  private FakeClock fakeClock;
+
+  @Before
+  public void setUp() {
+    initMocks(this);
+    fakeClock = new FakeClock(0);
+    when(mockBandwidthMeter.getTimeToFirstByteEstimateUs()).thenReturn(C.TIME_UNSET);
+  }
+
+  @Test
+  public void initial_updateSelectedTrack_withEmptyBufferAndLowBandwidth_selectsLowestBitrate() {
+    Format format1 = videoFormat(/* bitrate= */ 500);
+    Format format2 = videoFormat(/* bitrate= */ 1000);
+    Format format3 = videoFormat(/* bitrate= */ 2000);
+    TrackGroup trackGroup = new TrackGroup(format1, format2, format3);
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1000L);
+
+    ExoTrackSelection trackSelection = createTrackSelection(trackGroup);
+    updateSelectedTrack(
+        trackSelection, /* bufferedDurationUs= */ 0, /* queue= */ Collections.emptyList());
+
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format1);
+    assertThat(trackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_INITIAL);
+  }
+
+  @Test
+  public void initial_updateSelectedTrack_withFullBufferAndHighBandwidth_selectsHighestBitrate() {
+    Format format1 = videoFormat(/* bitrate= */ 500);
+    Format format2 = videoFormat(/* bitrate= */ 1000);
+    Format format3 = videoFormat(/* bitrate= */ 2000);
+    TrackGroup trackGroup = new TrackGroup(format1, format2, format3);
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(10_000L);
+
+    ExoTrackSelection trackSelection = createTrackSelection(trackGroup);
+    updateSelectedTrack(
+        trackSelection, /* bufferedDurationUs= */ 30_000_000, Collections.emptyList());
+
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format3);
+  }
+
+  @Test
+  public void updateSelectedTrack_withLargeUpcomingChunks_avoidsTrackWithLargeChunks() {
+    Format format1 = videoFormat(/* bitrate= */ 500);
+    Format format2 = videoFormat(/* bitrate= */ 1000);
+    Format format3 = videoFormat(/* bitrate= */ 2000);
+    TrackGroup trackGroup = new TrackGroup(format1, format2, format3);
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(4000L);
+    ExoTrackSelection trackSelectionWithNominalChunks = createTrackSelection(trackGroup);
+    ExoTrackSelection trackSelectionWithLargeChunks = createTrackSelection(trackGroup);
+
+    updateSelectedTrack(
+        trackSelectionWithNominalChunks,
+        /* bufferedDurationUs= */ 20_000_000,
+        Collections.emptyList(),
+        createMediaChunkIterators(trackSelectionWithNominalChunks, /* chunkSizeFactor= */ 1));
+    // The chunks of the highest bitrate are four times larger than its bitrate suggests.
+    updateSelectedTrack(
+        trackSelectionWithLargeChunks,
+        /* bufferedDurationUs= */ 20_000_000,
+        Collections.emptyList(),
+        createMediaChunkIterators(trackSelectionWithLargeChunks, /* chunkSizeFactor= */ 4));
+
+    assertThat(trackSelectionWithNominalChunks.getSelectedFormat()).isEqualTo(format3);
+    assertThat(trackSelectionWithLargeChunks.getSelectedFormat()).isEqualTo(format2);
+  }
+
+  @Test
+  public void updateSelectedTrack_withBandwidthDrop_switchesDown() {
+    Format format1 = videoFormat(/* bitrate= */ 500);
+    Format format2 = videoFormat(/* bitrate= */ 1000);
+    Format format3 = videoFormat(/* bitrate= */ 2000);
+    TrackGroup trackGroup = new TrackGroup(format1, format2, format3);
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(10_000L, 500L);
+    ExoTrackSelection trackSelection = createTrackSelection(trackGroup);
+    updateSelectedTrack(
+        trackSelection, /* bufferedDurationUs= */ 30_000_000, Collections.emptyList());
+    FakeMediaChunk chunk =
+        new FakeMediaChunk(
+            format3, /* startTimeUs= */ 0, /* endTimeUs= */ CHUNK_DURATION_SEC * 1_000_000);
+
+    updateSelectedTrack(
+        trackSelection, /* bufferedDurationUs= */ 4_000_000, ImmutableList.of(chunk));
+
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format1);
+    assertThat(trackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_ADAPTIVE);
+  }
+
+  @Test
+  public void updateSelectedTrack_returnsCorrectLatestBitrateEstimate() {
+    TrackGroup trackGroup =
+        new TrackGroup(videoFormat(/* bitrate= */ 500), videoFormat(/* bitrate= */ 1000));
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(2000L);
+    ExoTrackSelection trackSelection = createTrackSelection(trackGroup);
+
+    updateSelectedTrack(trackSelection, /* bufferedDurationUs= */ 0, Collections.emptyList());
+
+    assertThat(trackSelection.getLatestBitrateEstimate()).isEqualTo(2000L);
+  }
+
+  private ExoTrackSelection createTrackSelection(TrackGroup trackGroup) {
+    ModelPredictiveTrackSelection.Factory factory =
+        new ModelPredictiveTrackSelection.Factory(
+            ModelPredictiveTrackSelection.DEFAULT_HORIZON_CHUNK_COUNT,
+            ModelPredictiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+            ModelPredictiveTrackSelection.DEFAULT_TARGET_BUFFER_MS,
+            ModelPredictiveTrackSelection.DEFAULT_BUFFER_PENALTY,
+            ModelPredictiveTrackSelection.DEFAULT_REBUFFER_PENALTY,
+            ModelPredictiveTrackSelection.DEFAULT_SWITCH_PENALTY,
+            ModelPredictiveTrackSelection.DEFAULT_SWITCH_HYSTERESIS,
+            fakeClock);
+    int[] tracks = new int[trackGroup.length];
+    for (int i = 0; i < tracks.length; i++) {
+      tracks[i] = i;
+    }
+    Timeline timeline = Timeline.EMPTY;
+    ExoTrackSelection trackSelection =
+        factory.createTrackSelections(
+            new Definition[] {new Definition(trackGroup, tracks)},
+            mockBandwidthMeter,
+            new MediaSource.MediaPeriodId(/* periodUid= */ new Object()),
+            timeline)[0];
+    assertThat(trackSelection).isInstanceOf(ModelPredictiveTrackSelection.class);
+    trackSelection.enable();
+    return trackSelection;
+  }
+
+  private static void updateSelectedTrack(
+      ExoTrackSelection trackSelection,
+      long bufferedDurationUs,
+      List<? extends MediaChunk> queue) {
+    updateSelectedTrack(
+        trackSelection,
+        bufferedDurationUs,
+        queue,
+        createMediaChunkIterators(trackSelection, /* chunkSizeFactor= */ 1));
+  }
+
+  private static void updateSelectedTrack(
+      ExoTrackSelection trackSelection,
+      long bufferedDurationUs,
+      List<? extends MediaChunk> queue,
+      MediaChunkIterator[] mediaChunkIterators) {
+    trackSelection.updateSelectedTrack(
+        /* playbackPositionUs= */ 0,
+        bufferedDurationUs,
+        /* availableDurationUs= */ C.TIME_UNSET,
+        queue,
+        mediaChunkIterators);
+  }
+
+  /**
+   * Creates iterators over chunks at the nominal bitrate of each selected track, except that the
+   * chunks of the highest bitrate are {@code chunkSizeFactor} times larger.
+   */
+  private static MediaChunkIterator[] createMediaChunkIterators(
+      ExoTrackSelection trackSelection, int chunkSizeFactor) {
+    long[] chunkTimeBoundariesSec = new long[CHUNK_COUNT + 1];
+    for (int i = 0; i <= CHUNK_COUNT; i++) {
+      chunkTimeBoundariesSec[i] = (long) i * CHUNK_DURATION_SEC;
+    }
+    MediaChunkIterator[] iterators = new MediaChunkIterator[trackSelection.length()];
+    for (int i = 0; i < trackSelection.length(); i++) {
+      // Selected tracks are ordered by decreasing bitrate.
+      long chunkLength = (long) trackSelection.getFormat(i).bitrate * CHUNK_DURATION_SEC / 8;
+      if (i == 0) {
+        chunkLength *= chunkSizeFactor;
+      }
+      long[] chunkLengths = new long[CHUNK_COUNT];
+      Arrays.fill(chunkLengths, chunkLength);
+      iterators[i] = new FakeMediaChunkIterator(chunkTimeBoundariesSec, chunkLengths);
+    }
+    return iterators;
+  }
+
+  private static Format videoFormat(int bitrate) {
+    return new Format.Builder()
+        .setSampleMimeType(MimeTypes.VIDEO_H264)
+        .setAverageBitrate(bitrate)
+        .build();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SlidingPercentile}. */
+@RunWith(AndroidJUnit4.class)
+public class SlidingPercentileTest {
+
+  @Test
+  public void getPercentile_withoutSamples_returnsNaN() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 10);
+
+    assertThat(slidingPercentile.getPercentile(0.5f)).isNaN();
+  }
+
+  @Test
+  public void getPercentile_returnsWeightedPercentile() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 100);
+
+    slidingPercentile.addSample(/* weight= */ 10, /* value= */ 3f);
+    slidingPercentile.addSample(/* weight= */ 30, /* value= */ 1f);
+    slidingPercentile.addSample(/* weight= */ 10, /* value= */ 2f);
+
+    assertThat(slidingPercentile.getPercentile(0.5f)).isEqualTo(1f);
+    assertThat(slidingPercentile.getPercentile(0.7f)).isEqualTo(2f);
+    assertThat(slidingPercentile.getPercentile(0.9f)).isEqualTo(3f);
+    assertThat(slidingPercentile.getPercentile(1f)).isEqualTo(3f);
+  }
+
+  @Test
+  public void addSample_exceedingMaxWeight_reducesWeightOfOldestSamples() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 10);
+
+    slidingPercentile.addSample(/* weight= */ 5, /* value= */ 1f);
+    slidingPercentile.addSample(/* weight= */ 4, /* value= */ 3f);
+    // Removes 3 of the weight of the first sample, leaving weights 2, 4 and 4.
+    slidingPercentile.addSample(/* weight= */ 4, /* value= */ 2f);
+
+    assertThat(slidingPercentile.getPercentile(0.2f)).isEqualTo(1f);
+    assertThat(slidingPercentile.getPercentile(0.3f)).isEqualTo(2f);
+    assertThat(slidingPercentile.getPercentile(0.7f)).isEqualTo(3f);
+  }
+
+  @Test
+  public void reset_removesAllSamples() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 10);
+    slidingPercentile.addSample(/* weight= */ 5, /* value= */ 1f);
+
+    slidingPercentile.reset();
+    slidingPercentile.addSample(/* weight= */ 5, /* value= */ 2f);
+
+    assertThat(slidingPercentile.getPercentile(0.1f)).isEqualTo(2f);
+  }
+
+  @Test
+  public void getPercentile_withRandomSamples_matchesSortedWindow() {
+    Random random = new Random(/* seed= */ 0);
+    int maxWeight = 5_000;
+    SlidingPercentile slidingPercentile = new SlidingPercentile(maxWeight);
+    List<float[]> window = new ArrayList<>();
+
+    for (int i = 0; i < 20_000; i++) {
+      int weight = random.nextInt(100);
+      // Use few distinct values to cover ties.
+      float value = random.nextInt(50);
+      slidingPercentile.addSample(weight, value);
+      addToReferenceWindow(window, maxWeight, weight, value);
+
+      if (i % 97 == 0) {
+        float percentile = random.nextFloat();
+        assertThat(slidingPercentile.getPercentile(percentile))
+            .isEqualTo(getReferencePercentile(window, percentile));
+      }
+    }
+  }
+
+  private static void addToReferenceWindow(
+      List<float[]> window, int maxWeight, int weight, float value) {
+    window.add(new float[] {weight, value});
+    int totalWeight = 0;
+    for (float[] sample : window) {
+      totalWeight += (int) sample[0];
+    }
+    while (totalWeight > maxWeight) {
+      int excessWeight = totalWeight - maxWeight;
+      float[] oldestSample = window.get(0);
+      if (oldestSample[0] <= excessWeight) {
+        totalWeight -= (int) oldestSample[0];
+        window.remove(0);
+      } else {
+        oldestSample[0] -= excessWeight;
+        totalWeight -= excessWeight;
+      }
+    }
+  }
+
+  private static float getReferencePercentile(List<float[]> window, float percentile) {
+    List<float[]> sortedWindow = new ArrayList<>(window);
+    Collections.sort(sortedWindow, (a, b) -> Float.compare(a[1], b[1]));
+    int totalWeight = 0;
+    for (float[] sample : sortedWindow) {
+      totalWeight += (int) sample[0];
+    }
+    float desiredWeight = percentile * totalWeight;
+    int accumulatedWeight = 0;
+    for (float[] sample : sortedWindow) {
+      accumulatedWeight += (int) sample[0];
+      if (accumulatedWeight >= desiredWeight) {
+        return sample[1];
+      }
+    }
+    return sortedWindow.get(sortedWindow.size() - 1)[1];
+  }
+}
@@ -40,6 +40,16 @@ public interface ContentMetadata {
   String KEY_REDIRECTED_URI = "exo_redir";
   /** Key for content length in bytes (type: long). */
   String KEY_CONTENT_LENGTH = "exo_len";
+  /**
+   * Key for a serialized index of positions from which extraction of a progressive stream can be
+   * resumed (type: byte[]).
+   */
+  String KEY_SEEK_INDEX = "exo_seek_idx";
+  /**
+   * Key for a serialized snapshot of the state an extractor read from the headers of a progressive
+   * stream (type: byte[]).
+   */
+  String KEY_EXTRACTOR_SNAPSHOT = "exo_ext_snap";
 
   /**
    * Returns a metadata value.
@@ -20,6 +20,7 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 
 /**
  * Base class for {@link Decoder}s that use their own decode thread and decode each input buffer
@@ -48,6 +49,9 @@ public abstract class SimpleDecoder<
   private int availableOutputBufferCount;
   @Nullable private I dequeuedInputBuffer;
 
+  private I[] batchInputBuffers;
+  private O[] batchOutputBuffers;
+
   @Nullable private E exception;
   private boolean flushed;
   private boolean released;
@@ -72,6 +76,8 @@ public abstract class SimpleDecoder<
     for (int i = 0; i < availableOutputBufferCount; i++) {
       availableOutputBuffers[i] = createOutputBuffer();
     }
+    batchInputBuffers = Arrays.copyOf(inputBuffers, 1);
+    batchOutputBuffers = Arrays.copyOf(outputBuffers, 1);
     decodeThread =
         new Thread("ExoPlayer:SimpleDecoder") {
           @Override
@@ -97,6 +103,34 @@ public abstract class SimpleDecoder<
     }
   }
 
+  /**
+   * Sets the maximum number of queued input buffers that may be passed to a single call to {@link
+   * #decode(DecoderInputBuffer[], DecoderOutputBuffer[], int, boolean)}.
+   *
+   * <p>Decoding several input buffers in one call reduces the per-buffer overhead of waking the
+   * decode thread and, for decoders that override the batched {@code decode} method, of crossing
+   * into native code. Output buffers of a batch are only made available once the whole batch is
+   * decoded. The default value is 1.
+   *
+   * <p>This method should only be called before the decoder is used (i.e. before the first call to
+   * {@link #dequeueInputBuffer()}.
+   *
+   * @param maxBatchSize The maximum number of input buffers decoded in one call. Must be positive.
+   */
+  protected final void setMaxDecodeBatchSize(int maxBatchSize) {
+    Assertions.checkArgument(maxBatchSize > 0);
+    synchronized (lock) {
+      Assertions.checkState(
+          availableInputBufferCount == availableInputBuffers.length
+              && dequeuedInputBuffer == null);
+      int batchSize =
+          Math.min(
+              maxBatchSize, Math.min(availableInputBuffers.length, availableOutputBuffers.length));
+      batchInputBuffers = Arrays.copyOf(availableInputBuffers, Math.max(1, batchSize));
+      batchOutputBuffers = Arrays.copyOf(availableOutputBuffers, Math.max(1, batchSize));
+    }
+  }
+
   @Override
   @Nullable
   public final I dequeueInputBuffer() throws E {
@@ -215,11 +249,14 @@ public abstract class SimpleDecoder<
   }
 
   private boolean decode() throws InterruptedException {
-    I inputBuffer;
-    O outputBuffer;
+    I[] inputBuffers;
+    O[] outputBuffers;
+    int batchSize;
     boolean resetDecoder;
 
-    // Wait until we have an input buffer to decode, and an output buffer to decode into.
+    // Wait until we have an input buffer to decode, and an output buffer to decode into. Then take
+    // as many consecutive input buffers as the batch allows, stopping before an end of stream
+    // buffer so that it's always handled on its own.
     synchronized (lock) {
       while (!released && !canDecodeBuffer()) {
         lock.wait();
@@ -227,24 +264,35 @@ public abstract class SimpleDecoder<
       if (released) {
         return false;
       }
-      inputBuffer = queuedInputBuffers.removeFirst();
-      outputBuffer = availableOutputBuffers[--availableOutputBufferCount];
+      inputBuffers = batchInputBuffers;
+      outputBuffers = batchOutputBuffers;
+      batchSize = 0;
+      do {
+        inputBuffers[batchSize] = queuedInputBuffers.removeFirst();
+        outputBuffers[batchSize] = availableOutputBuffers[--availableOutputBufferCount];
+        batchSize++;
+      } while (batchSize < inputBuffers.length
+          && !inputBuffers[0].isEndOfStream()
+          && canDecodeBuffer()
+          && !Assertions.checkNotNull(queuedInputBuffers.peekFirst()).isEndOfStream());
       resetDecoder = flushed;
       flushed = false;
     }
 
-    if (inputBuffer.isEndOfStream()) {
-      outputBuffer.addFlag(C.BUFFER_FLAG_END_OF_STREAM);
+    if (inputBuffers[0].isEndOfStream()) {
+      outputBuffers[0].addFlag(C.BUFFER_FLAG_END_OF_STREAM);
     } else {
-      if (inputBuffer.isDecodeOnly()) {
-        outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
-      }
-      if (inputBuffer.isFirstSample()) {
-        outputBuffer.addFlag(C.BUFFER_FLAG_FIRST_SAMPLE);
+      for (int i = 0; i < batchSize; i++) {
+        if (inputBuffers[i].isDecodeOnly()) {
+          outputBuffers[i].addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+        }
+        if (inputBuffers[i].isFirstSample()) {
+          outputBuffers[i].addFlag(C.BUFFER_FLAG_FIRST_SAMPLE);
+        }
       }
       @Nullable E exception;
       try {
-        exception = decode(inputBuffer, outputBuffer, resetDecoder);
+        exception = decode(inputBuffers, outputBuffers, batchSize, resetDecoder);
       } catch (RuntimeException e) {
         // This can occur if a sample is malformed in a way that the decoder is not robust against.
         // We don't want the process to die in this case, but we do want to propagate the error.
@@ -264,18 +312,21 @@ public abstract class SimpleDecoder<
     }
 
     synchronized (lock) {
-      if (flushed) {
-        outputBuffer.release();
-      } else if (outputBuffer.isDecodeOnly()) {
-        skippedOutputBufferCount++;
-        outputBuffer.release();
-      } else {
-        outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
-        skippedOutputBufferCount = 0;
-        queuedOutputBuffers.addLast(outputBuffer);
+      for (int i = 0; i < batchSize; i++) {
+        O outputBuffer = outputBuffers[i];
+        if (flushed) {
+          outputBuffer.release();
+        } else if (outputBuffer.isDecodeOnly()) {
+          skippedOutputBufferCount++;
+          outputBuffer.release();
+        } else {
+          outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
+          skippedOutputBufferCount = 0;
+          queuedOutputBuffers.addLast(outputBuffer);
+        }
+        // Make the input buffer available again.
+        releaseInputBufferInternal(inputBuffers[i]);
       }
-      // Make the input buffer available again.
-      releaseInputBufferInternal(inputBuffer);
     }
 
     return true;
@@ -323,4 +374,31 @@ public abstract class SimpleDecoder<
    */
   @Nullable
   protected abstract E decode(I inputBuffer, O outputBuffer, boolean reset);
+
+  /**
+   * Decodes the first {@code count} buffers of {@code inputBuffers}, storing any decoded output in
+   * the output buffer at the same index of {@code outputBuffers}.
+   *
+   * <p>The default implementation calls {@link #decode(DecoderInputBuffer, DecoderOutputBuffer,
+   * boolean)} for each input buffer. Decoders can override this method to decode the whole batch
+   * with a single call into native code. None of the input buffers is an end of stream buffer.
+   *
+   * @param inputBuffers The buffers to decode. Only the first {@code count} elements are valid.
+   * @param outputBuffers The output buffers to store decoded data, with the same semantics as for
+   *     {@link #decode(DecoderInputBuffer, DecoderOutputBuffer, boolean)}. Only the first {@code
+   *     count} elements are valid.
+   * @param count The number of buffers to decode, which is at least one.
+   * @param reset Whether the decoder must be reset before decoding the first buffer.
+   * @return A decoder exception if an error occurred, or null if decoding was successful.
+   */
+  @Nullable
+  protected E decode(I[] inputBuffers, O[] outputBuffers, int count, boolean reset) {
+    for (int i = 0; i < count; i++) {
+      @Nullable E exception = decode(inputBuffers[i], outputBuffers[i], reset && i == 0);
+      if (exception != null) {
+        return exception;
+      }
+    }
+    return null;
+  }
 }
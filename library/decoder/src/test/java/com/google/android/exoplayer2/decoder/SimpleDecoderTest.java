@@ -0,0 +1,242 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.ConditionVariable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SimpleDecoder}. */
+@RunWith(AndroidJUnit4.class)
+public class SimpleDecoderTest {
+
+  private static final int BUFFER_COUNT = 4;
+  private static final long TIMEOUT_MS = 10_000;
+
+  private BatchRecordingDecoder decoder;
+
+  @Before
+  public void setUp() {
+    decoder = new BatchRecordingDecoder();
+  }
+
+  @After
+  public void tearDown() {
+    decoder.release();
+  }
+
+  @Test
+  public void decode_withDefaultBatchSize_decodesBuffersOneByOne() throws Exception {
+    queueBlockedInputThenMore(/* timesUs...= */ 0, 1, 2, 3);
+
+    assertThat(dequeueOutputTimesUs(/* count= */ 4)).containsExactly(0L, 1L, 2L, 3L).inOrder();
+    assertThat(decoder.batchSizes).containsExactly(1, 1, 1, 1);
+  }
+
+  @Test
+  public void decode_withMaxBatchSize_decodesQueuedBuffersTogether() throws Exception {
+    decoder.setMaxDecodeBatchSize(BUFFER_COUNT);
+
+    queueBlockedInputThenMore(/* timesUs...= */ 0, 1, 2, 3);
+
+    assertThat(dequeueOutputTimesUs(/* count= */ 4)).containsExactly(0L, 1L, 2L, 3L).inOrder();
+    assertThat(decoder.batchSizes).containsExactly(1, 3).inOrder();
+  }
+
+  @Test
+  public void decode_withMaxBatchSize_decodesEndOfStreamSeparately() throws Exception {
+    decoder.setMaxDecodeBatchSize(BUFFER_COUNT);
+
+    queueBlockedInputThenMore(/* timesUs...= */ 0, 1, 2, C.TIME_END_OF_SOURCE);
+
+    assertThat(dequeueOutputTimesUs(/* count= */ 3)).containsExactly(0L, 1L, 2L).inOrder();
+    SimpleDecoderOutputBuffer endOfStreamBuffer = dequeueOutputBuffer();
+    assertThat(endOfStreamBuffer.isEndOfStream()).isTrue();
+    assertThat(decoder.batchSizes).containsExactly(1, 2).inOrder();
+  }
+
+  @Test
+  public void decode_withFailingBatch_doesNotOutputInitializedBuffers() throws Exception {
+    decoder.setMaxDecodeBatchSize(BUFFER_COUNT);
+    decoder.failBatchesOfMoreThanOneBuffer();
+
+    queueBlockedInputThenMore(/* timesUs...= */ 0, 1, 2, 3);
+
+    List<Long> outputTimesUs = new ArrayList<>();
+    assertThrows(
+        DecoderException.class,
+        () -> {
+          while (true) {
+            @Nullable SimpleDecoderOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+            if (outputBuffer != null) {
+              outputTimesUs.add(outputBuffer.timeUs);
+              outputBuffer.release();
+            }
+            Thread.sleep(1);
+          }
+        });
+    assertThat(outputTimesUs).containsNoneOf(1L, 2L, 3L);
+    assertThat(decoder.batchSizes).containsExactly(1, 3).inOrder();
+  }
+
+  /**
+   * Queues an input buffer and waits for the decode thread to block decoding it, then queues the
+   * remaining buffers and unblocks the decode thread. An input with time {@link
+   * C#TIME_END_OF_SOURCE} is queued as an end of stream buffer.
+   */
+  private void queueBlockedInputThenMore(long... timesUs) throws Exception {
+    decoder.blockDecoding();
+    for (int i = 0; i < timesUs.length; i++) {
+      DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+      if (timesUs[i] == C.TIME_END_OF_SOURCE) {
+        inputBuffer.setFlags(C.BUFFER_FLAG_END_OF_STREAM);
+      } else {
+        inputBuffer.timeUs = timesUs[i];
+      }
+      decoder.queueInputBuffer(inputBuffer);
+      if (i == 0) {
+        decoder.waitForDecodingStarted();
+      }
+    }
+    decoder.unblockDecoding();
+  }
+
+  private List<Long> dequeueOutputTimesUs(int count) throws Exception {
+    List<Long> timesUs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      SimpleDecoderOutputBuffer outputBuffer = dequeueOutputBuffer();
+      timesUs.add(outputBuffer.timeUs);
+      outputBuffer.release();
+    }
+    return timesUs;
+  }
+
+  private SimpleDecoderOutputBuffer dequeueOutputBuffer() throws Exception {
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (System.currentTimeMillis() < deadlineMs) {
+      @Nullable SimpleDecoderOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+      if (outputBuffer != null) {
+        return outputBuffer;
+      }
+      Thread.sleep(1);
+    }
+    throw new AssertionError("Timed out waiting for an output buffer.");
+  }
+
+  private static final class BatchRecordingDecoder
+      extends SimpleDecoder<DecoderInputBuffer, SimpleDecoderOutputBuffer, DecoderException> {
+
+    public final List<Integer> batchSizes;
+
+    private final ConditionVariable decodingUnblocked;
+    private final ConditionVariable decodingStarted;
+
+    private volatile boolean failBatchesOfMoreThanOneBuffer;
+
+    public BatchRecordingDecoder() {
+      super(new DecoderInputBuffer[BUFFER_COUNT], new SimpleDecoderOutputBuffer[BUFFER_COUNT]);
+      batchSizes = new CopyOnWriteArrayList<>();
+      decodingUnblocked = new ConditionVariable();
+      decodingStarted = new ConditionVariable();
+      decodingUnblocked.open();
+    }
+
+    /**
+     * Makes the next call to {@link #decode(DecoderInputBuffer[], DecoderOutputBuffer[], int,
+     * boolean)} block until {@link #unblockDecoding()} is called.
+     */
+    public void blockDecoding() {
+      decodingStarted.close();
+      decodingUnblocked.close();
+    }
+
+    /** Waits for the decode thread to start decoding. */
+    public void waitForDecodingStarted() throws InterruptedException {
+      decodingStarted.block();
+    }
+
+    /** Unblocks decoding. */
+    public void unblockDecoding() {
+      decodingUnblocked.open();
+    }
+
+    /**
+     * Makes batches of more than one buffer fail after their output buffers have been initialized,
+     * like a native decoder that fails before decoding any buffer of the batch.
+     */
+    public void failBatchesOfMoreThanOneBuffer() {
+      failBatchesOfMoreThanOneBuffer = true;
+    }
+
+    @Override
+    public String getName() {
+      return "BatchRecordingDecoder";
+    }
+
+    @Override
+    protected DecoderInputBuffer createInputBuffer() {
+      return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DISABLED);
+    }
+
+    @Override
+    protected SimpleDecoderOutputBuffer createOutputBuffer() {
+      return new SimpleDecoderOutputBuffer(this::releaseOutputBuffer);
+    }
+
+    @Override
+    protected DecoderException createUnexpectedDecodeException(Throwable error) {
+      return new DecoderException(error);
+    }
+
+    @Nullable
+    @Override
+    protected DecoderException decode(
+        DecoderInputBuffer[] inputBuffers,
+        SimpleDecoderOutputBuffer[] outputBuffers,
+        int count,
+        boolean reset) {
+      decodingStarted.open();
+      decodingUnblocked.blockUninterruptible();
+      batchSizes.add(count);
+      if (failBatchesOfMoreThanOneBuffer && count > 1) {
+        for (int i = 0; i < count; i++) {
+          outputBuffers[i].init(inputBuffers[i].timeUs, /* size= */ 16);
+        }
+        return new DecoderException("Batch decoding failed");
+      }
+      return super.decode(inputBuffers, outputBuffers, count, reset);
+    }
+
+    @Nullable
+    @Override
+    protected DecoderException decode(
+        DecoderInputBuffer inputBuffer, SimpleDecoderOutputBuffer outputBuffer, boolean reset) {
+      outputBuffer.init(inputBuffer.timeUs, /* size= */ 0);
+      return null;
+    }
+  }
+}
@@ -163,6 +163,17 @@ public abstract class BinarySearchSeeker {
     seekOperationParams = createSeekParamsForTargetTimeUs(timeUs);
   }
 
+  /**
+   * Cancels the operation set by {@link #setSeekTargetUs(long)}, if it is still pending. Used when
+   * the position to resume reading from has been resolved without searching the stream.
+   */
+  public final void cancelSeek() {
+    if (seekOperationParams != null) {
+      seekOperationParams = null;
+      timestampSeeker.onSeekFinished();
+    }
+  }
+
   /** Returns whether the last operation set by {@link #setSeekTargetUs(long)} is still pending. */
   public final boolean isSeeking() {
     return seekOperationParams != null;
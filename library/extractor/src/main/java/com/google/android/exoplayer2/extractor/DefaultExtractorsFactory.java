@@ -348,23 +348,41 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   @Override
   public synchronized Extractor[] createExtractors(
       Uri uri, Map<String, List<String>> responseHeaders) {
+    return createExtractors(uri, responseHeaders, FileTypes.UNKNOWN);
+  }
+
+  @Override
+  public synchronized Extractor[] createExtractors(
+      Uri uri,
+      Map<String, List<String>> responseHeaders,
+      @FileTypes.Type int contentInferredFileType) {
     List<Extractor> extractors =
         new ArrayList<>(/* initialCapacity= */ DEFAULT_EXTRACTOR_ORDER.length);
 
+    // The type inferred from the content comes first, since it's based on the media itself rather
+    // than on metadata that may be missing or wrong.
+    if (contentInferredFileType != FileTypes.UNKNOWN) {
+      addExtractorsForFileType(contentInferredFileType, extractors);
+    }
+
     @FileTypes.Type
     int responseHeadersInferredFileType = inferFileTypeFromResponseHeaders(responseHeaders);
-    if (responseHeadersInferredFileType != FileTypes.UNKNOWN) {
+    if (responseHeadersInferredFileType != FileTypes.UNKNOWN
+        && responseHeadersInferredFileType != contentInferredFileType) {
       addExtractorsForFileType(responseHeadersInferredFileType, extractors);
     }
 
     @FileTypes.Type int uriInferredFileType = inferFileTypeFromUri(uri);
     if (uriInferredFileType != FileTypes.UNKNOWN
+        && uriInferredFileType != contentInferredFileType
         && uriInferredFileType != responseHeadersInferredFileType) {
       addExtractorsForFileType(uriInferredFileType, extractors);
     }
 
     for (int fileType : DEFAULT_EXTRACTOR_ORDER) {
-      if (fileType != responseHeadersInferredFileType && fileType != uriInferredFileType) {
+      if (fileType != contentInferredFileType
+          && fileType != responseHeadersInferredFileType
+          && fileType != uriInferredFileType) {
         addExtractorsForFileType(fileType, extractors);
       }
     }
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor;
 
 import android.net.Uri;
+import com.google.android.exoplayer2.util.FileTypes;
 import java.util.List;
 import java.util.Map;
 
@@ -50,4 +51,22 @@ public interface ExtractorsFactory {
   default Extractor[] createExtractors(Uri uri, Map<String, List<String>> responseHeaders) {
     return createExtractors();
   }
+
+  /**
+   * Returns an array of new {@link Extractor} instances.
+   *
+   * @param uri The {@link Uri} of the media to extract.
+   * @param responseHeaders The response headers of the media to extract, or an empty map if there
+   *     are none. The map lookup should be case-insensitive.
+   * @param contentInferredFileType The {@link FileTypes.Type} inferred from the start of the media
+   *     by {@link FileTypes#inferFileTypeFromContent}, or {@link FileTypes#UNKNOWN} if no type
+   *     could be inferred.
+   * @return The {@link Extractor} instances.
+   */
+  default Extractor[] createExtractors(
+      Uri uri,
+      Map<String, List<String>> responseHeaders,
+      @FileTypes.Type int contentInferredFileType) {
+    return createExtractors(uri, responseHeaders);
+  }
 }
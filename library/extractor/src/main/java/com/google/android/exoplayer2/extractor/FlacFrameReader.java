@@ -92,7 +92,8 @@ public final class FlacFrameReader {
    * @param flacStreamMetadata The stream metadata.
    * @param frameStartMarker The frame start marker of the stream.
    * @param sampleNumberHolder The holder used to contain the sample number.
-   * @return Whether the frame header is valid.
+   * @return Whether the frame header is valid. Returns {@code false} if the input ends before the
+   *     frame start marker.
    */
   public static boolean checkFrameHeaderFromPeek(
       ExtractorInput input,
@@ -103,9 +104,11 @@ public final class FlacFrameReader {
     long originalPeekPosition = input.getPeekPosition();
 
     byte[] frameStartBytes = new byte[2];
-    input.peekFully(frameStartBytes, 0, 2);
+    // Peek to the end of the input if there are fewer than 2 bytes left, rather than throwing.
+    int frameStartBytesPeeked =
+        ExtractorUtil.peekToLength(input, frameStartBytes, /* offset= */ 0, /* length= */ 2);
     int frameStart = (frameStartBytes[0] & 0xFF) << 8 | (frameStartBytes[1] & 0xFF);
-    if (frameStart != frameStartMarker) {
+    if (frameStartBytesPeeked < 2 || frameStart != frameStartMarker) {
       input.resetPeekPosition();
       input.advancePeekPosition((int) (originalPeekPosition - input.getPosition()));
       return false;
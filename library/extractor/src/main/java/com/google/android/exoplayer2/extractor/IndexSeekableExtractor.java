@@ -0,0 +1,45 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+/**
+ * An {@link Extractor} for containers without a seek index, which searches the stream for the
+ * position corresponding to a seek time (for example using a {@link BinarySearchSeeker}), but which
+ * can also resume extraction from a position that is already known to correspond to the seek time.
+ *
+ * <p>Such positions are typically taken from an index recorded while the same stream was extracted
+ * previously. Seeking to them avoids the repeated reads at different positions that searching
+ * requires.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public interface IndexSeekableExtractor extends Extractor {
+
+  /**
+   * Notifies the extractor that a seek has occurred to a position that is known to correspond to
+   * the seek time. Unlike {@link #seek(long, long)}, the extractor resumes reading from {@code
+   * position} without searching the stream.
+   *
+   * @param position The byte offset in the stream from which data will be provided. Need not be
+   *     the start of a frame or packet.
+   * @param timeUs The seek time in microseconds.
+   */
+  void seekToIndexedPosition(long position, long timeUs);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import androidx.annotation.Nullable;
+
+/**
+ * An {@link Extractor} whose state after reading the headers of a stream can be saved to a
+ * snapshot, and restored from it when the same stream is extracted again.
+ *
+ * <p>A restored extractor outputs its tracks and {@link SeekMap} without reading the headers from
+ * the stream, and resumes extraction at the samples. This avoids reading and parsing the headers
+ * again, including any reads at distant positions that locating them requires.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public interface RestorableExtractor extends Extractor {
+
+  /**
+   * Requests that the extractor retains the state needed to {@link #createSnapshot() create a
+   * snapshot} once it has read the headers of the stream. Extractors don't retain this state unless
+   * requested, since it can be large.
+   *
+   * <p>Must be called before the headers of the stream are read.
+   */
+  void requestSnapshot();
+
+  /**
+   * Returns a snapshot of the state read from the headers of the stream, or {@code null} if no
+   * snapshot was {@link #requestSnapshot() requested}, the headers haven't been read yet, or the
+   * state can't be restored from a snapshot.
+   *
+   * <p>The state retained for the snapshot is released once the snapshot has been created, so
+   * subsequent calls return {@code null}.
+   */
+  @Nullable
+  byte[] createSnapshot();
+
+  /**
+   * Restores the state read from the headers of a stream from a snapshot, outputting the tracks and
+   * {@link SeekMap} of the stream to the {@link ExtractorOutput} passed to {@link
+   * #init(ExtractorOutput)}.
+   *
+   * <p>Must be called after {@link #init(ExtractorOutput)} and before any data is read. If the
+   * snapshot can't be restored, for example because it was created by a different type of
+   * extractor, the extractor is left unchanged and reads the stream from its start.
+   *
+   * @param snapshot A snapshot returned by {@link #createSnapshot()} for the same stream.
+   * @return Whether the snapshot was restored.
+   */
+  boolean restoreSnapshot(byte[] snapshot);
+}
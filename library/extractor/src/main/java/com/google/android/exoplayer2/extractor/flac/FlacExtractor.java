@@ -32,6 +32,7 @@ import com.google.android.exoplayer2.extractor.FlacFrameReader.SampleNumberHolde
 import com.google.android.exoplayer2.extractor.FlacMetadataReader;
 import com.google.android.exoplayer2.extractor.FlacSeekTableSeekMap;
 import com.google.android.exoplayer2.extractor.FlacStreamMetadata;
+import com.google.android.exoplayer2.extractor.IndexSeekableExtractor;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.TrackOutput;
@@ -56,7 +57,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *     migration guide</a> for more details, including a script to help with the migration.
  */
 @Deprecated
-public final class FlacExtractor implements Extractor {
+public final class FlacExtractor implements IndexSeekableExtractor {
 
   /** Factory for {@link FlacExtractor} instances. */
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new FlacExtractor()};
@@ -127,6 +128,7 @@ public final class FlacExtractor implements Extractor {
   private @MonotonicNonNull FlacBinarySearchSeeker binarySearchSeeker;
   private int currentFrameBytesWritten;
   private long currentFrameFirstSampleNumber;
+  private boolean syncToNextFrame;
 
   /** Constructs an instance with {@code flags = 0}. */
   public FlacExtractor() {
@@ -197,6 +199,23 @@ public final class FlacExtractor implements Extractor {
     currentFrameFirstSampleNumber = timeUs == 0 ? 0 : SAMPLE_NUMBER_UNKNOWN;
     currentFrameBytesWritten = 0;
     buffer.reset(/* limit= */ 0);
+    syncToNextFrame = false;
+  }
+
+  @Override
+  public void seekToIndexedPosition(long position, long timeUs) {
+    if (position == 0) {
+      seek(position, timeUs);
+      return;
+    }
+    if (binarySearchSeeker != null) {
+      binarySearchSeeker.cancelSeek();
+    }
+    currentFrameFirstSampleNumber = SAMPLE_NUMBER_UNKNOWN;
+    currentFrameBytesWritten = 0;
+    buffer.reset(/* limit= */ 0);
+    // The indexed position is not necessarily the start of a frame.
+    syncToNextFrame = true;
   }
 
   @Override
@@ -263,6 +282,12 @@ public final class FlacExtractor implements Extractor {
 
     // Set current frame first sample number if it became unknown after seeking.
     if (currentFrameFirstSampleNumber == SAMPLE_NUMBER_UNKNOWN) {
+      if (syncToNextFrame) {
+        if (!skipToNextFrame(input)) {
+          return Extractor.RESULT_END_OF_INPUT;
+        }
+        syncToNextFrame = false;
+      }
       currentFrameFirstSampleNumber =
           FlacFrameReader.getFirstSampleNumber(input, flacStreamMetadata);
       return Extractor.RESULT_CONTINUE;
@@ -320,6 +345,25 @@ public final class FlacExtractor implements Extractor {
     return Extractor.RESULT_CONTINUE;
   }
 
+  /**
+   * Skips to the start of the next frame, starting from the read position of {@code input}.
+   *
+   * @return Whether a frame was found before the end of the input.
+   */
+  private boolean skipToNextFrame(ExtractorInput input) throws IOException {
+    Assertions.checkNotNull(flacStreamMetadata);
+
+    input.resetPeekPosition();
+    while (!FlacFrameReader.checkFrameHeaderFromPeek(
+        input, flacStreamMetadata, frameStartMarker, sampleNumberHolder)) {
+      if (!input.advancePeekPosition(/* length= */ 1, /* allowEndOfInput= */ true)) {
+        return false;
+      }
+    }
+    input.skipFully((int) (input.getPeekPosition() - input.getPosition()));
+    return true;
+  }
+
   private SeekMap getSeekMap(long firstFramePosition, long streamLength) {
     Assertions.checkNotNull(flacStreamMetadata);
     if (flacStreamMetadata.seekTable != null) {
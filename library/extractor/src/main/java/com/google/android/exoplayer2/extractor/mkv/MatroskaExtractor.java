@@ -90,15 +90,15 @@ public class MatroskaExtractor implements Extractor {
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new MatroskaExtractor()};
 
   /**
-   * Flags controlling the behavior of the extractor. Possible flag value is {@link
-   * #FLAG_DISABLE_SEEK_FOR_CUES}.
+   * Flags controlling the behavior of the extractor. Possible flag values are {@link
+   * #FLAG_DISABLE_SEEK_FOR_CUES} and {@link #FLAG_DEFER_SEEK_FOR_CUES}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
   @Target(TYPE_USE)
   @IntDef(
       flag = true,
-      value = {FLAG_DISABLE_SEEK_FOR_CUES})
+      value = {FLAG_DISABLE_SEEK_FOR_CUES, FLAG_DEFER_SEEK_FOR_CUES})
   public @interface Flags {}
   /**
    * Flag to disable seeking for cues.
@@ -109,6 +109,27 @@ public class MatroskaExtractor implements Extractor {
    * media is treated as being unseekable.
    */
   public static final int FLAG_DISABLE_SEEK_FOR_CUES = 1;
+  /**
+   * Flag to defer seeking for cues until the start of the media has been extracted.
+   *
+   * <p>Normally (i.e. when this flag is not set) the extractor reads a cues element that's after
+   * the first cluster before extracting any samples, which delays the start of playback for media
+   * with large cues elements. When this flag is set, the extractor instead outputs an unseekable
+   * {@link SeekMap} and extracts samples from the first cluster onwards. Once the clusters it has
+   * extracted span {@link #SEEK_FOR_CUES_DEFERRAL_US}, it seeks to the cues element, builds the
+   * cues incrementally, outputs a seekable {@link SeekMap} and continues from where it left off. If
+   * the cues element is reached before that, it's used directly.
+   *
+   * <p>The media is unseekable until the cues have been read. This flag has no effect if {@link
+   * #FLAG_DISABLE_SEEK_FOR_CUES} is set.
+   */
+  public static final int FLAG_DEFER_SEEK_FOR_CUES = 1 << 1;
+
+  /**
+   * The duration of media extracted from the first cluster onwards before seeking for cues, if
+   * {@link #FLAG_DEFER_SEEK_FOR_CUES} is set, in microseconds.
+   */
+  public static final long SEEK_FOR_CUES_DEFERRAL_US = 10_000_000;
 
   private static final String TAG = "MatroskaExtractor";
 
@@ -387,6 +408,7 @@ public class MatroskaExtractor implements Extractor {
   private final VarintReader varintReader;
   private final SparseArray<Track> tracks;
   private final boolean seekForCuesEnabled;
+  private final boolean deferSeekForCues;
 
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
@@ -425,6 +447,9 @@ public class MatroskaExtractor implements Extractor {
   @Nullable private LongArray cueTimesUs;
   @Nullable private LongArray cueClusterPositions;
   private boolean seenClusterPositionForCurrentCuePoint;
+  // Whether an unseekable seek map has been sent, and cues are still to be read.
+  private boolean seekForCuesDeferred;
+  private long deferredSeekForCuesTimeUs = C.TIME_UNSET;
 
   // Reading state.
   private boolean haveOutputSample;
@@ -469,6 +494,7 @@ public class MatroskaExtractor implements Extractor {
     this.reader = reader;
     this.reader.init(new InnerEbmlProcessor());
     seekForCuesEnabled = (flags & FLAG_DISABLE_SEEK_FOR_CUES) == 0;
+    deferSeekForCues = (flags & FLAG_DEFER_SEEK_FOR_CUES) != 0;
     varintReader = new VarintReader();
     tracks = new SparseArray<>();
     scratch = new ParsableByteArray(4);
@@ -498,6 +524,11 @@ public class MatroskaExtractor implements Extractor {
   @Override
   public void seek(long position, long timeUs) {
     clusterTimecodeUs = C.TIME_UNSET;
+    if (seekForCuesDeferred) {
+      // Abandon reading the cues, if in progress. It's retried at a later cluster.
+      seekForCues = false;
+      seekPositionAfterBuildingCues = C.INDEX_UNSET;
+    }
     blockState = BLOCK_STATE_START;
     reader.reset();
     varintReader.reset();
@@ -686,14 +717,28 @@ public class MatroskaExtractor implements Extractor {
         if (!sentSeekMap) {
           // We need to build cues before parsing the cluster.
           if (seekForCuesEnabled && cuesContentPosition != C.INDEX_UNSET) {
-            // We know where the Cues element is located. Seek to request it.
-            seekForCues = true;
+            if (deferSeekForCues) {
+              // Allow playback to start, and seek to the Cues element at a later cluster.
+              extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
+              sentSeekMap = true;
+              seekForCuesDeferred = true;
+            } else {
+              // We know where the Cues element is located. Seek to request it.
+              seekForCues = true;
+            }
           } else {
             // We don't know where the Cues element is located. It's most likely omitted. Allow
             // playback, but disable seeking.
             extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
             sentSeekMap = true;
           }
+        } else if (seekForCuesDeferred
+            && seekPositionAfterBuildingCues == C.INDEX_UNSET
+            && deferredSeekForCuesTimeUs != C.TIME_UNSET
+            && clusterTimecodeUs != C.TIME_UNSET
+            && clusterTimecodeUs >= deferredSeekForCuesTimeUs) {
+          // Enough of the media has been extracted from the preceding clusters.
+          seekForCues = true;
         }
         break;
       case ID_BLOCK_GROUP:
@@ -745,9 +790,10 @@ public class MatroskaExtractor implements Extractor {
         }
         break;
       case ID_CUES:
-        if (!sentSeekMap) {
+        if (!sentSeekMap || seekForCuesDeferred) {
           extractorOutput.seekMap(buildSeekMap(cueTimesUs, cueClusterPositions));
           sentSeekMap = true;
+          seekForCuesDeferred = false;
         } else {
           // We have already built the cues. Ignore.
         }
@@ -969,6 +1015,9 @@ public class MatroskaExtractor implements Extractor {
         break;
       case ID_TIME_CODE:
         clusterTimecodeUs = scaleTimecodeToUs(value);
+        if (seekForCuesDeferred && deferredSeekForCuesTimeUs == C.TIME_UNSET) {
+          deferredSeekForCuesTimeUs = clusterTimecodeUs + SEEK_FOR_CUES_DEFERRAL_US;
+        }
         break;
       case ID_BLOCK_DURATION:
         blockDurationUs = scaleTimecodeToUs(value);
@@ -1303,8 +1352,10 @@ public class MatroskaExtractor implements Extractor {
           // sample metadata.
           while (blockSampleIndex < blockSampleCount) {
             int sampleSize =
-                writeSampleData(
-                    input, track, blockSampleSizes[blockSampleIndex], /* isBlockGroup= */ false);
+                track.hasPassthroughSimpleBlockSampleData
+                    ? writePassthroughSampleData(input, track, blockSampleSizes[blockSampleIndex])
+                    : writeSampleData(
+                        input, track, blockSampleSizes[blockSampleIndex], /* isBlockGroup= */ false);
             long sampleTimeUs =
                 blockTimeUs + (blockSampleIndex * track.defaultSampleDurationNs) / 1000;
             commitSampleToOutput(track, sampleTimeUs, blockFlags, sampleSize, /* offset= */ 0);
@@ -1656,6 +1707,27 @@ public class MatroskaExtractor implements Extractor {
     return finishWriteSampleData();
   }
 
+  /**
+   * Writes data for a single sample of a track whose sample data needs no processing, by passing
+   * it directly from the input to the track output.
+   *
+   * @param input The input from which to read sample data.
+   * @param track The track to output the sample to.
+   * @param size The size of the sample data on the input side.
+   * @return The final size of the written sample.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  @RequiresNonNull("#2.output")
+  private int writePassthroughSampleData(ExtractorInput input, Track track, int size)
+      throws IOException {
+    while (sampleBytesRead < size) {
+      sampleBytesRead +=
+          track.output.sampleData(input, size - sampleBytesRead, /* allowEndOfInput= */ false);
+    }
+    sampleBytesRead = 0;
+    return size;
+  }
+
   /**
    * Called by {@link #writeSampleData(ExtractorInput, Track, int, boolean)} when the sample has
    * been written. Returns the final sample size and resets state for the next sample.
@@ -1853,7 +1925,7 @@ public class MatroskaExtractor implements Extractor {
     }
     // After parsing Cues, seek back to original position if available. We will not do this unless
     // we seeked to get to the Cues in the first place.
-    if (sentSeekMap && seekPositionAfterBuildingCues != C.INDEX_UNSET) {
+    if (sentSeekMap && !seekForCuesDeferred && seekPositionAfterBuildingCues != C.INDEX_UNSET) {
       seekPosition.position = seekPositionAfterBuildingCues;
       seekPositionAfterBuildingCues = C.INDEX_UNSET;
       return true;
@@ -2046,6 +2118,8 @@ public class MatroskaExtractor implements Extractor {
     // Set when the output is initialized. nalUnitLengthFieldLength is only set for H264/H265.
     public @MonotonicNonNull TrackOutput output;
     public int nalUnitLengthFieldLength;
+    // Whether sample data can be written to the output exactly as it's stored in SimpleBlocks.
+    public boolean hasPassthroughSimpleBlockSampleData;
 
     /** Initializes the track with an output. */
     @RequiresNonNull("codecId")
@@ -2346,6 +2420,17 @@ public class MatroskaExtractor implements Extractor {
 
       this.output = output.track(number, type);
       this.output.format(format);
+      hasPassthroughSimpleBlockSampleData =
+          !hasContentEncryption
+              && sampleStrippedBytes == null
+              && trueHdSampleRechunker == null
+              && !samplesHaveSupplementalData(/* isBlockGroup= */ false)
+              && !CODEC_ID_SUBRIP.equals(codecId)
+              && !CODEC_ID_ASS.equals(codecId)
+              && !CODEC_ID_VTT.equals(codecId)
+              && !CODEC_ID_H264.equals(codecId)
+              && !CODEC_ID_H265.equals(codecId)
+              && !CODEC_ID_VORBIS.equals(codecId);
     }
 
     /** Forces any pending sample metadata to be flushed to the output. */
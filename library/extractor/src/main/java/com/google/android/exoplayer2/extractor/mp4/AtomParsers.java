@@ -19,6 +19,7 @@ import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.MimeTypes.getMimeTypeFromMp4ObjectType;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import android.util.Pair;
 import androidx.annotation.Nullable;
@@ -40,6 +41,7 @@ import com.google.android.exoplayer2.metadata.mp4.SmtaMetadataEntry;
 import com.google.android.exoplayer2.util.CodecSpecificDataUtil;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableBitArray;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.AvcConfig;
@@ -166,36 +168,56 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       Function<@NullableType Track, @NullableType Track> modifyTrackFunction)
       throws ParserException {
     List<TrackSampleTable> trackSampleTables = new ArrayList<>();
-    for (int i = 0; i < moov.containerChildren.size(); i++) {
-      Atom.ContainerAtom atom = moov.containerChildren.get(i);
-      if (atom.type != Atom.TYPE_trak) {
-        continue;
-      }
-      @Nullable
-      Track track =
-          modifyTrackFunction.apply(
-              parseTrak(
-                  atom,
-                  checkNotNull(moov.getLeafAtomOfType(Atom.TYPE_mvhd)),
-                  duration,
-                  drmInitData,
-                  ignoreEditLists,
-                  isQuickTime));
-      if (track == null) {
-        continue;
-      }
-      Atom.ContainerAtom stblAtom =
-          checkNotNull(
-              checkNotNull(
-                      checkNotNull(atom.getContainerAtomOfType(Atom.TYPE_mdia))
-                          .getContainerAtomOfType(Atom.TYPE_minf))
-                  .getContainerAtomOfType(Atom.TYPE_stbl));
-      TrackSampleTable trackSampleTable = parseStbl(track, stblAtom, gaplessInfoHolder);
-      trackSampleTables.add(trackSampleTable);
+    for (Pair<Track, Atom.ContainerAtom> trackAndStblAtom :
+        parseTracksAndStblAtoms(
+            moov, duration, drmInitData, ignoreEditLists, isQuickTime, modifyTrackFunction)) {
+      trackSampleTables.add(
+          parseStbl(trackAndStblAtom.first, trackAndStblAtom.second, gaplessInfoHolder));
     }
     return trackSampleTables;
   }
 
+  /**
+   * Parse the trak atoms in a moov atom (defined in ISO/IEC 14496-12), optionally deferring the
+   * decoding of sample tables until samples are accessed.
+   *
+   * @param moov Moov atom to decode.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @param duration The duration in units of the timescale declared in the mvhd atom, or {@link
+   *     C#TIME_UNSET} if the duration should be parsed from the tkhd atom.
+   * @param drmInitData {@link DrmInitData} to be included in the format, or {@code null}.
+   * @param ignoreEditLists Whether to ignore any edit lists in the trak boxes.
+   * @param isQuickTime True for QuickTime media. False otherwise.
+   * @param readSampleTablesLazily Whether to return a {@link LazyTrackSampleTable} for each track
+   *     whose sample table can be decoded on demand.
+   * @param modifyTrackFunction A function to apply to the {@link Track Tracks} in the result.
+   * @return A list of {@link SampleTable} instances.
+   * @throws ParserException Thrown if the trak atoms can't be parsed.
+   */
+  public static List<SampleTable> parseTraks(
+      Atom.ContainerAtom moov,
+      GaplessInfoHolder gaplessInfoHolder,
+      long duration,
+      @Nullable DrmInitData drmInitData,
+      boolean ignoreEditLists,
+      boolean isQuickTime,
+      boolean readSampleTablesLazily,
+      Function<@NullableType Track, @NullableType Track> modifyTrackFunction)
+      throws ParserException {
+    List<SampleTable> sampleTables = new ArrayList<>();
+    for (Pair<Track, Atom.ContainerAtom> trackAndStblAtom :
+        parseTracksAndStblAtoms(
+            moov, duration, drmInitData, ignoreEditLists, isQuickTime, modifyTrackFunction)) {
+      Track track = trackAndStblAtom.first;
+      Atom.ContainerAtom stblAtom = trackAndStblAtom.second;
+      @Nullable
+      SampleTable sampleTable = readSampleTablesLazily ? parseStblLazily(track, stblAtom) : null;
+      sampleTables.add(
+          sampleTable != null ? sampleTable : parseStbl(track, stblAtom, gaplessInfoHolder));
+    }
+    return sampleTables;
+  }
+
   /**
    * Parses a udta atom.
    *
@@ -424,6 +446,114 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
             editListMediaTimes);
   }
 
+  /** Returns the parsed tracks in a moov atom, each with its stbl atom. */
+  private static List<Pair<Track, Atom.ContainerAtom>> parseTracksAndStblAtoms(
+      Atom.ContainerAtom moov,
+      long duration,
+      @Nullable DrmInitData drmInitData,
+      boolean ignoreEditLists,
+      boolean isQuickTime,
+      Function<@NullableType Track, @NullableType Track> modifyTrackFunction)
+      throws ParserException {
+    List<Pair<Track, Atom.ContainerAtom>> tracksAndStblAtoms = new ArrayList<>();
+    for (int i = 0; i < moov.containerChildren.size(); i++) {
+      Atom.ContainerAtom atom = moov.containerChildren.get(i);
+      if (atom.type != Atom.TYPE_trak) {
+        continue;
+      }
+      @Nullable
+      Track track =
+          modifyTrackFunction.apply(
+              parseTrak(
+                  atom,
+                  checkNotNull(moov.getLeafAtomOfType(Atom.TYPE_mvhd)),
+                  duration,
+                  drmInitData,
+                  ignoreEditLists,
+                  isQuickTime));
+      if (track == null) {
+        continue;
+      }
+      Atom.ContainerAtom stblAtom =
+          checkNotNull(
+              checkNotNull(
+                      checkNotNull(atom.getContainerAtomOfType(Atom.TYPE_mdia))
+                          .getContainerAtomOfType(Atom.TYPE_minf))
+                  .getContainerAtomOfType(Atom.TYPE_stbl));
+      tracksAndStblAtoms.add(Pair.create(track, stblAtom));
+    }
+    return tracksAndStblAtoms;
+  }
+
+  /**
+   * Returns a {@link LazyTrackSampleTable} for an stbl atom, or {@code null} if the sample table
+   * must be fully decoded by {@link #parseStbl}.
+   *
+   * @param track Track to which this sample table corresponds.
+   * @param stblAtom stbl (sample table) atom to decode.
+   * @return The sample table, or {@code null} if it can't be decoded on demand.
+   * @throws ParserException Thrown if the stbl atom can't be parsed.
+   */
+  @Nullable
+  private static LazyTrackSampleTable parseStblLazily(Track track, Atom.ContainerAtom stblAtom)
+      throws ParserException {
+    @Nullable String sampleMimeType = track.format.sampleMimeType;
+    if (track.editListDurations != null
+        || MimeTypes.AUDIO_RAW.equals(sampleMimeType)
+        || MimeTypes.AUDIO_MLAW.equals(sampleMimeType)
+        || MimeTypes.AUDIO_ALAW.equals(sampleMimeType)) {
+      // Applying edits and rechunking raw audio require the whole sample table.
+      return null;
+    }
+    ParsableByteArray sampleSizes;
+    int sampleSizeFieldBits;
+    int fixedSampleSize;
+    @Nullable Atom.LeafAtom stszAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stsz);
+    if (stszAtom != null) {
+      sampleSizes = stszAtom.data;
+      sampleSizes.setPosition(Atom.FULL_HEADER_SIZE);
+      sampleSizeFieldBits = 32;
+      fixedSampleSize = sampleSizes.readUnsignedIntToInt();
+      if (fixedSampleSize == 0) {
+        fixedSampleSize = C.LENGTH_UNSET;
+      }
+    } else {
+      @Nullable Atom.LeafAtom stz2Atom = stblAtom.getLeafAtomOfType(Atom.TYPE_stz2);
+      if (stz2Atom == null) {
+        return null;
+      }
+      sampleSizes = stz2Atom.data;
+      sampleSizes.setPosition(Atom.FULL_HEADER_SIZE);
+      sampleSizeFieldBits = sampleSizes.readUnsignedIntToInt() & 0x000000FF;
+      fixedSampleSize = C.LENGTH_UNSET;
+    }
+    int sampleCount = sampleSizes.readUnsignedIntToInt();
+    if (sampleCount == 0) {
+      return null;
+    }
+
+    boolean chunkOffsetsAreLongs = false;
+    @Nullable Atom.LeafAtom chunkOffsetsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stco);
+    if (chunkOffsetsAtom == null) {
+      chunkOffsetsAreLongs = true;
+      chunkOffsetsAtom = checkNotNull(stblAtom.getLeafAtomOfType(Atom.TYPE_co64));
+    }
+    @Nullable Atom.LeafAtom stssAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stss);
+    @Nullable Atom.LeafAtom cttsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_ctts);
+    return new LazyTrackSampleTable(
+        track,
+        sampleSizes,
+        sampleSizeFieldBits,
+        fixedSampleSize,
+        sampleCount,
+        chunkOffsetsAtom.data,
+        chunkOffsetsAreLongs,
+        checkNotNull(stblAtom.getLeafAtomOfType(Atom.TYPE_stsc)).data,
+        checkNotNull(stblAtom.getLeafAtomOfType(Atom.TYPE_stts)).data,
+        cttsAtom != null ? cttsAtom.data : null,
+        stssAtom != null ? stssAtom.data : null);
+  }
+
   /**
    * Parses an stbl atom (defined in ISO/IEC 14496-12).
    *
@@ -548,8 +678,14 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       flags = rechunkedResults.flags;
       duration = rechunkedResults.duration;
     } else {
-      offsets = new long[sampleCount];
       sizes = new int[sampleCount];
+      int sampleSizeCount = sampleSizeBox.readSampleSizes(sizes, sampleCount);
+      if (sampleSizeCount < sampleCount) {
+        Log.w(TAG, "Unexpected end of sample size data");
+        sampleCount = sampleSizeCount;
+        sizes = Arrays.copyOf(sizes, sampleCount);
+      }
+      offsets = new long[sampleCount];
       timestamps = new long[sampleCount];
       flags = new int[sampleCount];
       long offset = 0;
@@ -588,7 +724,6 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         }
 
         offsets[i] = offset;
-        sizes[i] = sampleSizeBox.readNextSampleSize();
         if (sizes[i] > maximumSize) {
           maximumSize = sizes[i];
         }
@@ -1994,6 +2129,9 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
   private static final class ChunkIterator {
 
+    /** The maximum number of chunk offsets that are read at a time. */
+    private static final int MAX_BUFFERED_CHUNK_OFFSET_COUNT = 256;
+
     public final int length;
 
     public int index;
@@ -2003,7 +2141,10 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     private final boolean chunkOffsetsAreLongs;
     private final ParsableByteArray chunkOffsets;
     private final ParsableByteArray stsc;
+    private final long[] bufferedChunkOffsets;
 
+    private int bufferedChunkOffsetCount;
+    private int bufferedChunkOffsetIndex;
     private int nextSamplesPerChunkChangeIndex;
     private int remainingSamplesPerChunkChanges;
 
@@ -2015,6 +2156,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       this.chunkOffsetsAreLongs = chunkOffsetsAreLongs;
       chunkOffsets.setPosition(Atom.FULL_HEADER_SIZE);
       length = chunkOffsets.readUnsignedIntToInt();
+      bufferedChunkOffsets = new long[min(length, MAX_BUFFERED_CHUNK_OFFSET_COUNT)];
       stsc.setPosition(Atom.FULL_HEADER_SIZE);
       remainingSamplesPerChunkChanges = stsc.readUnsignedIntToInt();
       ExtractorUtil.checkContainerInput(stsc.readInt() == 1, "first_chunk must be 1");
@@ -2025,10 +2167,10 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       if (++index == length) {
         return false;
       }
-      offset =
-          chunkOffsetsAreLongs
-              ? chunkOffsets.readUnsignedLongToLong()
-              : chunkOffsets.readUnsignedInt();
+      if (bufferedChunkOffsetIndex == bufferedChunkOffsetCount) {
+        bufferChunkOffsets();
+      }
+      offset = bufferedChunkOffsets[bufferedChunkOffsetIndex++];
       if (index == nextSamplesPerChunkChangeIndex) {
         numSamples = stsc.readUnsignedIntToInt();
         stsc.skipBytes(4); // Skip sample_description_index
@@ -2039,6 +2181,24 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       }
       return true;
     }
+
+    private void bufferChunkOffsets() {
+      int chunkOffsetSize = chunkOffsetsAreLongs ? 8 : 4;
+      // Don't read beyond the end of a malformed atom before the offsets are needed.
+      int count =
+          max(
+              1,
+              min(
+                  min(bufferedChunkOffsets.length, length - index),
+                  chunkOffsets.bytesLeft() / chunkOffsetSize));
+      if (chunkOffsetsAreLongs) {
+        chunkOffsets.readUnsignedLongsToLongs(bufferedChunkOffsets, /* offset= */ 0, count);
+      } else {
+        chunkOffsets.readUnsignedInts(bufferedChunkOffsets, /* offset= */ 0, count);
+      }
+      bufferedChunkOffsetCount = count;
+      bufferedChunkOffsetIndex = 0;
+    }
   }
 
   /** Holds data parsed from a tkhd atom. */
@@ -2102,6 +2262,15 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
     /** Returns the size for the next sample. */
     int readNextSampleSize();
+
+    /**
+     * Reads the sizes of the next {@code count} samples into {@code sizes}, or of as many of them as
+     * the box contains.
+     *
+     * @return The number of sample sizes read, which is less than {@code count} if the box ends
+     *     early.
+     */
+    int readSampleSizes(int[] sizes, int count);
   }
 
   /** An stsz sample size box. */
@@ -2148,6 +2317,17 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     public int readNextSampleSize() {
       return fixedSampleSize == C.LENGTH_UNSET ? data.readUnsignedIntToInt() : fixedSampleSize;
     }
+
+    @Override
+    public int readSampleSizes(int[] sizes, int count) {
+      if (fixedSampleSize == C.LENGTH_UNSET) {
+        count = min(count, data.bytesLeft() / 4);
+        data.readUnsignedIntsToInts(sizes, /* offset= */ 0, count);
+      } else {
+        Arrays.fill(sizes, /* fromIndex= */ 0, count, fixedSampleSize);
+      }
+      return count;
+    }
   }
 
   /** An stz2 sample size box. */
@@ -2164,7 +2344,9 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     public Stz2SampleSizeBox(Atom.LeafAtom stz2Atom) {
       data = stz2Atom.data;
       data.setPosition(Atom.FULL_HEADER_SIZE);
-      fieldSize = data.readUnsignedIntToInt() & 0x000000FF;
+      int fieldSize = data.readUnsignedIntToInt() & 0x000000FF;
+      // Sizes that aren't 8 or 16 bits are read as 4 bits, like in readNextSampleSize().
+      this.fieldSize = fieldSize == 8 || fieldSize == 16 ? fieldSize : 4;
       sampleCount = data.readUnsignedIntToInt();
     }
 
@@ -2197,5 +2379,28 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         }
       }
     }
+
+    @Override
+    public int readSampleSizes(int[] sizes, int count) {
+      int bitPosition = data.getPosition() * 8;
+      if (fieldSize == 4 && (sampleIndex % 2) != 0) {
+        // The upper bits of the previous byte have already been read.
+        bitPosition -= 4;
+      }
+      count = min(count, (data.limit() * 8 - bitPosition) / fieldSize);
+      ParsableBitArray sampleSizeBits = new ParsableBitArray(data.getData(), data.limit());
+      sampleSizeBits.setPosition(bitPosition);
+      sampleSizeBits.readBitFields(sizes, /* offset= */ 0, count, fieldSize);
+      int endBitPosition = bitPosition + count * fieldSize;
+      data.setPosition(Util.ceilDivide(endBitPosition, 8));
+      if (fieldSize == 4) {
+        sampleIndex += count;
+        if (endBitPosition % 8 != 0) {
+          // Cache the byte whose lower bits hold the next sample size.
+          currentByte = data.getData()[data.getPosition() - 1] & 0xFF;
+        }
+      }
+      return count;
+    }
   }
 }
@@ -153,6 +153,8 @@ public class FragmentedMp4Extractor implements Extractor {
   private final ParsableByteArray nalBuffer;
   private final byte[] scratchBytes;
   private final ParsableByteArray scratch;
+  // Reusable data arrays for the leaf atoms of track fragments.
+  private final ArrayDeque<ParsableByteArray> trafLeafAtomDataPool;
 
   // Adjusts sample timestamps.
   @Nullable private final TimestampAdjuster timestampAdjuster;
@@ -272,6 +274,7 @@ public class FragmentedMp4Extractor implements Extractor {
     nalBuffer = new ParsableByteArray();
     scratchBytes = new byte[16];
     scratch = new ParsableByteArray(scratchBytes);
+    trafLeafAtomDataPool = new ArrayDeque<>();
     containerAtoms = new ArrayDeque<>();
     pendingMetadataSampleInfos = new ArrayDeque<>();
     trackBundles = new SparseArray<>();
@@ -441,7 +444,12 @@ public class FragmentedMp4Extractor implements Extractor {
         throw ParserException.createForUnsupportedContainerFeature(
             "Leaf atom with length > 2147483647 (unsupported).");
       }
-      ParsableByteArray atomData = new ParsableByteArray((int) atomSize);
+      ParsableByteArray atomData;
+      if (!containerAtoms.isEmpty() && containerAtoms.peek().type == Atom.TYPE_traf) {
+        atomData = obtainTrafLeafAtomData((int) atomSize);
+      } else {
+        atomData = new ParsableByteArray((int) atomSize);
+      }
       System.arraycopy(atomHeader.getData(), 0, atomData.getData(), 0, Atom.HEADER_SIZE);
       this.atomData = atomData;
       parserState = STATE_READING_ATOM_PAYLOAD;
@@ -457,6 +465,40 @@ public class FragmentedMp4Extractor implements Extractor {
     return true;
   }
 
+  /**
+   * Returns a {@link ParsableByteArray} with the given limit for the data of a leaf atom in a track
+   * fragment, reusing the data of a previous fragment if possible.
+   *
+   * <p>The data is reused in the order it was released, so that fragments with the same layout get
+   * the data of the corresponding atoms of the previous fragment, which usually has the right size.
+   */
+  private ParsableByteArray obtainTrafLeafAtomData(int atomSize) {
+    @Nullable ParsableByteArray atomData = trafLeafAtomDataPool.pollFirst();
+    if (atomData == null) {
+      return new ParsableByteArray(atomSize);
+    }
+    atomData.reset(atomSize);
+    return atomData;
+  }
+
+  /**
+   * Returns the data of the leaf atoms in the track fragments of a parsed moof to the pool.
+   *
+   * <p>Must only be called once no data parsed from the moof references the leaf atom data.
+   */
+  private void releaseTrafLeafAtomData(ContainerAtom moof) {
+    int moofContainerChildrenSize = moof.containerChildren.size();
+    for (int i = 0; i < moofContainerChildrenSize; i++) {
+      ContainerAtom child = moof.containerChildren.get(i);
+      if (child.type == Atom.TYPE_traf) {
+        int leafChildrenSize = child.leafChildren.size();
+        for (int j = 0; j < leafChildrenSize; j++) {
+          trafLeafAtomDataPool.addLast(child.leafChildren.get(j).data);
+        }
+      }
+    }
+  }
+
   private void readAtomPayload(ExtractorInput input) throws IOException {
     int atomPayloadSize = (int) atomSize - atomHeaderBytesRead;
     @Nullable ParsableByteArray atomData = this.atomData;
@@ -574,6 +616,8 @@ public class FragmentedMp4Extractor implements Extractor {
 
   private void onMoofContainerAtomRead(ContainerAtom moof) throws ParserException {
     parseMoof(moof, trackBundles, sideloadedTrack != null, flags, scratchBytes);
+    // All data needed from the track fragment atoms has been copied into the track fragments.
+    releaseTrafLeafAtomData(moof);
 
     @Nullable DrmInitData drmInitData = getDrmInitDataFromAtoms(moof.leafChildren);
     if (drmInitData != null) {
@@ -1064,19 +1108,33 @@ public class FragmentedMp4Extractor implements Extractor {
             && (flags & FLAG_WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME) != 0;
 
     int trackRunEnd = trackRunStart + fragment.trunLength[index];
-    long timescale = track.timescale;
+    int sampleFieldsSize =
+        (sampleDurationsPresent ? 4 : 0)
+            + (sampleSizesPresent ? 4 : 0)
+            + (sampleFlagsPresent ? 4 : 0)
+            + (sampleCompositionTimeOffsetsPresent ? 4 : 0);
+    if ((long) fragment.trunLength[index] * sampleFieldsSize > trun.bytesLeft()) {
+      throw ParserException.createForMalformedContainer(
+          "Trun sample count " + fragment.trunLength[index] + " exceeds atom size",
+          /* cause= */ null);
+    }
+
+    // Use trun values if present, otherwise tfhd, otherwise trex.
+    int sampleDuration = defaultSampleValues.duration;
+    int sampleSize = defaultSampleValues.size;
+    int sampleCompositionTimeOffset = 0;
     long cumulativeTime = fragment.nextFragmentDecodeTime;
     for (int i = trackRunStart; i < trackRunEnd; i++) {
-      // Use trun values if present, otherwise tfhd, otherwise trex.
-      int sampleDuration =
-          checkNonNegative(sampleDurationsPresent ? trun.readInt() : defaultSampleValues.duration);
-      int sampleSize =
-          checkNonNegative(sampleSizesPresent ? trun.readInt() : defaultSampleValues.size);
+      if (sampleDurationsPresent) {
+        sampleDuration = trun.readInt();
+      }
+      if (sampleSizesPresent) {
+        sampleSize = trun.readInt();
+      }
       int sampleFlags =
           sampleFlagsPresent
               ? trun.readInt()
               : (i == 0 && firstSampleFlagsPresent) ? firstSampleFlags : defaultSampleValues.flags;
-      int sampleCompositionTimeOffset = 0;
       if (sampleCompositionTimeOffsetsPresent) {
         // The BMFF spec (ISO 14496-12) states that sample offsets should be unsigned integers in
         // version 0 trun boxes, however a significant number of streams violate the spec and use
@@ -1085,16 +1143,24 @@ public class FragmentedMp4Extractor implements Extractor {
         // set, which is never true in practice because sample offsets are always small).
         sampleCompositionTimeOffset = trun.readInt();
       }
-      long samplePresentationTime = cumulativeTime + sampleCompositionTimeOffset - edtsOffset;
-      samplePresentationTimesUs[i] =
-          Util.scaleLargeTimestamp(samplePresentationTime, C.MICROS_PER_SECOND, timescale);
-      if (!fragment.nextFragmentDecodeTimeIncludesMoov) {
-        samplePresentationTimesUs[i] += trackBundle.moovSampleTable.durationUs;
-      }
-      sampleSizeTable[i] = sampleSize;
+      // The presentation times are scaled to microseconds for the whole run below.
+      samplePresentationTimesUs[i] = cumulativeTime + sampleCompositionTimeOffset - edtsOffset;
+      sampleSizeTable[i] = checkNonNegative(sampleSize);
       sampleIsSyncFrameTable[i] =
           ((sampleFlags >> 16) & 0x1) == 0 && (!workaroundEveryVideoFrameIsSyncFrame || i == 0);
-      cumulativeTime += sampleDuration;
+      cumulativeTime += checkNonNegative(sampleDuration);
+    }
+    Util.scaleLargeTimestampsInPlace(
+        samplePresentationTimesUs,
+        trackRunStart,
+        trackRunEnd,
+        C.MICROS_PER_SECOND,
+        track.timescale);
+    if (!fragment.nextFragmentDecodeTimeIncludesMoov) {
+      long moovDurationUs = trackBundle.moovSampleTable.durationUs;
+      for (int i = trackRunStart; i < trackRunEnd; i++) {
+        samplePresentationTimesUs[i] += moovDurationUs;
+      }
     }
     fragment.nextFragmentDecodeTime = cumulativeTime;
     return trackRunEnd;
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.ExtractorUtil;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.ParsableBitArray;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * Sample table for a track in an MP4 file that is decoded from the sample table atoms on demand.
+ *
+ * <p>The stsz (or stz2), stco (or co64), stsc, stts, ctts and stss atoms are retained and decoded
+ * in pages of {@link #SAMPLES_PER_PAGE} samples when a sample is first accessed. The decoder state
+ * at the start of each page that has been reached is kept, so that pages can be decoded again
+ * after they have been evicted. The memory and time needed to create the table are independent of
+ * the number of samples, except for a single allocation-free pass over the sample sizes.
+ *
+ * <p>Edit lists are not supported, and the table does not rechunk fixed sample size audio.
+ *
+ * <p>The table is thread-safe. Seek queries on the playback thread and sample reads on the loading
+ * thread share the decoder state and the cached pages, so accesses to them are serialized.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class LazyTrackSampleTable implements SampleTable {
+
+  private static final String TAG = "LazyTrackSampleTable";
+
+  /** The number of samples decoded at a time. */
+  /* package */ static final int SAMPLES_PER_PAGE = 1024;
+
+  /** The maximum number of decoded pages that are kept. */
+  private static final int MAX_CACHED_PAGE_COUNT = 4;
+
+  /** The position of the first entry in stsz and stz2 atoms. */
+  private static final int SAMPLE_SIZES_POSITION = Atom.FULL_HEADER_SIZE + 8;
+
+  /** The position of the first entry in stco and co64 atoms. */
+  private static final int CHUNK_OFFSETS_POSITION = Atom.FULL_HEADER_SIZE + 4;
+
+  private final Track track;
+  private final int sampleCount;
+  private final int maximumSize;
+  private final long totalSize;
+  private final long durationUs;
+
+  private final int sampleSizeFieldBits;
+  private final int fixedSampleSize;
+  private final boolean chunkOffsetsAreLongs;
+  private final int pageCount;
+
+  @GuardedBy("this")
+  private final ParsableByteArray sampleSizes;
+
+  @GuardedBy("this")
+  private final ParsableBitArray sampleSizeBits;
+
+  @GuardedBy("this")
+  private final int[] sampleSizesBuffer;
+
+  @GuardedBy("this")
+  private final ParsableByteArray chunkOffsets;
+
+  @GuardedBy("this")
+  private final ParsableByteArray stsc;
+
+  @GuardedBy("this")
+  private final ParsableByteArray stts;
+
+  @GuardedBy("this")
+  @Nullable
+  private final ParsableByteArray ctts;
+
+  @GuardedBy("this")
+  @Nullable
+  private final ParsableByteArray stss;
+
+  @GuardedBy("this")
+  private final ArrayList<Cursor> checkpoints;
+
+  @GuardedBy("this")
+  private final @NullableType Page[] cachedPages;
+
+  @GuardedBy("this")
+  private int nextCachedPageIndexToReplace;
+
+  /**
+   * Creates an instance.
+   *
+   * @param track The track corresponding to this sample table.
+   * @param sampleSizes The contents of the stsz or stz2 atom.
+   * @param sampleSizeFieldBits The number of bits per entry in {@code sampleSizes}, which is 32 for
+   *     stsz atoms, or 4, 8 or 16 for stz2 atoms.
+   * @param fixedSampleSize The size of each sample if fixed, or {@link C#LENGTH_UNSET} otherwise.
+   * @param sampleCount The number of samples declared in the sample size atom.
+   * @param chunkOffsets The contents of the stco or co64 atom.
+   * @param chunkOffsetsAreLongs Whether {@code chunkOffsets} is a co64 atom.
+   * @param stsc The contents of the stsc atom.
+   * @param stts The contents of the stts atom.
+   * @param ctts The contents of the ctts atom, or {@code null} if not present.
+   * @param stss The contents of the stss atom, or {@code null} if not present.
+   * @throws ParserException If the sample table atoms are malformed.
+   */
+  public LazyTrackSampleTable(
+      Track track,
+      ParsableByteArray sampleSizes,
+      int sampleSizeFieldBits,
+      int fixedSampleSize,
+      int sampleCount,
+      ParsableByteArray chunkOffsets,
+      boolean chunkOffsetsAreLongs,
+      ParsableByteArray stsc,
+      ParsableByteArray stts,
+      @Nullable ParsableByteArray ctts,
+      @Nullable ParsableByteArray stss)
+      throws ParserException {
+    this.track = track;
+    this.sampleSizes = sampleSizes;
+    this.sampleSizeFieldBits = sampleSizeFieldBits;
+    this.fixedSampleSize = fixedSampleSize;
+    sampleSizeBits = new ParsableBitArray(sampleSizes.getData(), sampleSizes.limit());
+    sampleSizesBuffer = new int[fixedSampleSize == C.LENGTH_UNSET ? SAMPLES_PER_PAGE : 0];
+    this.chunkOffsets = chunkOffsets;
+    this.chunkOffsetsAreLongs = chunkOffsetsAreLongs;
+    this.stsc = stsc;
+    this.stts = stts;
+    this.ctts = ctts;
+
+    Cursor cursor = new Cursor();
+    cursor.chunkIndex = -1;
+    stsc.setPosition(Atom.FULL_HEADER_SIZE);
+    cursor.remainingSamplesPerChunkChanges = stsc.readUnsignedIntToInt();
+    ExtractorUtil.checkContainerInput(stsc.readInt() == 1, "first_chunk must be 1");
+    cursor.stscPosition = stsc.getPosition();
+    stts.setPosition(Atom.FULL_HEADER_SIZE);
+    cursor.remainingTimestampDeltaChanges = stts.readUnsignedIntToInt() - 1;
+    cursor.remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
+    cursor.timestampDeltaInTimeUnits = stts.readUnsignedIntToInt();
+    cursor.sttsPosition = stts.getPosition();
+    if (ctts != null) {
+      ctts.setPosition(Atom.FULL_HEADER_SIZE);
+      cursor.remainingTimestampOffsetChanges = ctts.readUnsignedIntToInt();
+      cursor.cttsPosition = ctts.getPosition();
+    }
+    cursor.nextSynchronizationSampleIndex = C.INDEX_UNSET;
+    if (stss != null) {
+      stss.setPosition(Atom.FULL_HEADER_SIZE);
+      cursor.remainingSynchronizationSamples = stss.readUnsignedIntToInt();
+      if (cursor.remainingSynchronizationSamples > 0) {
+        cursor.nextSynchronizationSampleIndex = stss.readUnsignedIntToInt() - 1;
+        cursor.stssPosition = stss.getPosition();
+      } else {
+        // Ignore empty stss boxes, which causes all samples to be treated as sync samples.
+        stss = null;
+      }
+    }
+    this.stss = stss;
+
+    int chunkSampleCount = getChunkSampleCount(chunkOffsets, stsc, sampleCount);
+    if (chunkSampleCount < sampleCount) {
+      Log.w(TAG, "Unexpected end of chunk data");
+      sampleCount = chunkSampleCount;
+    }
+    this.sampleCount = sampleCount;
+
+    if (fixedSampleSize != C.LENGTH_UNSET) {
+      maximumSize = fixedSampleSize;
+      totalSize = (long) fixedSampleSize * sampleCount;
+    } else {
+      int maximumSize = 0;
+      long totalSize = 0;
+      for (int i = 0; i < sampleCount; i += SAMPLES_PER_PAGE) {
+        int count = min(SAMPLES_PER_PAGE, sampleCount - i);
+        readSampleSizes(/* firstSampleIndex= */ i, count, sampleSizesBuffer);
+        for (int j = 0; j < count; j++) {
+          maximumSize = max(maximumSize, sampleSizesBuffer[j]);
+          totalSize += sampleSizesBuffer[j];
+        }
+      }
+      this.maximumSize = maximumSize;
+      this.totalSize = totalSize;
+    }
+
+    long duration =
+        getDecodingDuration(stts, sampleCount)
+            + (ctts != null ? getLastTimestampOffset(ctts, sampleCount) : 0);
+    durationUs = Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, track.timescale);
+
+    pageCount = Util.ceilDivide(sampleCount, SAMPLES_PER_PAGE);
+    checkpoints = new ArrayList<>();
+    checkpoints.add(cursor);
+    cachedPages = new Page[MAX_CACHED_PAGE_COUNT];
+  }
+
+  @Override
+  public Track getTrack() {
+    return track;
+  }
+
+  @Override
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  @Override
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  @Override
+  public long getTotalSize() {
+    return totalSize;
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  @Override
+  public synchronized long getOffset(int sampleIndex) {
+    Page page = getPageForSample(sampleIndex);
+    return page.offsets[sampleIndex - page.firstSampleIndex];
+  }
+
+  @Override
+  public synchronized int getSize(int sampleIndex) {
+    Page page = getPageForSample(sampleIndex);
+    return page.sizes[sampleIndex - page.firstSampleIndex];
+  }
+
+  @Override
+  public synchronized long getTimestampUs(int sampleIndex) {
+    Page page = getPageForSample(sampleIndex);
+    return page.timestampsUs[sampleIndex - page.firstSampleIndex];
+  }
+
+  @Override
+  public synchronized @C.BufferFlags int getFlags(int sampleIndex) {
+    Page page = getPageForSample(sampleIndex);
+    return page.flags[sampleIndex - page.firstSampleIndex];
+  }
+
+  @Override
+  public synchronized int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    // As in TrackSampleTable, video frame timestamps may not be sorted. Frames are not reordered
+    // past synchronization samples so this works in practice.
+    Page page = getPage(getPageIndexForTimeUs(timeUs));
+    int startIndex =
+        page.firstSampleIndex
+            + Util.binarySearchFloor(
+                page.timestampsUs, timeUs, /* inclusive= */ true, /* stayInBounds= */ false);
+    for (int i = startIndex; i >= 0; i--) {
+      if ((getFlags(i) & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  @Override
+  public synchronized int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    Page page = getPage(getPageIndexForTimeUs(timeUs));
+    int startIndex =
+        page.firstSampleIndex
+            + Util.binarySearchCeil(
+                page.timestampsUs, timeUs, /* inclusive= */ true, /* stayInBounds= */ false);
+    for (int i = startIndex; i < sampleCount; i++) {
+      if ((getFlags(i) & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  @GuardedBy("this")
+  private Page getPageForSample(int sampleIndex) {
+    if (sampleIndex < 0 || sampleIndex >= sampleCount) {
+      throw new IndexOutOfBoundsException();
+    }
+    return getPage(sampleIndex / SAMPLES_PER_PAGE);
+  }
+
+  /**
+   * Returns the index of the last page whose first sample is decoded at or before {@code timeUs},
+   * or 0 if there is no such page.
+   */
+  @GuardedBy("this")
+  private int getPageIndexForTimeUs(long timeUs) {
+    while (checkpoints.size() < pageCount
+        && getCheckpointTimeUs(checkpoints.size() - 1) <= timeUs) {
+      addCheckpoint();
+    }
+    int low = 0;
+    int high = checkpoints.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (getCheckpointTimeUs(mid) <= timeUs) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  @GuardedBy("this")
+  private long getCheckpointTimeUs(int pageIndex) {
+    return Util.scaleLargeTimestamp(
+        checkpoints.get(pageIndex).timestampTimeUnits, C.MICROS_PER_SECOND, track.timescale);
+  }
+
+  @GuardedBy("this")
+  private void addCheckpoint() {
+    Cursor cursor = new Cursor(checkpoints.get(checkpoints.size() - 1));
+    decode(cursor, SAMPLES_PER_PAGE, /* page= */ null);
+    checkpoints.add(cursor);
+  }
+
+  @GuardedBy("this")
+  private Page getPage(int pageIndex) {
+    for (int i = 0; i < MAX_CACHED_PAGE_COUNT; i++) {
+      @Nullable Page page = cachedPages[i];
+      if (page != null && page.index == pageIndex) {
+        return page;
+      }
+    }
+    while (checkpoints.size() <= pageIndex) {
+      addCheckpoint();
+    }
+    int firstSampleIndex = pageIndex * SAMPLES_PER_PAGE;
+    int length = min(SAMPLES_PER_PAGE, sampleCount - firstSampleIndex);
+    @Nullable Page evictedPage = cachedPages[nextCachedPageIndexToReplace];
+    Page page =
+        evictedPage != null && evictedPage.sizes.length == length
+            ? evictedPage.reuse(pageIndex, firstSampleIndex)
+            : new Page(pageIndex, firstSampleIndex, length);
+    Cursor cursor = new Cursor(checkpoints.get(pageIndex));
+    decode(cursor, length, page);
+    if (pageIndex + 1 == checkpoints.size() && pageIndex + 1 < pageCount) {
+      checkpoints.add(cursor);
+    }
+    cachedPages[nextCachedPageIndexToReplace] = page;
+    nextCachedPageIndexToReplace = (nextCachedPageIndexToReplace + 1) % MAX_CACHED_PAGE_COUNT;
+    return page;
+  }
+
+  /**
+   * Decodes {@code count} samples starting from the state in {@code cursor}, following the same
+   * rules as {@link AtomParsers} does for fully decoded sample tables.
+   *
+   * @param cursor The decoder state, which is advanced past the decoded samples.
+   * @param count The number of samples to decode.
+   * @param page The page to which the decoded samples are written, or {@code null} if the samples
+   *     only need to be skipped.
+   */
+  @GuardedBy("this")
+  private void decode(Cursor cursor, int count, @Nullable Page page) {
+    @Nullable int[] sizes = null;
+    if (fixedSampleSize == C.LENGTH_UNSET) {
+      sizes = page != null ? page.sizes : sampleSizesBuffer;
+      readSampleSizes(cursor.sampleIndex, count, sizes);
+    }
+    for (int i = 0; i < count; i++) {
+      int sampleIndex = cursor.sampleIndex;
+
+      // Advance to the next chunk if necessary. The sample count was clamped to the number of
+      // samples in the chunks, so this always terminates.
+      while (cursor.remainingSamplesInChunk == 0) {
+        cursor.chunkIndex++;
+        if (chunkOffsetsAreLongs) {
+          chunkOffsets.setPosition(CHUNK_OFFSETS_POSITION + cursor.chunkIndex * 8);
+          cursor.offset = chunkOffsets.readUnsignedLongToLong();
+        } else {
+          chunkOffsets.setPosition(CHUNK_OFFSETS_POSITION + cursor.chunkIndex * 4);
+          cursor.offset = chunkOffsets.readUnsignedInt();
+        }
+        if (cursor.chunkIndex == cursor.nextSamplesPerChunkChangeIndex) {
+          stsc.setPosition(cursor.stscPosition);
+          cursor.samplesPerChunk = stsc.readUnsignedIntToInt();
+          stsc.skipBytes(4); // Skip sample_description_index
+          cursor.nextSamplesPerChunkChangeIndex =
+              --cursor.remainingSamplesPerChunkChanges > 0
+                  ? (stsc.readUnsignedIntToInt() - 1)
+                  : C.INDEX_UNSET;
+          cursor.stscPosition = stsc.getPosition();
+        }
+        cursor.remainingSamplesInChunk = cursor.samplesPerChunk;
+      }
+
+      if (ctts != null) {
+        while (cursor.remainingSamplesAtTimestampOffset == 0
+            && cursor.remainingTimestampOffsetChanges > 0) {
+          ctts.setPosition(cursor.cttsPosition);
+          cursor.remainingSamplesAtTimestampOffset = ctts.readUnsignedIntToInt();
+          cursor.timestampOffset = ctts.readInt();
+          cursor.cttsPosition = ctts.getPosition();
+          cursor.remainingTimestampOffsetChanges--;
+        }
+        cursor.remainingSamplesAtTimestampOffset--;
+      }
+
+      @C.BufferFlags int flags = stss == null ? C.BUFFER_FLAG_KEY_FRAME : 0;
+      if (sampleIndex == cursor.nextSynchronizationSampleIndex) {
+        flags = C.BUFFER_FLAG_KEY_FRAME;
+        cursor.remainingSynchronizationSamples--;
+        if (cursor.remainingSynchronizationSamples > 0) {
+          ParsableByteArray stss = checkNotNull(this.stss);
+          stss.setPosition(cursor.stssPosition);
+          cursor.nextSynchronizationSampleIndex = stss.readUnsignedIntToInt() - 1;
+          cursor.stssPosition = stss.getPosition();
+        }
+      }
+      if (sampleIndex == sampleCount - 1) {
+        flags |= C.BUFFER_FLAG_LAST_SAMPLE;
+      }
+
+      int size = sizes != null ? sizes[i] : fixedSampleSize;
+      if (page != null) {
+        page.offsets[i] = cursor.offset;
+        page.sizes[i] = size;
+        page.timestampsUs[i] =
+            Util.scaleLargeTimestamp(
+                cursor.timestampTimeUnits + cursor.timestampOffset,
+                C.MICROS_PER_SECOND,
+                track.timescale);
+        page.flags[i] = flags;
+      }
+
+      cursor.timestampTimeUnits += cursor.timestampDeltaInTimeUnits;
+      cursor.remainingSamplesAtTimestampDelta--;
+      if (cursor.remainingSamplesAtTimestampDelta == 0
+          && cursor.remainingTimestampDeltaChanges > 0) {
+        stts.setPosition(cursor.sttsPosition);
+        cursor.remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
+        // Deltas are decoded as signed integers, as in AtomParsers.
+        cursor.timestampDeltaInTimeUnits = stts.readInt();
+        cursor.sttsPosition = stts.getPosition();
+        cursor.remainingTimestampDeltaChanges--;
+      }
+
+      cursor.offset += size;
+      cursor.remainingSamplesInChunk--;
+      cursor.sampleIndex++;
+    }
+  }
+
+  /**
+   * Reads the sizes of {@code count} samples starting from {@code firstSampleIndex} into {@code
+   * sizes}. Must only be called if the sample sizes aren't fixed.
+   */
+  @GuardedBy("this")
+  private void readSampleSizes(int firstSampleIndex, int count, int[] sizes) {
+    if (sampleSizeFieldBits == 32) {
+      sampleSizes.setPosition(SAMPLE_SIZES_POSITION + firstSampleIndex * 4);
+      sampleSizes.readUnsignedIntsToInts(sizes, /* offset= */ 0, count);
+    } else {
+      // Even samples are stored in the upper bits of each byte if sampleSizeFieldBits == 4.
+      sampleSizeBits.setPosition(
+          SAMPLE_SIZES_POSITION * 8 + firstSampleIndex * sampleSizeFieldBits);
+      sampleSizeBits.readBitFields(sizes, /* offset= */ 0, count, sampleSizeFieldBits);
+    }
+  }
+
+  /**
+   * Returns the number of samples in the chunks described by {@code chunkOffsets} and {@code stsc},
+   * or {@code maxSampleCount} if there are at least as many.
+   */
+  private static int getChunkSampleCount(
+      ParsableByteArray chunkOffsets, ParsableByteArray stsc, int maxSampleCount) {
+    chunkOffsets.setPosition(Atom.FULL_HEADER_SIZE);
+    int chunkCount = chunkOffsets.readUnsignedIntToInt();
+    stsc.setPosition(Atom.FULL_HEADER_SIZE);
+    int remainingSamplesPerChunkChanges = stsc.readUnsignedIntToInt();
+    stsc.skipBytes(4); // Skip first_chunk.
+    int nextSamplesPerChunkChangeIndex = 0;
+    int samplesPerChunk = 0;
+    long sampleCount = 0;
+    for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+      if (chunkIndex == nextSamplesPerChunkChangeIndex) {
+        samplesPerChunk = stsc.readUnsignedIntToInt();
+        stsc.skipBytes(4); // Skip sample_description_index
+        nextSamplesPerChunkChangeIndex =
+            --remainingSamplesPerChunkChanges > 0
+                ? (stsc.readUnsignedIntToInt() - 1)
+                : C.INDEX_UNSET;
+      }
+      sampleCount += samplesPerChunk;
+      if (sampleCount >= maxSampleCount) {
+        return maxSampleCount;
+      }
+    }
+    return (int) sampleCount;
+  }
+
+  /** Returns the decoding time after {@code sampleCount} samples described by {@code stts}. */
+  private static long getDecodingDuration(ParsableByteArray stts, int sampleCount) {
+    stts.setPosition(Atom.FULL_HEADER_SIZE);
+    int remainingTimestampDeltaChanges = stts.readUnsignedIntToInt() - 1;
+    int remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
+    int timestampDeltaInTimeUnits = stts.readUnsignedIntToInt();
+    long duration = 0;
+    int remainingSamples = sampleCount;
+    while (remainingSamples > 0) {
+      if (remainingSamplesAtTimestampDelta <= 0 || remainingTimestampDeltaChanges <= 0) {
+        // The current delta applies to all remaining samples.
+        duration += (long) timestampDeltaInTimeUnits * remainingSamples;
+        break;
+      }
+      int samples = min(remainingSamplesAtTimestampDelta, remainingSamples);
+      duration += (long) timestampDeltaInTimeUnits * samples;
+      remainingSamples -= samples;
+      remainingSamplesAtTimestampDelta -= samples;
+      if (remainingSamplesAtTimestampDelta == 0) {
+        remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
+        timestampDeltaInTimeUnits = stts.readInt();
+        remainingTimestampDeltaChanges--;
+      }
+    }
+    return duration;
+  }
+
+  /** Returns the composition offset in {@code ctts} of sample {@code sampleCount - 1}. */
+  private static int getLastTimestampOffset(ParsableByteArray ctts, int sampleCount) {
+    ctts.setPosition(Atom.FULL_HEADER_SIZE);
+    int remainingTimestampOffsetChanges = ctts.readUnsignedIntToInt();
+    int remainingSamplesAtTimestampOffset = 0;
+    int timestampOffset = 0;
+    int remainingSamples = sampleCount;
+    while (remainingSamples > 0) {
+      while (remainingSamplesAtTimestampOffset == 0 && remainingTimestampOffsetChanges > 0) {
+        remainingSamplesAtTimestampOffset = ctts.readUnsignedIntToInt();
+        timestampOffset = ctts.readInt();
+        remainingTimestampOffsetChanges--;
+      }
+      if (remainingSamplesAtTimestampOffset <= 0) {
+        // The current offset applies to all remaining samples.
+        break;
+      }
+      int samples = min(remainingSamplesAtTimestampOffset, remainingSamples);
+      remainingSamples -= samples;
+      remainingSamplesAtTimestampOffset -= samples;
+    }
+    return timestampOffset;
+  }
+
+  /** The state of the sample table decoder at a given sample. */
+  private static final class Cursor {
+
+    public int sampleIndex;
+
+    public int chunkIndex;
+    public int samplesPerChunk;
+    public int nextSamplesPerChunkChangeIndex;
+    public int remainingSamplesPerChunkChanges;
+    public int stscPosition;
+    public int remainingSamplesInChunk;
+    public long offset;
+
+    public int sttsPosition;
+    public int remainingTimestampDeltaChanges;
+    public int remainingSamplesAtTimestampDelta;
+    public int timestampDeltaInTimeUnits;
+    public long timestampTimeUnits;
+
+    public int cttsPosition;
+    public int remainingTimestampOffsetChanges;
+    public int remainingSamplesAtTimestampOffset;
+    public int timestampOffset;
+
+    public int stssPosition;
+    public int remainingSynchronizationSamples;
+    public int nextSynchronizationSampleIndex;
+
+    public Cursor() {}
+
+    public Cursor(Cursor other) {
+      sampleIndex = other.sampleIndex;
+      chunkIndex = other.chunkIndex;
+      samplesPerChunk = other.samplesPerChunk;
+      nextSamplesPerChunkChangeIndex = other.nextSamplesPerChunkChangeIndex;
+      remainingSamplesPerChunkChanges = other.remainingSamplesPerChunkChanges;
+      stscPosition = other.stscPosition;
+      remainingSamplesInChunk = other.remainingSamplesInChunk;
+      offset = other.offset;
+      sttsPosition = other.sttsPosition;
+      remainingTimestampDeltaChanges = other.remainingTimestampDeltaChanges;
+      remainingSamplesAtTimestampDelta = other.remainingSamplesAtTimestampDelta;
+      timestampDeltaInTimeUnits = other.timestampDeltaInTimeUnits;
+      timestampTimeUnits = other.timestampTimeUnits;
+      cttsPosition = other.cttsPosition;
+      remainingTimestampOffsetChanges = other.remainingTimestampOffsetChanges;
+      remainingSamplesAtTimestampOffset = other.remainingSamplesAtTimestampOffset;
+      timestampOffset = other.timestampOffset;
+      stssPosition = other.stssPosition;
+      remainingSynchronizationSamples = other.remainingSynchronizationSamples;
+      nextSynchronizationSampleIndex = other.nextSynchronizationSampleIndex;
+    }
+  }
+
+  /** Decoded samples of a page. */
+  private static final class Page {
+
+    public final long[] offsets;
+    public final int[] sizes;
+    public final long[] timestampsUs;
+    public final int[] flags;
+
+    public int index;
+    public int firstSampleIndex;
+
+    public Page(int index, int firstSampleIndex, int length) {
+      this.index = index;
+      this.firstSampleIndex = firstSampleIndex;
+      offsets = new long[length];
+      sizes = new int[length];
+      timestampsUs = new long[length];
+      flags = new int[length];
+    }
+
+    public Page reuse(int index, int firstSampleIndex) {
+      this.index = index;
+      this.firstSampleIndex = firstSampleIndex;
+      return this;
+    }
+  }
+}
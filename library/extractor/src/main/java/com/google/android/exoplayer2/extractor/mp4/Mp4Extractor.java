@@ -19,7 +19,6 @@ import static com.google.android.exoplayer2.extractor.mp4.AtomParsers.parseTraks
 import static com.google.android.exoplayer2.extractor.mp4.Sniffer.BRAND_HEIC;
 import static com.google.android.exoplayer2.extractor.mp4.Sniffer.BRAND_QUICKTIME;
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
-import static com.google.android.exoplayer2.util.Util.castNonNull;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.lang.annotation.ElementType.TYPE_USE;
@@ -31,12 +30,14 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.audio.Ac3Util;
 import com.google.android.exoplayer2.audio.Ac4Util;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
 import com.google.android.exoplayer2.extractor.GaplessInfoHolder;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.RestorableExtractor;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.SeekPoint;
 import com.google.android.exoplayer2.extractor.TrackOutput;
@@ -45,6 +46,7 @@ import com.google.android.exoplayer2.extractor.mp4.Atom.ContainerAtom;
 import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.metadata.mp4.MotionPhotoMetadata;
 import com.google.android.exoplayer2.metadata.mp4.SlowMotionData;
+import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.NalUnitUtil;
@@ -54,6 +56,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
@@ -68,15 +71,15 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *     migration guide</a> for more details, including a script to help with the migration.
  */
 @Deprecated
-public final class Mp4Extractor implements Extractor, SeekMap {
+public final class Mp4Extractor implements RestorableExtractor, SeekMap {
 
   /** Factory for {@link Mp4Extractor} instances. */
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new Mp4Extractor()};
 
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
-   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_READ_MOTION_PHOTO_METADATA} and {@link
-   * #FLAG_READ_SEF_DATA}.
+   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_READ_MOTION_PHOTO_METADATA}, {@link
+   * #FLAG_READ_SEF_DATA} and {@link #FLAG_READ_SAMPLE_TABLES_LAZILY}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -86,7 +89,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       value = {
         FLAG_WORKAROUND_IGNORE_EDIT_LISTS,
         FLAG_READ_MOTION_PHOTO_METADATA,
-        FLAG_READ_SEF_DATA
+        FLAG_READ_SEF_DATA,
+        FLAG_READ_SAMPLE_TABLES_LAZILY
       })
   public @interface Flags {}
   /** Flag to ignore any edit lists in the stream. */
@@ -104,6 +108,17 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    * videos.
    */
   public static final int FLAG_READ_SEF_DATA = 1 << 2;
+  /**
+   * Flag to decode the sample tables of tracks as their samples are accessed, rather than all at
+   * once when the moov atom is parsed. This makes the time and memory needed to start reading long
+   * files with many samples independent of their duration.
+   *
+   * <p>The sample tables of tracks with edit lists and of raw audio tracks are still decoded when
+   * the moov atom is parsed. When this flag is set, the extractor estimates how far ahead of other
+   * tracks a track may be read in poorly interleaved files from the average data rate, rather than
+   * from the exact sizes of preceding samples.
+   */
+  public static final int FLAG_READ_SAMPLE_TABLES_LAZILY = 1 << 3;
 
   /** Parser states. */
   @Documented
@@ -145,6 +160,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   private static final long MAXIMUM_READ_AHEAD_BYTES_STREAM = 10 * 1024 * 1024;
 
+  /**
+   * The version of the snapshot format, which consists of the version, the file type and the moov
+   * atom, holding only the child atoms that the extractor parses.
+   */
+  private static final int SNAPSHOT_VERSION = 1;
+
+  private static final int SNAPSHOT_HEADER_SIZE = 8;
+
   private final @Flags int flags;
 
   // Temporary arrays.
@@ -173,10 +196,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private Mp4Track[] tracks;
 
   private long @MonotonicNonNull [][] accumulatedSampleSizes;
+  private double averageSampleBytesPerUs;
   private int firstVideoTrackIndex;
   private long durationUs;
   private @FileType int fileType;
   @Nullable private MotionPhotoMetadata motionPhotoMetadata;
+  private boolean snapshotRequested;
+  @Nullable private ContainerAtom moovAtom;
+  private boolean restoredFromSnapshot;
 
   /** Creates a new extractor for unfragmented MP4 streams. */
   public Mp4Extractor() {
@@ -224,7 +251,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     sampleBytesRead = 0;
     sampleBytesWritten = 0;
     sampleCurrentNalBytesRemaining = 0;
-    if (position == 0) {
+    if (position == 0 && !restoredFromSnapshot) {
       // Reading the SEF data occurs before normal MP4 parsing. Therefore we can not transition to
       // reading the atom header until that has completed.
       if (parserState != STATE_READING_SEF) {
@@ -245,7 +272,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   @Override
   public void release() {
-    // Do nothing
+    moovAtom = null;
   }
 
   @Override
@@ -272,6 +299,86 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     }
   }
 
+  // RestorableExtractor implementation.
+
+  @Override
+  public void requestSnapshot() {
+    snapshotRequested = true;
+  }
+
+  @Override
+  @Nullable
+  public byte[] createSnapshot() {
+    @Nullable ContainerAtom moovAtom = this.moovAtom;
+    this.moovAtom = null;
+    if (moovAtom == null || fileType == FILE_TYPE_HEIC || !slowMotionMetadataEntries.isEmpty()) {
+      // Motion photo and SEF data is read from outside the moov atom.
+      return null;
+    }
+    ByteBuffer snapshot = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE + getSnapshotAtomSize(moovAtom));
+    snapshot.putInt(SNAPSHOT_VERSION);
+    snapshot.putInt(fileType);
+    writeSnapshotAtom(moovAtom, snapshot);
+    return snapshot.array();
+  }
+
+  @Override
+  public boolean restoreSnapshot(byte[] snapshot) {
+    if ((flags & FLAG_READ_SEF_DATA) != 0 || tracks.length != 0) {
+      return false;
+    }
+    ParsableByteArray snapshotData = new ParsableByteArray(snapshot);
+    if (snapshotData.bytesLeft() < SNAPSHOT_HEADER_SIZE + Atom.HEADER_SIZE
+        || snapshotData.readInt() != SNAPSHOT_VERSION) {
+      return false;
+    }
+    int fileType = snapshotData.readInt();
+    if (fileType != FILE_TYPE_MP4 && fileType != FILE_TYPE_QUICKTIME) {
+      return false;
+    }
+    long moovAtomSize = snapshotData.readUnsignedInt();
+    int moovAtomType = snapshotData.readInt();
+    if (moovAtomType != Atom.TYPE_moov || moovAtomSize != snapshot.length - SNAPSHOT_HEADER_SIZE) {
+      return false;
+    }
+    snapshotData.setPosition(SNAPSHOT_HEADER_SIZE);
+    this.fileType = fileType;
+    // Read the moov atom from the snapshot as if it were the stream.
+    DataReader snapshotReader =
+        (buffer, offset, length) -> {
+          if (snapshotData.bytesLeft() == 0) {
+            return C.RESULT_END_OF_INPUT;
+          }
+          int bytesRead = min(length, snapshotData.bytesLeft());
+          snapshotData.readBytes(buffer, offset, bytesRead);
+          return bytesRead;
+        };
+    ExtractorInput input =
+        new DefaultExtractorInput(
+            snapshotReader, /* position= */ 0, /* length= */ snapshotData.bytesLeft());
+    PositionHolder positionHolder = new PositionHolder();
+    enterReadingAtomHeaderState();
+    try {
+      while (parserState != STATE_READING_SAMPLE) {
+        if (parserState == STATE_READING_ATOM_HEADER
+            ? !readAtomHeader(input)
+            : readAtomPayload(input, positionHolder)) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      // Fall through.
+    }
+    if (parserState != STATE_READING_SAMPLE) {
+      containerAtoms.clear();
+      enterReadingAtomHeaderState();
+      this.fileType = FILE_TYPE_MP4;
+      return false;
+    }
+    restoredFromSnapshot = true;
+    return true;
+  }
+
   // SeekMap implementation.
 
   @Override
@@ -315,19 +422,19 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     int mainTrackIndex = trackId != C.INDEX_UNSET ? trackId : firstVideoTrackIndex;
     // If we have a video track, use it to establish one or two seek points.
     if (mainTrackIndex != C.INDEX_UNSET) {
-      TrackSampleTable sampleTable = tracks[mainTrackIndex].sampleTable;
+      SampleTable sampleTable = tracks[mainTrackIndex].sampleTable;
       int sampleIndex = getSynchronizationSampleIndex(sampleTable, timeUs);
       if (sampleIndex == C.INDEX_UNSET) {
         return new SeekPoints(SeekPoint.START);
       }
-      long sampleTimeUs = sampleTable.timestampsUs[sampleIndex];
+      long sampleTimeUs = sampleTable.getTimestampUs(sampleIndex);
       firstTimeUs = sampleTimeUs;
-      firstOffset = sampleTable.offsets[sampleIndex];
-      if (sampleTimeUs < timeUs && sampleIndex < sampleTable.sampleCount - 1) {
+      firstOffset = sampleTable.getOffset(sampleIndex);
+      if (sampleTimeUs < timeUs && sampleIndex < sampleTable.getSampleCount() - 1) {
         int secondSampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
         if (secondSampleIndex != C.INDEX_UNSET && secondSampleIndex != sampleIndex) {
-          secondTimeUs = sampleTable.timestampsUs[secondSampleIndex];
-          secondOffset = sampleTable.offsets[secondSampleIndex];
+          secondTimeUs = sampleTable.getTimestampUs(secondSampleIndex);
+          secondOffset = sampleTable.getOffset(secondSampleIndex);
         }
       }
     } else {
@@ -339,7 +446,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       // Take into account other tracks, but only if the caller has not specified a trackId.
       for (int i = 0; i < tracks.length; i++) {
         if (i != firstVideoTrackIndex) {
-          TrackSampleTable sampleTable = tracks[i].sampleTable;
+          SampleTable sampleTable = tracks[i].sampleTable;
           firstOffset = maybeAdjustSeekOffset(sampleTable, firstTimeUs, firstOffset);
           if (secondTimeUs != C.TIME_UNSET) {
             secondOffset = maybeAdjustSeekOffset(sampleTable, secondTimeUs, secondOffset);
@@ -479,6 +586,10 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (containerAtom.type == Atom.TYPE_moov) {
         // We've reached the end of the moov atom. Process it and prepare to read samples.
         processMoovAtom(containerAtom);
+        if (snapshotRequested) {
+          moovAtom = containerAtom;
+          snapshotRequested = false;
+        }
         containerAtoms.clear();
         parserState = STATE_READING_SAMPLE;
       } else if (!containerAtoms.isEmpty()) {
@@ -522,7 +633,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         AtomParsers.parseMvhd(checkNotNull(moov.getLeafAtomOfType(Atom.TYPE_mvhd)).data).metadata;
 
     boolean ignoreEditLists = (flags & FLAG_WORKAROUND_IGNORE_EDIT_LISTS) != 0;
-    List<TrackSampleTable> trackSampleTables =
+    boolean readSampleTablesLazily = (flags & FLAG_READ_SAMPLE_TABLES_LAZILY) != 0;
+    List<SampleTable> trackSampleTables =
         parseTraks(
             moov,
             gaplessInfoHolder,
@@ -530,17 +642,18 @@ public final class Mp4Extractor implements Extractor, SeekMap {
             /* drmInitData= */ null,
             ignoreEditLists,
             isQuickTime,
+            readSampleTablesLazily,
             /* modifyTrackFunction= */ track -> track);
 
     int trackCount = trackSampleTables.size();
     for (int i = 0; i < trackCount; i++) {
-      TrackSampleTable trackSampleTable = trackSampleTables.get(i);
-      if (trackSampleTable.sampleCount == 0) {
+      SampleTable trackSampleTable = trackSampleTables.get(i);
+      if (trackSampleTable.getSampleCount() == 0) {
         continue;
       }
-      Track track = trackSampleTable.track;
+      Track track = trackSampleTable.getTrack();
       long trackDurationUs =
-          track.durationUs != C.TIME_UNSET ? track.durationUs : trackSampleTable.durationUs;
+          track.durationUs != C.TIME_UNSET ? track.durationUs : trackSampleTable.getDurationUs();
       durationUs = max(durationUs, trackDurationUs);
       Mp4Track mp4Track =
           new Mp4Track(track, trackSampleTable, extractorOutput.track(i, track.type));
@@ -548,19 +661,19 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       int maxInputSize;
       if (MimeTypes.AUDIO_TRUEHD.equals(track.format.sampleMimeType)) {
         // TrueHD groups samples per chunks of TRUEHD_RECHUNK_SAMPLE_COUNT samples.
-        maxInputSize = trackSampleTable.maximumSize * Ac3Util.TRUEHD_RECHUNK_SAMPLE_COUNT;
+        maxInputSize = trackSampleTable.getMaximumSize() * Ac3Util.TRUEHD_RECHUNK_SAMPLE_COUNT;
       } else {
         // Each sample has up to three bytes of overhead for the start code that replaces its
         // length. Allow ten source samples per output sample, like the platform extractor.
-        maxInputSize = trackSampleTable.maximumSize + 3 * 10;
+        maxInputSize = trackSampleTable.getMaximumSize() + 3 * 10;
       }
 
       Format.Builder formatBuilder = track.format.buildUpon();
       formatBuilder.setMaxInputSize(maxInputSize);
       if (track.type == C.TRACK_TYPE_VIDEO
           && trackDurationUs > 0
-          && trackSampleTable.sampleCount > 1) {
-        float frameRate = trackSampleTable.sampleCount / (trackDurationUs / 1000000f);
+          && trackSampleTable.getSampleCount() > 1) {
+        float frameRate = trackSampleTable.getSampleCount() / (trackDurationUs / 1000000f);
         formatBuilder.setFrameRate(frameRate);
       }
 
@@ -584,7 +697,11 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     this.firstVideoTrackIndex = firstVideoTrackIndex;
     this.durationUs = durationUs;
     this.tracks = tracks.toArray(new Mp4Track[0]);
-    accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
+    if (readSampleTablesLazily) {
+      averageSampleBytesPerUs = calculateAverageSampleBytesPerUs(this.tracks, durationUs);
+    } else {
+      accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
+    }
 
     extractorOutput.endTracks();
     extractorOutput.seekMap(this);
@@ -616,8 +733,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     Mp4Track track = tracks[sampleTrackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex];
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.sampleTable.getOffset(sampleIndex);
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     @Nullable TrueHdSampleRechunker trueHdSampleRechunker = track.trueHdSampleRechunker;
     long skipAmount = position - inputPosition + sampleBytesRead;
     if (skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE) {
@@ -688,12 +805,12 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
     }
 
-    long timeUs = track.sampleTable.timestampsUs[sampleIndex];
-    @C.BufferFlags int flags = track.sampleTable.flags[sampleIndex];
+    long timeUs = track.sampleTable.getTimestampUs(sampleIndex);
+    @C.BufferFlags int flags = track.sampleTable.getFlags(sampleIndex);
     if (trueHdSampleRechunker != null) {
       trueHdSampleRechunker.sampleMetadata(
           trackOutput, timeUs, flags, sampleSize, /* offset= */ 0, /* cryptoData= */ null);
-      if (sampleIndex + 1 == track.sampleTable.sampleCount) {
+      if (sampleIndex + 1 == track.sampleTable.getSampleCount()) {
         trueHdSampleRechunker.outputPendingSampleMetadata(trackOutput, /* cryptoData= */ null);
       }
     } else {
@@ -733,11 +850,11 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     for (int trackIndex = 0; trackIndex < tracks.length; trackIndex++) {
       Mp4Track track = tracks[trackIndex];
       int sampleIndex = track.sampleIndex;
-      if (sampleIndex == track.sampleTable.sampleCount) {
+      if (sampleIndex == track.sampleTable.getSampleCount()) {
         continue;
       }
-      long sampleOffset = track.sampleTable.offsets[sampleIndex];
-      long sampleAccumulatedBytes = castNonNull(accumulatedSampleSizes)[trackIndex][sampleIndex];
+      long sampleOffset = track.sampleTable.getOffset(sampleIndex);
+      long sampleAccumulatedBytes = getAccumulatedSampleSize(trackIndex, sampleIndex);
       long skipAmount = sampleOffset - inputPosition;
       boolean requiresReload = skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE;
       if ((!requiresReload && preferredRequiresReload)
@@ -760,9 +877,21 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         : minAccumulatedBytesTrackIndex;
   }
 
+  /**
+   * Returns the accumulated size of all samples which need to be read before the given sample can
+   * be used, or an estimate of it if sample tables are read lazily.
+   */
+  private long getAccumulatedSampleSize(int trackIndex, int sampleIndex) {
+    if (accumulatedSampleSizes != null) {
+      return accumulatedSampleSizes[trackIndex][sampleIndex];
+    }
+    return (long)
+        (tracks[trackIndex].sampleTable.getTimestampUs(sampleIndex) * averageSampleBytesPerUs);
+  }
+
   /** Updates a track's sample index to point its latest sync sample before/at {@code timeUs}. */
   private void updateSampleIndex(Mp4Track track, long timeUs) {
-    TrackSampleTable sampleTable = track.sampleTable;
+    SampleTable sampleTable = track.sampleTable;
     int sampleIndex = sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs);
     if (sampleIndex == C.INDEX_UNSET) {
       // Handle the case where the requested time is before the first synchronization sample.
@@ -807,6 +936,48 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     }
   }
 
+  /** Returns the size of {@code atom} as written by {@link #writeSnapshotAtom}. */
+  private static int getSnapshotAtomSize(ContainerAtom atom) {
+    int size = Atom.HEADER_SIZE;
+    if (atom.type == Atom.TYPE_meta && !isEmpty(atom)) {
+      size += 4;
+    }
+    for (int i = 0; i < atom.leafChildren.size(); i++) {
+      size += atom.leafChildren.get(i).data.limit();
+    }
+    for (int i = 0; i < atom.containerChildren.size(); i++) {
+      size += getSnapshotAtomSize(atom.containerChildren.get(i));
+    }
+    return size;
+  }
+
+  /**
+   * Writes {@code atom} and its children to a snapshot. The children are written in the order in
+   * which they were read, with the leaf atoms first.
+   */
+  private static void writeSnapshotAtom(ContainerAtom atom, ByteBuffer snapshot) {
+    snapshot.putInt(getSnapshotAtomSize(atom));
+    snapshot.putInt(atom.type);
+    if (atom.type == Atom.TYPE_meta && !isEmpty(atom)) {
+      // Write a full atom header, which is skipped when the atom is read.
+      snapshot.putInt(0);
+    }
+    for (int i = 0; i < atom.leafChildren.size(); i++) {
+      ParsableByteArray data = atom.leafChildren.get(i).data;
+      // Leaf atoms are always read with a standard length header. Rewrite it in case it defines the
+      // atom as extending to the end of its container.
+      snapshot.putInt(data.limit());
+      snapshot.put(data.getData(), /* offset= */ 4, data.limit() - 4);
+    }
+    for (int i = 0; i < atom.containerChildren.size(); i++) {
+      writeSnapshotAtom(atom.containerChildren.get(i), snapshot);
+    }
+  }
+
+  private static boolean isEmpty(ContainerAtom atom) {
+    return atom.leafChildren.isEmpty() && atom.containerChildren.isEmpty();
+  }
+
   /**
    * For each sample of each track, calculates accumulated size of all samples which need to be read
    * before this sample can be used.
@@ -817,8 +988,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     long[] nextSampleTimesUs = new long[tracks.length];
     boolean[] tracksFinished = new boolean[tracks.length];
     for (int i = 0; i < tracks.length; i++) {
-      accumulatedSampleSizes[i] = new long[tracks[i].sampleTable.sampleCount];
-      nextSampleTimesUs[i] = tracks[i].sampleTable.timestampsUs[0];
+      accumulatedSampleSizes[i] = new long[tracks[i].sampleTable.getSampleCount()];
+      nextSampleTimesUs[i] = tracks[i].sampleTable.getTimestampUs(0);
     }
     long accumulatedSampleSize = 0;
     int finishedTracks = 0;
@@ -833,11 +1004,11 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
       int trackSampleIndex = nextSampleIndex[minTimeTrackIndex];
       accumulatedSampleSizes[minTimeTrackIndex][trackSampleIndex] = accumulatedSampleSize;
-      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.sizes[trackSampleIndex];
+      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.getSize(trackSampleIndex);
       nextSampleIndex[minTimeTrackIndex] = ++trackSampleIndex;
       if (trackSampleIndex < accumulatedSampleSizes[minTimeTrackIndex].length) {
         nextSampleTimesUs[minTimeTrackIndex] =
-            tracks[minTimeTrackIndex].sampleTable.timestampsUs[trackSampleIndex];
+            tracks[minTimeTrackIndex].sampleTable.getTimestampUs(trackSampleIndex);
       } else {
         tracksFinished[minTimeTrackIndex] = true;
         finishedTracks++;
@@ -846,6 +1017,21 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     return accumulatedSampleSizes;
   }
 
+  /**
+   * Returns the average number of sample bytes per microsecond of media across all tracks, which
+   * is used to estimate accumulated sample sizes without decoding whole sample tables.
+   */
+  private static double calculateAverageSampleBytesPerUs(Mp4Track[] tracks, long durationUs) {
+    if (durationUs <= 0) {
+      return 0;
+    }
+    long totalSize = 0;
+    for (Mp4Track track : tracks) {
+      totalSize += track.sampleTable.getTotalSize();
+    }
+    return (double) totalSize / durationUs;
+  }
+
   /**
    * Adjusts a seek point offset to take into account the track with the given {@code sampleTable},
    * for a given {@code seekTimeUs}.
@@ -856,12 +1042,12 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    * @return The adjusted offset.
    */
   private static long maybeAdjustSeekOffset(
-      TrackSampleTable sampleTable, long seekTimeUs, long offset) {
+      SampleTable sampleTable, long seekTimeUs, long offset) {
     int sampleIndex = getSynchronizationSampleIndex(sampleTable, seekTimeUs);
     if (sampleIndex == C.INDEX_UNSET) {
       return offset;
     }
-    long sampleOffset = sampleTable.offsets[sampleIndex];
+    long sampleOffset = sampleTable.getOffset(sampleIndex);
     return min(sampleOffset, offset);
   }
 
@@ -876,7 +1062,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    *     the first synchronization sample if located after {@code timeUs}, or {@link C#INDEX_UNSET}
    *     if there are no synchronization samples in the table.
    */
-  private static int getSynchronizationSampleIndex(TrackSampleTable sampleTable, long timeUs) {
+  private static int getSynchronizationSampleIndex(SampleTable sampleTable, long timeUs) {
     int sampleIndex = sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs);
     if (sampleIndex == C.INDEX_UNSET) {
       // Handle the case where the requested time is before the first synchronization sample.
@@ -955,13 +1141,13 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private static final class Mp4Track {
 
     public final Track track;
-    public final TrackSampleTable sampleTable;
+    public final SampleTable sampleTable;
     public final TrackOutput trackOutput;
     @Nullable public final TrueHdSampleRechunker trueHdSampleRechunker;
 
     public int sampleIndex;
 
-    public Mp4Track(Track track, TrackSampleTable sampleTable, TrackOutput trackOutput) {
+    public Mp4Track(Track track, SampleTable sampleTable, TrackOutput trackOutput) {
       this.track = track;
       this.sampleTable = sampleTable;
       this.trackOutput = trackOutput;
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * Random access to the samples of a track in an unfragmented MP4 file.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ interface SampleTable {
+
+  /** Returns the track corresponding to this sample table. */
+  Track getTrack();
+
+  /** Returns the number of samples. */
+  int getSampleCount();
+
+  /** Returns the maximum sample size in bytes. */
+  int getMaximumSize();
+
+  /** Returns the sum of all sample sizes in bytes. */
+  long getTotalSize();
+
+  /** Returns the duration of the sample table in microseconds. */
+  long getDurationUs();
+
+  /** Returns the offset of the sample with the given index in bytes. */
+  long getOffset(int sampleIndex);
+
+  /** Returns the size of the sample with the given index in bytes. */
+  int getSize(int sampleIndex);
+
+  /** Returns the timestamp of the sample with the given index in microseconds. */
+  long getTimestampUs(int sampleIndex);
+
+  /** Returns the flags of the sample with the given index. */
+  @C.BufferFlags
+  int getFlags(int sampleIndex);
+
+  /**
+   * Returns the sample index of the closest synchronization sample at or before the given
+   * timestamp, if one is available.
+   *
+   * @param timeUs Timestamp adjacent to which to find a synchronization sample.
+   * @return Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
+   */
+  int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs);
+
+  /**
+   * Returns the sample index of the closest synchronization sample at or after the given timestamp,
+   * if one is available.
+   *
+   * @param timeUs Timestamp adjacent to which to find a synchronization sample.
+   * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
+   */
+  int getIndexOfLaterOrEqualSynchronizationSample(long timeUs);
+}
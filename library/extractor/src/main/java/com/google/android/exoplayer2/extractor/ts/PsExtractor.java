@@ -23,6 +23,7 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IndexSeekableExtractor;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerator;
@@ -43,7 +44,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
  *     migration guide</a> for more details, including a script to help with the migration.
  */
 @Deprecated
-public final class PsExtractor implements Extractor {
+public final class PsExtractor implements IndexSeekableExtractor {
 
   /** Factory for {@link PsExtractor} instances. */
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new PsExtractor()};
@@ -143,32 +144,12 @@ public final class PsExtractor implements Extractor {
 
   @Override
   public void seek(long position, long timeUs) {
-    // If the timestamp adjuster has not yet established a timestamp offset, we need to reset its
-    // expected first sample timestamp to be the new seek position. Without this, the timestamp
-    // adjuster would incorrectly establish its timestamp offset assuming that the first sample
-    // after this seek corresponds to the start of the stream (or a previous seek position, if there
-    // was one).
-    boolean resetTimestampAdjuster = timestampAdjuster.getTimestampOffsetUs() == C.TIME_UNSET;
-    if (!resetTimestampAdjuster) {
-      long adjusterFirstSampleTimestampUs = timestampAdjuster.getFirstSampleTimestampUs();
-      // Also reset the timestamp adjuster if its offset was calculated based on a non-zero position
-      // in the stream (other than the position being seeked to), since in this case the offset may
-      // not be accurate.
-      resetTimestampAdjuster =
-          adjusterFirstSampleTimestampUs != C.TIME_UNSET
-              && adjusterFirstSampleTimestampUs != 0
-              && adjusterFirstSampleTimestampUs != timeUs;
-    }
-    if (resetTimestampAdjuster) {
-      timestampAdjuster.reset(timeUs);
-    }
+    seekInternal(timeUs, /* isIndexedPosition= */ false);
+  }
 
-    if (psBinarySearchSeeker != null) {
-      psBinarySearchSeeker.setSeekTargetUs(timeUs);
-    }
-    for (int i = 0; i < psPayloadReaders.size(); i++) {
-      psPayloadReaders.valueAt(i).seek();
-    }
+  @Override
+  public void seekToIndexedPosition(long position, long timeUs) {
+    seekInternal(timeUs, /* isIndexedPosition= */ true);
   }
 
   @Override
@@ -297,6 +278,39 @@ public final class PsExtractor implements Extractor {
 
   // Internals.
 
+  private void seekInternal(long timeUs, boolean isIndexedPosition) {
+    // If the timestamp adjuster has not yet established a timestamp offset, we need to reset its
+    // expected first sample timestamp to be the new seek position. Without this, the timestamp
+    // adjuster would incorrectly establish its timestamp offset assuming that the first sample
+    // after this seek corresponds to the start of the stream (or a previous seek position, if there
+    // was one).
+    boolean resetTimestampAdjuster = timestampAdjuster.getTimestampOffsetUs() == C.TIME_UNSET;
+    if (!resetTimestampAdjuster) {
+      long adjusterFirstSampleTimestampUs = timestampAdjuster.getFirstSampleTimestampUs();
+      // Also reset the timestamp adjuster if its offset was calculated based on a non-zero position
+      // in the stream (other than the position being seeked to), since in this case the offset may
+      // not be accurate.
+      resetTimestampAdjuster =
+          adjusterFirstSampleTimestampUs != C.TIME_UNSET
+              && adjusterFirstSampleTimestampUs != 0
+              && adjusterFirstSampleTimestampUs != timeUs;
+    }
+    if (resetTimestampAdjuster) {
+      timestampAdjuster.reset(timeUs);
+    }
+
+    if (psBinarySearchSeeker != null) {
+      if (isIndexedPosition) {
+        psBinarySearchSeeker.cancelSeek();
+      } else {
+        psBinarySearchSeeker.setSeekTargetUs(timeUs);
+      }
+    }
+    for (int i = 0; i < psPayloadReaders.size(); i++) {
+      psPayloadReaders.valueAt(i).seek();
+    }
+  }
+
   @RequiresNonNull("output")
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
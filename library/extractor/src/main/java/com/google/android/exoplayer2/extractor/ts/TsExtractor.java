@@ -29,6 +29,7 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IndexSeekableExtractor;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.TrackOutput;
@@ -62,7 +63,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *     migration guide</a> for more details, including a script to help with the migration.
  */
 @Deprecated
-public final class TsExtractor implements Extractor {
+public final class TsExtractor implements IndexSeekableExtractor {
 
   /** Factory for {@link TsExtractor} instances. */
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new TsExtractor()};
@@ -263,39 +264,12 @@ public final class TsExtractor implements Extractor {
 
   @Override
   public void seek(long position, long timeUs) {
-    Assertions.checkState(mode != MODE_HLS);
-    int timestampAdjustersCount = timestampAdjusters.size();
-    for (int i = 0; i < timestampAdjustersCount; i++) {
-      TimestampAdjuster timestampAdjuster = timestampAdjusters.get(i);
-      // If the timestamp adjuster has not yet established a timestamp offset, we need to reset its
-      // expected first sample timestamp to be the new seek position. Without this, the timestamp
-      // adjuster would incorrectly establish its timestamp offset assuming that the first sample
-      // after this seek corresponds to the start of the stream (or a previous seek position, if
-      // there was one).
-      boolean resetTimestampAdjuster = timestampAdjuster.getTimestampOffsetUs() == C.TIME_UNSET;
-      if (!resetTimestampAdjuster) {
-        long adjusterFirstSampleTimestampUs = timestampAdjuster.getFirstSampleTimestampUs();
-        // Also reset the timestamp adjuster if its offset was calculated based on a non-zero
-        // position in the stream (other than the position being seeked to), since in this case the
-        // offset may not be accurate.
-        resetTimestampAdjuster =
-            adjusterFirstSampleTimestampUs != C.TIME_UNSET
-                && adjusterFirstSampleTimestampUs != 0
-                && adjusterFirstSampleTimestampUs != timeUs;
-      }
-      if (resetTimestampAdjuster) {
-        timestampAdjuster.reset(timeUs);
-      }
-    }
-    if (timeUs != 0 && tsBinarySearchSeeker != null) {
-      tsBinarySearchSeeker.setSeekTargetUs(timeUs);
-    }
-    tsPacketBuffer.reset(/* limit= */ 0);
-    continuityCounters.clear();
-    for (int i = 0; i < tsPayloadReaders.size(); i++) {
-      tsPayloadReaders.valueAt(i).seek();
-    }
-    bytesSinceLastSync = 0;
+    seekInternal(timeUs, /* isIndexedPosition= */ false);
+  }
+
+  @Override
+  public void seekToIndexedPosition(long position, long timeUs) {
+    seekInternal(timeUs, /* isIndexedPosition= */ true);
   }
 
   @Override
@@ -407,6 +381,46 @@ public final class TsExtractor implements Extractor {
 
   // Internals.
 
+  private void seekInternal(long timeUs, boolean isIndexedPosition) {
+    Assertions.checkState(mode != MODE_HLS);
+    int timestampAdjustersCount = timestampAdjusters.size();
+    for (int i = 0; i < timestampAdjustersCount; i++) {
+      TimestampAdjuster timestampAdjuster = timestampAdjusters.get(i);
+      // If the timestamp adjuster has not yet established a timestamp offset, we need to reset its
+      // expected first sample timestamp to be the new seek position. Without this, the timestamp
+      // adjuster would incorrectly establish its timestamp offset assuming that the first sample
+      // after this seek corresponds to the start of the stream (or a previous seek position, if
+      // there was one).
+      boolean resetTimestampAdjuster = timestampAdjuster.getTimestampOffsetUs() == C.TIME_UNSET;
+      if (!resetTimestampAdjuster) {
+        long adjusterFirstSampleTimestampUs = timestampAdjuster.getFirstSampleTimestampUs();
+        // Also reset the timestamp adjuster if its offset was calculated based on a non-zero
+        // position in the stream (other than the position being seeked to), since in this case the
+        // offset may not be accurate.
+        resetTimestampAdjuster =
+            adjusterFirstSampleTimestampUs != C.TIME_UNSET
+                && adjusterFirstSampleTimestampUs != 0
+                && adjusterFirstSampleTimestampUs != timeUs;
+      }
+      if (resetTimestampAdjuster) {
+        timestampAdjuster.reset(timeUs);
+      }
+    }
+    if (tsBinarySearchSeeker != null) {
+      if (isIndexedPosition) {
+        tsBinarySearchSeeker.cancelSeek();
+      } else if (timeUs != 0) {
+        tsBinarySearchSeeker.setSeekTargetUs(timeUs);
+      }
+    }
+    tsPacketBuffer.reset(/* limit= */ 0);
+    continuityCounters.clear();
+    for (int i = 0; i < tsPayloadReaders.size(); i++) {
+      tsPayloadReaders.valueAt(i).seek();
+    }
+    bytesSinceLastSync = 0;
+  }
+
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
       hasOutputSeekMap = true;
@@ -35,6 +35,7 @@ import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
 import com.google.android.exoplayer2.extractor.ts.PsExtractor;
 import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+import com.google.android.exoplayer2.util.FileTypes;
 import com.google.android.exoplayer2.util.MimeTypes;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -91,6 +92,24 @@ public final class DefaultExtractorsFactoryTest {
     assertThat(extractorClasses.get(2)).isEqualTo(Mp3Extractor.class);
   }
 
+  @Test
+  public void createExtractors_withContentInferredFileType_startsWithExtractorsMatchingContent() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Uri uri = Uri.parse("test.mp3");
+    Map<String, List<String>> responseHeaders = new HashMap<>();
+    responseHeaders.put("Content-Type", Collections.singletonList(MimeTypes.VIDEO_MP4));
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(uri, responseHeaders, FileTypes.MATROSKA);
+
+    List<Class<? extends Extractor>> extractorClasses = getExtractorClasses(extractors);
+    assertThat(extractorClasses.get(0)).isEqualTo(MatroskaExtractor.class);
+    assertThat(extractorClasses.subList(1, 3))
+        .containsExactly(Mp4Extractor.class, FragmentedMp4Extractor.class);
+    assertThat(extractorClasses.get(3)).isEqualTo(Mp3Extractor.class);
+    assertThat(extractorClasses).containsNoDuplicates();
+  }
+
   @Test
   public void createExtractors_withMediaInfo_optimizesSniffingOrder() {
     DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
@@ -195,6 +195,35 @@ public class FlacFrameReaderTest {
     assertThat(result).isFalse();
   }
 
+  @Test
+  public void checkFrameHeaderFromPeek_atEndOfInput_isFalse() throws Exception {
+    FlacStreamMetadataHolder streamMetadataHolder =
+        new FlacStreamMetadataHolder(/* flacStreamMetadata= */ null);
+    buildExtractorInputReadingFromFirstFrame(
+        "media/flac/bear_one_metadata_block.flac", streamMetadataHolder);
+    ExtractorInput input =
+        new FakeExtractorInput.Builder().setData(new byte[] {(byte) 0xFF}).build();
+    SampleNumberHolder sampleNumberHolder = new SampleNumberHolder();
+
+    boolean resultWithOneByteLeft =
+        FlacFrameReader.checkFrameHeaderFromPeek(
+            input,
+            streamMetadataHolder.flacStreamMetadata,
+            /* frameStartMarker= */ 0xFFF8,
+            sampleNumberHolder);
+    input.advancePeekPosition(/* length= */ 1);
+    boolean resultWithNoBytesLeft =
+        FlacFrameReader.checkFrameHeaderFromPeek(
+            input,
+            streamMetadataHolder.flacStreamMetadata,
+            /* frameStartMarker= */ 0xFFF8,
+            sampleNumberHolder);
+
+    assertThat(resultWithOneByteLeft).isFalse();
+    assertThat(resultWithNoBytesLeft).isFalse();
+    assertThat(input.getPeekPosition()).isEqualTo(1);
+  }
+
   @Test
   public void checkFrameHeaderFromPeek_invalidData_doesNotUpdatePositions() throws Exception {
     String file = "media/flac/bear_one_metadata_block.flac";
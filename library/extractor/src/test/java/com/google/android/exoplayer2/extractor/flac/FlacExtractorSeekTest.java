@@ -213,6 +213,33 @@ public class FlacExtractorSeekTest {
         fileName, trackOutput, targetSeekTimeUs, extractedFrameIndex);
   }
 
+  @Test
+  public void seekToIndexedPosition_duringBinarySearch_outputsSameSamplesAsBinarySearchSeek()
+      throws IOException {
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE_BINARY_SEARCH);
+    long targetSeekTimeUs = 1_500_000;
+    SeekMap seekMap = TestUtil.extractSeekMap(extractor, extractorOutput, dataSource, fileUri);
+    long seekPosition = seekMap.getSeekPoints(targetSeekTimeUs).first.position;
+    extractor.seek(seekPosition, targetSeekTimeUs);
+    TestUtil.readToEndOfInput(extractor, seekPosition, dataSource, fileUri);
+
+    FlacExtractor indexedExtractor = new FlacExtractor();
+    FakeExtractorOutput indexedOutput = new FakeExtractorOutput();
+    TestUtil.extractSeekMap(indexedExtractor, indexedOutput, dataSource, fileUri);
+    // Start a binary search, which the seek to the indexed position must cancel.
+    long firstSeekTimeUs = 500_000;
+    indexedExtractor.seek(seekMap.getSeekPoints(firstSeekTimeUs).first.position, firstSeekTimeUs);
+    // An indexed position precedes the target and needn't be the start of a frame.
+    long indexedPosition = 60_001;
+    indexedExtractor.seekToIndexedPosition(indexedPosition, targetSeekTimeUs);
+    int seekCount =
+        TestUtil.readToEndOfInput(indexedExtractor, indexedPosition, dataSource, fileUri);
+
+    assertThat(seekCount).isEqualTo(0);
+    TestUtil.assertSamplesFromTimeEqual(
+        extractorOutput.trackOutputs.get(0), indexedOutput.trackOutputs.get(0), targetSeekTimeUs);
+  }
+
   @Test
   public void flacExtractorReads_unseekable_returnUnseekableSeekMap() throws IOException {
     Uri fileUri = TestUtil.buildAssetUri(TEST_FILE_UNSEEKABLE);
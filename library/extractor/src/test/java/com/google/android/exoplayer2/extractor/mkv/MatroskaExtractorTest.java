@@ -15,8 +15,25 @@
  */
 package com.google.android.exoplayer2.extractor.mkv;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
+import com.google.android.exoplayer2.testutil.ExtractorAsserts.AssertionConfig;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput.SimulatedIOException;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
 import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.ParameterizedRobolectricTestRunner;
@@ -40,6 +57,75 @@ public final class MatroskaExtractorTest {
         MatroskaExtractor::new, "media/mkv/sample.mkv", simulationConfig);
   }
 
+  @Test
+  public void mkvSample_withDeferredSeekForCues_extractsSameData() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new MatroskaExtractor(MatroskaExtractor.FLAG_DEFER_SEEK_FOR_CUES),
+        "media/mkv/sample.mkv",
+        new AssertionConfig.Builder().setDumpFilesPrefix("extractordumps/mkv/sample.mkv").build(),
+        simulationConfig);
+  }
+
+  @Test
+  public void deferredSeekForCues_pastDeferralPeriod_outputsSeekMapsAndResumesAfterCues()
+      throws Exception {
+    SyntheticMkv mkv = new SyntheticMkv(/* clusterCount= */ 30);
+    MatroskaExtractor extractor = new MatroskaExtractor(MatroskaExtractor.FLAG_DEFER_SEEK_FOR_CUES);
+    SeekMapRecordingOutput output = new SeekMapRecordingOutput();
+    extractor.init(output);
+    FakeExtractorInput input = createInput(mkv.data);
+
+    // Playback starts before the cues are read, and the cues are read once the clusters that have
+    // been extracted span the deferral period.
+    assertThat(readUntilSeekOrEnd(extractor, input)).isEqualTo(mkv.cuesPosition);
+    assertThat(output.seekMaps).hasSize(1);
+    assertThat(output.seekMaps.get(0).isSeekable()).isFalse();
+    assertThat(output.seekMaps.get(0).getDurationUs()).isEqualTo(30_000_000);
+    assertThat(output.getTrackOutput().getSampleTimesUs()).isEqualTo(getSampleTimesUs(0, 11));
+    input.setPosition((int) mkv.cuesPosition);
+    // Having read the cues, the extractor resumes where it left off.
+    assertThat(readUntilSeekOrEnd(extractor, input)).isEqualTo(mkv.clusterContentPositions[11]);
+    assertThat(output.seekMaps).hasSize(2);
+    SeekMap seekMap = output.seekMaps.get(1);
+    assertThat(seekMap.isSeekable()).isTrue();
+    assertThat(seekMap.getDurationUs()).isEqualTo(30_000_000);
+    assertThat(seekMap.getSeekPoints(/* timeUs= */ 15_000_000).first.position)
+        .isEqualTo(mkv.clusterPositions[15]);
+    input.setPosition((int) mkv.clusterContentPositions[11]);
+    assertThat(readUntilSeekOrEnd(extractor, input)).isEqualTo(C.POSITION_UNSET);
+
+    assertThat(output.seekMaps).hasSize(2);
+    assertThat(output.getTrackOutput().getSampleTimesUs()).isEqualTo(getSampleTimesUs(0, 30));
+  }
+
+  @Test
+  public void deferredSeekForCues_seekWhileReadingCues_abandonsAndRetriesAtLaterCluster()
+      throws Exception {
+    SyntheticMkv mkv = new SyntheticMkv(/* clusterCount= */ 30);
+    MatroskaExtractor extractor = new MatroskaExtractor(MatroskaExtractor.FLAG_DEFER_SEEK_FOR_CUES);
+    SeekMapRecordingOutput output = new SeekMapRecordingOutput();
+    extractor.init(output);
+    FakeExtractorInput input = createInput(mkv.data);
+    assertThat(readUntilSeekOrEnd(extractor, input)).isEqualTo(mkv.cuesPosition);
+
+    // Seek before the cues are read. The extractor must not resume at the position it saved before
+    // seeking for the cues, but retry once the clusters after the seek span the deferral period.
+    extractor.seek(mkv.clusterPositions[15], /* timeUs= */ 15_000_000);
+    input.setPosition((int) mkv.clusterPositions[15]);
+    output.getTrackOutput().clear();
+    assertThat(readUntilSeekOrEnd(extractor, input)).isEqualTo(mkv.cuesPosition);
+    assertThat(output.seekMaps).hasSize(1);
+    assertThat(output.getTrackOutput().getSampleTimesUs()).isEqualTo(getSampleTimesUs(15, 16));
+    input.setPosition((int) mkv.cuesPosition);
+    assertThat(readUntilSeekOrEnd(extractor, input)).isEqualTo(mkv.clusterContentPositions[16]);
+    input.setPosition((int) mkv.clusterContentPositions[16]);
+    assertThat(readUntilSeekOrEnd(extractor, input)).isEqualTo(C.POSITION_UNSET);
+
+    assertThat(output.seekMaps).hasSize(2);
+    assertThat(output.seekMaps.get(1).isSeekable()).isTrue();
+    assertThat(output.getTrackOutput().getSampleTimesUs()).isEqualTo(getSampleTimesUs(15, 30));
+  }
+
   @Test
   public void mkvSample_withSubripSubtitles() throws Exception {
     ExtractorAsserts.assertBehavior(
@@ -118,4 +204,219 @@ public final class MatroskaExtractorTest {
     ExtractorAsserts.assertBehavior(
         MatroskaExtractor::new, "media/mkv/subsample_encrypted_altref.webm", simulationConfig);
   }
+
+  private FakeExtractorInput createInput(byte[] data) {
+    return new FakeExtractorInput.Builder()
+        .setData(data)
+        .setSimulateIOErrors(simulationConfig.simulateIOErrors)
+        .setSimulateUnknownLength(simulationConfig.simulateUnknownLength)
+        .setSimulatePartialReads(simulationConfig.simulatePartialReads)
+        .build();
+  }
+
+  /**
+   * Reads from {@code input} until the extractor requests a seek, returning the requested position,
+   * or until the end of the input, returning {@link C#POSITION_UNSET}.
+   */
+  private static long readUntilSeekOrEnd(Extractor extractor, FakeExtractorInput input)
+      throws IOException {
+    PositionHolder seekPositionHolder = new PositionHolder();
+    while (true) {
+      try {
+        switch (extractor.read(input, seekPositionHolder)) {
+          case Extractor.RESULT_SEEK:
+            return seekPositionHolder.position;
+          case Extractor.RESULT_END_OF_INPUT:
+            return C.POSITION_UNSET;
+          default:
+            break;
+        }
+      } catch (SimulatedIOException e) {
+        // Ignore.
+      }
+    }
+  }
+
+  /** Returns the timestamps of the samples in clusters {@code fromIndex} to {@code toIndex - 1}. */
+  private static List<Long> getSampleTimesUs(int fromIndex, int toIndex) {
+    List<Long> sampleTimesUs = new ArrayList<>();
+    for (int i = fromIndex; i < toIndex; i++) {
+      sampleTimesUs.add(i * 1_000_000L);
+    }
+    return sampleTimesUs;
+  }
+
+  /** An {@link ExtractorOutput} that records every {@link SeekMap} it receives. */
+  private static final class SeekMapRecordingOutput implements ExtractorOutput {
+
+    public final List<SeekMap> seekMaps;
+
+    private final FakeExtractorOutput extractorOutput;
+
+    public SeekMapRecordingOutput() {
+      seekMaps = new ArrayList<>();
+      extractorOutput = new FakeExtractorOutput();
+    }
+
+    public FakeTrackOutput getTrackOutput() {
+      assertThat(extractorOutput.numberOfTracks).isEqualTo(1);
+      return extractorOutput.trackOutputs.valueAt(0);
+    }
+
+    @Override
+    public TrackOutput track(int id, int type) {
+      return extractorOutput.track(id, type);
+    }
+
+    @Override
+    public void endTracks() {
+      extractorOutput.endTracks();
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      extractorOutput.seekMap(seekMap);
+      seekMaps.add(seekMap);
+    }
+  }
+
+  /**
+   * A Matroska file with an MP3 track, one cluster per second each holding a single sample, and
+   * cues after the last cluster.
+   *
+   * <p>Every element size is written as an 8-byte varint, so element lengths don't depend on the
+   * values they hold.
+   */
+  private static final class SyntheticMkv {
+
+    private static final int ID_EBML = 0x1A45DFA3;
+    private static final int ID_DOC_TYPE = 0x4282;
+    private static final int ID_SEGMENT = 0x18538067;
+    private static final int ID_SEEK_HEAD = 0x114D9B74;
+    private static final int ID_SEEK = 0x4DBB;
+    private static final int ID_SEEK_ID = 0x53AB;
+    private static final int ID_SEEK_POSITION = 0x53AC;
+    private static final int ID_INFO = 0x1549A966;
+    private static final int ID_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int ID_DURATION = 0x4489;
+    private static final int ID_TRACKS = 0x1654AE6B;
+    private static final int ID_TRACK_ENTRY = 0xAE;
+    private static final int ID_TRACK_NUMBER = 0xD7;
+    private static final int ID_TRACK_TYPE = 0x83;
+    private static final int ID_CODEC_ID = 0x86;
+    private static final int ID_CLUSTER = 0x1F43B675;
+    private static final int ID_TIME_CODE = 0xE7;
+    private static final int ID_SIMPLE_BLOCK = 0xA3;
+    private static final int ID_CUES = 0x1C53BB6B;
+    private static final int ID_CUE_POINT = 0xBB;
+    private static final int ID_CUE_TIME = 0xB3;
+    private static final int ID_CUE_TRACK_POSITIONS = 0xB7;
+    private static final int ID_CUE_TRACK = 0xF7;
+    private static final int ID_CUE_CLUSTER_POSITION = 0xF1;
+    /** The length of an element header holding a 4-byte ID. */
+    private static final int CLUSTER_HEADER_LENGTH = 12;
+
+    /** The file's data. */
+    public final byte[] data;
+    /** The position of the cues element. */
+    public final long cuesPosition;
+    /** The positions of the cluster elements. */
+    public final long[] clusterPositions;
+    /** The positions of the cluster elements' content. */
+    public final long[] clusterContentPositions;
+
+    public SyntheticMkv(int clusterCount) {
+      byte[] ebmlHeader = element(ID_EBML, element(ID_DOC_TYPE, "webm".getBytes()));
+      byte[] info =
+          element(
+              ID_INFO,
+              uintElement(ID_TIMECODE_SCALE, 1_000_000),
+              element(
+                  ID_DURATION,
+                  longToBytes(Double.doubleToLongBits(clusterCount * 1000.0), /* length= */ 8)));
+      byte[] tracks =
+          element(
+              ID_TRACKS,
+              element(
+                  ID_TRACK_ENTRY,
+                  uintElement(ID_TRACK_NUMBER, 1),
+                  uintElement(ID_TRACK_TYPE, 2),
+                  element(ID_CODEC_ID, "A_MPEG/L3".getBytes())));
+      byte[][] clusters = new byte[clusterCount][];
+      byte[][] cuePoints = new byte[clusterCount][];
+      // The seek head's length doesn't depend on the position it holds.
+      long clusterOffset = seekHead(/* cuesOffset= */ 0).length + info.length + tracks.length;
+      long segmentContentPosition = ebmlHeader.length + CLUSTER_HEADER_LENGTH;
+      clusterPositions = new long[clusterCount];
+      clusterContentPositions = new long[clusterCount];
+      for (int i = 0; i < clusterCount; i++) {
+        clusters[i] =
+            element(
+                ID_CLUSTER,
+                uintElement(ID_TIME_CODE, i * 1000L),
+                element(ID_SIMPLE_BLOCK, new byte[] {(byte) 0x81, 0, 0, (byte) 0x80, (byte) i}));
+        cuePoints[i] =
+            element(
+                ID_CUE_POINT,
+                uintElement(ID_CUE_TIME, i * 1000L),
+                element(
+                    ID_CUE_TRACK_POSITIONS,
+                    uintElement(ID_CUE_TRACK, 1),
+                    uintElement(ID_CUE_CLUSTER_POSITION, clusterOffset)));
+        clusterPositions[i] = segmentContentPosition + clusterOffset;
+        clusterContentPositions[i] = clusterPositions[i] + CLUSTER_HEADER_LENGTH;
+        clusterOffset += clusters[i].length;
+      }
+      cuesPosition = segmentContentPosition + clusterOffset;
+      byte[] segment =
+          element(
+              ID_SEGMENT,
+              seekHead(/* cuesOffset= */ clusterOffset),
+              info,
+              tracks,
+              concatenate(clusters),
+              element(ID_CUES, cuePoints));
+      data = concatenate(ebmlHeader, segment);
+    }
+
+    private static byte[] seekHead(long cuesOffset) {
+      return element(
+          ID_SEEK_HEAD,
+          element(
+              ID_SEEK,
+              element(ID_SEEK_ID, longToBytes(ID_CUES, /* length= */ 4)),
+              uintElement(ID_SEEK_POSITION, cuesOffset)));
+    }
+
+    private static byte[] uintElement(int id, long value) {
+      return element(id, longToBytes(value, /* length= */ 8));
+    }
+
+    private static byte[] element(int id, byte[]... children) {
+      byte[] content = concatenate(children);
+      int idLength = 4 - Integer.numberOfLeadingZeros(id) / 8;
+      // A size varint of length 8 has a leading 0x01 byte followed by 7 bytes of value.
+      return concatenate(
+          longToBytes(id, idLength),
+          new byte[] {0x01},
+          longToBytes(content.length, /* length= */ 7),
+          content);
+    }
+
+    private static byte[] longToBytes(long value, int length) {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = (byte) (value >>> (8 * (length - i - 1)));
+      }
+      return bytes;
+    }
+
+    private static byte[] concatenate(byte[]... arrays) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      for (byte[] array : arrays) {
+        outputStream.write(array, /* off= */ 0, array.length);
+      }
+      return outputStream.toByteArray();
+    }
+  }
 }
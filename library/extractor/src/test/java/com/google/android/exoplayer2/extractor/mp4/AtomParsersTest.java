@@ -19,6 +19,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
@@ -67,6 +68,55 @@ public final class AtomParsersTest {
     verifyStz2Parsing(new Atom.LeafAtom(Atom.TYPE_stsz, new ParsableByteArray(SIXTEEN_BIT_STZ2)));
   }
 
+  @Test
+  public void stz2BulkParsing4BitFieldSize() {
+    verifyStz2BulkParsing(new Atom.LeafAtom(Atom.TYPE_stsz, new ParsableByteArray(FOUR_BIT_STZ2)));
+  }
+
+  @Test
+  public void stz2BulkParsing8BitFieldSize() {
+    verifyStz2BulkParsing(
+        new Atom.LeafAtom(Atom.TYPE_stsz, new ParsableByteArray(EIGHT_BIT_STZ2)));
+  }
+
+  @Test
+  public void stz2BulkParsing16BitFieldSize() {
+    verifyStz2BulkParsing(
+        new Atom.LeafAtom(Atom.TYPE_stsz, new ParsableByteArray(SIXTEEN_BIT_STZ2)));
+  }
+
+  @Test
+  public void stz2BulkParsingTruncatedBox() {
+    byte[] truncatedStz2 =
+        Util.getBytesFromHexString(ATOM_HEADER + "00000008" + SAMPLE_COUNT + "010203");
+    AtomParsers.Stz2SampleSizeBox box =
+        new AtomParsers.Stz2SampleSizeBox(
+            new Atom.LeafAtom(Atom.TYPE_stsz, new ParsableByteArray(truncatedStz2)));
+    int[] sizes = new int[4];
+
+    int sampleSizeCount = box.readSampleSizes(sizes, /* count= */ 4);
+
+    assertThat(sampleSizeCount).isEqualTo(3);
+    assertThat(sizes).asList().containsExactly(1, 2, 3, 0).inOrder();
+  }
+
+  @Test
+  public void stszBulkParsingTruncatedBox() {
+    byte[] truncatedStsz =
+        Util.getBytesFromHexString(
+            ATOM_HEADER + "00000000" + SAMPLE_COUNT + "00000001" + "00000002" + "00000003");
+    AtomParsers.StszSampleSizeBox box =
+        new AtomParsers.StszSampleSizeBox(
+            new Atom.LeafAtom(Atom.TYPE_stsz, new ParsableByteArray(truncatedStsz)),
+            new Format.Builder().build());
+    int[] sizes = new int[4];
+
+    int sampleSizeCount = box.readSampleSizes(sizes, /* count= */ 4);
+
+    assertThat(sampleSizeCount).isEqualTo(3);
+    assertThat(sizes).asList().containsExactly(1, 2, 3, 0).inOrder();
+  }
+
   private static void verifyStz2Parsing(Atom.LeafAtom stz2Atom) {
     AtomParsers.Stz2SampleSizeBox box = new AtomParsers.Stz2SampleSizeBox(stz2Atom);
     assertThat(box.getSampleCount()).isEqualTo(4);
@@ -75,4 +125,14 @@ public final class AtomParsersTest {
       assertThat(box.readNextSampleSize()).isEqualTo(i + 1);
     }
   }
+
+  private static void verifyStz2BulkParsing(Atom.LeafAtom stz2Atom) {
+    AtomParsers.Stz2SampleSizeBox box = new AtomParsers.Stz2SampleSizeBox(stz2Atom);
+    int[] sizes = new int[2];
+
+    assertThat(box.readNextSampleSize()).isEqualTo(1);
+    box.readSampleSizes(sizes, /* count= */ 2);
+    assertThat(sizes).asList().containsExactly(2, 3).inOrder();
+    assertThat(box.readNextSampleSize()).isEqualTo(4);
+  }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.primitives.Bytes;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link FragmentedMp4Extractor} that parse synthetic fragments. */
+@RunWith(AndroidJUnit4.class)
+public final class FragmentedMp4ExtractorFragmentTest {
+
+  private static final int TIMESCALE = 1000;
+  private static final int SAMPLE_DURATION = 10;
+
+  @Test
+  public void read_smallerFragmentAfterLargerFragment_outputsSamplesOfBothFragments()
+      throws IOException {
+    int[] largeFragmentSampleSizes = new int[20];
+    Arrays.fill(largeFragmentSampleSizes, 50);
+    int[] smallFragmentSampleSizes = new int[] {10, 20, 30};
+    byte[] data =
+        Bytes.concat(
+            buildFragment(/* decodeTime= */ 0, largeFragmentSampleSizes),
+            buildFragment(
+                /* decodeTime= */ largeFragmentSampleSizes.length * SAMPLE_DURATION,
+                smallFragmentSampleSizes));
+
+    FakeTrackOutput trackOutput = extractAllSamples(data).trackOutputs.get(0);
+
+    assertThat(trackOutput.getSampleCount()).isEqualTo(23);
+    for (int i = 0; i < 20; i++) {
+      assertThat(trackOutput.getSampleData(i)).hasLength(50);
+      assertThat(trackOutput.getSampleTimeUs(i)).isEqualTo(i * 10_000L);
+    }
+    for (int i = 0; i < smallFragmentSampleSizes.length; i++) {
+      assertThat(trackOutput.getSampleData(20 + i)).hasLength(smallFragmentSampleSizes[i]);
+      assertThat(trackOutput.getSampleTimeUs(20 + i)).isEqualTo((20 + i) * 10_000L);
+    }
+  }
+
+  @Test
+  public void read_trunSampleCountExceedingAtom_throwsParserException() {
+    byte[] data =
+        buildFragment(
+            /* decodeTime= */ 0, /* sampleSizes= */ new int[] {10, 20}, /* trunSampleCount= */ 3);
+
+    assertThrows(ParserException.class, () -> extractAllSamples(data));
+  }
+
+  @Test
+  public void read_trunSampleCountExceedingAtomAfterLargerFragment_throwsParserException() {
+    int[] largeFragmentSampleSizes = new int[20];
+    Arrays.fill(largeFragmentSampleSizes, 50);
+    // The buffer of the second trun is reused from the first fragment, so it has room for more
+    // entries than the trun holds.
+    byte[] data =
+        Bytes.concat(
+            buildFragment(/* decodeTime= */ 0, largeFragmentSampleSizes),
+            buildFragment(
+                /* decodeTime= */ largeFragmentSampleSizes.length * SAMPLE_DURATION,
+                /* sampleSizes= */ new int[] {10, 20},
+                /* trunSampleCount= */ 3));
+
+    assertThrows(ParserException.class, () -> extractAllSamples(data));
+  }
+
+  private static FakeExtractorOutput extractAllSamples(byte[] data) throws IOException {
+    Track track =
+        new Track(
+            /* id= */ 1,
+            C.TRACK_TYPE_AUDIO,
+            TIMESCALE,
+            /* movieTimescale= */ TIMESCALE,
+            /* durationUs= */ C.TIME_UNSET,
+            new Format.Builder().setSampleMimeType(MimeTypes.AUDIO_AAC).build(),
+            Track.TRANSFORMATION_NONE,
+            /* sampleDescriptionEncryptionBoxes= */ null,
+            /* nalUnitLengthFieldLength= */ 0,
+            /* editListDurations= */ null,
+            /* editListMediaTimes= */ null);
+    FragmentedMp4Extractor extractor =
+        new FragmentedMp4Extractor(/* flags= */ 0, /* timestampAdjuster= */ null, track);
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    return output;
+  }
+
+  private static byte[] buildFragment(long decodeTime, int[] sampleSizes) {
+    return buildFragment(decodeTime, sampleSizes, sampleSizes.length);
+  }
+
+  /**
+   * Returns a moof with a single track run, followed by an mdat with the samples of the run.
+   *
+   * @param decodeTime The decode time of the first sample, in {@link #TIMESCALE} units.
+   * @param sampleSizes The sizes of the samples, written as trun entries.
+   * @param trunSampleCount The sample count written in the trun header.
+   */
+  private static byte[] buildFragment(long decodeTime, int[] sampleSizes, int trunSampleCount) {
+    ByteBuffer trunPayload = ByteBuffer.allocate(12 + sampleSizes.length * 8);
+    // Flags: data_offset_present, sample_duration_present and sample_size_present.
+    trunPayload.putInt(0x000301);
+    trunPayload.putInt(trunSampleCount);
+    int trunPayloadDataOffsetPosition = trunPayload.position();
+    trunPayload.putInt(0);
+    int sampleDataSize = 0;
+    for (int sampleSize : sampleSizes) {
+      trunPayload.putInt(SAMPLE_DURATION);
+      trunPayload.putInt(sampleSize);
+      sampleDataSize += sampleSize;
+    }
+    byte[] tfhd = buildAtom(Atom.TYPE_tfhd, ByteBuffer.allocate(8).putInt(0).putInt(1).array());
+    byte[] tfdt =
+        buildAtom(
+            Atom.TYPE_tfdt, ByteBuffer.allocate(12).putInt(0x01000000).putLong(decodeTime).array());
+    int moofSize = 8 + 8 + tfhd.length + tfdt.length + 8 + trunPayload.capacity();
+    // The sample data starts after the moof and the mdat header.
+    trunPayload.putInt(trunPayloadDataOffsetPosition, moofSize + 8);
+    byte[] trun = buildAtom(Atom.TYPE_trun, trunPayload.array());
+    byte[] traf = buildAtom(Atom.TYPE_traf, Bytes.concat(tfhd, tfdt, trun));
+    byte[] moof = buildAtom(Atom.TYPE_moof, traf);
+    byte[] mdat = buildAtom(Atom.TYPE_mdat, TestUtil.buildTestData(sampleDataSize));
+    return Bytes.concat(moof, mdat);
+  }
+
+  private static byte[] buildAtom(int type, byte[] payload) {
+    return ByteBuffer.allocate(8 + payload.length)
+        .putInt(8 + payload.length)
+        .putInt(type)
+        .put(payload)
+        .array();
+  }
+}
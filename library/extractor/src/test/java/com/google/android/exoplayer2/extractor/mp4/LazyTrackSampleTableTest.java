@@ -0,0 +1,242 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link LazyTrackSampleTable}. */
+@RunWith(AndroidJUnit4.class)
+public final class LazyTrackSampleTableTest {
+
+  // More pages than are cached, so that pages are evicted.
+  private static final int SAMPLE_COUNT = 12_000;
+  private static final int SAMPLES_PER_CHUNK = 5;
+  private static final int SYNC_SAMPLE_INTERVAL = 30;
+  private static final int TIMESCALE = 1000;
+  private static final int SAMPLE_DURATION = 40;
+  private static final long FIRST_CHUNK_OFFSET = 1000;
+  private static final long CHUNK_STRIDE = 10_000;
+
+  @Test
+  public void getSampleProperties_inAnyOrder_matchesSampleTableAtoms() throws ParserException {
+    LazyTrackSampleTable sampleTable = createSampleTable(/* fixedSampleSize= */ C.LENGTH_UNSET);
+
+    assertThat(sampleTable.getSampleCount()).isEqualTo(SAMPLE_COUNT);
+    assertThat(sampleTable.getMaximumSize()).isEqualTo(getExpectedSize(36));
+    long expectedTotalSize = 0;
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      expectedTotalSize += getExpectedSize(i);
+    }
+    assertThat(sampleTable.getTotalSize()).isEqualTo(expectedTotalSize);
+    assertThat(sampleTable.getDurationUs())
+        .isEqualTo((SAMPLE_COUNT * SAMPLE_DURATION + 2 * SAMPLE_DURATION) * 1000L);
+    // Read backwards and with a stride across pages, so that pages are evicted and decoded again.
+    for (int i = SAMPLE_COUNT - 1; i >= 0; i--) {
+      assertSample(sampleTable, i, /* fixedSampleSize= */ C.LENGTH_UNSET);
+    }
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      int sampleIndex = (int) ((long) i * LazyTrackSampleTable.SAMPLES_PER_PAGE % SAMPLE_COUNT);
+      assertSample(sampleTable, sampleIndex, /* fixedSampleSize= */ C.LENGTH_UNSET);
+    }
+  }
+
+  @Test
+  public void getSampleProperties_withFixedSampleSize_returnsFixedSize() throws ParserException {
+    LazyTrackSampleTable sampleTable = createSampleTable(/* fixedSampleSize= */ 256);
+
+    assertThat(sampleTable.getMaximumSize()).isEqualTo(256);
+    assertThat(sampleTable.getTotalSize()).isEqualTo(256L * SAMPLE_COUNT);
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      assertSample(sampleTable, i, /* fixedSampleSize= */ 256);
+    }
+  }
+
+  @Test
+  public void getIndexOfSynchronizationSample_returnsAdjacentSyncSamples() throws ParserException {
+    LazyTrackSampleTable sampleTable = createSampleTable(/* fixedSampleSize= */ C.LENGTH_UNSET);
+
+    // Sync samples 1020 and 1050 are on either side of the first page boundary.
+    for (int syncSampleIndex : new int[] {0, 1020, 1050, 2940}) {
+      long timeUs = getExpectedTimestampUs(syncSampleIndex);
+      assertThat(sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(syncSampleIndex);
+      assertThat(sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(syncSampleIndex);
+      assertThat(sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs + 1000))
+          .isEqualTo(syncSampleIndex);
+      assertThat(sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs + 1000))
+          .isEqualTo(syncSampleIndex + SYNC_SAMPLE_INTERVAL);
+    }
+    long lastSyncSampleTimeUs = getExpectedTimestampUs(SAMPLE_COUNT - SYNC_SAMPLE_INTERVAL);
+    assertThat(sampleTable.getIndexOfLaterOrEqualSynchronizationSample(lastSyncSampleTimeUs + 1))
+        .isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void getSampleProperties_whileSeekingOnAnotherThread_matchesSampleTableAtoms()
+      throws Exception {
+    LazyTrackSampleTable sampleTable = createSampleTable(/* fixedSampleSize= */ C.LENGTH_UNSET);
+    AtomicBoolean reading = new AtomicBoolean(true);
+    AtomicReference<@NullableType Throwable> seekError = new AtomicReference<>();
+    // Seek queries jump between pages, so that they evict the pages being read and decode pages
+    // at the same time as sample reads.
+    Thread seekThread =
+        new Thread(
+            () -> {
+              try {
+                for (int i = 0; reading.get(); i++) {
+                  int syncSampleIndex =
+                      (int) ((long) i * 7 * SYNC_SAMPLE_INTERVAL % SAMPLE_COUNT)
+                          / SYNC_SAMPLE_INTERVAL
+                          * SYNC_SAMPLE_INTERVAL;
+                  long timeUs = getExpectedTimestampUs(syncSampleIndex);
+                  assertThat(sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs))
+                      .isEqualTo(syncSampleIndex);
+                  assertSample(sampleTable, syncSampleIndex, C.LENGTH_UNSET);
+                }
+              } catch (Throwable e) {
+                seekError.set(e);
+              }
+            });
+    seekThread.start();
+
+    try {
+      for (int pass = 0; pass < 5; pass++) {
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+          assertSample(sampleTable, i, /* fixedSampleSize= */ C.LENGTH_UNSET);
+        }
+      }
+    } finally {
+      reading.set(false);
+      seekThread.join();
+    }
+    assertThat(seekError.get()).isNull();
+  }
+
+  private static void assertSample(
+      LazyTrackSampleTable sampleTable, int sampleIndex, int fixedSampleSize) {
+    int chunkIndex = sampleIndex / SAMPLES_PER_CHUNK;
+    long expectedOffset = FIRST_CHUNK_OFFSET + chunkIndex * CHUNK_STRIDE;
+    for (int i = chunkIndex * SAMPLES_PER_CHUNK; i < sampleIndex; i++) {
+      expectedOffset += fixedSampleSize != C.LENGTH_UNSET ? fixedSampleSize : getExpectedSize(i);
+    }
+    int expectedFlags = sampleIndex % SYNC_SAMPLE_INTERVAL == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    if (sampleIndex == SAMPLE_COUNT - 1) {
+      expectedFlags |= C.BUFFER_FLAG_LAST_SAMPLE;
+    }
+    int expectedSize =
+        fixedSampleSize != C.LENGTH_UNSET ? fixedSampleSize : getExpectedSize(sampleIndex);
+    assertThat(sampleTable.getOffset(sampleIndex)).isEqualTo(expectedOffset);
+    assertThat(sampleTable.getSize(sampleIndex)).isEqualTo(expectedSize);
+    assertThat(sampleTable.getTimestampUs(sampleIndex))
+        .isEqualTo(getExpectedTimestampUs(sampleIndex));
+    assertThat(sampleTable.getFlags(sampleIndex)).isEqualTo(expectedFlags);
+  }
+
+  private static int getExpectedSize(int sampleIndex) {
+    return 100 + sampleIndex % 37;
+  }
+
+  /** Returns the presentation time of a sample, with a composition offset that grows halfway. */
+  private static long getExpectedTimestampUs(int sampleIndex) {
+    int compositionOffset = sampleIndex < SAMPLE_COUNT / 2 ? SAMPLE_DURATION : 2 * SAMPLE_DURATION;
+    return (sampleIndex * SAMPLE_DURATION + compositionOffset) * 1000L;
+  }
+
+  private static LazyTrackSampleTable createSampleTable(int fixedSampleSize)
+      throws ParserException {
+    ByteBuffer stsz = createFullAtom(/* payloadLength= */ 8 + 4 * SAMPLE_COUNT);
+    stsz.putInt(fixedSampleSize != C.LENGTH_UNSET ? fixedSampleSize : 0);
+    stsz.putInt(SAMPLE_COUNT);
+    if (fixedSampleSize == C.LENGTH_UNSET) {
+      for (int i = 0; i < SAMPLE_COUNT; i++) {
+        stsz.putInt(getExpectedSize(i));
+      }
+    }
+    int chunkCount = SAMPLE_COUNT / SAMPLES_PER_CHUNK;
+    ByteBuffer stco = createFullAtom(/* payloadLength= */ 4 + 4 * chunkCount);
+    stco.putInt(chunkCount);
+    for (int i = 0; i < chunkCount; i++) {
+      stco.putInt((int) (FIRST_CHUNK_OFFSET + i * CHUNK_STRIDE));
+    }
+    ByteBuffer stsc = createFullAtom(/* payloadLength= */ 16);
+    stsc.putInt(1);
+    stsc.putInt(/* firstChunk= */ 1);
+    stsc.putInt(SAMPLES_PER_CHUNK);
+    stsc.putInt(/* sampleDescriptionIndex= */ 1);
+    ByteBuffer stts = createFullAtom(/* payloadLength= */ 12);
+    stts.putInt(1);
+    stts.putInt(SAMPLE_COUNT);
+    stts.putInt(SAMPLE_DURATION);
+    ByteBuffer ctts = createFullAtom(/* payloadLength= */ 20);
+    ctts.putInt(2);
+    ctts.putInt(SAMPLE_COUNT / 2);
+    ctts.putInt(SAMPLE_DURATION);
+    ctts.putInt(SAMPLE_COUNT / 2);
+    ctts.putInt(2 * SAMPLE_DURATION);
+    int syncSampleCount = SAMPLE_COUNT / SYNC_SAMPLE_INTERVAL;
+    ByteBuffer stss = createFullAtom(/* payloadLength= */ 4 + 4 * syncSampleCount);
+    stss.putInt(syncSampleCount);
+    for (int i = 0; i < syncSampleCount; i++) {
+      stss.putInt(i * SYNC_SAMPLE_INTERVAL + 1);
+    }
+    Track track =
+        new Track(
+            /* id= */ 1,
+            C.TRACK_TYPE_VIDEO,
+            TIMESCALE,
+            TIMESCALE,
+            /* durationUs= */ C.TIME_UNSET,
+            new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build(),
+            Track.TRANSFORMATION_NONE,
+            /* sampleDescriptionEncryptionBoxes= */ null,
+            /* nalUnitLengthFieldLength= */ 4,
+            /* editListDurations= */ null,
+            /* editListMediaTimes= */ null);
+    return new LazyTrackSampleTable(
+        track,
+        new ParsableByteArray(stsz.array()),
+        /* sampleSizeFieldBits= */ 32,
+        fixedSampleSize,
+        SAMPLE_COUNT,
+        new ParsableByteArray(stco.array()),
+        /* chunkOffsetsAreLongs= */ false,
+        new ParsableByteArray(stsc.array()),
+        new ParsableByteArray(stts.array()),
+        new ParsableByteArray(ctts.array()),
+        new ParsableByteArray(stss.array()));
+  }
+
+  /** Returns a buffer positioned after the header of a full atom with the given payload length. */
+  private static ByteBuffer createFullAtom(int payloadLength) {
+    ByteBuffer atom = ByteBuffer.allocate(Atom.FULL_HEADER_SIZE + payloadLength);
+    atom.position(Atom.FULL_HEADER_SIZE);
+    return atom;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.testutil.Dumper;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for restoring {@link Mp4Extractor} from snapshots. */
+@RunWith(AndroidJUnit4.class)
+public final class Mp4ExtractorSnapshotTest {
+
+  private static final String SAMPLE_FILE = "media/mp4/sample.mp4";
+
+  @Test
+  public void createSnapshot_beforeReadingHeaders_returnsNull() {
+    Mp4Extractor extractor = new Mp4Extractor();
+    extractor.init(new FakeExtractorOutput());
+
+    assertThat(extractor.createSnapshot()).isNull();
+  }
+
+  @Test
+  public void createSnapshot_withoutRequest_returnsNull() throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), SAMPLE_FILE);
+    Mp4Extractor extractor = new Mp4Extractor();
+    extractor.init(new FakeExtractorOutput());
+    extractAllSamples(extractor, data);
+
+    assertThat(extractor.createSnapshot()).isNull();
+  }
+
+  @Test
+  public void createSnapshot_calledTwice_returnsNullSecondTime() throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), SAMPLE_FILE);
+    Mp4Extractor extractor = new Mp4Extractor();
+    extractor.init(new FakeExtractorOutput());
+    extractor.requestSnapshot();
+    extractAllSamples(extractor, data);
+
+    assertThat(extractor.createSnapshot()).isNotNull();
+    assertThat(extractor.createSnapshot()).isNull();
+  }
+
+  @Test
+  public void restoreSnapshot_extractsSameTracksAndSamples() throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), SAMPLE_FILE);
+    Mp4Extractor extractor = new Mp4Extractor();
+    FakeExtractorOutput expectedOutput = new FakeExtractorOutput();
+    extractor.init(expectedOutput);
+    extractor.requestSnapshot();
+    extractAllSamples(extractor, data);
+    byte[] snapshot = extractor.createSnapshot();
+
+    Mp4Extractor restoredExtractor = new Mp4Extractor();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    restoredExtractor.init(output);
+    boolean restored = restoredExtractor.restoreSnapshot(snapshot);
+    boolean outputTracksBeforeReading = output.tracksEnded && output.seekMap != null;
+    restoredExtractor.seek(/* position= */ 0, /* timeUs= */ 0);
+    extractAllSamples(restoredExtractor, data);
+
+    assertThat(restored).isTrue();
+    assertThat(outputTracksBeforeReading).isTrue();
+    assertThat(dump(output)).isEqualTo(dump(expectedOutput));
+  }
+
+  @Test
+  public void restoreSnapshot_withLazySampleTables_extractsSameSamples() throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), SAMPLE_FILE);
+    Mp4Extractor extractor = new Mp4Extractor(Mp4Extractor.FLAG_READ_SAMPLE_TABLES_LAZILY);
+    FakeExtractorOutput expectedOutput = new FakeExtractorOutput();
+    extractor.init(expectedOutput);
+    extractor.requestSnapshot();
+    extractAllSamples(extractor, data);
+    byte[] snapshot = extractor.createSnapshot();
+
+    Mp4Extractor restoredExtractor =
+        new Mp4Extractor(Mp4Extractor.FLAG_READ_SAMPLE_TABLES_LAZILY);
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    restoredExtractor.init(output);
+    restoredExtractor.restoreSnapshot(snapshot);
+    restoredExtractor.seek(/* position= */ 0, /* timeUs= */ 0);
+    extractAllSamples(restoredExtractor, data);
+
+    assertThat(dump(output)).isEqualTo(dump(expectedOutput));
+  }
+
+  @Test
+  public void restoreSnapshot_withInvalidSnapshot_returnsFalseAndReadsStream() throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), SAMPLE_FILE);
+    Mp4Extractor extractor = new Mp4Extractor();
+    FakeExtractorOutput expectedOutput = new FakeExtractorOutput();
+    extractor.init(expectedOutput);
+    extractor.requestSnapshot();
+    extractAllSamples(extractor, data);
+    byte[] snapshot = extractor.createSnapshot();
+    // Truncate the snapshot, so that its moov atom is incomplete.
+    byte[] truncatedSnapshot = new byte[snapshot.length - 1];
+    System.arraycopy(snapshot, 0, truncatedSnapshot, 0, truncatedSnapshot.length);
+
+    Mp4Extractor restoredExtractor = new Mp4Extractor();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    restoredExtractor.init(output);
+    boolean restored = restoredExtractor.restoreSnapshot(truncatedSnapshot);
+    boolean outputTracksBeforeReading = output.trackOutputs.size() != 0 || output.seekMap != null;
+    restoredExtractor.seek(/* position= */ 0, /* timeUs= */ 0);
+    extractAllSamples(restoredExtractor, data);
+
+    assertThat(restored).isFalse();
+    assertThat(outputTracksBeforeReading).isFalse();
+    assertThat(dump(output)).isEqualTo(dump(expectedOutput));
+  }
+
+  private static void extractAllSamples(Extractor extractor, byte[] data) throws IOException {
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+  }
+
+  private static String dump(FakeExtractorOutput output) {
+    return new Dumper().add(output).toString();
+  }
+}
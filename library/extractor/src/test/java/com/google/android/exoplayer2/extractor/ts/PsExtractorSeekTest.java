@@ -193,6 +193,39 @@ public final class PsExtractorSeekTest {
     }
   }
 
+  @Test
+  public void seekToIndexedPosition_duringBinarySearch_outputsSameSamplesAsBinarySearchSeek()
+      throws IOException {
+    Uri fileUri = Uri.parse("asset:///" + PS_FILE_PATH);
+    long targetSeekTimeUs = 10_000_000;
+    PsExtractor binarySearchExtractor = new PsExtractor();
+    FakeExtractorOutput binarySearchOutput = new FakeExtractorOutput();
+    SeekMap seekMap = extractSeekMapAndTracks(binarySearchExtractor, binarySearchOutput);
+    long seekPosition = seekMap.getSeekPoints(targetSeekTimeUs).first.position;
+    binarySearchExtractor.seek(seekPosition, targetSeekTimeUs);
+    TestUtil.readToEndOfInput(binarySearchExtractor, seekPosition, dataSource, fileUri);
+
+    PsExtractor indexedExtractor = new PsExtractor();
+    FakeExtractorOutput indexedOutput = new FakeExtractorOutput();
+    extractSeekMapAndTracks(indexedExtractor, indexedOutput);
+    // Start a binary search, which the seek to the indexed position must cancel.
+    long firstSeekTimeUs = 20_000_000;
+    indexedExtractor.seek(seekMap.getSeekPoints(firstSeekTimeUs).first.position, firstSeekTimeUs);
+    // An indexed position precedes the target and needn't be aligned to a pack.
+    long indexedPosition = totalInputLength / 4 + 1;
+    indexedExtractor.seekToIndexedPosition(indexedPosition, targetSeekTimeUs);
+    int seekCount =
+        TestUtil.readToEndOfInput(indexedExtractor, indexedPosition, dataSource, fileUri);
+
+    assertThat(seekCount).isEqualTo(0);
+    // Samples are multiplexed ahead of their presentation time, so samples shortly after the target
+    // may precede the position found by the binary search. Only compare the samples after them.
+    TestUtil.assertSamplesFromTimeEqual(
+        binarySearchOutput.trackOutputs.get(VIDEO_TRACK_ID),
+        indexedOutput.trackOutputs.get(VIDEO_TRACK_ID),
+        targetSeekTimeUs + C.MICROS_PER_SECOND);
+  }
+
   // Internal methods
 
   private long readInputLength() throws IOException {
@@ -208,6 +208,38 @@ public final class TsExtractorSeekTest {
     }
   }
 
+  @Test
+  public void seekToIndexedPosition_duringBinarySearch_outputsSameSamplesAsBinarySearchSeek()
+      throws IOException {
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE);
+    long targetSeekTimeUs = 1_500_000;
+    TsExtractor binarySearchExtractor = new TsExtractor();
+    FakeExtractorOutput binarySearchOutput = new FakeExtractorOutput();
+    SeekMap seekMap =
+        TestUtil.extractSeekMap(binarySearchExtractor, binarySearchOutput, dataSource, fileUri);
+    FakeTrackOutput binarySearchTrackOutput = binarySearchOutput.trackOutputs.get(AUDIO_TRACK_ID);
+    long seekPosition = seekMap.getSeekPoints(targetSeekTimeUs).first.position;
+    binarySearchExtractor.seek(seekPosition, targetSeekTimeUs);
+    TestUtil.readToEndOfInput(binarySearchExtractor, seekPosition, dataSource, fileUri);
+
+    TsExtractor indexedExtractor = new TsExtractor();
+    FakeExtractorOutput indexedOutput = new FakeExtractorOutput();
+    TestUtil.extractSeekMap(indexedExtractor, indexedOutput, dataSource, fileUri);
+    FakeTrackOutput indexedTrackOutput = indexedOutput.trackOutputs.get(AUDIO_TRACK_ID);
+    // Start a binary search, which the seek to the indexed position must cancel.
+    long firstSeekTimeUs = 500_000;
+    indexedExtractor.seek(seekMap.getSeekPoints(firstSeekTimeUs).first.position, firstSeekTimeUs);
+    // An indexed position precedes the target and needn't be aligned to a TS packet.
+    long indexedPosition = 800_001;
+    indexedExtractor.seekToIndexedPosition(indexedPosition, targetSeekTimeUs);
+    int seekCount =
+        TestUtil.readToEndOfInput(indexedExtractor, indexedPosition, dataSource, fileUri);
+
+    assertThat(seekCount).isEqualTo(0);
+    TestUtil.assertSamplesFromTimeEqual(
+        binarySearchTrackOutput, indexedTrackOutput, targetSeekTimeUs);
+  }
+
   // Internal methods
 
   private void readInputFileOnce(
@@ -71,6 +71,18 @@ public final class Mp4Muxer {
   /** A token representing an added track. */
   public interface TrackToken {}
 
+  /** A listener for sample data buffers that the muxer no longer needs. */
+  public interface SampleBufferReleaseListener {
+
+    /**
+     * Called when the muxer no longer needs a buffer passed to {@link
+     * #writeSampleData(TrackToken, ByteBuffer, BufferInfo, SampleBufferReleaseListener)}.
+     *
+     * @param byteBuffer The sample data buffer, which the caller can reuse.
+     */
+    void onSampleBufferReleased(ByteBuffer byteBuffer);
+  }
+
   /** Behavior for the last sample duration. */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -248,7 +260,34 @@ public final class Mp4Muxer {
    */
   public void writeSampleData(TrackToken trackToken, ByteBuffer byteBuffer, BufferInfo bufferInfo)
       throws IOException {
-    mp4Writer.writeSampleData(trackToken, byteBuffer, bufferInfo);
+    mp4Writer.writeSampleData(trackToken, byteBuffer, bufferInfo, /* releaseListener= */ null);
+  }
+
+  /**
+   * Writes encoded sample data without copying it.
+   *
+   * <p>Unlike {@link #writeSampleData(TrackToken, ByteBuffer, BufferInfo)}, which copies each
+   * sample while it waits to be interleaved with samples from other tracks, this method keeps a
+   * reference to {@code byteBuffer} until the sample has been written to the disk. The caller must
+   * not modify or reuse {@code byteBuffer} until it is passed to {@code releaseListener}, which
+   * happens on the thread calling this method, {@link #close()} or a later call to this method. The
+   * muxer may modify the contents of the buffer, for example to convert the sample to the AVCC
+   * format.
+   *
+   * @param trackToken The {@link TrackToken} for which this sample is being written.
+   * @param byteBuffer The encoded sample.
+   * @param bufferInfo The {@link BufferInfo} related to this sample.
+   * @param releaseListener The {@link SampleBufferReleaseListener} to notify once the muxer no
+   *     longer needs {@code byteBuffer}.
+   * @throws IOException If there is any error while writing data to the disk.
+   */
+  public void writeSampleData(
+      TrackToken trackToken,
+      ByteBuffer byteBuffer,
+      BufferInfo bufferInfo,
+      SampleBufferReleaseListener releaseListener)
+      throws IOException {
+    mp4Writer.writeSampleData(trackToken, byteBuffer, bufferInfo, releaseListener);
   }
 
   /** Closes the MP4 file. */
@@ -21,8 +21,9 @@ import static java.lang.Math.max;
 
 import android.media.MediaCodec;
 import android.media.MediaCodec.BufferInfo;
-import android.util.Pair;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.muxer.Mp4Muxer.SampleBufferReleaseListener;
 import com.google.android.exoplayer2.muxer.Mp4Muxer.TrackToken;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
@@ -93,10 +94,14 @@ import java.util.concurrent.atomic.AtomicBoolean;
     return track;
   }
 
-  public void writeSampleData(TrackToken token, ByteBuffer byteBuf, BufferInfo bufferInfo)
+  public void writeSampleData(
+      TrackToken token,
+      ByteBuffer byteBuf,
+      BufferInfo bufferInfo,
+      @Nullable SampleBufferReleaseListener releaseListener)
       throws IOException {
     checkState(token instanceof Track);
-    ((Track) token).writeSampleData(byteBuf, bufferInfo);
+    ((Track) token).writeSampleData(byteBuf, bufferInfo, releaseListener);
   }
 
   public void close() throws IOException {
@@ -277,8 +282,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
     // Calculate the additional space required.
     long bytesNeededInMdat = 0L;
-    for (Pair<BufferInfo, ByteBuffer> sample : track.pendingSamples) {
-      bytesNeededInMdat += sample.second.limit();
+    for (PendingSample sample : track.pendingSamples) {
+      bytesNeededInMdat += sample.data.limit();
     }
 
     // If the required number of bytes doesn't fit in the gap between the actual data and the moov
@@ -293,9 +298,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
     track.writtenChunkSampleCounts.add(track.pendingSamples.size());
 
     do {
-      Pair<BufferInfo, ByteBuffer> pendingPacket = track.pendingSamples.removeFirst();
-      BufferInfo info = pendingPacket.first;
-      ByteBuffer buffer = pendingPacket.second;
+      PendingSample pendingSample = track.pendingSamples.removeFirst();
+      BufferInfo info = pendingSample.info;
+      ByteBuffer buffer = pendingSample.data;
 
       track.writtenSamples.add(info);
 
@@ -308,6 +313,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
       buffer.rewind();
 
       mdatDataEnd += output.write(buffer, mdatDataEnd);
+      pendingSample.release();
     } while (!track.pendingSamples.isEmpty());
 
     checkState(mdatDataEnd <= mdatEnd);
@@ -329,8 +335,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
       Track track = tracks.get(i);
       // TODO: b/270583563 - check if we need to consider the global timestamp instead.
       if (track.pendingSamples.size() > 2) {
-        BufferInfo firstSampleInfo = checkNotNull(track.pendingSamples.peekFirst()).first;
-        BufferInfo lastSampleInfo = checkNotNull(track.pendingSamples.peekLast()).first;
+        BufferInfo firstSampleInfo = checkNotNull(track.pendingSamples.peekFirst()).info;
+        BufferInfo lastSampleInfo = checkNotNull(track.pendingSamples.peekLast()).info;
 
         if (lastSampleInfo.presentationTimeUs - firstSampleInfo.presentationTimeUs
             > INTERLEAVE_DURATION_US) {
@@ -358,7 +364,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
     private final List<BufferInfo> writtenSamples;
     private final List<Long> writtenChunkOffsets;
     private final List<Integer> writtenChunkSampleCounts;
-    private final Deque<Pair<BufferInfo, ByteBuffer>> pendingSamples;
+    private final Deque<PendingSample> pendingSamples;
 
     private boolean hadKeyframe = false;
 
@@ -371,37 +377,49 @@ import java.util.concurrent.atomic.AtomicBoolean;
       pendingSamples = new ArrayDeque<>();
     }
 
-    public void writeSampleData(ByteBuffer byteBuffer, BufferInfo bufferInfo) throws IOException {
+    public void writeSampleData(
+        ByteBuffer byteBuffer,
+        BufferInfo bufferInfo,
+        @Nullable SampleBufferReleaseListener releaseListener)
+        throws IOException {
       if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) > 0) {
         hadKeyframe = true;
       }
 
-      if (!hadKeyframe && MimeTypes.isVideo(format.sampleMimeType)) {
-        return;
-      }
-
-      if (bufferInfo.size == 0) {
+      // Skip samples before the first video key frame, and empty samples.
+      // TODO: b/279931840 - Confirm whether muxer should throw when writing empty samples.
+      if ((!hadKeyframe && MimeTypes.isVideo(format.sampleMimeType))
+          || bufferInfo.size == 0
+          || byteBuffer.remaining() == 0) {
+        if (releaseListener != null) {
+          releaseListener.onSampleBufferReleased(byteBuffer);
+        }
         return;
       }
 
-      // Skip empty samples.
-      // TODO: b/279931840 - Confirm whether muxer should throw when writing empty samples.
-      if (byteBuffer.remaining() > 0) {
+      ByteBuffer sampleData;
+      @Nullable ByteBuffer lentBuffer = null;
+      if (releaseListener == null) {
         // Copy sample data and release the original buffer.
-        ByteBuffer byteBufferCopy = ByteBuffer.allocateDirect(byteBuffer.remaining());
-        byteBufferCopy.put(byteBuffer);
-        byteBufferCopy.rewind();
-
-        BufferInfo bufferInfoCopy = new BufferInfo();
-        bufferInfoCopy.set(
-            /* newOffset= */ byteBufferCopy.position(),
-            /* newSize= */ byteBufferCopy.remaining(),
-            bufferInfo.presentationTimeUs,
-            bufferInfo.flags);
-
-        pendingSamples.addLast(Pair.create(bufferInfoCopy, byteBufferCopy));
-        doInterleave();
+        sampleData = ByteBuffer.allocateDirect(byteBuffer.remaining());
+        sampleData.put(byteBuffer);
+        sampleData.rewind();
+      } else {
+        // Keep a view of the caller's buffer until the sample is written.
+        sampleData = byteBuffer.slice();
+        lentBuffer = byteBuffer;
       }
+
+      BufferInfo bufferInfoCopy = new BufferInfo();
+      bufferInfoCopy.set(
+          /* newOffset= */ sampleData.position(),
+          /* newSize= */ sampleData.remaining(),
+          bufferInfo.presentationTimeUs,
+          bufferInfo.flags);
+
+      pendingSamples.addLast(
+          new PendingSample(bufferInfoCopy, sampleData, lentBuffer, releaseListener));
+      doInterleave();
     }
 
     @Override
@@ -436,4 +454,31 @@ import java.util.concurrent.atomic.AtomicBoolean;
       return format;
     }
   }
+
+  /** A sample waiting to be written to the output. */
+  private static final class PendingSample {
+    public final BufferInfo info;
+    public final ByteBuffer data;
+
+    @Nullable private final ByteBuffer lentBuffer;
+    @Nullable private final SampleBufferReleaseListener releaseListener;
+
+    public PendingSample(
+        BufferInfo info,
+        ByteBuffer data,
+        @Nullable ByteBuffer lentBuffer,
+        @Nullable SampleBufferReleaseListener releaseListener) {
+      this.info = info;
+      this.data = data;
+      this.lentBuffer = lentBuffer;
+      this.releaseListener = releaseListener;
+    }
+
+    /** Returns the caller's buffer, if the sample data was not copied. */
+    public void release() {
+      if (lentBuffer != null && releaseListener != null) {
+        releaseListener.onSampleBufferReleased(lentBuffer);
+      }
+    }
+  }
 }
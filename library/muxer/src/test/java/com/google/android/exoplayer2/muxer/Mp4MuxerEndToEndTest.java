@@ -31,6 +31,8 @@ import com.google.android.exoplayer2.testutil.TestUtil;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -149,4 +151,40 @@ public class Mp4MuxerEndToEndTest {
         fakeExtractorOutput,
         MuxerTestUtil.getExpectedDumpFilePath("mp4_with_different_tracks_offset.mp4"));
   }
+
+  @Test
+  public void createMp4File_withoutCopyingSamples_matchesFileWrittenWithCopies()
+      throws IOException {
+    String copiedSamplesFilePath = temporaryFolder.newFile("copied_samples.mp4").getPath();
+    Mp4Muxer copyingMp4Muxer =
+        new Mp4Muxer.Builder(new FileOutputStream(copiedSamplesFilePath)).build();
+    Mp4Muxer mp4Muxer = new Mp4Muxer.Builder(outputFileStream).build();
+    copyingMp4Muxer.setModificationTime(/* timestampMs= */ 500_000_000L);
+    mp4Muxer.setModificationTime(/* timestampMs= */ 500_000_000L);
+    List<ByteBuffer> lentBuffers = new ArrayList<>();
+    List<ByteBuffer> releasedBuffers = new ArrayList<>();
+
+    try {
+      TrackToken copyingTrack = copyingMp4Muxer.addTrack(/* sortKey= */ 0, format);
+      TrackToken track = mp4Muxer.addTrack(/* sortKey= */ 0, format);
+      for (int i = 0; i < 5; i++) {
+        Pair<ByteBuffer, BufferInfo> copiedSample =
+            MuxerTestUtil.getFakeSampleAndSampleInfo(/* presentationTimeUs= */ i * 600_000L);
+        Pair<ByteBuffer, BufferInfo> lentSample =
+            MuxerTestUtil.getFakeSampleAndSampleInfo(/* presentationTimeUs= */ i * 600_000L);
+        copyingMp4Muxer.writeSampleData(copyingTrack, copiedSample.first, copiedSample.second);
+        lentBuffers.add(lentSample.first);
+        mp4Muxer.writeSampleData(track, lentSample.first, lentSample.second, releasedBuffers::add);
+      }
+      // Samples are held back for interleaving, so only the ones written to the disk are released.
+      assertThat(releasedBuffers.size()).isLessThan(lentBuffers.size());
+    } finally {
+      copyingMp4Muxer.close();
+      mp4Muxer.close();
+    }
+
+    assertThat(releasedBuffers).containsExactlyElementsIn(lentBuffers).inOrder();
+    assertThat(TestUtil.getByteArrayFromFilePath(outputFilePath))
+        .isEqualTo(TestUtil.getByteArrayFromFilePath(copiedSamplesFilePath));
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer.mh.analysis;
+
+import android.os.SystemClock;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.transformer.AndroidTestUtil;
+import com.google.android.exoplayer2.transformer.AudioMixer;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Instrumentation tests for analyzing {@link AudioMixer} throughput with many sources. */
+@RunWith(Parameterized.class)
+@Ignore(
+    "Analysis tests are not used for confirming Transformer is running properly, and not configured"
+        + " for this use as they're missing skip checks for unsupported devices.")
+public class AudioMixerPerformanceAnalysisTest {
+
+  private static final ImmutableList<Integer> SOURCE_COUNTS = ImmutableList.of(1, 4, 16, 32);
+  private static final ImmutableList<Integer> THREAD_COUNTS = ImmutableList.of(1, 2, 4);
+
+  private static final AudioFormat OUTPUT_AUDIO_FORMAT =
+      new AudioFormat(/* sampleRate= */ 48000, /* channelCount= */ 2, C.ENCODING_PCM_FLOAT);
+  private static final AudioFormat SOURCE_AUDIO_FORMAT =
+      new AudioFormat(/* sampleRate= */ 48000, /* channelCount= */ 2, C.ENCODING_PCM_16BIT);
+  private static final int BUFFER_SIZE_MS = 500;
+  private static final int MIXED_DURATION_SECONDS = 60;
+
+  @Parameter(0)
+  public int sourceCount;
+
+  @Parameter(1)
+  public int threadCount;
+
+  @Parameters(name = "analyzeAudioMixerPerformance_{0}_sources_{1}_threads")
+  public static ImmutableList<Object[]> parameters() {
+    ImmutableList.Builder<Object[]> parametersBuilder = new ImmutableList.Builder<>();
+    for (int sourceCount : SOURCE_COUNTS) {
+      for (int threadCount : THREAD_COUNTS) {
+        parametersBuilder.add(new Object[] {sourceCount, threadCount});
+      }
+    }
+    return parametersBuilder.build();
+  }
+
+  @Test
+  public void analyzeAudioMixerPerformance() throws Exception {
+    String testId =
+        Util.formatInvariant(
+            "analyzeAudioMixerPerformance_%d_sources_%d_threads", sourceCount, threadCount);
+    AudioMixer audioMixer = AudioMixer.create(threadCount);
+    audioMixer.configure(OUTPUT_AUDIO_FORMAT, BUFFER_SIZE_MS, /* startTimeUs= */ 0);
+    audioMixer.setEndTimeUs(MIXED_DURATION_SECONDS * C.MICROS_PER_SECOND);
+    int[] sourceIds = new int[sourceCount];
+    for (int i = 0; i < sourceCount; i++) {
+      sourceIds[i] = audioMixer.addSource(SOURCE_AUDIO_FORMAT, /* startTimeUs= */ 0);
+    }
+    ByteBuffer sourceBuffer = createRandomSourceBuffer();
+
+    long startTimeMs = SystemClock.elapsedRealtime();
+    long outputBytes = 0;
+    while (!audioMixer.isEnded()) {
+      for (int sourceId : sourceIds) {
+        sourceBuffer.rewind();
+        audioMixer.queueInput(sourceId, sourceBuffer);
+      }
+      outputBytes += audioMixer.getOutput().remaining();
+    }
+    long elapsedTimeMs = SystemClock.elapsedRealtime() - startTimeMs;
+    audioMixer.reset();
+
+    JSONObject resultJson = new JSONObject();
+    resultJson.put("sourceCount", sourceCount);
+    resultJson.put("threadCount", threadCount);
+    resultJson.put("mixedDurationMs", MIXED_DURATION_SECONDS * 1000);
+    resultJson.put("outputBytes", outputBytes);
+    resultJson.put("elapsedTimeMs", elapsedTimeMs);
+    resultJson.put(
+        "realtimeFactor", (double) MIXED_DURATION_SECONDS * 1000 / Math.max(1, elapsedTimeMs));
+    AndroidTestUtil.writeTestSummaryToFile(
+        ApplicationProvider.getApplicationContext(), testId, resultJson);
+  }
+
+  private static ByteBuffer createRandomSourceBuffer() {
+    int frameCount = BUFFER_SIZE_MS * SOURCE_AUDIO_FORMAT.sampleRate / 1000;
+    ByteBuffer buffer =
+        ByteBuffer.allocateDirect(frameCount * SOURCE_AUDIO_FORMAT.bytesPerFrame)
+            .order(ByteOrder.nativeOrder());
+    Random random = new Random(/* seed= */ 0);
+    while (buffer.hasRemaining()) {
+      buffer.putShort((short) random.nextInt());
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -61,6 +61,21 @@ public interface AudioMixer {
     return new AudioMixerImpl();
   }
 
+  /**
+   * Creates an unconfigured instance that splits the mixing of large source buffers across up to
+   * {@code threadCount} threads.
+   *
+   * <p>The output is identical to that of an instance returned by {@link #create()}. Worker threads
+   * are started when the mixer is {@linkplain #configure configured} and stopped when it is
+   * {@linkplain #reset() reset}.
+   *
+   * @param threadCount The maximum number of threads used for mixing, including the thread calling
+   *     {@link #queueInput}.
+   */
+  public static AudioMixer create(int threadCount) {
+    return new AudioMixerImpl(threadCount);
+  }
+
   /**
    * Configures the mixer.
    *
@@ -30,10 +30,15 @@ import com.google.android.exoplayer2.audio.ChannelMixingMatrix;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * An {@link AudioMixer} that incrementally mixes source audio into a fixed size mixing buffer.
  *
+ * <p>If created with a thread count greater than one, large source buffers are mixed using a {@link
+ * ParallelAudioMixingAlgorithm}, which produces the same output as mixing on a single thread.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -42,10 +47,14 @@ import java.nio.ByteOrder;
 @Deprecated
 /* package */ final class AudioMixerImpl implements AudioMixer {
 
+  private static final String THREAD_NAME = "ExoPlayer:AudioMixer";
+
   private static final ByteBuffer EMPTY_BUFFER =
       ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
 
   private final SparseArray<SourceInfo> sources;
+  private final int threadCount;
+  @Nullable private ExecutorService executorService;
   private int nextSourceId;
   private AudioFormat outputAudioFormat;
   @Nullable private AudioMixingAlgorithm mixingAlgorithm;
@@ -62,7 +71,20 @@ import java.nio.ByteOrder;
   /** Position (in frames) of the mixer end point, relative to the mixer start. */
   private long endPosition;
 
+  /** Creates an instance that mixes on the calling thread. */
   public AudioMixerImpl() {
+    this(/* threadCount= */ 1);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param threadCount The maximum number of threads used to mix each source buffer, including the
+   *     thread calling {@link #queueInput}.
+   */
+  public AudioMixerImpl(int threadCount) {
+    checkArgument(threadCount > 0, "Thread count must be positive.");
+    this.threadCount = threadCount;
     sources = new SparseArray<>();
     outputAudioFormat = AudioFormat.NOT_SET;
     bufferSizeFrames = C.LENGTH_UNSET;
@@ -78,7 +100,16 @@ import java.nio.ByteOrder;
     checkState(!isConfigured(), "Audio mixer already configured.");
 
     // Create algorithm first in case it throws.
-    mixingAlgorithm = AudioMixingAlgorithm.create(outputAudioFormat);
+    AudioMixingAlgorithm mixingAlgorithm = AudioMixingAlgorithm.create(outputAudioFormat);
+    if (threadCount > 1) {
+      ExecutorService executorService =
+          Executors.newFixedThreadPool(threadCount - 1, AudioMixerImpl::newMixingThread);
+      this.executorService = executorService;
+      mixingAlgorithm =
+          new ParallelAudioMixingAlgorithm(
+              mixingAlgorithm, outputAudioFormat, executorService, threadCount);
+    }
+    this.mixingAlgorithm = mixingAlgorithm;
     this.outputAudioFormat = outputAudioFormat;
     bufferSizeFrames = bufferSizeMs * outputAudioFormat.sampleRate / 1000;
     mixerStartTimeUs = startTimeUs;
@@ -233,6 +264,10 @@ import java.nio.ByteOrder;
 
   @Override
   public void reset() {
+    if (executorService != null) {
+      executorService.shutdown();
+      executorService = null;
+    }
     sources.clear();
     nextSourceId = 0;
     outputAudioFormat = AudioFormat.NOT_SET;
@@ -269,6 +304,16 @@ import java.nio.ByteOrder;
     return checkStateNotNull(sources.get(sourceId), "Source not found.");
   }
 
+  /**
+   * Returns a daemon thread for mixing, so that a mixer that is never {@linkplain #reset() reset}
+   * doesn't keep the process alive.
+   */
+  private static Thread newMixingThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, THREAD_NAME);
+    thread.setDaemon(true);
+    return thread;
+  }
+
   /** A buffer holding partially-mixed audio within an interval. */
   private static class MixingBuffer {
     public final ByteBuffer buffer;
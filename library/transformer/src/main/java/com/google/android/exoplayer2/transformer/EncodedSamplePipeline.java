@@ -17,6 +17,8 @@
 package com.google.android.exoplayer2.transformer;
 
 import static com.google.android.exoplayer2.decoder.DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
 
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.Format;
@@ -30,6 +32,10 @@ import java.util.concurrent.atomic.AtomicLong;
 /**
  * Pipeline that muxes encoded samples without any transcoding or transformation.
  *
+ * <p>Sample data is lent to the muxer rather than copied. Once a sample is written, its input
+ * buffer is given data that the muxer has released and that is large enough for the largest sample
+ * so far, so buffers circulate between the asset loader and the muxer without being reallocated.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -44,8 +50,11 @@ import java.util.concurrent.atomic.AtomicLong;
   private final AtomicLong nextMediaItemOffsetUs;
   private final Queue<DecoderInputBuffer> availableInputBuffers;
   private final Queue<DecoderInputBuffer> pendingInputBuffers;
+  private final Queue<ByteBuffer> releasedSampleBuffers;
+  private final ByteBuffer emptyBuffer;
 
   private long mediaItemOffsetUs;
+  private int maxSampleSize;
 
   private volatile boolean inputEnded;
 
@@ -58,13 +67,14 @@ import java.util.concurrent.atomic.AtomicLong;
     this.format = format;
     nextMediaItemOffsetUs = new AtomicLong();
     availableInputBuffers = new ConcurrentLinkedDeque<>();
-    ByteBuffer emptyBuffer = ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
+    emptyBuffer = ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
     for (int i = 0; i < MAX_INPUT_BUFFER_COUNT; i++) {
       DecoderInputBuffer inputBuffer = new DecoderInputBuffer(BUFFER_REPLACEMENT_MODE_DIRECT);
       inputBuffer.data = emptyBuffer;
       availableInputBuffers.add(inputBuffer);
     }
     pendingInputBuffers = new ConcurrentLinkedDeque<>();
+    releasedSampleBuffers = new ConcurrentLinkedDeque<>();
     fallbackListener.onTransformationRequestFinalized(transformationRequest);
   }
 
@@ -113,11 +123,37 @@ import java.util.concurrent.atomic.AtomicLong;
   @Override
   protected void releaseMuxerInputBuffer() {
     DecoderInputBuffer inputBuffer = pendingInputBuffers.remove();
+    maxSampleSize = max(maxSampleSize, checkNotNull(inputBuffer.data).limit());
+    // The muxer owns the written data until it's released, so replace it with released data.
+    inputBuffer.data = obtainSampleBuffer();
     inputBuffer.clear();
     inputBuffer.timeUs = 0;
     availableInputBuffers.add(inputBuffer);
   }
 
+  /**
+   * Returns a released sample buffer that can hold the largest sample written so far, or a newly
+   * allocated one if there's none. Released buffers that are too small are dropped, so that the
+   * asset loader doesn't have to grow them.
+   */
+  private ByteBuffer obtainSampleBuffer() {
+    if (maxSampleSize == 0) {
+      return emptyBuffer;
+    }
+    @Nullable ByteBuffer releasedSampleBuffer;
+    while ((releasedSampleBuffer = releasedSampleBuffers.poll()) != null) {
+      if (releasedSampleBuffer.capacity() >= maxSampleSize) {
+        return releasedSampleBuffer;
+      }
+    }
+    return ByteBuffer.allocateDirect(maxSampleSize).order(ByteOrder.nativeOrder());
+  }
+
+  @Override
+  protected Muxer.SampleBufferReleaseListener getMuxerInputBufferReleaseListener() {
+    return releasedSampleBuffers::add;
+  }
+
   @Override
   protected boolean isMuxerInputEnded() {
     return inputEnded && pendingInputBuffers.isEmpty();
@@ -164,23 +164,21 @@ public final class InAppMuxer implements Muxer {
   public void writeSampleData(
       int trackIndex, ByteBuffer data, long presentationTimeUs, @C.BufferFlags int flags)
       throws MuxerException {
+    writeSampleDataInternal(
+        trackIndex, data, presentationTimeUs, flags, /* releaseListener= */ null);
+  }
 
-    int size = data.remaining();
-    bufferInfo.set(
-        data.position(), size, presentationTimeUs, TransformerUtil.getMediaCodecFlags(flags));
-
-    try {
-      mp4Muxer.writeSampleData(trackTokenList.get(trackIndex), data, bufferInfo);
-    } catch (IOException e) {
-      throw new MuxerException(
-          "Failed to write sample for trackIndex="
-              + trackIndex
-              + ", presentationTimeUs="
-              + presentationTimeUs
-              + ", size="
-              + size,
-          e);
-    }
+  @Override
+  public void writeSampleData(
+      int trackIndex,
+      ByteBuffer data,
+      long presentationTimeUs,
+      @C.BufferFlags int flags,
+      SampleBufferReleaseListener releaseListener)
+      throws MuxerException {
+    // The Mp4Muxer holds samples back for interleaving, so lending the buffer avoids a copy.
+    writeSampleDataInternal(
+        trackIndex, data, presentationTimeUs, flags, releaseListener::onSampleBufferReleased);
   }
 
   @Override
@@ -219,6 +217,36 @@ public final class InAppMuxer implements Muxer {
     return maxDelayBetweenSamplesMs;
   }
 
+  private void writeSampleDataInternal(
+      int trackIndex,
+      ByteBuffer data,
+      long presentationTimeUs,
+      @C.BufferFlags int flags,
+      Mp4Muxer.@Nullable SampleBufferReleaseListener releaseListener)
+      throws MuxerException {
+    int size = data.remaining();
+    bufferInfo.set(
+        data.position(), size, presentationTimeUs, TransformerUtil.getMediaCodecFlags(flags));
+
+    try {
+      TrackToken trackToken = trackTokenList.get(trackIndex);
+      if (releaseListener == null) {
+        mp4Muxer.writeSampleData(trackToken, data, bufferInfo);
+      } else {
+        mp4Muxer.writeSampleData(trackToken, data, bufferInfo, releaseListener);
+      }
+    } catch (IOException e) {
+      throw new MuxerException(
+          "Failed to write sample for trackIndex="
+              + trackIndex
+              + ", presentationTimeUs="
+              + presentationTimeUs
+              + ", size="
+              + size,
+          e);
+    }
+  }
+
   private void writeMetadata() {
     if (metadataProvider != null) {
       Set<Metadata.Entry> metadataEntriesCopy = new LinkedHashSet<>(metadataEntries);
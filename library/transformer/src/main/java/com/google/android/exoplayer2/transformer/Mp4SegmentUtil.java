@@ -0,0 +1,528 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.util.SparseLongArray;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utility methods for splitting an MP4 input into segments at sync samples and for concatenating
+ * MP4 segments losslessly.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class Mp4SegmentUtil {
+
+  /**
+   * Returns the {@link SeekMap} of the MP4 file at {@code uri}, or {@code null} if the file is not
+   * an MP4 file.
+   *
+   * @param dataSource The {@link DataSource} to read the file with.
+   * @param uri The {@link Uri} of the file.
+   * @throws IOException If an error occurs reading the file.
+   */
+  @Nullable
+  public static SeekMap readSeekMap(DataSource dataSource, Uri uri) throws IOException {
+    Mp4Extractor extractor = new Mp4Extractor();
+    ExtractorInput input = openExtractorInput(dataSource, uri, /* position= */ 0);
+    try {
+      if (!extractor.sniff(input)) {
+        return null;
+      }
+    } catch (EOFException e) {
+      return null;
+    } finally {
+      DataSourceUtil.closeQuietly(dataSource);
+    }
+
+    SeekMapExtractorOutput output = new SeekMapExtractorOutput();
+    extractor.init(output);
+    read(extractor, dataSource, uri, /* stopCondition= */ () -> output.seekMap != null);
+    if (output.seekMap == null) {
+      throw new IOException("No seek map found in " + uri);
+    }
+    return output.seekMap;
+  }
+
+  /**
+   * Returns the start times of segments that split the media described by {@code seekMap}, in
+   * microseconds.
+   *
+   * <p>Every segment starts at a sync sample, except for the first one, which starts at zero.
+   * Segments are at least {@code minSegmentDurationUs} long, so fewer than {@code maxSegmentCount}
+   * segments may be returned.
+   *
+   * @param seekMap The {@link SeekMap} of the media.
+   * @param maxSegmentCount The maximum number of segments.
+   * @param minSegmentDurationUs The minimum duration of a segment, in microseconds.
+   * @return The segment start times, in ascending order. The list contains at least one element.
+   */
+  public static ImmutableList<Long> getSegmentStartTimesUs(
+      SeekMap seekMap, int maxSegmentCount, long minSegmentDurationUs) {
+    checkArgument(maxSegmentCount > 0);
+    checkArgument(minSegmentDurationUs > 0);
+    ImmutableList.Builder<Long> segmentStartTimesUs = new ImmutableList.Builder<>();
+    segmentStartTimesUs.add(0L);
+    long durationUs = seekMap.getDurationUs();
+    if (!seekMap.isSeekable() || durationUs == C.TIME_UNSET) {
+      return segmentStartTimesUs.build();
+    }
+
+    int segmentCount = (int) min(maxSegmentCount, durationUs / minSegmentDurationUs);
+    long lastStartTimeUs = 0;
+    for (int i = 1; i < segmentCount; i++) {
+      long targetTimeUs = durationUs * i / segmentCount;
+      long syncSampleTimeUs = seekMap.getSeekPoints(targetTimeUs).first.timeUs;
+      // Skip sync samples that would make the previous or the last segment too short.
+      if (syncSampleTimeUs - lastStartTimeUs >= minSegmentDurationUs
+          && durationUs - syncSampleTimeUs >= minSegmentDurationUs) {
+        segmentStartTimesUs.add(syncSampleTimeUs);
+        lastStartTimeUs = syncSampleTimeUs;
+      }
+    }
+    return segmentStartTimesUs.build();
+  }
+
+  /**
+   * Writes the samples of MP4 segments to a {@link Muxer}, one segment after the other.
+   *
+   * <p>The tracks of every segment must have the same types and compatible formats as the tracks
+   * of the first segment.
+   *
+   * <p>Every segment after the first one must start with the sync sample at its start time. All
+   * the tracks of a segment are shifted by the same amount, so that this sync sample is written at
+   * its start time and the synchronization of the tracks is preserved. Samples that are not later
+   * than the last sample written for their track by the previous segments are dropped, which
+   * removes the samples that a segment repeats from the end of the previous one.
+   *
+   * <p>The {@code muxer} is not released by this method.
+   *
+   * @param segmentPaths The paths of the MP4 segments.
+   * @param segmentStartTimesUs The start times of the segments in the output, in microseconds.
+   * @param muxer The {@link Muxer} to write the samples to.
+   * @throws IOException If an error occurs reading a segment.
+   * @throws Muxer.MuxerException If an error occurs writing a sample.
+   * @throws IllegalStateException If the segments have incompatible tracks.
+   */
+  public static void concatenate(
+      List<String> segmentPaths, List<Long> segmentStartTimesUs, Muxer muxer)
+      throws IOException, Muxer.MuxerException {
+    checkArgument(segmentPaths.size() == segmentStartTimesUs.size());
+    SparseIntArray trackTypeToMuxerTrackIndex = new SparseIntArray();
+    SparseArray<Format> trackTypeToFormat = new SparseArray<>();
+    SparseLongArray trackTypeToLargestTimeUs = new SparseLongArray();
+    for (int i = 0; i < segmentPaths.size(); i++) {
+      Uri uri = Uri.fromFile(new File(segmentPaths.get(i)));
+      // The first segment isn't clipped at its start, so its timestamps are kept.
+      long timestampOffsetUs =
+          i == 0 ? 0 : segmentStartTimesUs.get(i) - readStartSyncSampleTimeUs(uri);
+      ConcatenatingExtractorOutput output =
+          new ConcatenatingExtractorOutput(
+              muxer,
+              trackTypeToMuxerTrackIndex,
+              trackTypeToFormat,
+              trackTypeToLargestTimeUs,
+              /* isFirstSegment= */ i == 0,
+              timestampOffsetUs);
+      Mp4Extractor extractor = new Mp4Extractor();
+      extractor.init(output);
+      read(extractor, new FileDataSource(), uri, /* stopCondition= */ output::hasFailed);
+      output.throwIfFailed();
+    }
+  }
+
+  /**
+   * Returns the timestamp of the first video sample of the MP4 file at {@code uri}, or of its
+   * earliest first audio sample if it has no video, in microseconds, or zero if there are no such
+   * samples.
+   */
+  private static long readStartSyncSampleTimeUs(Uri uri) throws IOException {
+    StartTimeExtractorOutput output = new StartTimeExtractorOutput();
+    Mp4Extractor extractor = new Mp4Extractor();
+    extractor.init(output);
+    read(extractor, new FileDataSource(), uri, /* stopCondition= */ output::hasStartTime);
+    if (output.videoStartTimeUs != C.TIME_UNSET) {
+      return output.videoStartTimeUs;
+    }
+    return output.startTimeUs != C.TIME_UNSET ? output.startTimeUs : 0;
+  }
+
+  /** Reads from {@code extractor} until {@code stopCondition} is met or the input ends. */
+  private static void read(
+      Extractor extractor, DataSource dataSource, Uri uri, Supplier<Boolean> stopCondition)
+      throws IOException {
+    PositionHolder positionHolder = new PositionHolder();
+    long position = 0;
+    int readResult = Extractor.RESULT_SEEK;
+    while (readResult == Extractor.RESULT_SEEK) {
+      ExtractorInput input = openExtractorInput(dataSource, uri, position);
+      try {
+        readResult = Extractor.RESULT_CONTINUE;
+        while (readResult == Extractor.RESULT_CONTINUE && !stopCondition.get()) {
+          readResult = extractor.read(input, positionHolder);
+        }
+      } finally {
+        DataSourceUtil.closeQuietly(dataSource);
+      }
+      position = positionHolder.position;
+    }
+  }
+
+  private static ExtractorInput openExtractorInput(DataSource dataSource, Uri uri, long position)
+      throws IOException {
+    long length =
+        dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(position).build());
+    if (length != C.LENGTH_UNSET) {
+      length += position;
+    }
+    return new DefaultExtractorInput(dataSource, position, length);
+  }
+
+  private Mp4SegmentUtil() {}
+
+  private static final class SeekMapExtractorOutput implements ExtractorOutput {
+
+    @Nullable public SeekMap seekMap;
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      return new DummyTrackOutput();
+    }
+
+    @Override
+    public void endTracks() {}
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      this.seekMap = seekMap;
+    }
+  }
+
+  /** Records the first sample timestamp of each audio and video track. */
+  private static final class StartTimeExtractorOutput implements ExtractorOutput {
+
+    /** The earliest first sample timestamp of the audio and video tracks. */
+    public long startTimeUs;
+    /** The first sample timestamp of the video tracks. */
+    public long videoStartTimeUs;
+
+    private int trackCount;
+    private int startedTrackCount;
+    private boolean tracksEnded;
+
+    public StartTimeExtractorOutput() {
+      startTimeUs = C.TIME_UNSET;
+      videoStartTimeUs = C.TIME_UNSET;
+    }
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      if (type != C.TRACK_TYPE_AUDIO && type != C.TRACK_TYPE_VIDEO) {
+        return new DummyTrackOutput();
+      }
+      trackCount++;
+      return new StartTimeTrackOutput(/* isVideo= */ type == C.TRACK_TYPE_VIDEO);
+    }
+
+    @Override
+    public void endTracks() {
+      tracksEnded = true;
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {}
+
+    public boolean hasStartTime() {
+      return tracksEnded && startedTrackCount == trackCount;
+    }
+
+    private final class StartTimeTrackOutput implements TrackOutput {
+
+      private final DummyTrackOutput dummyTrackOutput;
+      private final boolean isVideo;
+
+      private boolean started;
+
+      public StartTimeTrackOutput(boolean isVideo) {
+        this.isVideo = isVideo;
+        dummyTrackOutput = new DummyTrackOutput();
+      }
+
+      @Override
+      public void format(Format format) {}
+
+      @Override
+      public int sampleData(
+          DataReader input,
+          int length,
+          boolean allowEndOfInput,
+          @SampleDataPart int sampleDataPart)
+          throws IOException {
+        return dummyTrackOutput.sampleData(input, length, allowEndOfInput, sampleDataPart);
+      }
+
+      @Override
+      public void sampleData(
+          ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+        data.skipBytes(length);
+      }
+
+      @Override
+      public void sampleMetadata(
+          long timeUs,
+          @C.BufferFlags int flags,
+          int size,
+          int offset,
+          @Nullable CryptoData cryptoData) {
+        if (!started) {
+          started = true;
+          startedTrackCount++;
+          startTimeUs = startTimeUs == C.TIME_UNSET ? timeUs : min(startTimeUs, timeUs);
+          if (isVideo) {
+            videoStartTimeUs =
+                videoStartTimeUs == C.TIME_UNSET ? timeUs : min(videoStartTimeUs, timeUs);
+          }
+        }
+      }
+    }
+  }
+
+  /** Forwards the audio and video samples of a segment to a {@link Muxer}. */
+  private static final class ConcatenatingExtractorOutput implements ExtractorOutput {
+
+    private final Muxer muxer;
+    private final SparseIntArray trackTypeToMuxerTrackIndex;
+    private final SparseArray<Format> trackTypeToFormat;
+    private final SparseLongArray trackTypeToLargestTimeUs;
+    private final SparseLongArray previousSegmentsLargestTimesUs;
+    private final boolean isFirstSegment;
+    private final long timestampOffsetUs;
+    private final List<SampleForwardingTrackOutput> trackOutputs;
+
+    @Nullable private Muxer.MuxerException muxerException;
+
+    public ConcatenatingExtractorOutput(
+        Muxer muxer,
+        SparseIntArray trackTypeToMuxerTrackIndex,
+        SparseArray<Format> trackTypeToFormat,
+        SparseLongArray trackTypeToLargestTimeUs,
+        boolean isFirstSegment,
+        long timestampOffsetUs) {
+      this.muxer = muxer;
+      this.trackTypeToMuxerTrackIndex = trackTypeToMuxerTrackIndex;
+      this.trackTypeToFormat = trackTypeToFormat;
+      this.trackTypeToLargestTimeUs = trackTypeToLargestTimeUs;
+      this.isFirstSegment = isFirstSegment;
+      this.timestampOffsetUs = timestampOffsetUs;
+      previousSegmentsLargestTimesUs = trackTypeToLargestTimeUs.clone();
+      trackOutputs = new ArrayList<>();
+    }
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      if (type != C.TRACK_TYPE_AUDIO && type != C.TRACK_TYPE_VIDEO) {
+        return new DummyTrackOutput();
+      }
+      SampleForwardingTrackOutput trackOutput = new SampleForwardingTrackOutput(this, type);
+      trackOutputs.add(trackOutput);
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      // All the tracks are added to the muxer before any sample is written.
+      try {
+        for (int i = 0; i < trackOutputs.size(); i++) {
+          SampleForwardingTrackOutput trackOutput = trackOutputs.get(i);
+          trackOutput.muxerTrackIndex = getMuxerTrackIndex(checkNotNull(trackOutput.format));
+        }
+      } catch (Muxer.MuxerException e) {
+        muxerException = e;
+      }
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {}
+
+    public boolean hasFailed() {
+      return muxerException != null;
+    }
+
+    public void throwIfFailed() throws Muxer.MuxerException {
+      if (muxerException != null) {
+        throw muxerException;
+      }
+    }
+
+    private int getMuxerTrackIndex(Format format) throws Muxer.MuxerException {
+      @C.TrackType int trackType = MimeTypes.getTrackType(format.sampleMimeType);
+      int muxerTrackIndex = trackTypeToMuxerTrackIndex.get(trackType, C.INDEX_UNSET);
+      if (muxerTrackIndex == C.INDEX_UNSET) {
+        checkState(isFirstSegment, "Segment has an additional track of type " + trackType);
+        muxerTrackIndex = muxer.addTrack(format);
+        if (format.metadata != null) {
+          muxer.addMetadata(format.metadata);
+        }
+        trackTypeToMuxerTrackIndex.put(trackType, muxerTrackIndex);
+        trackTypeToFormat.put(trackType, format);
+        return muxerTrackIndex;
+      }
+      Format firstSegmentFormat = trackTypeToFormat.get(trackType);
+      checkState(
+          Util.areEqual(firstSegmentFormat.sampleMimeType, format.sampleMimeType)
+              && firstSegmentFormat.initializationDataEquals(format),
+          "Segment track format is not compatible: " + format);
+      return muxerTrackIndex;
+    }
+
+    private void writeSample(
+        @C.TrackType int trackType, int muxerTrackIndex, ByteBuffer data, long timeUs, int flags) {
+      if (muxerException != null) {
+        return;
+      }
+      long outputTimeUs = timestampOffsetUs + timeUs;
+      // Drop the samples that the previous segment already contains.
+      if (outputTimeUs <= previousSegmentsLargestTimesUs.get(trackType, Long.MIN_VALUE)) {
+        return;
+      }
+      trackTypeToLargestTimeUs.put(
+          trackType, max(trackTypeToLargestTimeUs.get(trackType, Long.MIN_VALUE), outputTimeUs));
+      try {
+        muxer.writeSampleData(muxerTrackIndex, data, outputTimeUs, flags);
+      } catch (Muxer.MuxerException e) {
+        muxerException = e;
+      }
+    }
+  }
+
+  /** Buffers the data of each sample and writes it to the muxer once its metadata is known. */
+  private static final class SampleForwardingTrackOutput implements TrackOutput {
+
+    private final ConcatenatingExtractorOutput output;
+    private final @C.TrackType int trackType;
+
+    @Nullable private Format format;
+    private int muxerTrackIndex;
+    private byte[] sampleData;
+    private int sampleDataLength;
+
+    public SampleForwardingTrackOutput(
+        ConcatenatingExtractorOutput output, @C.TrackType int trackType) {
+      this.output = output;
+      this.trackType = trackType;
+      muxerTrackIndex = C.INDEX_UNSET;
+      sampleData = new byte[0];
+    }
+
+    @Override
+    public void format(Format format) {
+      this.format = format;
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      ensureCapacity(length);
+      int bytesRead = input.read(sampleData, sampleDataLength, length);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        if (allowEndOfInput) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw new EOFException();
+      }
+      sampleDataLength += bytesRead;
+      return bytesRead;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      ensureCapacity(length);
+      data.readBytes(sampleData, sampleDataLength, length);
+      sampleDataLength += length;
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      checkState(muxerTrackIndex != C.INDEX_UNSET);
+      int sampleStart = sampleDataLength - offset - size;
+      output.writeSample(
+          trackType,
+          muxerTrackIndex,
+          ByteBuffer.wrap(sampleData, sampleStart, size),
+          timeUs,
+          flags & C.BUFFER_FLAG_KEY_FRAME);
+
+      // Keep any bytes that belong to later samples.
+      int remainingLength = sampleDataLength - sampleStart - size;
+      System.arraycopy(sampleData, sampleStart + size, sampleData, 0, remainingLength);
+      sampleDataLength = remainingLength;
+    }
+
+    private void ensureCapacity(int additionalLength) {
+      int requiredLength = sampleDataLength + additionalLength;
+      if (requiredLength > sampleData.length) {
+        sampleData = Arrays.copyOf(sampleData, max(requiredLength, sampleData.length * 2));
+      }
+    }
+  }
+}
@@ -52,6 +52,18 @@ public interface Muxer {
     }
   }
 
+  /** A listener for sample data buffers that a muxer no longer needs. */
+  interface SampleBufferReleaseListener {
+
+    /**
+     * Called when the muxer no longer needs a buffer passed to {@link #writeSampleData(int,
+     * ByteBuffer, long, int, SampleBufferReleaseListener)}.
+     *
+     * @param data The sample data buffer, which the caller can reuse.
+     */
+    void onSampleBufferReleased(ByteBuffer data);
+  }
+
   /** Factory for muxers. */
   interface Factory {
     /**
@@ -93,6 +105,38 @@ public interface Muxer {
       int trackIndex, ByteBuffer data, long presentationTimeUs, @C.BufferFlags int flags)
       throws MuxerException;
 
+  /**
+   * Writes the specified sample, transferring ownership of its data to the muxer.
+   *
+   * <p>Muxers that hold samples back before writing them, for example to interleave tracks, can
+   * keep a reference to {@code data} instead of copying it. The caller must not modify or reuse
+   * {@code data} until it is passed to {@code releaseListener}, which happens on the thread
+   * calling the muxer, either during this call or during a later call to this method or to {@link
+   * #release(boolean)}.
+   *
+   * <p>The default implementation calls {@link #writeSampleData(int, ByteBuffer, long, int)} and
+   * then releases {@code data} immediately.
+   *
+   * @param trackIndex The index of the track, previously returned by {@link #addTrack(Format)}.
+   * @param data A buffer containing the sample data to write to the container.
+   * @param presentationTimeUs The presentation time of the sample in microseconds.
+   * @param flags The {@link C.BufferFlags} associated with the data. Only {@link
+   *     C#BUFFER_FLAG_KEY_FRAME} and {@link C#BUFFER_FLAG_END_OF_STREAM} are supported.
+   * @param releaseListener The {@link SampleBufferReleaseListener} to notify once the muxer no
+   *     longer needs {@code data}.
+   * @throws MuxerException If the muxer fails to write the sample.
+   */
+  default void writeSampleData(
+      int trackIndex,
+      ByteBuffer data,
+      long presentationTimeUs,
+      @C.BufferFlags int flags,
+      SampleBufferReleaseListener releaseListener)
+      throws MuxerException {
+    writeSampleData(trackIndex, data, presentationTimeUs, flags);
+    releaseListener.onSampleBufferReleased(data);
+  }
+
   /** Adds {@link Metadata} about the output file. */
   void addMetadata(Metadata metadata);
 
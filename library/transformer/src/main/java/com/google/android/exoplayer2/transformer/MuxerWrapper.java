@@ -158,7 +158,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    *
    * <p>The number of tracks must be {@linkplain #setTrackCount(int) set} before any format is added
    * and all the formats must be added before any samples can be {@linkplain #writeSample(int,
-   * ByteBuffer, boolean, long) written}.
+   * ByteBuffer, boolean, long, Muxer.SampleBufferReleaseListener) written}.
    *
    * <p>{@link Muxer#addMetadata(Metadata)} is called if the {@link Format#metadata} is present.
    *
@@ -213,6 +213,10 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    * @param data The sample to write.
    * @param isKeyFrame Whether the sample is a key frame.
    * @param presentationTimeUs The presentation time of the sample in microseconds.
+   * @param releaseListener A {@link Muxer.SampleBufferReleaseListener} to which {@code data} is
+   *     passed once the muxer no longer needs it, or {@code null} if the muxer must consume {@code
+   *     data} before this method returns. If non-null, the caller must not modify or reuse {@code
+   *     data} after it has been written until it is released.
    * @return Whether the sample was successfully written. {@code false} if samples of other
    *     {@linkplain C.TrackType track types} should be written first to ensure the files track
    *     interleaving is balanced, or if the muxer hasn't {@linkplain #addTrackFormat(Format)
@@ -222,7 +226,11 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    * @throws Muxer.MuxerException If the underlying {@link Muxer} fails to write the sample.
    */
   public boolean writeSample(
-      @C.TrackType int trackType, ByteBuffer data, boolean isKeyFrame, long presentationTimeUs)
+      @C.TrackType int trackType,
+      ByteBuffer data,
+      boolean isKeyFrame,
+      long presentationTimeUs,
+      @Nullable Muxer.SampleBufferReleaseListener releaseListener)
       throws Muxer.MuxerException {
     @Nullable TrackInfo trackInfo = trackTypeToInfo.get(trackType);
     // SparseArray.get() returns null by default if the value is not found.
@@ -240,8 +248,12 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
     checkNotNull(muxer);
     resetAbortTimer();
-    muxer.writeSampleData(
-        trackInfo.index, data, presentationTimeUs, isKeyFrame ? C.BUFFER_FLAG_KEY_FRAME : 0);
+    @C.BufferFlags int flags = isKeyFrame ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    if (releaseListener == null) {
+      muxer.writeSampleData(trackInfo.index, data, presentationTimeUs, flags);
+    } else {
+      muxer.writeSampleData(trackInfo.index, data, presentationTimeUs, flags, releaseListener);
+    }
     DebugTraceUtil.recordMuxerInput(trackType);
     previousTrackType = trackType;
     return true;
@@ -249,7 +261,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
   /**
    * Notifies the muxer that all the samples have been {@linkplain #writeSample(int, ByteBuffer,
-   * boolean, long) written} for a given track.
+   * boolean, long, Muxer.SampleBufferReleaseListener) written} for a given track.
    *
    * @param trackType The {@link C.TrackType}.
    */
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.ChannelMixingMatrix;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link AudioMixingAlgorithm} that splits each mix call into contiguous ranges of frames and
+ * mixes the ranges concurrently using a wrapped algorithm.
+ *
+ * <p>Each output sample is still accumulated by a single thread, in the same order as the calls to
+ * {@link #mix}, so the output is bit-exact with the wrapped algorithm.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class ParallelAudioMixingAlgorithm implements AudioMixingAlgorithm {
+
+  /**
+   * The minimum number of channel mixing operations (frames multiplied by the source and output
+   * channel counts) performed by each task, below which the cost of handing work to another thread
+   * outweighs the gain. A 1024 frame stereo buffer, which is typical of decoded audio, is split
+   * into two tasks.
+   */
+  /* package */ static final int MIN_OPERATIONS_PER_TASK = 2048;
+
+  private final AudioMixingAlgorithm algorithm;
+  private final AudioFormat mixingAudioFormat;
+  private final ExecutorService executorService;
+  private final int parallelism;
+  private final List<Future<?>> pendingTasks;
+
+  /**
+   * Creates an instance.
+   *
+   * @param algorithm The {@link AudioMixingAlgorithm} used to mix each range of frames. It must be
+   *     safe to call from multiple threads at once with disjoint buffer ranges.
+   * @param mixingAudioFormat The format of audio in the mixing buffer.
+   * @param executorService The {@link ExecutorService} on which ranges are mixed, in addition to
+   *     the calling thread.
+   * @param parallelism The maximum number of ranges to mix concurrently, including the range mixed
+   *     on the calling thread.
+   */
+  public ParallelAudioMixingAlgorithm(
+      AudioMixingAlgorithm algorithm,
+      AudioFormat mixingAudioFormat,
+      ExecutorService executorService,
+      int parallelism) {
+    checkArgument(parallelism > 0);
+    this.algorithm = algorithm;
+    this.mixingAudioFormat = mixingAudioFormat;
+    this.executorService = executorService;
+    this.parallelism = parallelism;
+    pendingTasks = new ArrayList<>(parallelism);
+  }
+
+  @Override
+  public boolean supportsSourceAudioFormat(AudioFormat sourceAudioFormat) {
+    return algorithm.supportsSourceAudioFormat(sourceAudioFormat);
+  }
+
+  @Override
+  public ByteBuffer mix(
+      ByteBuffer sourceBuffer,
+      AudioFormat sourceAudioFormat,
+      ChannelMixingMatrix channelMixingMatrix,
+      int frameCount,
+      ByteBuffer mixingBuffer) {
+    long operationCount =
+        (long) frameCount
+            * channelMixingMatrix.getInputChannelCount()
+            * channelMixingMatrix.getOutputChannelCount();
+    int taskCount = (int) min(parallelism, operationCount / MIN_OPERATIONS_PER_TASK);
+    if (taskCount <= 1) {
+      return algorithm.mix(
+          sourceBuffer, sourceAudioFormat, channelMixingMatrix, frameCount, mixingBuffer);
+    }
+    checkArgument(
+        sourceBuffer.remaining() >= frameCount * sourceAudioFormat.bytesPerFrame,
+        "Source buffer is too small.");
+    checkArgument(
+        mixingBuffer.remaining() >= frameCount * mixingAudioFormat.bytesPerFrame,
+        "Mixing buffer is too small.");
+
+    int framesPerTask = frameCount / taskCount;
+    int taskStartFrame = 0;
+    try {
+      for (int i = 0; i < taskCount - 1; i++) {
+        ByteBuffer taskSourceBuffer =
+            slice(sourceBuffer, taskStartFrame, framesPerTask, sourceAudioFormat.bytesPerFrame);
+        ByteBuffer taskMixingBuffer =
+            slice(mixingBuffer, taskStartFrame, framesPerTask, mixingAudioFormat.bytesPerFrame);
+        pendingTasks.add(
+            executorService.submit(
+                () ->
+                    algorithm.mix(
+                        taskSourceBuffer,
+                        sourceAudioFormat,
+                        channelMixingMatrix,
+                        framesPerTask,
+                        taskMixingBuffer)));
+        taskStartFrame += framesPerTask;
+      }
+
+      // Mix the last range on the calling thread, which also absorbs the remainder frames.
+      int lastTaskFrameCount = frameCount - taskStartFrame;
+      algorithm.mix(
+          slice(sourceBuffer, taskStartFrame, lastTaskFrameCount, sourceAudioFormat.bytesPerFrame),
+          sourceAudioFormat,
+          channelMixingMatrix,
+          lastTaskFrameCount,
+          slice(
+              mixingBuffer, taskStartFrame, lastTaskFrameCount, mixingAudioFormat.bytesPerFrame));
+    } finally {
+      // Wait for the submitted tasks even if mixing on this thread failed, so that no task writes
+      // to the mixing buffer after this method returns.
+      awaitPendingTasks();
+    }
+
+    sourceBuffer.position(sourceBuffer.position() + frameCount * sourceAudioFormat.bytesPerFrame);
+    mixingBuffer.position(mixingBuffer.position() + frameCount * mixingAudioFormat.bytesPerFrame);
+    return mixingBuffer;
+  }
+
+  /**
+   * Waits for all the pending tasks, even if one of them fails or the calling thread is
+   * interrupted. The tasks write to the mixing buffer and can't be stopped once started, so
+   * returning earlier would let them write to it after {@link #mix} has returned.
+   */
+  private void awaitPendingTasks() {
+    @Nullable Throwable failure = null;
+    for (int i = 0; i < pendingTasks.size(); i++) {
+      try {
+        // Restores the interrupted status of the thread once the task has completed.
+        Uninterruptibles.getUninterruptibly(pendingTasks.get(i));
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    pendingTasks.clear();
+    if (failure != null) {
+      throw new IllegalStateException(failure);
+    }
+  }
+
+  /**
+   * Returns a view of {@code frameCount} frames of {@code buffer}, starting {@code startFrame}
+   * frames after its position. The position of {@code buffer} is not modified.
+   */
+  private static ByteBuffer slice(
+      ByteBuffer buffer, int startFrame, int frameCount, int bytesPerFrame) {
+    ByteBuffer slice = buffer.duplicate();
+    int position = buffer.position() + startFrame * bytesPerFrame;
+    slice.position(position).limit(position + frameCount * bytesPerFrame);
+    return slice.slice().order(ByteOrder.nativeOrder());
+  }
+}
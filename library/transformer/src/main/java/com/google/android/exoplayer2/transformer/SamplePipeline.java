@@ -88,6 +88,20 @@ import java.util.List;
 
   protected abstract void releaseMuxerInputBuffer() throws ExportException;
 
+  /**
+   * Returns the {@link Muxer.SampleBufferReleaseListener} to which the muxer passes the {@linkplain
+   * DecoderInputBuffer#data data} of {@linkplain #getMuxerInputBuffer() muxer input buffers} once
+   * it no longer needs it, or {@code null} if the muxer must consume the data before {@link
+   * #releaseMuxerInputBuffer()} is called.
+   *
+   * <p>Pipelines returning a non-null listener must not modify or reuse the data of a written
+   * muxer input buffer until it is released to the listener.
+   */
+  @Nullable
+  protected Muxer.SampleBufferReleaseListener getMuxerInputBufferReleaseListener() {
+    return null;
+  }
+
   protected abstract boolean isMuxerInputEnded();
 
   /**
@@ -126,7 +140,8 @@ import java.util.List;
           outputTrackType,
           checkStateNotNull(muxerInputBuffer.data),
           muxerInputBuffer.isKeyFrame(),
-          muxerInputBuffer.timeUs)) {
+          muxerInputBuffer.timeUs,
+          getMuxerInputBufferReleaseListener())) {
         return false;
       }
     } catch (Muxer.MuxerException e) {
@@ -0,0 +1,562 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.transformer.Transformer.PROGRESS_STATE_AVAILABLE;
+import static com.google.android.exoplayer2.transformer.Transformer.PROGRESS_STATE_NOT_STARTED;
+import static com.google.android.exoplayer2.transformer.Transformer.PROGRESS_STATE_WAITING_FOR_AVAILABILITY;
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+import static java.lang.Math.min;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * Exports an {@link EditedMediaItem} by splitting it into segments that are exported concurrently
+ * and then concatenated.
+ *
+ * <p>The input must be an MP4 file. It is split at video sync samples into up to {@linkplain
+ * Builder#setMaxSegmentCount(int) a maximum number of segments}, which are exported by separate
+ * {@link Transformer} instances configured like the one passed to the {@link Builder}. At most
+ * {@linkplain Builder#setMaxConcurrentExports(int) a maximum number of segments} are exported at
+ * the same time, which bounds the number of codecs in use. The exported segments are then
+ * concatenated into the output MP4 file without re-encoding.
+ *
+ * <p>This reduces the export time of long inputs on devices that can run several codecs in
+ * parallel. It is best suited to inputs whose audio can be passed through: each segment is encoded
+ * independently, so transcoded audio may have small discontinuities at segment boundaries. If the
+ * input is not an MP4 file or is too short to be split, it is exported as a single segment.
+ *
+ * <p>The {@link Transformer} listeners are not notified. Instead, the {@linkplain
+ * Builder#setListener(Transformer.Listener) listener} of this instance is notified once the whole
+ * export completes or fails.
+ *
+ * <p>Instances must be accessed from the {@linkplain Transformer#getApplicationLooper() application
+ * thread} of the {@link Transformer}.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class SegmentedExporter {
+
+  /** A builder for {@link SegmentedExporter} instances. */
+  public static final class Builder {
+
+    /** The default maximum number of segments. */
+    public static final int DEFAULT_MAX_SEGMENT_COUNT = 4;
+    /** The default maximum number of segments exported concurrently. */
+    public static final int DEFAULT_MAX_CONCURRENT_EXPORTS = 2;
+    /** The default minimum duration of a segment, in milliseconds. */
+    public static final long DEFAULT_MIN_SEGMENT_DURATION_MS = 10_000;
+
+    private final Context context;
+    private final Transformer transformer;
+    private int maxSegmentCount;
+    private int maxConcurrentExports;
+    private long minSegmentDurationMs;
+    @Nullable private Transformer.Listener listener;
+
+    /**
+     * Creates an instance.
+     *
+     * @param context The {@link Context}.
+     * @param transformer The {@link Transformer} whose configuration is used to export each
+     *     segment. It is not used to export anything itself.
+     */
+    public Builder(Context context, Transformer transformer) {
+      this.context = context.getApplicationContext();
+      this.transformer = transformer;
+      maxSegmentCount = DEFAULT_MAX_SEGMENT_COUNT;
+      maxConcurrentExports = DEFAULT_MAX_CONCURRENT_EXPORTS;
+      minSegmentDurationMs = DEFAULT_MIN_SEGMENT_DURATION_MS;
+    }
+
+    /**
+     * Sets the maximum number of segments the input is split into.
+     *
+     * <p>The default value is {@link #DEFAULT_MAX_SEGMENT_COUNT}.
+     *
+     * @param maxSegmentCount The maximum number of segments. Must be positive.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxSegmentCount(int maxSegmentCount) {
+      checkArgument(maxSegmentCount > 0);
+      this.maxSegmentCount = maxSegmentCount;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of segments exported at the same time.
+     *
+     * <p>Each segment export may use a decoder and an encoder for each track, so this value should
+     * take into account the number of codec instances the device supports concurrently.
+     *
+     * <p>The default value is {@link #DEFAULT_MAX_CONCURRENT_EXPORTS}.
+     *
+     * @param maxConcurrentExports The maximum number of concurrent exports. Must be positive.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxConcurrentExports(int maxConcurrentExports) {
+      checkArgument(maxConcurrentExports > 0);
+      this.maxConcurrentExports = maxConcurrentExports;
+      return this;
+    }
+
+    /**
+     * Sets the minimum duration of a segment, in milliseconds.
+     *
+     * <p>The default value is {@link #DEFAULT_MIN_SEGMENT_DURATION_MS}.
+     *
+     * @param minSegmentDurationMs The minimum segment duration, in milliseconds. Must be positive.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMinSegmentDurationMs(long minSegmentDurationMs) {
+      checkArgument(minSegmentDurationMs > 0);
+      this.minSegmentDurationMs = minSegmentDurationMs;
+      return this;
+    }
+
+    /**
+     * Sets the {@link Transformer.Listener} notified when an export completes or fails.
+     *
+     * @param listener The {@link Transformer.Listener}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setListener(Transformer.Listener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /** Builds a {@link SegmentedExporter} instance. */
+    public SegmentedExporter build() {
+      return new SegmentedExporter(this);
+    }
+  }
+
+  private final Context context;
+  private final Transformer transformer;
+  private final int maxSegmentCount;
+  private final int maxConcurrentExports;
+  private final long minSegmentDurationUs;
+  @Nullable private final Transformer.Listener listener;
+  private final Looper looper;
+  private final Handler applicationHandler;
+
+  @Nullable private SegmentedExport currentExport;
+
+  private SegmentedExporter(Builder builder) {
+    context = builder.context;
+    transformer = builder.transformer;
+    maxSegmentCount = builder.maxSegmentCount;
+    maxConcurrentExports = builder.maxConcurrentExports;
+    minSegmentDurationUs = Util.msToUs(builder.minSegmentDurationMs);
+    listener = builder.listener;
+    looper = transformer.getApplicationLooper();
+    applicationHandler = Util.createHandler(looper, /* callback= */ null);
+  }
+
+  /**
+   * Starts an asynchronous operation to export the given {@link EditedMediaItem}.
+   *
+   * <p>The {@linkplain EditedMediaItem#mediaItem media item} must not be clipped or flattened for
+   * slow motion, and its effects must not depend on the absolute presentation time of samples.
+   *
+   * @param editedMediaItem The {@link EditedMediaItem} to export.
+   * @param path The path to the output file.
+   * @throws IllegalArgumentException If the {@link EditedMediaItem} is not supported.
+   * @throws IllegalStateException If this method is called from the wrong thread.
+   * @throws IllegalStateException If an export is already in progress.
+   */
+  public void start(EditedMediaItem editedMediaItem, String path) {
+    verifyApplicationThread();
+    checkState(currentExport == null, "There is already an export in progress.");
+    checkArgument(
+        editedMediaItem.mediaItem.clippingConfiguration.equals(
+            MediaItem.ClippingConfiguration.UNSET),
+        "Clipped media items are not supported.");
+    checkArgument(
+        !editedMediaItem.flattenForSlowMotion, "Slow motion flattening is not supported.");
+    checkArgument(editedMediaItem.mediaItem.localConfiguration != null);
+    currentExport = new SegmentedExport(editedMediaItem, path);
+    currentExport.start();
+  }
+
+  /**
+   * Returns the current {@link Transformer.ProgressState} and updates {@code progressHolder} with
+   * the current progress if it is {@link Transformer#PROGRESS_STATE_AVAILABLE available}.
+   *
+   * <p>The progress is the average progress of the segment exports.
+   *
+   * @param progressHolder A {@link ProgressHolder}, updated to hold the percentage progress if
+   *     {@link Transformer#PROGRESS_STATE_AVAILABLE available}.
+   * @return The {@link Transformer.ProgressState}.
+   * @throws IllegalStateException If this method is called from the wrong thread.
+   */
+  public @Transformer.ProgressState int getProgress(ProgressHolder progressHolder) {
+    verifyApplicationThread();
+    return currentExport == null
+        ? PROGRESS_STATE_NOT_STARTED
+        : currentExport.getProgress(progressHolder);
+  }
+
+  /**
+   * Cancels the export that is currently in progress, if any.
+   *
+   * <p>The output file (if any) is not deleted, but the intermediate segment files are.
+   *
+   * @throws IllegalStateException If this method is called from the wrong thread.
+   */
+  public void cancel() {
+    verifyApplicationThread();
+    if (currentExport == null) {
+      return;
+    }
+    try {
+      currentExport.release();
+    } finally {
+      currentExport = null;
+    }
+  }
+
+  private void verifyApplicationThread() {
+    if (Looper.myLooper() != looper) {
+      throw new IllegalStateException("SegmentedExporter is accessed on the wrong thread.");
+    }
+  }
+
+  /** The state of a single call to {@link #start}. */
+  private final class SegmentedExport {
+
+    private final EditedMediaItem editedMediaItem;
+    private final Composition composition;
+    private final String outputPath;
+    private final ExecutorService backgroundExecutor;
+    private final ProgressHolder segmentProgressHolder;
+
+    private ImmutableList<Long> segmentStartTimesUs;
+    private ImmutableList<String> segmentPaths;
+    private @NullableType Transformer[] segmentTransformers;
+    private @NullableType ExportResult[] segmentExportResults;
+    private int nextSegmentIndex;
+    private int completedSegmentCount;
+    private volatile boolean released;
+
+    public SegmentedExport(EditedMediaItem editedMediaItem, String outputPath) {
+      this.editedMediaItem = editedMediaItem;
+      this.outputPath = outputPath;
+      composition =
+          new Composition.Builder(
+                  ImmutableList.of(
+                      new EditedMediaItemSequence(ImmutableList.of(editedMediaItem))))
+              .build();
+      backgroundExecutor = Util.newSingleThreadExecutor("ExoPlayer:SegmentedExporter");
+      segmentProgressHolder = new ProgressHolder();
+      segmentStartTimesUs = ImmutableList.of();
+      segmentPaths = ImmutableList.of();
+      segmentTransformers = new Transformer[0];
+      segmentExportResults = new ExportResult[0];
+    }
+
+    public void start() {
+      backgroundExecutor.execute(this::prepareSegments);
+    }
+
+    public @Transformer.ProgressState int getProgress(ProgressHolder progressHolder) {
+      if (segmentTransformers.length == 0) {
+        return PROGRESS_STATE_WAITING_FOR_AVAILABILITY;
+      }
+      int progressSum = 0;
+      for (int i = 0; i < segmentTransformers.length; i++) {
+        @Nullable Transformer segmentTransformer = segmentTransformers[i];
+        if (segmentExportResults[i] != null) {
+          progressSum += 100;
+        } else if (segmentTransformer != null
+            && segmentTransformer.getProgress(segmentProgressHolder) == PROGRESS_STATE_AVAILABLE) {
+          progressSum += segmentProgressHolder.progress;
+        }
+      }
+      // Keep the progress below 100 until the segments are concatenated.
+      progressHolder.progress = min(99, progressSum / segmentTransformers.length);
+      return PROGRESS_STATE_AVAILABLE;
+    }
+
+    public void release() {
+      if (released) {
+        return;
+      }
+      released = true;
+      for (int i = 0; i < segmentTransformers.length; i++) {
+        @Nullable Transformer segmentTransformer = segmentTransformers[i];
+        if (segmentTransformer != null) {
+          segmentTransformer.cancel();
+          segmentTransformers[i] = null;
+        }
+      }
+      if (segmentPaths.size() > 1) {
+        // The segments may still be read by the concatenation, so they are deleted after it ends on
+        // the background thread.
+        ImmutableList<String> segmentPaths = this.segmentPaths;
+        backgroundExecutor.execute(
+            () -> {
+              for (int i = 0; i < segmentPaths.size(); i++) {
+                new File(segmentPaths.get(i)).delete();
+              }
+            });
+      }
+      backgroundExecutor.shutdown();
+    }
+
+    /** Finds the segment start times. Called on the background thread. */
+    private void prepareSegments() {
+      ImmutableList<Long> segmentStartTimesUs;
+      try {
+        @Nullable
+        SeekMap seekMap =
+            Mp4SegmentUtil.readSeekMap(
+                new DefaultDataSource.Factory(context).createDataSource(),
+                checkNotNull(editedMediaItem.mediaItem.localConfiguration).uri);
+        segmentStartTimesUs =
+            seekMap == null
+                ? ImmutableList.of(0L)
+                : Mp4SegmentUtil.getSegmentStartTimesUs(
+                    seekMap, maxSegmentCount, minSegmentDurationUs);
+      } catch (IOException e) {
+        postError(
+            ExportException.createForAssetLoader(e, ExportException.ERROR_CODE_IO_UNSPECIFIED));
+        return;
+      }
+      applicationHandler.post(() -> startSegmentExports(segmentStartTimesUs));
+    }
+
+    private void startSegmentExports(ImmutableList<Long> segmentStartTimesUs) {
+      if (released) {
+        return;
+      }
+      this.segmentStartTimesUs = segmentStartTimesUs;
+      int segmentCount = segmentStartTimesUs.size();
+      if (segmentCount == 1) {
+        segmentPaths = ImmutableList.of(outputPath);
+      } else {
+        ImmutableList.Builder<String> segmentPaths = new ImmutableList.Builder<>();
+        for (int i = 0; i < segmentCount; i++) {
+          segmentPaths.add(outputPath + ".segment" + i);
+        }
+        this.segmentPaths = segmentPaths.build();
+      }
+      segmentTransformers = new Transformer[segmentCount];
+      segmentExportResults = new ExportResult[segmentCount];
+      for (int i = 0; i < min(maxConcurrentExports, segmentCount); i++) {
+        startNextSegmentExport();
+      }
+    }
+
+    private void startNextSegmentExport() {
+      int segmentIndex = nextSegmentIndex++;
+      // Setting the looper gives the builder its own listener set, so that the listeners of the
+      // template transformer are not modified.
+      Transformer segmentTransformer =
+          transformer
+              .buildUpon()
+              .setLooper(looper)
+              .removeAllListeners()
+              .addListener(new SegmentListener(segmentIndex))
+              .build();
+      segmentTransformers[segmentIndex] = segmentTransformer;
+      segmentTransformer.start(
+          createSegmentEditedMediaItem(segmentIndex), segmentPaths.get(segmentIndex));
+    }
+
+    private EditedMediaItem createSegmentEditedMediaItem(int segmentIndex) {
+      boolean isLastSegment = segmentIndex == segmentStartTimesUs.size() - 1;
+      // Clipping positions are in milliseconds, but sync samples may not be. Rounding the start up
+      // makes the segment start at its sync sample rather than at the preceding one, and rounding
+      // the end down makes the previous segment end before that sync sample.
+      MediaItem.ClippingConfiguration clippingConfiguration =
+          new MediaItem.ClippingConfiguration.Builder()
+              .setStartPositionMs(
+                  Util.ceilDivide(segmentStartTimesUs.get(segmentIndex), /* denominator= */ 1000))
+              .setEndPositionMs(
+                  isLastSegment
+                      ? C.TIME_END_OF_SOURCE
+                      : Util.usToMs(segmentStartTimesUs.get(segmentIndex + 1)))
+              .setStartsAtKeyFrame(true)
+              .build();
+      MediaItem mediaItem =
+          editedMediaItem
+              .mediaItem
+              .buildUpon()
+              .setClippingConfiguration(clippingConfiguration)
+              .build();
+      return new EditedMediaItem.Builder(mediaItem)
+          .setRemoveAudio(editedMediaItem.removeAudio)
+          .setRemoveVideo(editedMediaItem.removeVideo)
+          .setEffects(editedMediaItem.effects)
+          .build();
+    }
+
+    private void onSegmentCompleted(int segmentIndex, ExportResult exportResult) {
+      if (released) {
+        return;
+      }
+      segmentTransformers[segmentIndex] = null;
+      segmentExportResults[segmentIndex] = exportResult;
+      completedSegmentCount++;
+      if (nextSegmentIndex < segmentTransformers.length) {
+        startNextSegmentExport();
+      } else if (completedSegmentCount == segmentTransformers.length) {
+        if (segmentTransformers.length == 1) {
+          onCompleted(exportResult);
+        } else {
+          backgroundExecutor.execute(this::concatenateSegments);
+        }
+      }
+    }
+
+    /** Concatenates the exported segments. Called on the background thread. */
+    private void concatenateSegments() {
+      if (released) {
+        return;
+      }
+      try {
+        Muxer muxer = new InAppMuxer.Factory().create(outputPath);
+        boolean concatenated = false;
+        try {
+          Mp4SegmentUtil.concatenate(segmentPaths, segmentStartTimesUs, muxer);
+          concatenated = true;
+        } finally {
+          muxer.release(/* forCancellation= */ !concatenated);
+        }
+      } catch (IOException | Muxer.MuxerException | IllegalStateException e) {
+        postError(ExportException.createForMuxer(e, ExportException.ERROR_CODE_MUXING_FAILED));
+        return;
+      }
+      long fileSizeBytes = new File(outputPath).length();
+      applicationHandler.post(() -> onCompleted(buildExportResult(fileSizeBytes)));
+    }
+
+    private ExportResult buildExportResult(long fileSizeBytes) {
+      ImmutableList.Builder<ExportResult.ProcessedInput> processedInputs =
+          new ImmutableList.Builder<>();
+      long durationMs = 0;
+      int videoFrameCount = 0;
+      long audioBits = 0;
+      long videoBits = 0;
+      boolean hasAudioBitrate = true;
+      boolean hasVideoBitrate = true;
+      for (@Nullable ExportResult segmentExportResult : segmentExportResults) {
+        ExportResult exportResult = checkNotNull(segmentExportResult);
+        processedInputs.addAll(exportResult.processedInputs);
+        videoFrameCount += exportResult.videoFrameCount;
+        if (durationMs != C.TIME_UNSET && exportResult.durationMs != C.TIME_UNSET) {
+          durationMs += exportResult.durationMs;
+          audioBits += (long) exportResult.averageAudioBitrate * exportResult.durationMs;
+          videoBits += (long) exportResult.averageVideoBitrate * exportResult.durationMs;
+        } else {
+          durationMs = C.TIME_UNSET;
+        }
+        hasAudioBitrate &= exportResult.averageAudioBitrate != C.RATE_UNSET_INT;
+        hasVideoBitrate &= exportResult.averageVideoBitrate != C.RATE_UNSET_INT;
+      }
+      boolean hasDuration = durationMs != C.TIME_UNSET && durationMs > 0;
+      return checkNotNull(segmentExportResults[0])
+          .buildUpon()
+          .setProcessedInputs(processedInputs.build())
+          .setDurationMs(durationMs)
+          .setFileSizeBytes(fileSizeBytes > 0 ? fileSizeBytes : C.LENGTH_UNSET)
+          .setVideoFrameCount(videoFrameCount)
+          .setAverageAudioBitrate(
+              hasDuration && hasAudioBitrate ? (int) (audioBits / durationMs) : C.RATE_UNSET_INT)
+          .setAverageVideoBitrate(
+              hasDuration && hasVideoBitrate ? (int) (videoBits / durationMs) : C.RATE_UNSET_INT)
+          .build();
+    }
+
+    private void postError(ExportException exportException) {
+      applicationHandler.post(
+          () ->
+              onError(
+                  new ExportResult.Builder().setExportException(exportException).build(),
+                  exportException));
+    }
+
+    private void onCompleted(ExportResult exportResult) {
+      if (released) {
+        return;
+      }
+      finish();
+      if (listener != null) {
+        listener.onCompleted(composition, exportResult);
+      }
+    }
+
+    private void onError(ExportResult exportResult, ExportException exportException) {
+      if (released) {
+        return;
+      }
+      finish();
+      if (listener != null) {
+        listener.onError(composition, exportResult, exportException);
+      }
+    }
+
+    private void finish() {
+      release();
+      currentExport = null;
+    }
+
+    private final class SegmentListener implements Transformer.Listener {
+
+      private final int segmentIndex;
+
+      public SegmentListener(int segmentIndex) {
+        this.segmentIndex = segmentIndex;
+      }
+
+      @Override
+      public void onCompleted(Composition composition, ExportResult exportResult) {
+        onSegmentCompleted(segmentIndex, exportResult);
+      }
+
+      @Override
+      public void onError(
+          Composition composition, ExportResult exportResult, ExportException exportException) {
+        SegmentedExport.this.onError(exportResult, exportException);
+      }
+    }
+  }
+}
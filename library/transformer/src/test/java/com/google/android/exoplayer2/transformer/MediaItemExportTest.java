@@ -53,9 +53,12 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.util.Pair;
+import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.audio.AudioProcessor;
 import com.google.android.exoplayer2.audio.SonicAudioProcessor;
@@ -67,6 +70,7 @@ import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.testutil.DumpFileAsserts;
@@ -80,12 +84,17 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -840,6 +849,28 @@ public final class MediaItemExportTest {
         context, checkNotNull(testMuxerHolder.testMuxer), getDumpFileName(FILE_AUDIO_VIDEO));
   }
 
+  @Test
+  public void start_withMuxerHoldingSamplesBack_releasesAndReusesLentBuffers() throws Exception {
+    SampleHoldingMuxer.Factory muxerFactory =
+        new SampleHoldingMuxer.Factory(
+            new TestMuxerFactory(testMuxerHolder), /* maxHeldSampleCount= */ 4);
+    Transformer transformer =
+        createTransformerBuilder(testMuxerHolder, /* enableFallback= */ false)
+            .setMuxerFactory(muxerFactory)
+            .build();
+    MediaItem mediaItem = MediaItem.fromUri(ASSET_URI_PREFIX + FILE_AUDIO_VIDEO);
+
+    transformer.start(mediaItem, outputPath);
+    TransformerTestRunner.runLooper(transformer);
+
+    SampleHoldingMuxer muxer = checkNotNull(muxerFactory.muxer);
+    assertThat(muxer.lentSampleCount).isGreaterThan(0);
+    assertThat(muxer.releasedSampleCount).isEqualTo(muxer.lentSampleCount);
+    assertThat(muxer.lentBuffers.size()).isLessThan(muxer.lentSampleCount);
+    DumpFileAsserts.assertOutput(
+        context, checkNotNull(testMuxerHolder.testMuxer), getDumpFileName(FILE_AUDIO_VIDEO));
+  }
+
   @Test
   public void start_afterCancellation_completesSuccessfully() throws Exception {
     Transformer transformer =
@@ -1199,6 +1230,105 @@ public final class MediaItemExportTest {
     assertThat(illegalStateException.get()).isNotNull();
   }
 
+  /**
+   * A {@link Muxer} that keeps up to a given number of lent sample buffers before releasing them,
+   * like a muxer that interleaves samples, and records which buffers it was lent.
+   */
+  private static final class SampleHoldingMuxer implements Muxer {
+
+    public static final class Factory implements Muxer.Factory {
+
+      private final Muxer.Factory muxerFactory;
+      private final int maxHeldSampleCount;
+
+      @Nullable public SampleHoldingMuxer muxer;
+
+      public Factory(Muxer.Factory muxerFactory, int maxHeldSampleCount) {
+        this.muxerFactory = muxerFactory;
+        this.maxHeldSampleCount = maxHeldSampleCount;
+      }
+
+      @Override
+      public Muxer create(String path) throws MuxerException {
+        muxer = new SampleHoldingMuxer(muxerFactory.create(path), maxHeldSampleCount);
+        return muxer;
+      }
+
+      @Override
+      public ImmutableList<String> getSupportedSampleMimeTypes(@C.TrackType int trackType) {
+        return muxerFactory.getSupportedSampleMimeTypes(trackType);
+      }
+    }
+
+    private final Muxer muxer;
+    private final int maxHeldSampleCount;
+    private final ArrayDeque<Pair<ByteBuffer, SampleBufferReleaseListener>> heldSamples;
+
+    public final Set<ByteBuffer> lentBuffers;
+    public int lentSampleCount;
+    public int releasedSampleCount;
+
+    private SampleHoldingMuxer(Muxer muxer, int maxHeldSampleCount) {
+      this.muxer = muxer;
+      this.maxHeldSampleCount = maxHeldSampleCount;
+      heldSamples = new ArrayDeque<>();
+      lentBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    @Override
+    public int addTrack(Format format) throws MuxerException {
+      return muxer.addTrack(format);
+    }
+
+    @Override
+    public void writeSampleData(
+        int trackIndex, ByteBuffer data, long presentationTimeUs, @C.BufferFlags int flags)
+        throws MuxerException {
+      muxer.writeSampleData(trackIndex, data, presentationTimeUs, flags);
+    }
+
+    @Override
+    public void writeSampleData(
+        int trackIndex,
+        ByteBuffer data,
+        long presentationTimeUs,
+        @C.BufferFlags int flags,
+        SampleBufferReleaseListener releaseListener)
+        throws MuxerException {
+      lentSampleCount++;
+      lentBuffers.add(data);
+      muxer.writeSampleData(trackIndex, data, presentationTimeUs, flags);
+      heldSamples.add(Pair.create(data, releaseListener));
+      if (heldSamples.size() > maxHeldSampleCount) {
+        releaseHeldSample();
+      }
+    }
+
+    @Override
+    public void addMetadata(Metadata metadata) {
+      muxer.addMetadata(metadata);
+    }
+
+    @Override
+    public void release(boolean forCancellation) throws MuxerException {
+      while (!heldSamples.isEmpty()) {
+        releaseHeldSample();
+      }
+      muxer.release(forCancellation);
+    }
+
+    @Override
+    public long getMaxDelayBetweenSamplesMs() {
+      return muxer.getMaxDelayBetweenSamplesMs();
+    }
+
+    private void releaseHeldSample() {
+      Pair<ByteBuffer, SampleBufferReleaseListener> heldSample = heldSamples.remove();
+      releasedSampleCount++;
+      heldSample.second.onSampleBufferReleased(heldSample.first);
+    }
+  }
+
   private static final class SlowExtractorsFactory implements ExtractorsFactory {
 
     private final long delayBetweenReadsMs;
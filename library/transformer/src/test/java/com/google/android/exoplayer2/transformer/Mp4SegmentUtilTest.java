@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link Mp4SegmentUtil}. */
+@RunWith(AndroidJUnit4.class)
+public class Mp4SegmentUtilTest {
+
+  @Test
+  public void getSegmentStartTimesUs_snapsToPrecedingSyncSamples() {
+    SeekMap seekMap =
+        new IndexSeekMap(
+            /* positions= */ new long[] {0, 100, 200, 300, 400},
+            /* timesUs= */ new long[] {0, 9_000_000, 19_000_000, 28_000_000, 35_000_000},
+            /* durationUs= */ 40_000_000);
+
+    assertThat(
+            Mp4SegmentUtil.getSegmentStartTimesUs(
+                seekMap, /* maxSegmentCount= */ 4, /* minSegmentDurationUs= */ 5_000_000))
+        .containsExactly(0L, 9_000_000L, 19_000_000L, 28_000_000L)
+        .inOrder();
+  }
+
+  @Test
+  public void getSegmentStartTimesUs_withCloseSyncSamples_skipsShortSegments() {
+    SeekMap seekMap =
+        new IndexSeekMap(
+            /* positions= */ new long[] {0, 100},
+            /* timesUs= */ new long[] {0, 1_000_000},
+            /* durationUs= */ 40_000_000);
+
+    assertThat(
+            Mp4SegmentUtil.getSegmentStartTimesUs(
+                seekMap, /* maxSegmentCount= */ 4, /* minSegmentDurationUs= */ 5_000_000))
+        .containsExactly(0L);
+  }
+
+  @Test
+  public void getSegmentStartTimesUs_withShortDuration_returnsSingleSegment() {
+    SeekMap seekMap =
+        new IndexSeekMap(
+            /* positions= */ new long[] {0, 100, 200},
+            /* timesUs= */ new long[] {0, 3_000_000, 6_000_000},
+            /* durationUs= */ 9_000_000);
+
+    assertThat(
+            Mp4SegmentUtil.getSegmentStartTimesUs(
+                seekMap, /* maxSegmentCount= */ 4, /* minSegmentDurationUs= */ 5_000_000))
+        .containsExactly(0L);
+  }
+
+  @Test
+  public void getSegmentStartTimesUs_unseekable_returnsSingleSegment() {
+    SeekMap seekMap = new SeekMap.Unseekable(/* durationUs= */ 60_000_000);
+
+    assertThat(
+            Mp4SegmentUtil.getSegmentStartTimesUs(
+                seekMap, /* maxSegmentCount= */ 4, /* minSegmentDurationUs= */ 5_000_000))
+        .containsExactly(0L);
+  }
+
+  @Test
+  public void getSegmentStartTimesUs_unknownDuration_returnsSingleSegment() {
+    SeekMap seekMap =
+        new IndexSeekMap(
+            /* positions= */ new long[] {0, 100},
+            /* timesUs= */ new long[] {0, 20_000_000},
+            /* durationUs= */ C.TIME_UNSET);
+
+    assertThat(
+            Mp4SegmentUtil.getSegmentStartTimesUs(
+                seekMap, /* maxSegmentCount= */ 4, /* minSegmentDurationUs= */ 5_000_000))
+        .containsExactly(0L);
+  }
+}
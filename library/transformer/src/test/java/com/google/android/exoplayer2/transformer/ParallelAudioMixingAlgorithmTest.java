@@ -0,0 +1,344 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.testutil.TestUtil.createByteBuffer;
+import static com.google.android.exoplayer2.testutil.TestUtil.createFloatArray;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.ChannelMixingMatrix;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ParallelAudioMixingAlgorithm}. */
+@RunWith(AndroidJUnit4.class)
+public final class ParallelAudioMixingAlgorithmTest {
+
+  private static final AudioFormat AUDIO_FORMAT_STEREO_PCM_FLOAT =
+      new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 2, C.ENCODING_PCM_FLOAT);
+  private static final AudioFormat AUDIO_FORMAT_MONO_PCM_FLOAT =
+      new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 1, C.ENCODING_PCM_FLOAT);
+  private static final AudioFormat AUDIO_FORMAT_STEREO_PCM_16BIT =
+      new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 2, C.ENCODING_PCM_16BIT);
+
+  private final ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+  @After
+  public void tearDown() {
+    executorService.shutdown();
+  }
+
+  @Test
+  public void mix_floatSourcesIntoFloat_matchesSingleThreadedOutput() {
+    assertMixMatchesSingleThreadedOutput(
+        AUDIO_FORMAT_STEREO_PCM_FLOAT,
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 2, /* outputChannelCount= */ 2)
+            .scaleBy(0.7f),
+        /* frameCount= */ 10_007);
+  }
+
+  @Test
+  public void mix_monoFloatSourcesIntoStereoFloat_matchesSingleThreadedOutput() {
+    assertMixMatchesSingleThreadedOutput(
+        AUDIO_FORMAT_MONO_PCM_FLOAT,
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 1, /* outputChannelCount= */ 2),
+        /* frameCount= */ 5_000);
+  }
+
+  @Test
+  public void mix_s16SourcesIntoFloat_matchesSingleThreadedOutput() {
+    assertMixMatchesSingleThreadedOutput(
+        AUDIO_FORMAT_STEREO_PCM_16BIT,
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 2, /* outputChannelCount= */ 2),
+        /* frameCount= */ 4_099);
+  }
+
+  @Test
+  public void mix_withFewFrames_mixesOnCallingThreadAndAdvancesBuffers() {
+    ParallelAudioMixingAlgorithm algorithm =
+        new ParallelAudioMixingAlgorithm(
+            new FloatAudioMixingAlgorithm(AUDIO_FORMAT_STEREO_PCM_FLOAT),
+            AUDIO_FORMAT_STEREO_PCM_FLOAT,
+            executorService,
+            /* parallelism= */ 4);
+    ByteBuffer sourceBuffer = createByteBuffer(new float[] {0.25f, 0.5f, -0.25f, -0.5f});
+    ByteBuffer mixingBuffer = createByteBuffer(new float[] {0.25f, 0.25f, 0.25f, 0.25f});
+
+    algorithm.mix(
+        sourceBuffer,
+        AUDIO_FORMAT_STEREO_PCM_FLOAT,
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 2, /* outputChannelCount= */ 2),
+        /* frameCount= */ 2,
+        mixingBuffer);
+
+    assertThat(sourceBuffer.remaining()).isEqualTo(0);
+    assertThat(mixingBuffer.remaining()).isEqualTo(0);
+    mixingBuffer.rewind();
+    assertThat(createFloatArray(mixingBuffer)).isEqualTo(new float[] {0.5f, 0.75f, 0f, -0.25f});
+  }
+
+  @Test
+  public void mix_stereoBufferOf1024Frames_mixesOnSeveralThreads() {
+    Set<Thread> mixingThreads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    FloatAudioMixingAlgorithm floatAlgorithm =
+        new FloatAudioMixingAlgorithm(AUDIO_FORMAT_STEREO_PCM_FLOAT);
+    AudioMixingAlgorithm threadRecordingAlgorithm =
+        new AudioMixingAlgorithm() {
+          @Override
+          public boolean supportsSourceAudioFormat(AudioFormat sourceAudioFormat) {
+            return floatAlgorithm.supportsSourceAudioFormat(sourceAudioFormat);
+          }
+
+          @Override
+          public ByteBuffer mix(
+              ByteBuffer sourceBuffer,
+              AudioFormat sourceAudioFormat,
+              ChannelMixingMatrix channelMixingMatrix,
+              int frameCount,
+              ByteBuffer mixingBuffer) {
+            mixingThreads.add(Thread.currentThread());
+            return floatAlgorithm.mix(
+                sourceBuffer, sourceAudioFormat, channelMixingMatrix, frameCount, mixingBuffer);
+          }
+        };
+    ParallelAudioMixingAlgorithm algorithm =
+        new ParallelAudioMixingAlgorithm(
+            threadRecordingAlgorithm,
+            AUDIO_FORMAT_STEREO_PCM_FLOAT,
+            executorService,
+            /* parallelism= */ 4);
+    Random random = new Random(/* seed= */ 0);
+
+    // Decoders typically output 1024 frames per buffer.
+    algorithm.mix(
+        createSourceBuffer(random, AUDIO_FORMAT_STEREO_PCM_FLOAT, /* frameCount= */ 1024),
+        AUDIO_FORMAT_STEREO_PCM_FLOAT,
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 2, /* outputChannelCount= */ 2),
+        /* frameCount= */ 1024,
+        createByteBuffer(new float[1024 * 2]));
+
+    assertThat(mixingThreads).hasSize(2);
+  }
+
+  @Test
+  public void mix_whenMixingOnCallingThreadFails_waitsForOtherTasks() {
+    AtomicInteger completedTaskCount = new AtomicInteger();
+    Thread callingThread = Thread.currentThread();
+    AudioMixingAlgorithm failingAlgorithm =
+        new AudioMixingAlgorithm() {
+          @Override
+          public boolean supportsSourceAudioFormat(AudioFormat sourceAudioFormat) {
+            return true;
+          }
+
+          @Override
+          public ByteBuffer mix(
+              ByteBuffer sourceBuffer,
+              AudioFormat sourceAudioFormat,
+              ChannelMixingMatrix channelMixingMatrix,
+              int frameCount,
+              ByteBuffer mixingBuffer) {
+            if (Thread.currentThread() == callingThread) {
+              throw new IllegalStateException();
+            }
+            try {
+              Thread.sleep(/* millis= */ 50);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            completedTaskCount.incrementAndGet();
+            return mixingBuffer;
+          }
+        };
+    ParallelAudioMixingAlgorithm algorithm =
+        new ParallelAudioMixingAlgorithm(
+            failingAlgorithm, AUDIO_FORMAT_STEREO_PCM_FLOAT, executorService, /* parallelism= */ 4);
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            algorithm.mix(
+                createByteBuffer(new float[4096 * 2]),
+                AUDIO_FORMAT_STEREO_PCM_FLOAT,
+                ChannelMixingMatrix.create(/* inputChannelCount= */ 2, /* outputChannelCount= */ 2),
+                /* frameCount= */ 4096,
+                createByteBuffer(new float[4096 * 2])));
+
+    assertThat(completedTaskCount.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void mix_whenTaskFails_waitsForOtherTasks() {
+    AtomicInteger completedTaskCount = new AtomicInteger();
+    AtomicBoolean taskFailed = new AtomicBoolean();
+    Thread callingThread = Thread.currentThread();
+    AudioMixingAlgorithm failingAlgorithm =
+        new AudioMixingAlgorithm() {
+          @Override
+          public boolean supportsSourceAudioFormat(AudioFormat sourceAudioFormat) {
+            return true;
+          }
+
+          @Override
+          public ByteBuffer mix(
+              ByteBuffer sourceBuffer,
+              AudioFormat sourceAudioFormat,
+              ChannelMixingMatrix channelMixingMatrix,
+              int frameCount,
+              ByteBuffer mixingBuffer) {
+            if (Thread.currentThread() != callingThread && taskFailed.compareAndSet(false, true)) {
+              throw new IllegalStateException();
+            }
+            try {
+              Thread.sleep(/* millis= */ 50);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            completedTaskCount.incrementAndGet();
+            return mixingBuffer;
+          }
+        };
+    ParallelAudioMixingAlgorithm algorithm =
+        new ParallelAudioMixingAlgorithm(
+            failingAlgorithm, AUDIO_FORMAT_STEREO_PCM_FLOAT, executorService, /* parallelism= */ 4);
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            algorithm.mix(
+                createByteBuffer(new float[4096 * 2]),
+                AUDIO_FORMAT_STEREO_PCM_FLOAT,
+                ChannelMixingMatrix.create(/* inputChannelCount= */ 2, /* outputChannelCount= */ 2),
+                /* frameCount= */ 4096,
+                createByteBuffer(new float[4096 * 2])));
+
+    assertThat(completedTaskCount.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void mix_whenCallingThreadInterrupted_waitsForTasksAndKeepsInterruptedStatus() {
+    AtomicInteger completedTaskCount = new AtomicInteger();
+    Thread callingThread = Thread.currentThread();
+    AudioMixingAlgorithm slowAlgorithm =
+        new AudioMixingAlgorithm() {
+          @Override
+          public boolean supportsSourceAudioFormat(AudioFormat sourceAudioFormat) {
+            return true;
+          }
+
+          @Override
+          public ByteBuffer mix(
+              ByteBuffer sourceBuffer,
+              AudioFormat sourceAudioFormat,
+              ChannelMixingMatrix channelMixingMatrix,
+              int frameCount,
+              ByteBuffer mixingBuffer) {
+            if (Thread.currentThread() != callingThread) {
+              try {
+                Thread.sleep(/* millis= */ 50);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            completedTaskCount.incrementAndGet();
+            return mixingBuffer;
+          }
+        };
+    ParallelAudioMixingAlgorithm algorithm =
+        new ParallelAudioMixingAlgorithm(
+            slowAlgorithm, AUDIO_FORMAT_STEREO_PCM_FLOAT, executorService, /* parallelism= */ 4);
+
+    callingThread.interrupt();
+    algorithm.mix(
+        createByteBuffer(new float[4096 * 2]),
+        AUDIO_FORMAT_STEREO_PCM_FLOAT,
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 2, /* outputChannelCount= */ 2),
+        /* frameCount= */ 4096,
+        createByteBuffer(new float[4096 * 2]));
+
+    assertThat(completedTaskCount.get()).isEqualTo(4);
+    // Also clears the interrupted status for the following tests.
+    assertThat(Thread.interrupted()).isTrue();
+  }
+
+  private void assertMixMatchesSingleThreadedOutput(
+      AudioFormat sourceAudioFormat, ChannelMixingMatrix channelMixingMatrix, int frameCount) {
+    FloatAudioMixingAlgorithm singleThreadedAlgorithm =
+        new FloatAudioMixingAlgorithm(AUDIO_FORMAT_STEREO_PCM_FLOAT);
+    ParallelAudioMixingAlgorithm parallelAlgorithm =
+        new ParallelAudioMixingAlgorithm(
+            singleThreadedAlgorithm,
+            AUDIO_FORMAT_STEREO_PCM_FLOAT,
+            executorService,
+            /* parallelism= */ 4);
+    Random random = new Random(/* seed= */ 0);
+    float[] initialMix = createRandomFloats(random, frameCount * 2);
+    ByteBuffer expectedMixingBuffer = createByteBuffer(initialMix);
+    ByteBuffer actualMixingBuffer = createByteBuffer(initialMix);
+
+    // Mix several sources to check that accumulation order is preserved.
+    for (int i = 0; i < 3; i++) {
+      ByteBuffer sourceBuffer = createSourceBuffer(random, sourceAudioFormat, frameCount);
+      ByteBuffer sourceBufferCopy = sourceBuffer.duplicate();
+      singleThreadedAlgorithm.mix(
+          sourceBuffer, sourceAudioFormat, channelMixingMatrix, frameCount, expectedMixingBuffer);
+      parallelAlgorithm.mix(
+          sourceBufferCopy, sourceAudioFormat, channelMixingMatrix, frameCount, actualMixingBuffer);
+      assertThat(sourceBufferCopy.position()).isEqualTo(sourceBuffer.position());
+      assertThat(actualMixingBuffer.position()).isEqualTo(expectedMixingBuffer.position());
+      expectedMixingBuffer.rewind();
+      actualMixingBuffer.rewind();
+    }
+
+    assertThat(createFloatArray(actualMixingBuffer))
+        .isEqualTo(createFloatArray(expectedMixingBuffer));
+  }
+
+  private static ByteBuffer createSourceBuffer(
+      Random random, AudioFormat audioFormat, int frameCount) {
+    int sampleCount = frameCount * audioFormat.channelCount;
+    if (audioFormat.encoding == C.ENCODING_PCM_16BIT) {
+      short[] samples = new short[sampleCount];
+      for (int i = 0; i < sampleCount; i++) {
+        samples[i] = (short) random.nextInt();
+      }
+      return createByteBuffer(samples);
+    }
+    return createByteBuffer(createRandomFloats(random, sampleCount));
+  }
+
+  private static float[] createRandomFloats(Random random, int count) {
+    float[] values = new float[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = random.nextFloat() * 2 - 1;
+    }
+    return values;
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.robolectric.RobolectricUtil.runLooperUntil;
+import static com.google.android.exoplayer2.transformer.TestUtil.ASSET_URI_PREFIX;
+import static com.google.android.exoplayer2.transformer.TestUtil.FILE_AUDIO_VIDEO_INCREASING_TIMESTAMPS_15S;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SegmentedExporter}. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentedExporterTest {
+
+  private static final int SEGMENT_COUNT = 4;
+
+  private Context context;
+  private String outputPath;
+  private Transformer transformer;
+
+  @Before
+  public void setUp() throws Exception {
+    context = ApplicationProvider.getApplicationContext();
+    outputPath = Util.createTempFile(context, "SegmentedExporterTest").getPath();
+    transformer =
+        new Transformer.Builder(context)
+            .setClock(new FakeClock(/* isAutoAdvancing= */ true))
+            .setMuxerFactory(new InAppMuxer.Factory())
+            .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    new File(outputPath).delete();
+  }
+
+  @Test
+  public void start_withAudioAndVideo_outputsSameSamplesAsInput() throws Exception {
+    AtomicReference<@NullableType ExportResult> exportResult = new AtomicReference<>();
+    SegmentedExporter segmentedExporter =
+        new SegmentedExporter.Builder(context, transformer)
+            .setMaxSegmentCount(SEGMENT_COUNT)
+            .setMinSegmentDurationMs(1_000)
+            .setListener(createListener(exportResult))
+            .build();
+
+    segmentedExporter.start(
+        new EditedMediaItem.Builder(
+                MediaItem.fromUri(
+                    Uri.parse(ASSET_URI_PREFIX + FILE_AUDIO_VIDEO_INCREASING_TIMESTAMPS_15S)))
+            .build(),
+        outputPath);
+    runLooperUntil(transformer.getApplicationLooper(), () -> exportResult.get() != null);
+
+    assertThat(checkNotNull(exportResult.get()).exportException).isNull();
+    FakeExtractorOutput input =
+        com.google.android.exoplayer2.testutil.TestUtil.extractAllSamplesFromFile(
+            new Mp4Extractor(), context, "media/" + FILE_AUDIO_VIDEO_INCREASING_TIMESTAMPS_15S);
+    FakeExtractorOutput output =
+        com.google.android.exoplayer2.testutil.TestUtil.extractAllSamplesFromFilePath(
+            new Mp4Extractor(), outputPath);
+    assertThat(output.trackOutputs.size()).isEqualTo(input.trackOutputs.size());
+    for (int i = 0; i < output.trackOutputs.size(); i++) {
+      FakeTrackOutput outputTrack = output.trackOutputs.valueAt(i);
+      FakeTrackOutput inputTrack = getTrackWithSameMimeType(input, outputTrack);
+      assertThat(getSampleTimesUs(outputTrack)).isEqualTo(getSampleTimesUs(inputTrack));
+    }
+  }
+
+  @Test
+  public void start_withAudioAndVideo_deletesSegmentFiles() throws Exception {
+    AtomicReference<@NullableType ExportResult> exportResult = new AtomicReference<>();
+    SegmentedExporter segmentedExporter =
+        new SegmentedExporter.Builder(context, transformer)
+            .setMaxSegmentCount(SEGMENT_COUNT)
+            .setMinSegmentDurationMs(1_000)
+            .setListener(createListener(exportResult))
+            .build();
+
+    segmentedExporter.start(
+        new EditedMediaItem.Builder(
+                MediaItem.fromUri(
+                    Uri.parse(ASSET_URI_PREFIX + FILE_AUDIO_VIDEO_INCREASING_TIMESTAMPS_15S)))
+            .build(),
+        outputPath);
+    runLooperUntil(
+        transformer.getApplicationLooper(),
+        () -> exportResult.get() != null && !segmentFilesExist());
+
+    assertThat(checkNotNull(exportResult.get()).exportException).isNull();
+  }
+
+  @Test
+  public void cancel_duringExport_deletesSegmentFilesAndDoesNotNotifyListener() throws Exception {
+    AtomicReference<@NullableType ExportResult> exportResult = new AtomicReference<>();
+    SegmentedExporter segmentedExporter =
+        new SegmentedExporter.Builder(context, transformer)
+            .setMaxSegmentCount(SEGMENT_COUNT)
+            .setMinSegmentDurationMs(1_000)
+            .setListener(createListener(exportResult))
+            .build();
+    ProgressHolder progressHolder = new ProgressHolder();
+
+    segmentedExporter.start(
+        new EditedMediaItem.Builder(
+                MediaItem.fromUri(
+                    Uri.parse(ASSET_URI_PREFIX + FILE_AUDIO_VIDEO_INCREASING_TIMESTAMPS_15S)))
+            .build(),
+        outputPath);
+    runLooperUntil(
+        transformer.getApplicationLooper(),
+        () ->
+            segmentedExporter.getProgress(progressHolder)
+                    == Transformer.PROGRESS_STATE_AVAILABLE
+                && segmentFilesExist());
+    segmentedExporter.cancel();
+    runLooperUntil(transformer.getApplicationLooper(), () -> !segmentFilesExist());
+
+    assertThat(exportResult.get()).isNull();
+    assertThat(segmentedExporter.getProgress(progressHolder))
+        .isEqualTo(Transformer.PROGRESS_STATE_NOT_STARTED);
+  }
+
+  private boolean segmentFilesExist() {
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      if (new File(outputPath + ".segment" + i).exists()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<Long> getSampleTimesUs(FakeTrackOutput trackOutput) {
+    List<Long> sampleTimesUs = new ArrayList<>();
+    for (int i = 0; i < trackOutput.getSampleCount(); i++) {
+      sampleTimesUs.add(trackOutput.getSampleTimeUs(i));
+    }
+    return sampleTimesUs;
+  }
+
+  private static FakeTrackOutput getTrackWithSameMimeType(
+      FakeExtractorOutput extractorOutput, FakeTrackOutput trackOutput) {
+    String sampleMimeType = checkNotNull(trackOutput.lastFormat).sampleMimeType;
+    for (int i = 0; i < extractorOutput.trackOutputs.size(); i++) {
+      FakeTrackOutput otherTrackOutput = extractorOutput.trackOutputs.valueAt(i);
+      if (Util.areEqual(
+          checkNotNull(otherTrackOutput.lastFormat).sampleMimeType, sampleMimeType)) {
+        return otherTrackOutput;
+      }
+    }
+    throw new AssertionError("No track with MIME type " + sampleMimeType);
+  }
+
+  private static Transformer.Listener createListener(
+      AtomicReference<@NullableType ExportResult> exportResult) {
+    return new Transformer.Listener() {
+      @Override
+      public void onCompleted(Composition composition, ExportResult result) {
+        exportResult.set(result);
+      }
+
+      @Override
+      public void onError(
+          Composition composition, ExportResult result, ExportException exportException) {
+        exportResult.set(result);
+      }
+    };
+  }
+}
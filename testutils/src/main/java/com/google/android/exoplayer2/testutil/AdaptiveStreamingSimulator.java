@@ -0,0 +1,480 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.min;
+
+import android.os.Handler;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.experimental.BandwidthEstimator;
+import com.google.android.exoplayer2.upstream.experimental.SplitParallelSampleBandwidthEstimator;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Simulates chunk by chunk adaptive streaming of a {@link FakeAdaptiveDataSet}, the data model of
+ * {@link FakeAdaptiveMediaSource}, over a network with varying throughput. This compares {@link
+ * ExoTrackSelection} implementations offline, without a player.
+ *
+ * <p>Chunks are loaded one at a time while the buffer is below the maximum buffer duration. The
+ * track selection is updated before each chunk with the playback position, the buffered duration,
+ * the queue of buffered chunks and iterators over the upcoming chunks of all tracks. The bandwidth
+ * meter passed to the selection is backed by a {@link BandwidthEstimator} that observes the
+ * simulated transfers. Playback starts or resumes once enough media is buffered, at normal speed.
+ */
+public final class AdaptiveStreamingSimulator {
+
+  /** The result of a simulation. */
+  public static final class Result {
+
+    /** The index in the track group of the track selected for each chunk. */
+    public final ImmutableList<Integer> selectedTrackIndices;
+
+    /** The time until playback started, in milliseconds. */
+    public final long startupDelayMs;
+
+    /** The number of times playback stalled after it started. */
+    public final int rebufferCount;
+
+    /** The total duration of the stalls after playback started, in milliseconds. */
+    public final long rebufferDurationMs;
+
+    /** The number of chunks whose track differs from the previous chunk's. */
+    public final int switchCount;
+
+    /** The average bitrate of the selected tracks over all chunks, in bits per second. */
+    public final long averageBitrate;
+
+    private Result(
+        ImmutableList<Integer> selectedTrackIndices,
+        long startupDelayMs,
+        int rebufferCount,
+        long rebufferDurationMs,
+        int switchCount,
+        long averageBitrate) {
+      this.selectedTrackIndices = selectedTrackIndices;
+      this.startupDelayMs = startupDelayMs;
+      this.rebufferCount = rebufferCount;
+      this.rebufferDurationMs = rebufferDurationMs;
+      this.switchCount = switchCount;
+      this.averageBitrate = averageBitrate;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.US,
+          "startupDelayMs=%d, rebuffers=%d, rebufferDurationMs=%d, switches=%d, averageBitrate=%d",
+          startupDelayMs,
+          rebufferCount,
+          rebufferDurationMs,
+          switchCount,
+          averageBitrate);
+    }
+  }
+
+  /** Builder for {@link AdaptiveStreamingSimulator} instances. */
+  public static final class Builder {
+
+    private final TrackGroup trackGroup;
+    private final FakeAdaptiveDataSet dataSet;
+    private long[] throughputSegmentDurationsMs;
+    private long[] throughputSegmentBitrates;
+    private long timeToFirstByteMs;
+    private long initialBitrateEstimate;
+    private long maxBufferMs;
+    private long bufferForPlaybackMs;
+    private long bufferForPlaybackAfterRebufferMs;
+    private Function<Clock, BandwidthEstimator> bandwidthEstimatorFactory;
+
+    /**
+     * Creates a builder.
+     *
+     * @param trackGroup The {@link TrackGroup} of the streamed tracks.
+     * @param dataSet The {@link FakeAdaptiveDataSet} created for the {@code trackGroup}.
+     */
+    public Builder(TrackGroup trackGroup, FakeAdaptiveDataSet dataSet) {
+      this.trackGroup = trackGroup;
+      this.dataSet = dataSet;
+      throughputSegmentDurationsMs = new long[] {1000};
+      throughputSegmentBitrates = new long[] {1_000_000};
+      initialBitrateEstimate = 1_000_000;
+      maxBufferMs = DefaultLoadControl.DEFAULT_MAX_BUFFER_MS;
+      bufferForPlaybackMs = DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+      bufferForPlaybackAfterRebufferMs =
+          DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS;
+      bandwidthEstimatorFactory =
+          clock -> new SplitParallelSampleBandwidthEstimator.Builder().setClock(clock).build();
+    }
+
+    /**
+     * Sets the network throughput as a sequence of segments with constant bitrate. The sequence
+     * repeats until the simulation ends. The default is a constant 1 Mbps.
+     *
+     * @param segmentDurationsMs The duration of each segment, in milliseconds.
+     * @param bitrates The throughput of each segment, in bits per second.
+     * @return This builder.
+     */
+    public Builder setThroughputTrace(long[] segmentDurationsMs, long[] bitrates) {
+      checkArgument(segmentDurationsMs.length > 0);
+      checkArgument(segmentDurationsMs.length == bitrates.length);
+      long totalDurationMs = 0;
+      for (int i = 0; i < segmentDurationsMs.length; i++) {
+        checkArgument(segmentDurationsMs[i] >= 0 && bitrates[i] >= 0);
+        totalDurationMs += segmentDurationsMs[i];
+      }
+      checkArgument(totalDurationMs > 0);
+      this.throughputSegmentDurationsMs = segmentDurationsMs.clone();
+      this.throughputSegmentBitrates = bitrates.clone();
+      return this;
+    }
+
+    /**
+     * Sets the time between requesting a chunk and receiving its first byte, in milliseconds. The
+     * default is 0.
+     *
+     * @param timeToFirstByteMs The time to first byte, in milliseconds.
+     * @return This builder.
+     */
+    public Builder setTimeToFirstByteMs(long timeToFirstByteMs) {
+      checkArgument(timeToFirstByteMs >= 0);
+      this.timeToFirstByteMs = timeToFirstByteMs;
+      return this;
+    }
+
+    /**
+     * Sets the bitrate estimate used until the {@link BandwidthEstimator} provides one, in bits per
+     * second. The default is 1 Mbps.
+     *
+     * @param initialBitrateEstimate The initial bitrate estimate, in bits per second.
+     * @return This builder.
+     */
+    public Builder setInitialBitrateEstimate(long initialBitrateEstimate) {
+      this.initialBitrateEstimate = initialBitrateEstimate;
+      return this;
+    }
+
+    /**
+     * Sets the buffer durations, in milliseconds. The defaults are those of {@link
+     * DefaultLoadControl}.
+     *
+     * @param maxBufferMs The buffered duration above which no chunks are loaded.
+     * @param bufferForPlaybackMs The buffered duration required to start playback.
+     * @param bufferForPlaybackAfterRebufferMs The buffered duration required to resume playback
+     *     after a stall.
+     * @return This builder.
+     */
+    public Builder setBufferDurationsMs(
+        long maxBufferMs, long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs) {
+      checkArgument(bufferForPlaybackMs >= 0 && bufferForPlaybackAfterRebufferMs >= 0);
+      checkArgument(maxBufferMs >= bufferForPlaybackMs);
+      checkArgument(maxBufferMs >= bufferForPlaybackAfterRebufferMs);
+      this.maxBufferMs = maxBufferMs;
+      this.bufferForPlaybackMs = bufferForPlaybackMs;
+      this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+      return this;
+    }
+
+    /**
+     * Sets the factory of the {@link BandwidthEstimator} observing the simulated transfers. The
+     * default creates a {@link SplitParallelSampleBandwidthEstimator}.
+     *
+     * @param bandwidthEstimatorFactory Creates the {@link BandwidthEstimator}, which must measure
+     *     time with the given {@link Clock}.
+     * @return This builder.
+     */
+    public Builder setBandwidthEstimatorFactory(
+        Function<Clock, BandwidthEstimator> bandwidthEstimatorFactory) {
+      this.bandwidthEstimatorFactory = bandwidthEstimatorFactory;
+      return this;
+    }
+
+    /** Builds the {@link AdaptiveStreamingSimulator}. */
+    public AdaptiveStreamingSimulator build() {
+      return new AdaptiveStreamingSimulator(this);
+    }
+  }
+
+  private final TrackGroup trackGroup;
+  private final FakeAdaptiveDataSet dataSet;
+  private final long[] throughputSegmentDurationsUs;
+  private final long[] throughputSegmentBitrates;
+  private final long throughputTraceDurationUs;
+  private final long timeToFirstByteUs;
+  private final long initialBitrateEstimate;
+  private final long maxBufferUs;
+  private final long bufferForPlaybackUs;
+  private final long bufferForPlaybackAfterRebufferUs;
+  private final Function<Clock, BandwidthEstimator> bandwidthEstimatorFactory;
+
+  // State of the ongoing simulation.
+  private long nowUs;
+  private long playbackPositionUs;
+  private long bufferedPositionUs;
+  private boolean isPlaying;
+  private boolean hasStarted;
+  private long startupDelayUs;
+  private int rebufferCount;
+  private long rebufferDurationUs;
+
+  private AdaptiveStreamingSimulator(Builder builder) {
+    trackGroup = builder.trackGroup;
+    dataSet = builder.dataSet;
+    throughputSegmentDurationsUs = new long[builder.throughputSegmentDurationsMs.length];
+    long throughputTraceDurationUs = 0;
+    for (int i = 0; i < throughputSegmentDurationsUs.length; i++) {
+      throughputSegmentDurationsUs[i] = Util.msToUs(builder.throughputSegmentDurationsMs[i]);
+      throughputTraceDurationUs += throughputSegmentDurationsUs[i];
+    }
+    this.throughputTraceDurationUs = throughputTraceDurationUs;
+    throughputSegmentBitrates = builder.throughputSegmentBitrates;
+    timeToFirstByteUs = Util.msToUs(builder.timeToFirstByteMs);
+    initialBitrateEstimate = builder.initialBitrateEstimate;
+    maxBufferUs = Util.msToUs(builder.maxBufferMs);
+    bufferForPlaybackUs = Util.msToUs(builder.bufferForPlaybackMs);
+    bufferForPlaybackAfterRebufferUs = Util.msToUs(builder.bufferForPlaybackAfterRebufferMs);
+    bandwidthEstimatorFactory = builder.bandwidthEstimatorFactory;
+  }
+
+  /**
+   * Streams all chunks of the data set with a track selection.
+   *
+   * @param trackSelectionFactory Creates the {@link ExoTrackSelection.Factory}, whose selections
+   *     must measure time with the given {@link Clock}. It's called with a single definition
+   *     containing all tracks of the track group.
+   * @return The {@link Result}.
+   */
+  public Result simulate(Function<Clock, ExoTrackSelection.Factory> trackSelectionFactory) {
+    nowUs = 0;
+    playbackPositionUs = 0;
+    bufferedPositionUs = 0;
+    isPlaying = false;
+    hasStarted = false;
+    startupDelayUs = 0;
+    rebufferCount = 0;
+    rebufferDurationUs = 0;
+
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    BandwidthEstimator bandwidthEstimator = checkNotNull(bandwidthEstimatorFactory.apply(clock));
+    int[] tracks = new int[trackGroup.length];
+    for (int i = 0; i < tracks.length; i++) {
+      tracks[i] = i;
+    }
+    ExoTrackSelection trackSelection =
+        checkNotNull(
+            checkNotNull(trackSelectionFactory.apply(clock))
+                .createTrackSelections(
+                    new ExoTrackSelection.Definition[] {
+                      new ExoTrackSelection.Definition(trackGroup, tracks)
+                    },
+                    new EstimatorBandwidthMeter(bandwidthEstimator, initialBitrateEstimate),
+                    new MediaPeriodId(/* periodUid= */ new Object()),
+                    Timeline.EMPTY)[0]);
+    trackSelection.enable();
+
+    ArrayList<MediaChunk> queue = new ArrayList<>();
+    MediaChunkIterator[] mediaChunkIterators = new MediaChunkIterator[trackSelection.length()];
+    ImmutableList.Builder<Integer> selectedTrackIndices = ImmutableList.builder();
+    int chunkCount = dataSet.getChunkCount();
+    int previousTrackIndex = C.INDEX_UNSET;
+    int switchCount = 0;
+    long bitrateSum = 0;
+    for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+      if (isPlaying && bufferedPositionUs - playbackPositionUs > maxBufferUs) {
+        advanceTime(clock, bufferedPositionUs - playbackPositionUs - maxBufferUs);
+      }
+      while (!queue.isEmpty() && queue.get(0).endTimeUs <= playbackPositionUs) {
+        queue.remove(0);
+      }
+      for (int i = 0; i < mediaChunkIterators.length; i++) {
+        mediaChunkIterators[i] =
+            new FakeAdaptiveDataSet.Iterator(
+                dataSet, trackSelection.getIndexInTrackGroup(i), chunkIndex);
+      }
+      trackSelection.updateSelectedTrack(
+          playbackPositionUs,
+          /* bufferedDurationUs= */ bufferedPositionUs - playbackPositionUs,
+          /* availableDurationUs= */ C.TIME_UNSET,
+          queue,
+          mediaChunkIterators);
+
+      int trackIndex = trackSelection.getSelectedIndexInTrackGroup();
+      Format format = trackSelection.getSelectedFormat();
+      selectedTrackIndices.add(trackIndex);
+      if (previousTrackIndex != C.INDEX_UNSET && trackIndex != previousTrackIndex) {
+        switchCount++;
+      }
+      previousTrackIndex = trackIndex;
+      bitrateSum += format.bitrate;
+
+      long chunkStartTimeUs = dataSet.getStartTime(chunkIndex);
+      long chunkEndTimeUs = chunkStartTimeUs + dataSet.getChunkDuration(chunkIndex);
+      int chunkLength =
+          checkNotNull(dataSet.getData(dataSet.getUri(trackIndex)))
+              .getSegments()
+              .get(chunkIndex)
+              .length;
+      loadChunk(clock, bandwidthEstimator, chunkLength);
+      queue.add(
+          new FakeMediaChunk(
+              format, chunkStartTimeUs, chunkEndTimeUs, trackSelection.getSelectionReason()));
+      bufferedPositionUs = chunkEndTimeUs;
+      maybeStartPlayback(/* isLastChunk= */ chunkIndex == chunkCount - 1);
+    }
+    trackSelection.disable();
+
+    return new Result(
+        selectedTrackIndices.build(),
+        Util.usToMs(startupDelayUs),
+        rebufferCount,
+        Util.usToMs(rebufferDurationUs),
+        switchCount,
+        chunkCount == 0 ? 0 : bitrateSum / chunkCount);
+  }
+
+  private void loadChunk(FakeClock clock, BandwidthEstimator bandwidthEstimator, int length) {
+    DataSource dataSource = new FakeDataSource();
+    bandwidthEstimator.onTransferInitializing(dataSource);
+    advanceTime(clock, timeToFirstByteUs);
+    bandwidthEstimator.onTransferStart(dataSource);
+    long remainingBytes = length;
+    while (remainingBytes > 0) {
+      int segmentIndex = getThroughputSegmentIndex();
+      long bitrate = throughputSegmentBitrates[segmentIndex];
+      long segmentRemainingUs = getThroughputSegmentEndUs() - nowUs;
+      long segmentBytes = bitrate * segmentRemainingUs / (C.BITS_PER_BYTE * C.MICROS_PER_SECOND);
+      long transferredBytes;
+      long transferDurationUs;
+      if (segmentBytes >= remainingBytes) {
+        transferredBytes = remainingBytes;
+        transferDurationUs =
+            Util.ceilDivide(remainingBytes * C.BITS_PER_BYTE * C.MICROS_PER_SECOND, bitrate);
+      } else {
+        transferredBytes = segmentBytes;
+        transferDurationUs = segmentRemainingUs;
+      }
+      advanceTime(clock, transferDurationUs);
+      if (transferredBytes > 0) {
+        bandwidthEstimator.onBytesTransferred(dataSource, (int) transferredBytes);
+      }
+      remainingBytes -= transferredBytes;
+    }
+    bandwidthEstimator.onTransferEnd(dataSource);
+  }
+
+  private void maybeStartPlayback(boolean isLastChunk) {
+    if (isPlaying) {
+      return;
+    }
+    long bufferedDurationUs = bufferedPositionUs - playbackPositionUs;
+    long requiredDurationUs = hasStarted ? bufferForPlaybackAfterRebufferUs : bufferForPlaybackUs;
+    if (bufferedDurationUs >= requiredDurationUs || isLastChunk) {
+      isPlaying = true;
+      hasStarted = true;
+    }
+  }
+
+  private void advanceTime(FakeClock clock, long durationUs) {
+    nowUs += durationUs;
+    clock.advanceTime(Util.usToMs(nowUs) - clock.elapsedRealtime());
+    if (isPlaying) {
+      long playedDurationUs = min(durationUs, bufferedPositionUs - playbackPositionUs);
+      playbackPositionUs += playedDurationUs;
+      if (playedDurationUs < durationUs) {
+        isPlaying = false;
+        rebufferCount++;
+        rebufferDurationUs += durationUs - playedDurationUs;
+      }
+    } else if (hasStarted) {
+      rebufferDurationUs += durationUs;
+    } else {
+      startupDelayUs += durationUs;
+    }
+  }
+
+  private int getThroughputSegmentIndex() {
+    long traceTimeUs = nowUs % throughputTraceDurationUs;
+    int segmentIndex = 0;
+    while (traceTimeUs >= throughputSegmentDurationsUs[segmentIndex]) {
+      traceTimeUs -= throughputSegmentDurationsUs[segmentIndex];
+      segmentIndex++;
+    }
+    return segmentIndex;
+  }
+
+  private long getThroughputSegmentEndUs() {
+    long traceStartUs = nowUs - nowUs % throughputTraceDurationUs;
+    long segmentEndUs = traceStartUs;
+    for (int i = 0; i <= getThroughputSegmentIndex(); i++) {
+      segmentEndUs += throughputSegmentDurationsUs[i];
+    }
+    return segmentEndUs;
+  }
+
+  private static final class EstimatorBandwidthMeter implements BandwidthMeter {
+
+    private final BandwidthEstimator bandwidthEstimator;
+    private final long initialBitrateEstimate;
+
+    public EstimatorBandwidthMeter(
+        BandwidthEstimator bandwidthEstimator, long initialBitrateEstimate) {
+      this.bandwidthEstimator = bandwidthEstimator;
+      this.initialBitrateEstimate = initialBitrateEstimate;
+    }
+
+    @Override
+    public long getBitrateEstimate() {
+      long bandwidthEstimate = bandwidthEstimator.getBandwidthEstimate();
+      return bandwidthEstimate == BandwidthEstimator.ESTIMATE_NOT_AVAILABLE
+          ? initialBitrateEstimate
+          : bandwidthEstimate;
+    }
+
+    @Nullable
+    @Override
+    public TransferListener getTransferListener() {
+      return null;
+    }
+
+    @Override
+    public void addEventListener(Handler eventHandler, EventListener eventListener) {
+      bandwidthEstimator.addEventListener(eventHandler, eventListener);
+    }
+
+    @Override
+    public void removeEventListener(EventListener eventListener) {
+      bandwidthEstimator.removeEventListener(eventListener);
+    }
+  }
+}
@@ -291,6 +291,40 @@ public class TestUtil {
     assertThat(actual.size).isEqualTo(expected.size);
   }
 
+  /**
+   * Asserts that two {@link FakeTrackOutput FakeTrackOutputs} contain the same samples at or after
+   * {@code timeUs}, in the same order.
+   *
+   * @param expected The expected {@link FakeTrackOutput}.
+   * @param actual The actual {@link FakeTrackOutput}.
+   * @param timeUs The timestamp of the earliest samples to compare, in microseconds.
+   */
+  public static void assertSamplesFromTimeEqual(
+      FakeTrackOutput expected, FakeTrackOutput actual, long timeUs) {
+    List<Integer> expectedSampleIndices = getSampleIndicesFromTime(expected, timeUs);
+    List<Integer> actualSampleIndices = getSampleIndicesFromTime(actual, timeUs);
+    assertThat(actualSampleIndices).hasSize(expectedSampleIndices.size());
+    for (int i = 0; i < expectedSampleIndices.size(); i++) {
+      int expectedSampleIndex = expectedSampleIndices.get(i);
+      actual.assertSample(
+          actualSampleIndices.get(i),
+          expected.getSampleData(expectedSampleIndex),
+          expected.getSampleTimeUs(expectedSampleIndex),
+          expected.getSampleFlags(expectedSampleIndex),
+          expected.getSampleCryptoData(expectedSampleIndex));
+    }
+  }
+
+  private static List<Integer> getSampleIndicesFromTime(FakeTrackOutput trackOutput, long timeUs) {
+    List<Integer> sampleIndices = new ArrayList<>();
+    for (int i = 0; i < trackOutput.getSampleCount(); i++) {
+      if (trackOutput.getSampleTimeUs(i) >= timeUs) {
+        sampleIndices.add(i);
+      }
+    }
+    return sampleIndices;
+  }
+
   /**
    * Asserts whether actual bitmap is very similar to the expected bitmap at some quality level.
    *
@@ -507,6 +541,43 @@ public class TestUtil {
     }
   }
 
+  /**
+   * Reads from the given input from {@code position} until end-of-input is reached, continuing
+   * from the positions requested by the extractor.
+   *
+   * @param extractor The {@link Extractor} to extract from input, which must have been seeked to
+   *     {@code position}.
+   * @param position The position from which to read, in bytes.
+   * @param dataSource The {@link DataSource} that will be used to read from the input.
+   * @param uri The Uri of the input.
+   * @return The number of times the extractor requested to continue reading from a different
+   *     position.
+   */
+  public static int readToEndOfInput(
+      Extractor extractor, long position, DataSource dataSource, Uri uri) throws IOException {
+    PositionHolder positionHolder = new PositionHolder();
+    ExtractorInput extractorInput = getExtractorInputFromPosition(dataSource, position, uri);
+    int extractorReadResult = Extractor.RESULT_CONTINUE;
+    int seekCount = 0;
+    while (true) {
+      try {
+        while (extractorReadResult == Extractor.RESULT_CONTINUE) {
+          extractorReadResult = extractor.read(extractorInput, positionHolder);
+        }
+      } finally {
+        DataSourceUtil.closeQuietly(dataSource);
+      }
+
+      if (extractorReadResult == Extractor.RESULT_SEEK) {
+        seekCount++;
+        extractorInput = getExtractorInputFromPosition(dataSource, positionHolder.position, uri);
+        extractorReadResult = Extractor.RESULT_CONTINUE;
+      } else {
+        return seekCount;
+      }
+    }
+  }
+
   /** Returns an {@link ExtractorInput} to read from the given input at given position. */
   public static ExtractorInput getExtractorInputFromPosition(
       DataSource dataSource, long position, Uri uri) throws IOException {
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.common.collect.ImmutableList;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.HashMap;
+
+/**
+ * A recorded sequence of timestamped {@link TransferListener} events, which can be replayed with
+ * {@link TransferTraceReplayer}.
+ *
+ * <p>Traces can be created with a {@link Builder} or {@link #parse(String) parsed} from a text
+ * representation with one event per line:
+ *
+ * <pre>
+ * # timeMs type transferId [bytes]
+ * 0 init 1
+ * 35 start 1
+ * 80 bytes 1 65536
+ * 120 end 1
+ * </pre>
+ *
+ * <p>The type is one of {@code init}, {@code start}, {@code bytes} and {@code end}. Empty lines and
+ * lines starting with {@code #} are ignored. Transfers are identified by an arbitrary integer and
+ * can overlap.
+ */
+public final class TransferTrace {
+
+  /**
+   * The type of an {@link Event}. One of {@link #EVENT_TYPE_INITIALIZING}, {@link
+   * #EVENT_TYPE_START}, {@link #EVENT_TYPE_BYTES_TRANSFERRED} or {@link #EVENT_TYPE_END}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(TYPE_USE)
+  @IntDef({
+    EVENT_TYPE_INITIALIZING,
+    EVENT_TYPE_START,
+    EVENT_TYPE_BYTES_TRANSFERRED,
+    EVENT_TYPE_END
+  })
+  public @interface EventType {}
+
+  /** See {@link TransferListener#onTransferInitializing}. */
+  public static final int EVENT_TYPE_INITIALIZING = 0;
+
+  /** See {@link TransferListener#onTransferStart}. */
+  public static final int EVENT_TYPE_START = 1;
+
+  /** See {@link TransferListener#onBytesTransferred}. */
+  public static final int EVENT_TYPE_BYTES_TRANSFERRED = 2;
+
+  /** See {@link TransferListener#onTransferEnd}. */
+  public static final int EVENT_TYPE_END = 3;
+
+  /** A single event of a {@link TransferTrace}. */
+  public static final class Event {
+
+    /** The time of the event, in milliseconds. */
+    public final long timeMs;
+
+    /** The {@link EventType}. */
+    public final @EventType int type;
+
+    /** The identifier of the transfer the event belongs to. */
+    public final int transferId;
+
+    /**
+     * The number of bytes transferred, or 0 if the type isn't {@link
+     * #EVENT_TYPE_BYTES_TRANSFERRED}.
+     */
+    public final int bytesTransferred;
+
+    private Event(long timeMs, @EventType int type, int transferId, int bytesTransferred) {
+      this.timeMs = timeMs;
+      this.type = type;
+      this.transferId = transferId;
+      this.bytesTransferred = bytesTransferred;
+    }
+  }
+
+  /** Builds a {@link TransferTrace} from events added in chronological order. */
+  public static final class Builder {
+
+    private static final int STATE_INITIALIZING = 0;
+    private static final int STATE_STARTED = 1;
+
+    private final ImmutableList.Builder<Event> events;
+    private final HashMap<Integer, Integer> openTransferStates;
+    private long lastTimeMs;
+
+    /** Creates an instance. */
+    public Builder() {
+      events = ImmutableList.builder();
+      openTransferStates = new HashMap<>();
+    }
+
+    /**
+     * Adds an {@link #EVENT_TYPE_INITIALIZING} event. Initialization is optional, but the time
+     * until the transfer starts is only known if it's recorded.
+     *
+     * @param timeMs The time of the event, in milliseconds.
+     * @param transferId The identifier of a transfer that isn't open.
+     * @return This builder.
+     */
+    public Builder addInitializing(long timeMs, int transferId) {
+      checkArgument(!openTransferStates.containsKey(transferId));
+      openTransferStates.put(transferId, STATE_INITIALIZING);
+      return addEvent(new Event(timeMs, EVENT_TYPE_INITIALIZING, transferId, 0));
+    }
+
+    /**
+     * Adds an {@link #EVENT_TYPE_START} event.
+     *
+     * @param timeMs The time of the event, in milliseconds.
+     * @param transferId The identifier of a transfer that isn't open or is initializing.
+     * @return This builder.
+     */
+    public Builder addStart(long timeMs, int transferId) {
+      @Nullable Integer state = openTransferStates.get(transferId);
+      checkArgument(state == null || state == STATE_INITIALIZING);
+      openTransferStates.put(transferId, STATE_STARTED);
+      return addEvent(new Event(timeMs, EVENT_TYPE_START, transferId, 0));
+    }
+
+    /**
+     * Adds an {@link #EVENT_TYPE_BYTES_TRANSFERRED} event.
+     *
+     * @param timeMs The time of the event, in milliseconds.
+     * @param transferId The identifier of a started transfer.
+     * @param bytesTransferred The number of bytes transferred since the previous event of the
+     *     transfer.
+     * @return This builder.
+     */
+    public Builder addBytesTransferred(long timeMs, int transferId, int bytesTransferred) {
+      checkArgument(isStarted(transferId));
+      checkArgument(bytesTransferred >= 0);
+      return addEvent(
+          new Event(timeMs, EVENT_TYPE_BYTES_TRANSFERRED, transferId, bytesTransferred));
+    }
+
+    /**
+     * Adds an {@link #EVENT_TYPE_END} event.
+     *
+     * @param timeMs The time of the event, in milliseconds.
+     * @param transferId The identifier of a started transfer.
+     * @return This builder.
+     */
+    public Builder addEnd(long timeMs, int transferId) {
+      checkArgument(isStarted(transferId));
+      openTransferStates.remove(transferId);
+      return addEvent(new Event(timeMs, EVENT_TYPE_END, transferId, 0));
+    }
+
+    /** Builds the {@link TransferTrace}. */
+    public TransferTrace build() {
+      return new TransferTrace(events.build());
+    }
+
+    private boolean isStarted(int transferId) {
+      @Nullable Integer state = openTransferStates.get(transferId);
+      return state != null && state == STATE_STARTED;
+    }
+
+    private Builder addEvent(Event event) {
+      checkArgument(event.timeMs >= lastTimeMs);
+      lastTimeMs = event.timeMs;
+      events.add(event);
+      return this;
+    }
+  }
+
+  /**
+   * Parses a {@link TransferTrace} from its text representation.
+   *
+   * @param trace The text representation, as described in the class documentation.
+   * @return The parsed {@link TransferTrace}.
+   * @throws IllegalArgumentException If the trace is malformed.
+   */
+  public static TransferTrace parse(String trace) {
+    Builder builder = new Builder();
+    for (String line : trace.split("\n", /* limit= */ -1)) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\\s+", /* limit= */ -1);
+      checkArgument(fields.length >= 3, line);
+      long timeMs = Long.parseLong(fields[0]);
+      int transferId = Integer.parseInt(fields[2]);
+      switch (fields[1]) {
+        case "init":
+          checkArgument(fields.length == 3, line);
+          builder.addInitializing(timeMs, transferId);
+          break;
+        case "start":
+          checkArgument(fields.length == 3, line);
+          builder.addStart(timeMs, transferId);
+          break;
+        case "bytes":
+          checkArgument(fields.length == 4, line);
+          builder.addBytesTransferred(timeMs, transferId, Integer.parseInt(fields[3]));
+          break;
+        case "end":
+          checkArgument(fields.length == 3, line);
+          builder.addEnd(timeMs, transferId);
+          break;
+        default:
+          throw new IllegalArgumentException(line);
+      }
+    }
+    return builder.build();
+  }
+
+  /** The events, in chronological order. */
+  public final ImmutableList<Event> events;
+
+  private TransferTrace(ImmutableList<Event> events) {
+    this.events = events;
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TimeToFirstByteEstimator;
+import com.google.android.exoplayer2.upstream.experimental.BandwidthEstimator;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.base.Function;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Replays {@link TransferTrace TransferTraces} through bandwidth and time to first byte estimators
+ * driven by a {@link FakeClock}, to compare their accuracy and CPU cost offline.
+ *
+ * <p>An estimate is evaluated against the transfer that starts after it's queried:
+ *
+ * <ul>
+ *   <li>The {@link BandwidthEstimator#getBandwidthEstimate() bandwidth estimate} queried just
+ *       before a transfer starts is compared with the throughput of that transfer, from start to
+ *       end. Transfers without bytes or without elapsed time are ignored.
+ *   <li>The {@link TimeToFirstByteEstimator#getTimeToFirstByteEstimateUs() time to first byte
+ *       estimate} queried when a transfer is initializing is compared with the time until that
+ *       transfer starts. Transfers without an initialization event or starting immediately are
+ *       ignored.
+ * </ul>
+ *
+ * <p>The CPU cost is the wall-clock time spent in estimator calls, including the estimate queries.
+ */
+public final class TransferTraceReplayer {
+
+  /** The result of replaying a {@link TransferTrace}. */
+  public static final class Result {
+
+    /** The number of transfers used to evaluate the estimator. */
+    public final int evaluatedTransferCount;
+
+    /** The number of evaluated transfers for which no estimate was available. */
+    public final int unavailableEstimateCount;
+
+    /**
+     * The mean absolute difference between the available estimates and the actual values,
+     * relative to the actual values, or {@link Double#NaN} if no estimate was available.
+     */
+    public final double meanAbsoluteRelativeError;
+
+    /**
+     * The mean signed difference between the available estimates and the actual values, relative
+     * to the actual values, or {@link Double#NaN} if no estimate was available. Positive values
+     * mean that the estimator overestimates.
+     */
+    public final double meanRelativeError;
+
+    /** The number of calls made to the estimator. */
+    public final long estimatorCallCount;
+
+    /** The total time spent in estimator calls, in nanoseconds. */
+    public final long estimatorCpuTimeNs;
+
+    private Result(
+        int evaluatedTransferCount,
+        int unavailableEstimateCount,
+        double meanAbsoluteRelativeError,
+        double meanRelativeError,
+        long estimatorCallCount,
+        long estimatorCpuTimeNs) {
+      this.evaluatedTransferCount = evaluatedTransferCount;
+      this.unavailableEstimateCount = unavailableEstimateCount;
+      this.meanAbsoluteRelativeError = meanAbsoluteRelativeError;
+      this.meanRelativeError = meanRelativeError;
+      this.estimatorCallCount = estimatorCallCount;
+      this.estimatorCpuTimeNs = estimatorCpuTimeNs;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.US,
+          "transfers=%d, unavailable=%d, meanAbsRelError=%.4f, meanRelError=%.4f, calls=%d,"
+              + " cpuTimeNs=%d",
+          evaluatedTransferCount,
+          unavailableEstimateCount,
+          meanAbsoluteRelativeError,
+          meanRelativeError,
+          estimatorCallCount,
+          estimatorCpuTimeNs);
+    }
+  }
+
+  /**
+   * Replays a {@link TransferTrace} through a {@link BandwidthEstimator}.
+   *
+   * @param trace The {@link TransferTrace}.
+   * @param estimatorFactory Creates the {@link BandwidthEstimator}, which must measure time with
+   *     the given {@link Clock}.
+   * @return The {@link Result}.
+   */
+  public static Result replayBandwidthEstimator(
+      TransferTrace trace, Function<Clock, BandwidthEstimator> estimatorFactory) {
+    FakeClock clock = createClock(trace);
+    BandwidthEstimator estimator = checkNotNull(estimatorFactory.apply(clock));
+    ErrorAccumulator errorAccumulator = new ErrorAccumulator();
+    HashMap<Integer, Transfer> transfers = new HashMap<>();
+    for (int i = 0; i < trace.events.size(); i++) {
+      TransferTrace.Event event = trace.events.get(i);
+      clock.advanceTime(event.timeMs - clock.elapsedRealtime());
+      @Nullable Transfer transfer = transfers.get(event.transferId);
+      if (transfer == null) {
+        transfer = new Transfer(event.transferId);
+        transfers.put(event.transferId, transfer);
+      }
+      long startTimeNs = System.nanoTime();
+      switch (event.type) {
+        case TransferTrace.EVENT_TYPE_INITIALIZING:
+          estimator.onTransferInitializing(transfer.dataSource);
+          errorAccumulator.addCall(startTimeNs);
+          break;
+        case TransferTrace.EVENT_TYPE_START:
+          transfer.estimate = estimator.getBandwidthEstimate();
+          estimator.onTransferStart(transfer.dataSource);
+          errorAccumulator.addCall(startTimeNs);
+          transfer.startTimeMs = event.timeMs;
+          break;
+        case TransferTrace.EVENT_TYPE_BYTES_TRANSFERRED:
+          estimator.onBytesTransferred(transfer.dataSource, event.bytesTransferred);
+          errorAccumulator.addCall(startTimeNs);
+          transfer.bytesTransferred += event.bytesTransferred;
+          break;
+        case TransferTrace.EVENT_TYPE_END:
+          estimator.onTransferEnd(transfer.dataSource);
+          errorAccumulator.addCall(startTimeNs);
+          transfers.remove(event.transferId);
+          long durationMs = event.timeMs - transfer.startTimeMs;
+          if (durationMs > 0 && transfer.bytesTransferred > 0) {
+            errorAccumulator.addSample(
+                transfer.estimate == BandwidthEstimator.ESTIMATE_NOT_AVAILABLE
+                    ? null
+                    : (double) transfer.estimate,
+                transfer.bytesTransferred * 8000.0 / durationMs);
+          }
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+    }
+    return errorAccumulator.build();
+  }
+
+  /**
+   * Replays a {@link TransferTrace} through a {@link TimeToFirstByteEstimator}.
+   *
+   * @param trace The {@link TransferTrace}.
+   * @param estimatorFactory Creates the {@link TimeToFirstByteEstimator}, which must measure time
+   *     with the given {@link Clock}.
+   * @return The {@link Result}.
+   */
+  public static Result replayTimeToFirstByteEstimator(
+      TransferTrace trace, Function<Clock, TimeToFirstByteEstimator> estimatorFactory) {
+    FakeClock clock = createClock(trace);
+    TimeToFirstByteEstimator estimator = checkNotNull(estimatorFactory.apply(clock));
+    ErrorAccumulator errorAccumulator = new ErrorAccumulator();
+    HashMap<Integer, Transfer> transfers = new HashMap<>();
+    for (int i = 0; i < trace.events.size(); i++) {
+      TransferTrace.Event event = trace.events.get(i);
+      clock.advanceTime(event.timeMs - clock.elapsedRealtime());
+      long startTimeNs;
+      switch (event.type) {
+        case TransferTrace.EVENT_TYPE_INITIALIZING:
+          Transfer transfer = new Transfer(event.transferId);
+          transfers.put(event.transferId, transfer);
+          transfer.initializationTimeMs = event.timeMs;
+          startTimeNs = System.nanoTime();
+          transfer.estimate = estimator.getTimeToFirstByteEstimateUs();
+          estimator.onTransferInitializing(transfer.dataSpec);
+          errorAccumulator.addCall(startTimeNs);
+          break;
+        case TransferTrace.EVENT_TYPE_START:
+          @Nullable Transfer initializedTransfer = transfers.remove(event.transferId);
+          if (initializedTransfer == null) {
+            // The time to first byte is unknown, so the estimator isn't informed either.
+            break;
+          }
+          startTimeNs = System.nanoTime();
+          estimator.onTransferStart(initializedTransfer.dataSpec);
+          errorAccumulator.addCall(startTimeNs);
+          long timeToFirstByteUs =
+              Util.msToUs(event.timeMs - initializedTransfer.initializationTimeMs);
+          if (timeToFirstByteUs > 0) {
+            errorAccumulator.addSample(
+                initializedTransfer.estimate == C.TIME_UNSET
+                    ? null
+                    : (double) initializedTransfer.estimate,
+                timeToFirstByteUs);
+          }
+          break;
+        case TransferTrace.EVENT_TYPE_BYTES_TRANSFERRED:
+        case TransferTrace.EVENT_TYPE_END:
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+    }
+    return errorAccumulator.build();
+  }
+
+  private TransferTraceReplayer() {}
+
+  private static FakeClock createClock(TransferTrace trace) {
+    long initialTimeMs = trace.events.isEmpty() ? 0 : trace.events.get(0).timeMs;
+    return new FakeClock(initialTimeMs);
+  }
+
+  private static final class Transfer {
+
+    public final DataSource dataSource;
+    public final DataSpec dataSpec;
+
+    public long initializationTimeMs;
+    public long startTimeMs;
+    public long bytesTransferred;
+    public long estimate;
+
+    public Transfer(int transferId) {
+      dataSource = new FakeDataSource();
+      dataSpec = new DataSpec(Uri.parse("trace://transfer/" + transferId));
+    }
+  }
+
+  private static final class ErrorAccumulator {
+
+    private int sampleCount;
+    private int unavailableEstimateCount;
+    private double absoluteRelativeErrorSum;
+    private double relativeErrorSum;
+    private long callCount;
+    private long cpuTimeNs;
+
+    public void addCall(long startTimeNs) {
+      cpuTimeNs += System.nanoTime() - startTimeNs;
+      callCount++;
+    }
+
+    public void addSample(@Nullable Double estimate, double actual) {
+      sampleCount++;
+      if (estimate == null) {
+        unavailableEstimateCount++;
+        return;
+      }
+      double relativeError = (estimate - actual) / actual;
+      absoluteRelativeErrorSum += Math.abs(relativeError);
+      relativeErrorSum += relativeError;
+    }
+
+    public Result build() {
+      int estimateCount = sampleCount - unavailableEstimateCount;
+      return new Result(
+          sampleCount,
+          unavailableEstimateCount,
+          estimateCount > 0 ? absoluteRelativeErrorSum / estimateCount : Double.NaN,
+          estimateCount > 0 ? relativeErrorSum / estimateCount : Double.NaN,
+          callCount,
+          cpuTimeNs);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
+import com.google.android.exoplayer2.trackselection.ModelPredictiveTrackSelection;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.Iterables;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link AdaptiveStreamingSimulator}. */
+@RunWith(AndroidJUnit4.class)
+public final class AdaptiveStreamingSimulatorTest {
+
+  private static final long CHUNK_DURATION_US = 4_000_000;
+  private static final long MEDIA_DURATION_US = 120_000_000;
+  private static final int[] BITRATES = {300_000, 750_000, 1_200_000, 1_850_000, 2_850_000};
+
+  @Test
+  public void simulate_constantHighThroughput_reachesHighestBitrateWithoutRebuffering() {
+    TrackGroup trackGroup = createTrackGroup();
+    AdaptiveStreamingSimulator simulator =
+        new AdaptiveStreamingSimulator.Builder(trackGroup, createDataSet(trackGroup))
+            .setThroughputTrace(new long[] {1000}, new long[] {20_000_000})
+            .build();
+
+    AdaptiveStreamingSimulator.Result result =
+        simulator.simulate(AdaptiveStreamingSimulatorTest::createAdaptiveTrackSelectionFactory);
+
+    assertThat(result.selectedTrackIndices).hasSize(30);
+    assertThat(Iterables.getLast(result.selectedTrackIndices)).isEqualTo(BITRATES.length - 1);
+    assertThat(result.rebufferCount).isEqualTo(0);
+    assertThat(result.startupDelayMs).isGreaterThan(0);
+  }
+
+  @Test
+  public void simulate_throughputOutage_rebuffers() {
+    TrackGroup trackGroup = createTrackGroup();
+    AdaptiveStreamingSimulator simulator =
+        new AdaptiveStreamingSimulator.Builder(trackGroup, createDataSet(trackGroup))
+            .setThroughputTrace(
+                new long[] {20_000, 60_000, 40_000}, new long[] {3_000_000, 0, 3_000_000})
+            .build();
+
+    AdaptiveStreamingSimulator.Result result =
+        simulator.simulate(AdaptiveStreamingSimulatorTest::createAdaptiveTrackSelectionFactory);
+
+    assertThat(result.rebufferCount).isAtLeast(1);
+    assertThat(result.rebufferDurationMs).isGreaterThan(0);
+  }
+
+  @Test
+  public void simulate_variableThroughputWithModelPredictiveSelection_doesNotRebuffer() {
+    TrackGroup trackGroup = createTrackGroup();
+    AdaptiveStreamingSimulator simulator =
+        new AdaptiveStreamingSimulator.Builder(trackGroup, createDataSet(trackGroup))
+            .setThroughputTrace(
+                new long[] {4000, 4000, 8000}, new long[] {3_000_000, 800_000, 1_500_000})
+            .setTimeToFirstByteMs(50)
+            .build();
+
+    AdaptiveStreamingSimulator.Result result =
+        simulator.simulate(
+            clock ->
+                new ModelPredictiveTrackSelection.Factory(
+                    ModelPredictiveTrackSelection.DEFAULT_HORIZON_CHUNK_COUNT,
+                    ModelPredictiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+                    ModelPredictiveTrackSelection.DEFAULT_TARGET_BUFFER_MS,
+                    ModelPredictiveTrackSelection.DEFAULT_BUFFER_PENALTY,
+                    ModelPredictiveTrackSelection.DEFAULT_REBUFFER_PENALTY,
+                    ModelPredictiveTrackSelection.DEFAULT_SWITCH_PENALTY,
+                    ModelPredictiveTrackSelection.DEFAULT_SWITCH_HYSTERESIS,
+                    clock));
+
+    assertThat(result.rebufferCount).isEqualTo(0);
+    assertThat(result.averageBitrate).isGreaterThan(BITRATES[0]);
+  }
+
+  private static AdaptiveTrackSelection.Factory createAdaptiveTrackSelectionFactory(Clock clock) {
+    return new AdaptiveTrackSelection.Factory(
+        AdaptiveTrackSelection.DEFAULT_MIN_DURATION_FOR_QUALITY_INCREASE_MS,
+        AdaptiveTrackSelection.DEFAULT_MAX_DURATION_FOR_QUALITY_DECREASE_MS,
+        AdaptiveTrackSelection.DEFAULT_MIN_DURATION_TO_RETAIN_AFTER_DISCARD_MS,
+        AdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+        AdaptiveTrackSelection.DEFAULT_BUFFERED_FRACTION_TO_LIVE_EDGE_FOR_QUALITY_INCREASE,
+        clock);
+  }
+
+  private static TrackGroup createTrackGroup() {
+    Format[] formats = new Format[BITRATES.length];
+    for (int i = 0; i < BITRATES.length; i++) {
+      formats[i] =
+          new Format.Builder()
+              .setId(String.valueOf(i))
+              .setSampleMimeType(MimeTypes.VIDEO_H264)
+              .setAverageBitrate(BITRATES[i])
+              .build();
+    }
+    return new TrackGroup(formats);
+  }
+
+  private static FakeAdaptiveDataSet createDataSet(TrackGroup trackGroup) {
+    return new FakeAdaptiveDataSet.Factory(
+            CHUNK_DURATION_US, /* bitratePercentStdDev= */ 20, new Random(/* seed= */ 0))
+        .createDataSet(trackGroup, MEDIA_DURATION_US);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.upstream.experimental.PercentileTimeToFirstByteEstimator;
+import com.google.android.exoplayer2.upstream.experimental.SplitParallelSampleBandwidthEstimator;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link TransferTrace} and {@link TransferTraceReplayer}. */
+@RunWith(AndroidJUnit4.class)
+public final class TransferTraceReplayerTest {
+
+  @Test
+  public void parse_returnsEventsInOrder() {
+    TransferTrace trace =
+        TransferTrace.parse(
+            "# timeMs type transferId [bytes]\n"
+                + "0 init 1\n"
+                + "\n"
+                + "35 start 1\n"
+                + "80 bytes 1 65536\n"
+                + "120 end 1\n");
+
+    assertThat(trace.events).hasSize(4);
+    assertThat(trace.events.get(0).type).isEqualTo(TransferTrace.EVENT_TYPE_INITIALIZING);
+    assertThat(trace.events.get(1).timeMs).isEqualTo(35);
+    assertThat(trace.events.get(2).type).isEqualTo(TransferTrace.EVENT_TYPE_BYTES_TRANSFERRED);
+    assertThat(trace.events.get(2).bytesTransferred).isEqualTo(65536);
+    assertThat(trace.events.get(3).transferId).isEqualTo(1);
+  }
+
+  @Test
+  public void parse_bytesBeforeStart_throws() {
+    assertThrows(
+        IllegalArgumentException.class, () -> TransferTrace.parse("0 init 1\n10 bytes 1 100\n"));
+  }
+
+  @Test
+  public void parse_eventsOutOfOrder_throws() {
+    assertThrows(
+        IllegalArgumentException.class, () -> TransferTrace.parse("10 start 1\n5 end 1\n"));
+  }
+
+  @Test
+  public void replayBandwidthEstimator_constantThroughput_reportsExactEstimates() {
+    int[] bitratesBps = new int[10];
+    Arrays.fill(bitratesBps, 1_000_000);
+    TransferTrace trace = createSequentialTrace(bitratesBps);
+
+    TransferTraceReplayer.Result result =
+        TransferTraceReplayer.replayBandwidthEstimator(
+            trace,
+            clock -> new SplitParallelSampleBandwidthEstimator.Builder().setClock(clock).build());
+
+    assertThat(result.evaluatedTransferCount).isEqualTo(10);
+    assertThat(result.unavailableEstimateCount).isEqualTo(1);
+    assertThat(result.meanAbsoluteRelativeError).isWithin(1e-6).of(0);
+    assertThat(result.estimatorCallCount).isEqualTo(40);
+    assertThat(result.estimatorCpuTimeNs).isAtLeast(0);
+  }
+
+  @Test
+  public void replayBandwidthEstimator_throughputDrop_reportsOverestimation() {
+    TransferTrace trace =
+        createSequentialTrace(2_000_000, 2_000_000, 2_000_000, 1_000_000, 1_000_000, 1_000_000);
+
+    TransferTraceReplayer.Result result =
+        TransferTraceReplayer.replayBandwidthEstimator(
+            trace,
+            clock -> new SplitParallelSampleBandwidthEstimator.Builder().setClock(clock).build());
+
+    assertThat(result.meanAbsoluteRelativeError).isGreaterThan(0);
+    assertThat(result.meanRelativeError).isGreaterThan(0);
+  }
+
+  @Test
+  public void replayTimeToFirstByteEstimator_constantLatency_reportsExactEstimates() {
+    TransferTrace trace =
+        TransferTrace.parse(
+            "0 init 1\n50 start 1\n60 end 1\n"
+                + "100 init 2\n150 start 2\n160 end 2\n"
+                + "200 init 3\n250 start 3\n260 end 3\n"
+                // A transfer without initialization is ignored.
+                + "300 start 4\n310 end 4\n");
+
+    TransferTraceReplayer.Result result =
+        TransferTraceReplayer.replayTimeToFirstByteEstimator(
+            trace,
+            clock ->
+                new PercentileTimeToFirstByteEstimator(
+                    /* numberOfSamples= */ 10, /* percentile= */ 0.5f, clock));
+
+    assertThat(result.evaluatedTransferCount).isEqualTo(3);
+    assertThat(result.unavailableEstimateCount).isEqualTo(1);
+    assertThat(result.meanAbsoluteRelativeError).isWithin(1e-6).of(0);
+    assertThat(result.estimatorCallCount).isEqualTo(6);
+  }
+
+  private static TransferTrace createSequentialTrace(int... bitratesBps) {
+    TransferTrace.Builder builder = new TransferTrace.Builder();
+    long timeMs = 0;
+    for (int i = 0; i < bitratesBps.length; i++) {
+      builder
+          .addInitializing(timeMs, /* transferId= */ i)
+          .addStart(timeMs + 10, /* transferId= */ i)
+          .addBytesTransferred(
+              timeMs + 1010, /* transferId= */ i, /* bytesTransferred= */ bitratesBps[i] / 8)
+          .addEnd(timeMs + 1010, /* transferId= */ i);
+      timeMs += 2000;
+    }
+    return builder.build();
+  }
+}